@@ -32,6 +32,16 @@ public class GPDBWritableMapper {
     private int type;
     private DataGetter getter = null;
 
+    /* getters are stateless, one instance of each is enough */
+    private final DataGetter booleanGetter = new BooleanDataGetter();
+    private final DataGetter bytesGetter = new BytesDataGetter();
+    private final DataGetter longGetter = new LongDataGetter();
+    private final DataGetter shortGetter = new ShortDataGetter();
+    private final DataGetter intGetter = new IntDataGetter();
+    private final DataGetter stringGetter = new StringDataGetter();
+    private final DataGetter floatGetter = new FloatDataGetter();
+    private final DataGetter doubleGetter = new DoubleDataGetter();
+
     public GPDBWritableMapper(GPDBWritable gpdbWritable) {
         this.gpdbWritable = gpdbWritable;
     }
@@ -41,28 +51,28 @@ public class GPDBWritableMapper {
 
         switch (DataType.get(type)) {
             case BOOLEAN:
-                getter = new BooleanDataGetter();
+                getter = booleanGetter;
                 break;
             case BYTEA:
-                getter = new BytesDataGetter();
+                getter = bytesGetter;
                 break;
             case BIGINT:
-                getter = new LongDataGetter();
+                getter = longGetter;
                 break;
             case SMALLINT:
-                getter = new ShortDataGetter();
+                getter = shortGetter;
                 break;
             case INTEGER:
-                getter = new IntDataGetter();
+                getter = intGetter;
                 break;
             case TEXT:
-                getter = new StringDataGetter();
+                getter = stringGetter;
                 break;
             case REAL:
-                getter = new FloatDataGetter();
+                getter = floatGetter;
                 break;
             case FLOAT8:
-                getter = new DoubleDataGetter();
+                getter = doubleGetter;
                 break;
             default:
                 throw new UnsupportedTypeException(
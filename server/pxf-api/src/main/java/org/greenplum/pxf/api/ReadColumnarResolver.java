@@ -0,0 +1,40 @@
+package org.greenplum.pxf.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.io.ColumnBatch;
+
+/**
+ * Interface that defines deserialization of a batch of records into columns,
+ * without creating a {@link OneField} per value.
+ */
+public interface ReadColumnarResolver extends ReadVectorizedResolver {
+
+    /**
+     * Returns the resolved batch of records. The returned batch may be reused
+     * by the next call.
+     *
+     * @param batch unresolved batch
+     * @return records of the batch stored by column
+     * @throws Exception if the batch could not be resolved
+     */
+    ColumnBatch getColumnBatch(OneRow batch) throws Exception;
+
+}
@@ -0,0 +1,36 @@
+package org.greenplum.pxf.api;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Interface that defines writing a batch of records at once.
+ */
+public interface WriteVectorizedAccessor {
+
+    /**
+     * Writes a batch of records produced by a {@link WriteVectorizedResolver}.
+     *
+     * @param batch the batch to write
+     * @return true if the write succeeded
+     * @throws Exception if writing to the resource failed
+     */
+    boolean writeNextObjectBatch(OneRow batch) throws Exception;
+
+}
@@ -0,0 +1,118 @@
+package org.greenplum.pxf.api.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of equally sized byte arrays. Streams that need a large scratch
+ * buffer for the duration of a request take one from the pool and return it
+ * when the request is done, so that the buffers are not reallocated for every
+ * request. At most {@code maxPooled} idle buffers are retained; when the pool
+ * is empty a new buffer is allocated.
+ * <p>
+ * A view of the pool bound to the {@link MemoryBudget.Account} of a request
+ * charges the account for the buffers taken through it, see
+ * {@link #withAccount(MemoryBudget.Account)}.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> pool;
+    private final MemoryBudget.Account account;
+
+    /**
+     * Creates a pool of buffers of the given size.
+     *
+     * @param bufferSize the size of the buffers in bytes
+     * @param maxPooled  the maximum number of idle buffers that are retained
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+        this.account = null;
+    }
+
+    private BufferPool(BufferPool source, MemoryBudget.Account account) {
+        this.bufferSize = source.bufferSize;
+        this.pool = source.pool;
+        this.account = account;
+    }
+
+    /**
+     * Returns a view of this pool that shares its idle buffers and charges
+     * the given account for every buffer taken through the view, until the
+     * buffer is returned through the same view.
+     *
+     * @param account the account of the request, null for no accounting
+     * @return the view of the pool
+     */
+    public BufferPool withAccount(MemoryBudget.Account account) {
+        return account == null ? this : new BufferPool(this, account);
+    }
+
+    /**
+     * @return the size of the buffers handed out by this pool
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns an idle buffer from the pool, or a newly allocated one if
+     * the pool is empty. The content of the buffer is undefined.
+     *
+     * @return a buffer of {@link #getBufferSize()} bytes
+     */
+    public byte[] take() {
+        byte[] buffer = pool.poll();
+        if (account != null) {
+            account.allocate(bufferSize);
+        }
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers that were not handed out by
+     * this pool or that do not fit into the pool are left to the garbage
+     * collector.
+     *
+     * @param buffer the buffer to return
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            if (account != null) {
+                account.free(bufferSize);
+            }
+            pool.offer(buffer);
+        }
+    }
+
+    /**
+     * @return the number of idle buffers currently held by the pool
+     */
+    public int size() {
+        return pool.size();
+    }
+}
@@ -24,14 +24,22 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.UnsupportedOperationException;
+import java.util.Arrays;
 
 /**
  * A serializable object for transporting a byte array through the Bridge
  * framework
+ * <p>
+ * The buffer may be borrowed from a {@link BufferPool} and filled only up to
+ * a given length, so that a reader can hand its read buffer all the way to
+ * the response stream without copying it. Such a buffer is given back to the
+ * pool with {@link #release()} once it has been written.
  */
 public class BufferWritable implements Writable {
 
     byte[] buf = null;
+    int length;
+    private BufferPool pool;
 
     /**
      * Constructs a BufferWritable. Copies the buffer reference and not the
@@ -43,6 +51,25 @@ public class BufferWritable implements Writable {
      */
     public BufferWritable(byte[] inBuf) {
         buf = inBuf;
+        length = (inBuf == null) ? 0 : inBuf.length;
+    }
+
+    /**
+     * Constructs a BufferWritable holding the first {@code length} bytes of a
+     * buffer taken from the given pool. The buffer is not copied, it is
+     * returned to the pool by {@link #release()}.
+     *
+     * @param inBuf  buffer
+     * @param length number of valid bytes in the buffer
+     * @param pool   pool the buffer was taken from, null if it is not pooled
+     */
+    public BufferWritable(byte[] inBuf, int length, BufferPool pool) {
+        if (inBuf == null || length < 0 || length > inBuf.length) {
+            throw new IllegalArgumentException("Invalid buffer length " + length);
+        }
+        this.buf = inBuf;
+        this.length = length;
+        this.pool = pool;
     }
 
     /**
@@ -55,7 +82,42 @@ public class BufferWritable implements Writable {
     public void write(DataOutput out) throws IOException {
         if (buf == null)
             throw new IOException("BufferWritable was not set");
-        out.write(buf);
+        out.write(buf, 0, length);
+    }
+
+    /**
+     * @return the number of valid bytes in the buffer
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the valid bytes of the buffer. The buffer itself is returned
+     * when it is filled completely and is not pooled, otherwise its valid
+     * bytes are copied.
+     *
+     * @return the content of this writable
+     * @throws IllegalStateException if the buffer was released
+     */
+    public byte[] getBytes() {
+        if (buf == null) {
+            throw new IllegalStateException("BufferWritable was released");
+        }
+        return (pool == null && length == buf.length) ? buf : Arrays.copyOf(buf, length);
+    }
+
+    /**
+     * Returns a pooled buffer to its pool. The writable must not be used
+     * afterwards. Does nothing if the buffer is not pooled.
+     */
+    public void release() {
+        if (pool != null) {
+            pool.release(buf);
+            pool = null;
+            buf = null;
+            length = 0;
+        }
     }
 
     /**
@@ -78,21 +140,25 @@ public class BufferWritable implements Writable {
      * Appends given app's buffer to existing buffer.
      * <br>
      * Not efficient - requires copying both this and the appended buffer.
+     * A pooled buffer is returned to its pool after it has been copied.
      *
      * @param app buffer to append
      */
     public void append(byte[] app) {
         if (buf == null) {
             buf = app;
+            length = (app == null) ? 0 : app.length;
             return;
         }
         if (app == null) {
             return;
         }
 
-        byte[] newbuf = new byte[buf.length + app.length];
-        System.arraycopy(buf, 0, newbuf, 0, buf.length);
-        System.arraycopy(app, 0, newbuf, buf.length, app.length);
+        byte[] newbuf = new byte[length + app.length];
+        System.arraycopy(buf, 0, newbuf, 0, length);
+        System.arraycopy(app, 0, newbuf, length, app.length);
+        release();
         buf = newbuf;
+        length = newbuf.length;
     }
 }
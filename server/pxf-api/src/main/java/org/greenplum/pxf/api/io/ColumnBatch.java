@@ -0,0 +1,395 @@
+package org.greenplum.pxf.api.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A batch of records stored column by column. Fixed-width values are kept in
+ * primitive arrays, text and binary values as slices of byte arrays and nulls
+ * in a bitmap, so a batch can be filled and serialized without creating an
+ * object per value. Values of types without a primitive representation
+ * (e.g. NUMERIC, DATE, TIMESTAMP) are kept as objects and serialized in their
+ * text form.
+ * <p>
+ * A batch is meant to be reused: {@link #reset(int)} clears it for the next
+ * set of records and grows the columns when needed. Byte slices set with
+ * {@link Column#setBytes} are referenced, not copied, so the arrays backing
+ * them must not change until the batch is consumed; slices set with
+ * {@link Column#copyBytes} are copied into a buffer owned by the column.
+ */
+public class ColumnBatch {
+
+    private final Column[] columns;
+    private int size;
+    private int capacity;
+
+    /**
+     * Creates a batch with the given number of columns.
+     *
+     * @param numColumns number of columns
+     * @param capacity   initial number of records the batch can hold
+     */
+    public ColumnBatch(int numColumns, int capacity) {
+        columns = new Column[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            columns[i] = new Column();
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Clears the batch and prepares it to hold the given number of records.
+     * Column types are kept.
+     *
+     * @param size number of records in the batch
+     */
+    public void reset(int size) {
+        if (size > capacity) {
+            capacity = size;
+        }
+        for (Column column : columns) {
+            column.reset(capacity);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of records in the batch.
+     *
+     * @return number of records
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Sets the number of records in the batch, for a batch that was filled
+     * with fewer records than it was reset for.
+     *
+     * @param size number of records in the batch
+     */
+    public void setSize(int size) {
+        if (size > capacity) {
+            throw new IllegalArgumentException("Batch size " + size + " exceeds its capacity " + capacity);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of records the batch can hold without growing.
+     *
+     * @return capacity of the batch
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of columns in the batch.
+     *
+     * @return number of columns
+     */
+    public int getNumColumns() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the column at the given index.
+     *
+     * @param index column index
+     * @return the column
+     */
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * How values of a column are stored.
+     */
+    public enum Storage {
+        LONG, DOUBLE, BYTES, OBJECT
+    }
+
+    /**
+     * Returns the storage used for values of the given type.
+     *
+     * @param type data type
+     * @return storage of the type
+     */
+    public static Storage getStorage(DataType type) {
+        switch (type) {
+            case BOOLEAN:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return Storage.LONG;
+            case REAL:
+            case FLOAT8:
+                return Storage.DOUBLE;
+            case BYTEA:
+            case TEXT:
+            case VARCHAR:
+            case BPCHAR:
+                return Storage.BYTES;
+            default:
+                return Storage.OBJECT;
+        }
+    }
+
+    /**
+     * One column of a batch. BOOLEAN, SMALLINT, INTEGER and BIGINT values are
+     * stored as longs, REAL and FLOAT8 as doubles, BYTEA and text types as
+     * byte slices (text is UTF-8 encoded) and all other types as objects.
+     * A repeating column holds a single value, stored at row 0, for all rows.
+     */
+    public static class Column {
+
+        private DataType type;
+        private Storage storage;
+        private long[] nulls = new long[0];
+        private boolean repeating;
+        private long[] longs;
+        private double[] doubles;
+        private byte[][] bytes;
+        private int[] start;
+        private int[] length;
+        private Object[] objects;
+        private byte[] arena;
+        private int arenaUsed;
+
+        /**
+         * Returns the type of the column values.
+         *
+         * @return data type
+         */
+        public DataType getType() {
+            return type;
+        }
+
+        /**
+         * Returns how the values of the column are stored.
+         *
+         * @return storage of the column
+         */
+        public Storage getStorage() {
+            return storage;
+        }
+
+        /**
+         * Sets the type of the column values. The type has to be set before
+         * the batch is reset for the first time.
+         *
+         * @param type data type
+         */
+        public void setType(DataType type) {
+            if (this.type != type) {
+                this.type = type;
+                storage = ColumnBatch.getStorage(type);
+                longs = null;
+                doubles = null;
+                bytes = null;
+                start = null;
+                length = null;
+                objects = null;
+            }
+        }
+
+        /**
+         * Returns whether the column holds a single value for all rows.
+         *
+         * @return true if the column is repeating
+         */
+        public boolean isRepeating() {
+            return repeating;
+        }
+
+        /**
+         * Marks the column as holding the value of row 0 for all rows.
+         *
+         * @param repeating whether the column is repeating
+         */
+        public void setRepeating(boolean repeating) {
+            this.repeating = repeating;
+        }
+
+        /**
+         * Returns whether the value of the row is null.
+         */
+        public boolean isNull(int row) {
+            int i = index(row);
+            return (nulls[i >>> 6] & (1L << i)) != 0;
+        }
+
+        /**
+         * Marks the value of the row as null.
+         */
+        public void setNull(int row) {
+            nulls[row >>> 6] |= 1L << row;
+        }
+
+        /**
+         * Returns the value of a BOOLEAN, SMALLINT, INTEGER or BIGINT row.
+         */
+        public long getLong(int row) {
+            return longs[index(row)];
+        }
+
+        /**
+         * Sets the value of a BOOLEAN (1 for true), SMALLINT, INTEGER or BIGINT row.
+         */
+        public void setLong(int row, long value) {
+            longs[row] = value;
+        }
+
+        /**
+         * Returns the value of a REAL or FLOAT8 row.
+         */
+        public double getDouble(int row) {
+            return doubles[index(row)];
+        }
+
+        /**
+         * Sets the value of a REAL or FLOAT8 row.
+         */
+        public void setDouble(int row, double value) {
+            doubles[row] = value;
+        }
+
+        /**
+         * Returns the array holding the value of a BYTEA or text row.
+         */
+        public byte[] getBytes(int row) {
+            return bytes[index(row)];
+        }
+
+        /**
+         * Returns the offset of the value of a BYTEA or text row.
+         */
+        public int getStart(int row) {
+            return start[index(row)];
+        }
+
+        /**
+         * Returns the length of the value of a BYTEA or text row.
+         */
+        public int getLength(int row) {
+            return length[index(row)];
+        }
+
+        /**
+         * Sets the value of a row to a slice of the given array. The array is
+         * referenced, not copied.
+         *
+         * @param row    row index
+         * @param value  the array holding the value
+         * @param offset offset of the value in the array
+         * @param len    length of the value
+         */
+        public void setBytes(int row, byte[] value, int offset, int len) {
+            bytes[row] = value;
+            start[row] = offset;
+            length[row] = len;
+        }
+
+        /**
+         * Sets the value of a row to a copy of a slice of the given array.
+         * The bytes are copied into a buffer owned by the column, which is
+         * reused after {@link ColumnBatch#reset(int)}.
+         *
+         * @param row    row index
+         * @param value  the array holding the value
+         * @param offset offset of the value in the array
+         * @param len    length of the value
+         */
+        public void copyBytes(int row, byte[] value, int offset, int len) {
+            if (arena == null || arena.length - arenaUsed < len) {
+                // earlier rows keep referencing the previous buffer
+                arena = new byte[Math.max(len, arena == null ? 4096 : arena.length * 2)];
+                arenaUsed = 0;
+            }
+            System.arraycopy(value, offset, arena, arenaUsed, len);
+            setBytes(row, arena, arenaUsed, len);
+            arenaUsed += len;
+        }
+
+        /**
+         * Returns the value of a row stored as an object.
+         */
+        public Object getObject(int row) {
+            return objects[index(row)];
+        }
+
+        /**
+         * Sets the value of a row stored as an object.
+         */
+        public void setObject(int row, Object value) {
+            objects[row] = value;
+        }
+
+        private int index(int row) {
+            return repeating ? 0 : row;
+        }
+
+        /**
+         * Clears all values and makes room for the given number of rows.
+         */
+        void reset(int capacity) {
+            if (storage == null) {
+                throw new IllegalStateException("Column type was not set");
+            }
+            repeating = false;
+            arenaUsed = 0;
+            int words = (capacity + 63) >>> 6;
+            if (nulls.length < words) {
+                nulls = new long[words];
+            } else {
+                Arrays.fill(nulls, 0L);
+            }
+            switch (storage) {
+                case LONG:
+                    if (longs == null || longs.length < capacity) {
+                        longs = new long[capacity];
+                    }
+                    break;
+                case DOUBLE:
+                    if (doubles == null || doubles.length < capacity) {
+                        doubles = new double[capacity];
+                    }
+                    break;
+                case BYTES:
+                    if (bytes == null || bytes.length < capacity) {
+                        bytes = new byte[capacity][];
+                        start = new int[capacity];
+                        length = new int[capacity];
+                    } else {
+                        Arrays.fill(bytes, null);
+                    }
+                    break;
+                default:
+                    if (objects == null || objects.length < capacity) {
+                        objects = new Object[capacity];
+                    } else {
+                        Arrays.fill(objects, null);
+                    }
+            }
+        }
+    }
+}
@@ -29,11 +29,21 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 
 /**
  * This class represents a GPDB record in the form of
  * a Java object.
+ * <p>
+ * Column values are kept in primitive slots rather than boxed objects:
+ * fixed length values are stored as raw bits in a {@code long} per column and
+ * variable length values as byte slices. Text values are UTF-8 encoded once,
+ * when they are set, into a buffer owned by the column, so a record that is
+ * refilled for every row does not allocate once the buffers have grown to the
+ * size of the widest value. The whole record is staged in a reusable buffer
+ * and handed to the output with a single write.
  */
 public class GPDBWritable implements Writable {
     /*
@@ -54,21 +64,27 @@ public class GPDBWritable implements Writable {
      * Enum of the Database type
      */
     private enum DBType {
-        BIGINT(8, 8),
-        BOOLEAN(1, 1),
-        FLOAT8(8, 8),
-        INTEGER(4, 4),
-        REAL(4, 4),
-        SMALLINT(2, 2),
-        BYTEA(4, -1),
-        TEXT(4, -1);
+        BIGINT(8, 8, DataType.BIGINT),
+        BOOLEAN(1, 1, DataType.BOOLEAN),
+        FLOAT8(8, 8, DataType.FLOAT8),
+        INTEGER(4, 4, DataType.INTEGER),
+        REAL(4, 4, DataType.REAL),
+        SMALLINT(2, 2, DataType.SMALLINT),
+        BYTEA(4, -1, DataType.BYTEA),
+        TEXT(4, -1, DataType.TEXT);
 
         private final int typelength; // -1 means var length
         private final int alignment;
+        private final DataType dataType;
 
-        DBType(int align, int len) {
+        DBType(int align, int len, DataType dataType) {
             this.typelength = len;
             this.alignment = align;
+            this.dataType = dataType;
+        }
+
+        public DataType getDataType() {
+            return dataType;
         }
 
         public int getTypeLength() {
@@ -90,13 +106,30 @@ public class GPDBWritable implements Writable {
      */
     private static final int PREV_VERSION = 1;
     private static final int VERSION = 2; /* for backward compatibility */
-    private static final String CHARSET = "UTF-8";
+    private static final DBType[] DB_TYPES = DBType.values();
+    /* header = total length (4 byte), Version (2 byte), Error (1 byte), #col (2 byte) */
+    private static final int HEADER_LENGTH = 4 + 2 + 1 + 2;
+    /* var length values larger than this are written straight to the output instead of being staged */
+    private static final int MAX_STAGED_VALUE_LENGTH = 64 * 1024;
 
     /*
      * Local variables
      */
     private int[] colType;
-    private Object[] colValue;
+    private DBType[] colDbType;
+    private boolean[] colIsNull;
+    /* raw bits of fixed length values */
+    private long[] fixedValue;
+    /* slices holding BYTEA payloads or UTF-8 encoded text */
+    private byte[][] varValue;
+    private int[] varOffset;
+    private int[] varLength;
+    /* per column buffers that text values are encoded into */
+    private byte[][] textBuffer;
+    /* scratch space reused for every serialized record */
+    private int[] padLength;
+    private byte[] recordBuffer = new byte[256];
+    private byte[] nullBytes = new byte[0];
     private int alignmentOfEightBytes = 8;
     private byte errorFlag = 0;
     private int pktlen = EOF;
@@ -129,8 +162,7 @@ public class GPDBWritable implements Writable {
      */
     public GPDBWritable(int[] columnType) {
         initializeEightByteAlignment();
-        colType = columnType;
-        colValue = new Object[columnType.length];
+        initializeColumns(columnType);
     }
 
     /**
@@ -147,6 +179,62 @@ public class GPDBWritable implements Writable {
         readFields(dis);
     }
 
+    /*
+     * Allocates the column slots for the given schema. All columns start as null.
+     */
+    private void initializeColumns(int[] columnType) {
+        int colCnt = columnType.length;
+        colType = columnType;
+        colDbType = new DBType[colCnt];
+        for (int i = 0; i < colCnt; i++) {
+            colDbType[i] = toDBType(columnType[i]);
+        }
+        colIsNull = new boolean[colCnt];
+        Arrays.fill(colIsNull, true);
+        fixedValue = new long[colCnt];
+        varValue = new byte[colCnt][];
+        varOffset = new int[colCnt];
+        varLength = new int[colCnt];
+        textBuffer = new byte[colCnt][];
+        padLength = new int[colCnt];
+    }
+
+    /**
+     * Returns the type a column of the given type is transferred as. Types
+     * that are not natively supported are transferred in their text form.
+     *
+     * @param oid type OID of the column
+     * @return the type of the column on the wire
+     */
+    public static DataType getWireType(int oid) {
+        return toDBType(oid).getDataType();
+    }
+
+    /*
+     * Maps a type OID to its wire type. Any type that is not natively
+     * supported is transferred in its text form.
+     */
+    private static DBType toDBType(int oid) {
+        switch (DataType.get(oid)) {
+            case BIGINT:
+                return DBType.BIGINT;
+            case BOOLEAN:
+                return DBType.BOOLEAN;
+            case FLOAT8:
+                return DBType.FLOAT8;
+            case INTEGER:
+                return DBType.INTEGER;
+            case REAL:
+                return DBType.REAL;
+            case SMALLINT:
+                return DBType.SMALLINT;
+            case BYTEA:
+                return DBType.BYTEA;
+            default:
+                return DBType.TEXT;
+        }
+    }
+
     /*
      * Read first 4 bytes, and verify it's a valid packet length.
      * Upon error returns EOF.
@@ -202,56 +290,41 @@ public class GPDBWritable implements Writable {
         colCnt = in.readShort();
         curOffset += 2;
 
-		/* Extract Column Type */
-        colType = new int[colCnt];
-        DBType[] coldbtype = new DBType[colCnt];
+		/* Extract Column Type, the column slots are kept when the schema does not change */
+        boolean sameSchema = colType != null && colType.length == colCnt;
+        int[] types = sameSchema ? colType : new int[colCnt];
         for (int i = 0; i < colCnt; i++) {
             int enumType = (in.readByte());
             curOffset += 1;
-            if (enumType == DBType.BIGINT.ordinal()) {
-                colType[i] = DataType.BIGINT.getOID();
-                coldbtype[i] = DBType.BIGINT;
-            } else if (enumType == DBType.BOOLEAN.ordinal()) {
-                colType[i] = DataType.BOOLEAN.getOID();
-                coldbtype[i] = DBType.BOOLEAN;
-            } else if (enumType == DBType.FLOAT8.ordinal()) {
-                colType[i] = DataType.FLOAT8.getOID();
-                coldbtype[i] = DBType.FLOAT8;
-            } else if (enumType == DBType.INTEGER.ordinal()) {
-                colType[i] = DataType.INTEGER.getOID();
-                coldbtype[i] = DBType.INTEGER;
-            } else if (enumType == DBType.REAL.ordinal()) {
-                colType[i] = DataType.REAL.getOID();
-                coldbtype[i] = DBType.REAL;
-            } else if (enumType == DBType.SMALLINT.ordinal()) {
-                colType[i] = DataType.SMALLINT.getOID();
-                coldbtype[i] = DBType.SMALLINT;
-            } else if (enumType == DBType.BYTEA.ordinal()) {
-                colType[i] = DataType.BYTEA.getOID();
-                coldbtype[i] = DBType.BYTEA;
-            } else if (enumType == DBType.TEXT.ordinal()) {
-                colType[i] = DataType.TEXT.getOID();
-                coldbtype[i] = DBType.TEXT;
-            } else {
+            if (enumType < 0 || enumType >= DB_TYPES.length) {
                 throw new IOException("Unknown GPDBWritable.DBType ordinal value");
             }
+            int type = DB_TYPES[enumType].getDataType().getOID();
+            if (sameSchema && types[i] != type) {
+                types = Arrays.copyOf(types, colCnt);
+                sameSchema = false;
+            }
+            types[i] = type;
+        }
+        if (!sameSchema) {
+            initializeColumns(types);
         }
 
 		/* Extract null bit array */
-        byte[] nullbytes = new byte[getNullByteArraySize(colCnt)];
-        in.readFully(nullbytes);
-        curOffset += nullbytes.length;
-        boolean[] colIsNull = byteArrayToBooleanArray(nullbytes, colCnt);
+        int nullByteArraySize = getNullByteArraySize(colCnt);
+        if (nullBytes.length < nullByteArraySize) {
+            nullBytes = new byte[nullByteArraySize];
+        }
+        in.readFully(nullBytes, 0, nullByteArraySize);
+        curOffset += nullByteArraySize;
+        byteArrayToBooleanArray(nullBytes, colIsNull);
 
 		/* extract column value */
-        colValue = new Object[colCnt];
         for (int i = 0; i < colCnt; i++) {
             if (!colIsNull[i]) {
                 /* Skip the alignment padding */
-                int skipbytes = roundUpAlignment(curOffset, coldbtype[i].getAlignment()) - curOffset;
-                for (int j = 0; j < skipbytes; j++) {
-                    in.readByte();
-                }
+                int skipbytes = roundUpAlignment(curOffset, colDbType[i].getAlignment()) - curOffset;
+                skipPadding(in, skipbytes);
                 curOffset += skipbytes;
 
 				/* For fixed length type, increment the offset according to type type length here.
@@ -259,53 +332,54 @@ public class GPDBWritable implements Writable {
 				 * actual payload.
 				 */
                 int varcollen = -1;
-                if (coldbtype[i].isVarLength()) {
+                if (colDbType[i].isVarLength()) {
                     varcollen = in.readInt();
                     curOffset += 4 + varcollen;
                 } else {
-                    curOffset += coldbtype[i].getTypeLength();
+                    curOffset += colDbType[i].getTypeLength();
                 }
 
-                switch (DataType.get(colType[i])) {
+                switch (colDbType[i]) {
                     case BIGINT: {
-                        colValue[i] = in.readLong();
+                        fixedValue[i] = in.readLong();
                         break;
                     }
                     case BOOLEAN: {
-                        colValue[i] = in.readBoolean();
+                        fixedValue[i] = in.readBoolean() ? 1 : 0;
                         break;
                     }
                     case FLOAT8: {
-                        colValue[i] = in.readDouble();
+                        fixedValue[i] = Double.doubleToLongBits(in.readDouble());
                         break;
                     }
                     case INTEGER: {
-                        colValue[i] = in.readInt();
+                        fixedValue[i] = in.readInt();
                         break;
                     }
                     case REAL: {
-                        colValue[i] = in.readFloat();
+                        fixedValue[i] = Float.floatToIntBits(in.readFloat());
                         break;
                     }
                     case SMALLINT: {
-                        colValue[i] = in.readShort();
+                        fixedValue[i] = in.readShort();
                         break;
                     }
 
 					/* For BYTEA column, it has a 4 byte var length header. */
                     case BYTEA: {
-                        colValue[i] = new byte[varcollen];
-                        in.readFully((byte[]) colValue[i]);
+                        byte[] data = new byte[varcollen];
+                        in.readFully(data);
+                        setVarValue(i, data, 0, varcollen);
                         break;
                     }
                     /* For text formatted column, it has a 4 byte var length header
                      * and it's always null terminated string.
-					 * So, we can remove the last "\0" when constructing the string.
+					 * So, we can remove the last "\0" when keeping the value.
 					 */
                     case TEXT: {
-                        byte[] data = new byte[varcollen];
+                        byte[] data = ensureTextBuffer(i, varcollen);
                         in.readFully(data, 0, varcollen);
-                        colValue[i] = new String(data, 0, varcollen - 1, CHARSET);
+                        setVarValue(i, data, 0, varcollen - 1);
                         break;
                     }
 
@@ -317,9 +391,7 @@ public class GPDBWritable implements Writable {
 
 		/* Skip the ending alignment padding */
         int skipbytes = roundUpAlignment(curOffset, 8) - curOffset;
-        for (int j = 0; j < skipbytes; j++) {
-            in.readByte();
-        }
+        skipPadding(in, skipbytes);
         curOffset += skipbytes;
 
         if (errorFlag != 0) {
@@ -327,14 +399,26 @@ public class GPDBWritable implements Writable {
         }
     }
 
+    /*
+     * Skips the given number of padding bytes. Falls back to reading single
+     * bytes when the input cannot skip, so a short skip is never mistaken
+     * for the end of the record.
+     */
+    private static void skipPadding(DataInput in, int count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped <= 0) {
+                in.readByte();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
     @Override
     public void write(DataOutput out) throws IOException {
         int numCol = colType.length;
-        boolean[] nullBits = new boolean[numCol];
-        int[] colLength = new int[numCol];
-        byte[] enumType = new byte[numCol];
-        int[] padLength = new int[numCol];
-        byte[] padbytes = new byte[8];
+        int nullByteArraySize = getNullByteArraySize(numCol);
 
         /*
          * Compute the total payload and header length
@@ -342,70 +426,30 @@ public class GPDBWritable implements Writable {
          * col type array = #col * 1 byte
          * null bit array = ceil(#col/8)
          */
-        int datlen = 4 + 2 + 1 + 2;
+        int datlen = HEADER_LENGTH;
         datlen += numCol;
-        datlen += getNullByteArraySize(numCol);
+        datlen += nullByteArraySize;
 
         for (int i = 0; i < numCol; i++) {
-            /* Get the enum type */
-            DBType coldbtype;
-            switch (DataType.get(colType[i])) {
-                case BIGINT:
-                    coldbtype = DBType.BIGINT;
-                    break;
-                case BOOLEAN:
-                    coldbtype = DBType.BOOLEAN;
-                    break;
-                case FLOAT8:
-                    coldbtype = DBType.FLOAT8;
-                    break;
-                case INTEGER:
-                    coldbtype = DBType.INTEGER;
-                    break;
-                case REAL:
-                    coldbtype = DBType.REAL;
-                    break;
-                case SMALLINT:
-                    coldbtype = DBType.SMALLINT;
-                    break;
-                case BYTEA:
-                    coldbtype = DBType.BYTEA;
-                    break;
-                default:
-                    coldbtype = DBType.TEXT;
+            if (colIsNull[i]) {
+                continue;
             }
-            enumType[i] = (byte) (coldbtype.ordinal());
-
-			/* Get the actual value, and set the null bit */
-            if (colValue[i] == null) {
-                nullBits[i] = true;
-                colLength[i] = 0;
+            DBType coldbtype = colDbType[i];
+
+			/* calculate and add the type alignment padding */
+            padLength[i] = roundUpAlignment(datlen, coldbtype.getAlignment()) - datlen;
+            datlen += padLength[i];
+
+            /*
+             * For fixed length type, we get the fixed length.
+             * For var length type, we add a 4 byte length header and the
+             * length of the binary or the already encoded text value.
+             */
+            if (coldbtype.isVarLength()) {
+                datlen += 4 + varLength[i];
             } else {
-                nullBits[i] = false;
-
-				/*
-                 * For fixed length type, we get the fixed length.
-				 * For var len binary format, the length is in the col value.
-				 * For text format, we must convert encoding first.
-				 */
-                if (!coldbtype.isVarLength()) {
-                    colLength[i] = coldbtype.getTypeLength();
-                } else if (!isTextForm(colType[i])) {
-                    colLength[i] = ((byte[]) colValue[i]).length;
-                } else {
-                    colLength[i] = ((String) colValue[i]).getBytes(CHARSET).length;
-                }
-
-				/* calculate and add the type alignment padding */
-                padLength[i] = roundUpAlignment(datlen, coldbtype.getAlignment()) - datlen;
-                datlen += padLength[i];
-
-				/* for variable length type, we add a 4 byte length header */
-                if (coldbtype.isVarLength()) {
-                    datlen += 4;
-                }
+                datlen += coldbtype.getTypeLength();
             }
-            datlen += colLength[i];
         }
 
 		/*
@@ -414,86 +458,149 @@ public class GPDBWritable implements Writable {
         int endpadding = roundUpAlignment(datlen, 8) - datlen;
         datlen += endpadding;
 
+        ensureRecordBuffer(Math.min(datlen, HEADER_LENGTH + numCol + nullByteArraySize + 16 * numCol + MAX_STAGED_VALUE_LENGTH));
+        byte[] buf = recordBuffer;
+
 		/* Construct the packet header */
-        out.writeInt(datlen);
-        out.writeShort(VERSION);
-        out.writeByte(errorFlag);
-        out.writeShort(numCol);
+        int pos = putInt(buf, 0, datlen);
+        pos = putShort(buf, pos, VERSION);
+        buf[pos++] = errorFlag;
+        pos = putShort(buf, pos, numCol);
 
 		/* Write col type */
         for (int i = 0; i < numCol; i++) {
-            out.writeByte(enumType[i]);
+            buf[pos++] = (byte) colDbType[i].ordinal();
         }
 
 		/* Nullness */
-        byte[] nullBytes = boolArrayToByteArray(nullBits);
-        out.write(nullBytes);
+        pos = booleanArrayToByteArray(colIsNull, buf, pos);
 
 		/* Column Value */
         for (int i = 0; i < numCol; i++) {
-            if (!nullBits[i]) {
-				/* Pad the alignment byte first */
-                if (padLength[i] > 0) {
-                    out.write(padbytes, 0, padLength[i]);
-                }
+            if (colIsNull[i]) {
+                continue;
+            }
 
-				/* Now, write the actual column value */
-                switch (DataType.get(colType[i])) {
-                    case BIGINT:
-                        out.writeLong(((Long) colValue[i]));
-                        break;
-                    case BOOLEAN:
-                        out.writeBoolean(((Boolean) colValue[i]));
-                        break;
-                    case FLOAT8:
-                        out.writeDouble(((Double) colValue[i]));
-                        break;
-                    case INTEGER:
-                        out.writeInt(((Integer) colValue[i]));
-                        break;
-                    case REAL:
-                        out.writeFloat(((Float) colValue[i]));
-                        break;
-                    case SMALLINT:
-                        out.writeShort(((Short) colValue[i]));
-                        break;
+			/* Pad the alignment byte first */
+            pos = putZeros(buf, pos, padLength[i]);
 
-					/* For BYTEA format, add 4byte length header at the beginning  */
-                    case BYTEA:
-                        out.writeInt(colLength[i]);
-                        out.write((byte[]) colValue[i]);
-                        break;
+			/* Now, write the actual column value */
+            long value = fixedValue[i];
+            switch (colDbType[i]) {
+                case BIGINT:
+                case FLOAT8:
+                    pos = putLong(buf, pos, value);
+                    break;
+                case BOOLEAN:
+                    buf[pos++] = (byte) (value != 0 ? 1 : 0);
+                    break;
+                case INTEGER:
+                case REAL:
+                    pos = putInt(buf, pos, (int) value);
+                    break;
+                case SMALLINT:
+                    pos = putShort(buf, pos, (int) value);
+                    break;
 
-					/* For text format, add 4byte length header. string is already '\0' terminated */
-                    default: {
-                        out.writeInt(colLength[i]);
-                        byte[] data = ((String) colValue[i]).getBytes(CHARSET);
-                        out.write(data);
-                        break;
+				/*
+				 * For BYTEA format, add 4byte length header at the beginning.
+				 * For text format, add 4byte length header. string is already '\0' terminated
+				 */
+                default: {
+                    pos = putInt(buf, pos, varLength[i]);
+                    if (pos + varLength[i] > buf.length) {
+                        /* flush what was staged so far and hand the value over as is */
+                        out.write(buf, 0, pos);
+                        out.write(varValue[i], varOffset[i], varLength[i]);
+                        pos = 0;
+                    } else {
+                        System.arraycopy(varValue[i], varOffset[i], buf, pos, varLength[i]);
+                        pos += varLength[i];
                     }
+                    break;
                 }
             }
+            if (pos + 16 > buf.length) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
         }
 
 		/* End padding */
-        out.write(padbytes, 0, endpadding);
+        pos = putZeros(buf, pos, endpadding);
+        out.write(buf, 0, pos);
+    }
+
+    /*
+     * Grows the record staging buffer so it can hold at least the given number of bytes.
+     */
+    private void ensureRecordBuffer(int size) {
+        if (recordBuffer.length < size) {
+            recordBuffer = new byte[Math.max(size, recordBuffer.length * 2)];
+        }
+    }
+
+    /*
+     * Returns the text buffer of the given column, grown to hold at least the given number of bytes.
+     */
+    private byte[] ensureTextBuffer(int colIdx, int size) {
+        byte[] buffer = textBuffer[colIdx];
+        if (buffer == null || buffer.length < size) {
+            buffer = new byte[Math.max(size, buffer == null ? 16 : buffer.length * 2)];
+            textBuffer[colIdx] = buffer;
+        }
+        return buffer;
+    }
+
+    private static int putLong(byte[] buf, int pos, long v) {
+        buf[pos] = (byte) (v >>> 56);
+        buf[pos + 1] = (byte) (v >>> 48);
+        buf[pos + 2] = (byte) (v >>> 40);
+        buf[pos + 3] = (byte) (v >>> 32);
+        buf[pos + 4] = (byte) (v >>> 24);
+        buf[pos + 5] = (byte) (v >>> 16);
+        buf[pos + 6] = (byte) (v >>> 8);
+        buf[pos + 7] = (byte) v;
+        return pos + 8;
+    }
+
+    private static int putInt(byte[] buf, int pos, int v) {
+        buf[pos] = (byte) (v >>> 24);
+        buf[pos + 1] = (byte) (v >>> 16);
+        buf[pos + 2] = (byte) (v >>> 8);
+        buf[pos + 3] = (byte) v;
+        return pos + 4;
+    }
+
+    private static int putShort(byte[] buf, int pos, int v) {
+        buf[pos] = (byte) (v >>> 8);
+        buf[pos + 1] = (byte) v;
+        return pos + 2;
+    }
+
+    private static int putZeros(byte[] buf, int pos, int count) {
+        for (int i = 0; i < count; i++) {
+            buf[pos++] = 0;
+        }
+        return pos;
     }
 
     /**
-     * Private helper to convert boolean array to byte array
+     * Private helper to write a boolean array as a bit array into the given
+     * buffer, returns the position after the last written byte
      */
-    private static byte[] boolArrayToByteArray(boolean[] data) {
-        int len = data.length;
-        byte[] byts = new byte[getNullByteArraySize(len)];
+    private static int booleanArrayToByteArray(boolean[] data, byte[] buf, int pos) {
+        int size = getNullByteArraySize(data.length);
+        Arrays.fill(buf, pos, pos + size, (byte) 0);
 
-        for (int i = 0, j = 0, k = 7; i < data.length; i++) {
-            byts[j] |= (data[i] ? 1 : 0) << k--;
+        for (int i = 0, j = pos, k = 7; i < data.length; i++) {
+            buf[j] |= (data[i] ? 1 : 0) << k--;
             if (k < 0) {
                 j++;
                 k = 7;
             }
         }
-        return byts;
+        return pos + size;
     }
 
     /**
@@ -506,8 +613,7 @@ public class GPDBWritable implements Writable {
     /**
      * Private helper to convert byte array to boolean array
      */
-    private static boolean[] byteArrayToBooleanArray(byte[] data, int colCnt) {
-        boolean[] bools = new boolean[colCnt];
+    private static void byteArrayToBooleanArray(byte[] data, boolean[] bools) {
         for (int i = 0, j = 0, k = 7; i < bools.length; i++) {
             bools[i] = ((data[j] >> k--) & 0x01) == 1;
             if (k < 0) {
@@ -515,7 +621,6 @@ public class GPDBWritable implements Writable {
                 k = 7;
             }
         }
-        return bools;
     }
 
     /**
@@ -529,6 +634,64 @@ public class GPDBWritable implements Writable {
         return (((len) + ((commonAlignment) - 1)) & ~((commonAlignment) - 1));
     }
 
+    /*
+     * Stores a fixed length value, a null value marks the column as null.
+     */
+    private void setFixedValue(int colIdx, Object val, long bits) {
+        colIsNull[colIdx] = (val == null);
+        fixedValue[colIdx] = bits;
+    }
+
+    /*
+     * Stores a slice of a byte array as the column value.
+     */
+    private void setVarValue(int colIdx, byte[] val, int offset, int length) {
+        colIsNull[colIdx] = (val == null);
+        varValue[colIdx] = val;
+        varOffset[colIdx] = offset;
+        varLength[colIdx] = length;
+    }
+
+    /*
+     * Encodes the string as UTF-8 into the text buffer of the column,
+     * optionally followed by the '\0' terminator. Unpaired surrogates are
+     * replaced by '?', same as String.getBytes does.
+     */
+    private void setEncodedText(int colIdx, String val, boolean terminate) {
+        if (val == null) {
+            setVarValue(colIdx, null, 0, 0);
+            return;
+        }
+        int len = val.length();
+        byte[] buf = ensureTextBuffer(colIdx, len * 3 + 1);
+        int pos = 0;
+        for (int i = 0; i < len; i++) {
+            char c = val.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(val.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, val.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[pos++] = (byte) '?';
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        if (terminate) {
+            buf[pos++] = 0;
+        }
+        setVarValue(colIdx, buf, 0, pos);
+    }
+
     /**
      * Sets the column value of the record.
      *
@@ -539,7 +702,21 @@ public class GPDBWritable implements Writable {
     public void setLong(int colIdx, Long val)
             throws TypeMismatchException {
         checkType(DataType.BIGINT, colIdx, true);
-        colValue[colIdx] = val;
+        setFixedValue(colIdx, val, val != null ? val : 0);
+    }
+
+    /**
+     * Sets the column value of the record without boxing.
+     *
+     * @param colIdx the column index
+     * @param val    the value
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setLong(int colIdx, long val)
+            throws TypeMismatchException {
+        checkType(DataType.BIGINT, colIdx, true);
+        colIsNull[colIdx] = false;
+        fixedValue[colIdx] = val;
     }
 
     /**
@@ -552,11 +729,25 @@ public class GPDBWritable implements Writable {
     public void setBoolean(int colIdx, Boolean val)
             throws TypeMismatchException {
         checkType(DataType.BOOLEAN, colIdx, true);
-        colValue[colIdx] = val;
+        setFixedValue(colIdx, val, val != null && val ? 1 : 0);
     }
 
     /**
-     * Sets the column value of the record.
+     * Sets the column value of the record without boxing.
+     *
+     * @param colIdx the column index
+     * @param val    the value
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setBoolean(int colIdx, boolean val)
+            throws TypeMismatchException {
+        checkType(DataType.BOOLEAN, colIdx, true);
+        colIsNull[colIdx] = false;
+        fixedValue[colIdx] = val ? 1 : 0;
+    }
+
+    /**
+     * Sets the column value of the record. The array is referenced, not copied.
      *
      * @param colIdx the column index
      * @param val    the value
@@ -565,7 +756,24 @@ public class GPDBWritable implements Writable {
     public void setBytes(int colIdx, byte[] val)
             throws TypeMismatchException {
         checkType(DataType.BYTEA, colIdx, true);
-        colValue[colIdx] = val;
+        setVarValue(colIdx, val, 0, val != null ? val.length : 0);
+    }
+
+    /**
+     * Sets the column value of the record to a slice of the given array.
+     * The array is referenced, not copied, and must not be modified until
+     * the record is written.
+     *
+     * @param colIdx the column index
+     * @param val    the array holding the value
+     * @param offset the offset of the value in the array
+     * @param length the length of the value
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setBytes(int colIdx, byte[] val, int offset, int length)
+            throws TypeMismatchException {
+        checkType(DataType.BYTEA, colIdx, true);
+        setVarValue(colIdx, val, offset, length);
     }
 
     /**
@@ -578,7 +786,31 @@ public class GPDBWritable implements Writable {
     public void setString(int colIdx, String val)
             throws TypeMismatchException {
         checkType(DataType.TEXT, colIdx, true);
-        colValue[colIdx] = (val != null) ? val + "\0": null;
+        setEncodedText(colIdx, val, true);
+    }
+
+    /**
+     * Sets the column value of the record from text that is already UTF-8
+     * encoded. The bytes are copied into a buffer owned by the column, so the
+     * caller is free to reuse the array.
+     *
+     * @param colIdx the column index
+     * @param utf8   the array holding the encoded text
+     * @param offset the offset of the text in the array
+     * @param length the length of the encoded text
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setText(int colIdx, byte[] utf8, int offset, int length)
+            throws TypeMismatchException {
+        checkType(DataType.TEXT, colIdx, true);
+        if (utf8 == null) {
+            setVarValue(colIdx, null, 0, 0);
+            return;
+        }
+        byte[] buf = ensureTextBuffer(colIdx, length + 1);
+        System.arraycopy(utf8, offset, buf, 0, length);
+        buf[length] = 0;
+        setVarValue(colIdx, buf, 0, length + 1);
     }
 
     /**
@@ -591,7 +823,21 @@ public class GPDBWritable implements Writable {
     public void setFloat(int colIdx, Float val)
             throws TypeMismatchException {
         checkType(DataType.REAL, colIdx, true);
-        colValue[colIdx] = val;
+        setFixedValue(colIdx, val, val != null ? Float.floatToIntBits(val) : 0);
+    }
+
+    /**
+     * Sets the column value of the record without boxing.
+     *
+     * @param colIdx the column index
+     * @param val    the value
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setFloat(int colIdx, float val)
+            throws TypeMismatchException {
+        checkType(DataType.REAL, colIdx, true);
+        colIsNull[colIdx] = false;
+        fixedValue[colIdx] = Float.floatToIntBits(val);
     }
 
     /**
@@ -604,7 +850,21 @@ public class GPDBWritable implements Writable {
     public void setDouble(int colIdx, Double val)
             throws TypeMismatchException {
         checkType(DataType.FLOAT8, colIdx, true);
-        colValue[colIdx] = val;
+        setFixedValue(colIdx, val, val != null ? Double.doubleToLongBits(val) : 0);
+    }
+
+    /**
+     * Sets the column value of the record without boxing.
+     *
+     * @param colIdx the column index
+     * @param val    the value
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setDouble(int colIdx, double val)
+            throws TypeMismatchException {
+        checkType(DataType.FLOAT8, colIdx, true);
+        colIsNull[colIdx] = false;
+        fixedValue[colIdx] = Double.doubleToLongBits(val);
     }
 
     /**
@@ -617,7 +877,21 @@ public class GPDBWritable implements Writable {
     public void setInt(int colIdx, Integer val)
             throws TypeMismatchException {
         checkType(DataType.INTEGER, colIdx, true);
-        colValue[colIdx] = val;
+        setFixedValue(colIdx, val, val != null ? val : 0);
+    }
+
+    /**
+     * Sets the column value of the record without boxing.
+     *
+     * @param colIdx the column index
+     * @param val    the value
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setInt(int colIdx, int val)
+            throws TypeMismatchException {
+        checkType(DataType.INTEGER, colIdx, true);
+        colIsNull[colIdx] = false;
+        fixedValue[colIdx] = val;
     }
 
     /**
@@ -630,7 +904,30 @@ public class GPDBWritable implements Writable {
     public void setShort(int colIdx, Short val)
             throws TypeMismatchException {
         checkType(DataType.SMALLINT, colIdx, true);
-        colValue[colIdx] = val;
+        setFixedValue(colIdx, val, val != null ? val : 0);
+    }
+
+    /**
+     * Sets the column value of the record without boxing.
+     *
+     * @param colIdx the column index
+     * @param val    the value
+     * @throws TypeMismatchException the column type does not match
+     */
+    public void setShort(int colIdx, short val)
+            throws TypeMismatchException {
+        checkType(DataType.SMALLINT, colIdx, true);
+        colIsNull[colIdx] = false;
+        fixedValue[colIdx] = val;
+    }
+
+    /**
+     * Sets the column to null.
+     *
+     * @param colIdx the column index
+     */
+    public void setNull(int colIdx) {
+        colIsNull[colIdx] = true;
     }
 
     /**
@@ -640,7 +937,31 @@ public class GPDBWritable implements Writable {
      * @param val    the value
      */
     public void setObject(int colIdx, Object val) {
-        colValue[colIdx] = val;
+        if (val == null) {
+            setNull(colIdx);
+            return;
+        }
+        switch (colDbType[colIdx]) {
+            case BIGINT:
+            case INTEGER:
+            case SMALLINT:
+                setFixedValue(colIdx, val, ((Number) val).longValue());
+                break;
+            case BOOLEAN:
+                setFixedValue(colIdx, val, (Boolean) val ? 1 : 0);
+                break;
+            case FLOAT8:
+                setFixedValue(colIdx, val, Double.doubleToLongBits((Double) val));
+                break;
+            case REAL:
+                setFixedValue(colIdx, val, Float.floatToIntBits((Float) val));
+                break;
+            case BYTEA:
+                setVarValue(colIdx, (byte[]) val, 0, ((byte[]) val).length);
+                break;
+            default:
+                setEncodedText(colIdx, (String) val, false);
+        }
     }
 
     /**
@@ -653,7 +974,7 @@ public class GPDBWritable implements Writable {
     public Long getLong(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.BIGINT, colIdx, false);
-        return (Long) colValue[colIdx];
+        return colIsNull[colIdx] ? null : fixedValue[colIdx];
     }
 
     /**
@@ -666,7 +987,7 @@ public class GPDBWritable implements Writable {
     public Boolean getBoolean(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.BOOLEAN, colIdx, false);
-        return (Boolean) colValue[colIdx];
+        return colIsNull[colIdx] ? null : fixedValue[colIdx] != 0;
     }
 
     /**
@@ -679,7 +1000,7 @@ public class GPDBWritable implements Writable {
     public byte[] getBytes(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.BYTEA, colIdx, false);
-        return (byte[]) colValue[colIdx];
+        return getVarValue(colIdx);
     }
 
     /**
@@ -692,7 +1013,7 @@ public class GPDBWritable implements Writable {
     public String getString(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.TEXT, colIdx, false);
-        return (String) colValue[colIdx];
+        return decodeText(colIdx);
     }
 
     /**
@@ -705,7 +1026,7 @@ public class GPDBWritable implements Writable {
     public Float getFloat(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.REAL, colIdx, false);
-        return (Float) colValue[colIdx];
+        return colIsNull[colIdx] ? null : Float.intBitsToFloat((int) fixedValue[colIdx]);
     }
 
     /**
@@ -718,7 +1039,7 @@ public class GPDBWritable implements Writable {
     public Double getDouble(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.FLOAT8, colIdx, false);
-        return (Double) colValue[colIdx];
+        return colIsNull[colIdx] ? null : Double.longBitsToDouble(fixedValue[colIdx]);
     }
 
     /**
@@ -731,7 +1052,7 @@ public class GPDBWritable implements Writable {
     public Integer getInt(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.INTEGER, colIdx, false);
-        return (Integer) colValue[colIdx];
+        return colIsNull[colIdx] ? null : (int) fixedValue[colIdx];
     }
 
     /**
@@ -744,7 +1065,101 @@ public class GPDBWritable implements Writable {
     public Short getShort(int colIdx)
             throws TypeMismatchException {
         checkType(DataType.SMALLINT, colIdx, false);
-        return (Short) colValue[colIdx];
+        return colIsNull[colIdx] ? null : (short) fixedValue[colIdx];
+    }
+
+    /**
+     * Returns whether the column value of the record is null.
+     *
+     * @param colIdx the column index
+     * @return true if the value is null
+     */
+    public boolean isNull(int colIdx) {
+        return colIsNull[colIdx];
+    }
+
+    /**
+     * Gets the value of a BIGINT, INTEGER, SMALLINT or BOOLEAN (1 for true)
+     * column without boxing. The result is undefined for a null value.
+     *
+     * @param colIdx the column index
+     * @return column value
+     * @throws TypeMismatchException the column is not of an integral type
+     */
+    public long getLongValue(int colIdx)
+            throws TypeMismatchException {
+        switch (colDbType[colIdx]) {
+            case BIGINT:
+            case INTEGER:
+            case SMALLINT:
+            case BOOLEAN:
+                return fixedValue[colIdx];
+            default:
+                throw new TypeMismatchException(formErrorMsg(DataType.BIGINT.getOID(), colType[colIdx], false));
+        }
+    }
+
+    /**
+     * Gets the value of a FLOAT8 or REAL column without boxing. The result
+     * is undefined for a null value.
+     *
+     * @param colIdx the column index
+     * @return column value
+     * @throws TypeMismatchException the column is not of a floating point type
+     */
+    public double getDoubleValue(int colIdx)
+            throws TypeMismatchException {
+        switch (colDbType[colIdx]) {
+            case FLOAT8:
+                return Double.longBitsToDouble(fixedValue[colIdx]);
+            case REAL:
+                return Float.intBitsToFloat((int) fixedValue[colIdx]);
+            default:
+                throw new TypeMismatchException(formErrorMsg(DataType.FLOAT8.getOID(), colType[colIdx], false));
+        }
+    }
+
+    /**
+     * Gets the array holding the value of a BYTEA or TEXT column. The value
+     * starts at {@link #getValueOffset(int)} and is {@link #getValueLength(int)}
+     * bytes long; text is UTF-8 encoded. The array is owned by the record and
+     * may be overwritten when the record is reused.
+     *
+     * @param colIdx the column index
+     * @return the array holding the value, null for a null value
+     */
+    public byte[] getValueBuffer(int colIdx) {
+        return colIsNull[colIdx] ? null : varValue[colIdx];
+    }
+
+    /**
+     * Gets the offset of the value of a BYTEA or TEXT column in the array
+     * returned by {@link #getValueBuffer(int)}.
+     *
+     * @param colIdx the column index
+     * @return offset of the value
+     */
+    public int getValueOffset(int colIdx) {
+        return varOffset[colIdx];
+    }
+
+    /**
+     * Gets the length of the value of a BYTEA or TEXT column, excluding the
+     * zero byte that terminates text.
+     *
+     * @param colIdx the column index
+     * @return length of the value
+     */
+    public int getValueLength(int colIdx) {
+        if (colIsNull[colIdx]) {
+            return 0;
+        }
+        int length = varLength[colIdx];
+        if (colDbType[colIdx] == DBType.TEXT && length > 0
+                && varValue[colIdx][varOffset[colIdx] + length - 1] == 0) {
+            length--;
+        }
+        return length;
     }
 
     /**
@@ -754,7 +1169,49 @@ public class GPDBWritable implements Writable {
      * @return column value
      */
     public Object getObject(int colIdx) {
-        return colValue[colIdx];
+        if (colIsNull[colIdx]) {
+            return null;
+        }
+        long value = fixedValue[colIdx];
+        switch (colDbType[colIdx]) {
+            case BIGINT:
+                return value;
+            case BOOLEAN:
+                return value != 0;
+            case FLOAT8:
+                return Double.longBitsToDouble(value);
+            case INTEGER:
+                return (int) value;
+            case REAL:
+                return Float.intBitsToFloat((int) value);
+            case SMALLINT:
+                return (short) value;
+            case BYTEA:
+                return getVarValue(colIdx);
+            default:
+                return decodeText(colIdx);
+        }
+    }
+
+    /*
+     * Returns the variable length value of the column, copying it only when
+     * it is a slice of a larger array.
+     */
+    private byte[] getVarValue(int colIdx) {
+        if (colIsNull[colIdx]) {
+            return null;
+        }
+        byte[] val = varValue[colIdx];
+        int offset = varOffset[colIdx];
+        int length = varLength[colIdx];
+        return (offset == 0 && length == val.length) ? val : Arrays.copyOfRange(val, offset, offset + length);
+    }
+
+    private String decodeText(int colIdx) {
+        if (colIsNull[colIdx]) {
+            return null;
+        }
+        return new String(varValue[colIdx], varOffset[colIdx], varLength[colIdx], StandardCharsets.UTF_8);
     }
 
     /**
@@ -777,10 +1234,10 @@ public class GPDBWritable implements Writable {
         StringBuilder result = new StringBuilder();
         for (int i = 0; i < colType.length; i++) {
             result.append("Column ").append(i).append(":");
-            if (colValue[i] != null) {
-                result.append(colType[i] == DataType.BYTEA.getOID()
-                        ? byteArrayInString((byte[]) colValue[i])
-                        : colValue[i]);
+            if (!colIsNull[i]) {
+                result.append(colDbType[i] == DBType.BYTEA
+                        ? byteArrayInString(getVarValue(i))
+                        : getObject(i));
             }
             result.append("\n");
         }
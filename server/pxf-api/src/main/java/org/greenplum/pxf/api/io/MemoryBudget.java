@@ -0,0 +1,301 @@
+package org.greenplum.pxf.api.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.utilities.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the memory used for buffers by the streams served at the same time.
+ * <p>
+ * Every stream opens an {@link Account} for the duration of the request. The
+ * account reserves a fixed amount of memory up front and is charged for the
+ * pooled buffers the stream holds, see {@link BufferPool#withAccount(Account)}.
+ * An account counts against the budget with the larger of its reservation and
+ * its current usage. A new stream waits until its reservation fits into the
+ * budget, so that a burst of streams is throttled instead of exhausting the
+ * heap; streams that are already running are never blocked. A stream that
+ * waits longer than the timeout fails. A single stream is always admitted
+ * when no other stream is open.
+ * <p>
+ * Buffers that a stream did not give back, for example because the request
+ * failed, stop counting against the budget when the account is closed.
+ * <p>
+ * The budget, the reservation of every stream and the timeout are configured
+ * with the {@value #PROPERTY_KEY_MAX_MEMORY}, {@value #PROPERTY_KEY_STREAM_RESERVATION}
+ * and {@value #PROPERTY_KEY_WAIT_TIMEOUT} system properties. A budget of 0
+ * disables throttling, accounts still keep track of their usage.
+ */
+public class MemoryBudget {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryBudget.class);
+
+    static final String PROPERTY_KEY_MAX_MEMORY = "pxf.service.memory.max";
+    static final String PROPERTY_KEY_STREAM_RESERVATION = "pxf.service.memory.stream.reservation";
+    static final String PROPERTY_KEY_WAIT_TIMEOUT = "pxf.service.memory.wait.timeout";
+
+    private static final long DEFAULT_STREAM_RESERVATION = 4 * 1024 * 1024;
+    private static final long DEFAULT_WAIT_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final MemoryBudget INSTANCE = new MemoryBudget(
+            Long.getLong(PROPERTY_KEY_MAX_MEMORY, Runtime.getRuntime().maxMemory() / 2),
+            Long.getLong(PROPERTY_KEY_STREAM_RESERVATION, DEFAULT_STREAM_RESERVATION),
+            Long.getLong(PROPERTY_KEY_WAIT_TIMEOUT, DEFAULT_WAIT_TIMEOUT_MILLIS));
+
+    private static final LongAdder THROTTLED = Metrics.counter("memory.streams.throttled");
+    private static final LongAdder REJECTED = Metrics.counter("memory.streams.rejected");
+
+    static {
+        Metrics.gauge("memory.committed", INSTANCE::getCommitted);
+        Metrics.gauge("memory.used", INSTANCE::getUsed);
+        Metrics.gauge("memory.streams", INSTANCE::getOpenAccounts);
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final long maxBytes;
+    private final long streamReservation;
+    private final long waitTimeoutNanos;
+    private long committed;
+    private long used;
+    private int openAccounts;
+
+    /**
+     * Creates a budget.
+     *
+     * @param maxBytes          the memory available to all streams, 0 for no limit
+     * @param streamReservation the memory reserved by every stream
+     * @param waitTimeoutMillis the time a stream waits for memory before it fails
+     */
+    MemoryBudget(long maxBytes, long streamReservation, long waitTimeoutMillis) {
+        this.maxBytes = maxBytes;
+        this.streamReservation = Math.max(0, streamReservation);
+        this.waitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+    }
+
+    /**
+     * @return the budget shared by all streams of the service
+     */
+    public static MemoryBudget getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Opens an account for a stream with the configured reservation, waiting
+     * until the reservation fits into the budget.
+     *
+     * @param name name of the stream, used for logging
+     * @return the account, to be closed when the stream is done
+     * @throws IOException if the memory did not become available in time
+     */
+    public Account open(String name) throws IOException {
+        return open(name, streamReservation);
+    }
+
+    /**
+     * Opens an account for a stream, waiting until the given reservation fits
+     * into the budget.
+     *
+     * @param name        name of the stream, used for logging
+     * @param reservation memory reserved for the stream
+     * @return the account, to be closed when the stream is done
+     * @throws IOException if the memory did not become available in time
+     */
+    public Account open(String name, long reservation) throws IOException {
+        lock.lock();
+        try {
+            long remaining = waitTimeoutNanos;
+            boolean throttled = false;
+            while (maxBytes > 0 && openAccounts > 0 && committed + reservation > maxBytes) {
+                if (!throttled) {
+                    THROTTLED.increment();
+                    throttled = true;
+                    LOG.debug("Stream {} waits for {} bytes, {} of {} bytes are committed",
+                            name, reservation, committed, maxBytes);
+                }
+                if (remaining <= 0) {
+                    REJECTED.increment();
+                    throw new IOException(String.format(
+                            "Not enough memory for %s, %d of %d bytes are used by %d streams",
+                            name, committed, maxBytes, openAccounts));
+                }
+                try {
+                    remaining = released.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for memory for " + name);
+                }
+            }
+            committed += reservation;
+            openAccounts++;
+            return new Account(name, reservation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the memory counted against the budget by the open accounts
+     */
+    public long getCommitted() {
+        lock.lock();
+        try {
+            return committed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the memory of the pooled buffers held by the open accounts
+     */
+    public long getUsed() {
+        lock.lock();
+        try {
+            return used;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of open accounts
+     */
+    public int getOpenAccounts() {
+        lock.lock();
+        try {
+            return openAccounts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The memory used by the buffers of one stream. Accounts are thread
+     * safe, buffers may be taken and given back by different threads.
+     */
+    public class Account implements Closeable {
+
+        private final String name;
+        private final long reservation;
+        private long accountUsed;
+        private long peak;
+        private boolean closed;
+
+        private Account(String name, long reservation) {
+            this.name = name;
+            this.reservation = reservation;
+        }
+
+        /**
+         * Charges the account for memory taken by the stream.
+         *
+         * @param bytes the size of the memory
+         */
+        public void allocate(long bytes) {
+            update(bytes);
+        }
+
+        /**
+         * Credits the account for memory given back by the stream.
+         *
+         * @param bytes the size of the memory
+         */
+        public void free(long bytes) {
+            update(-bytes);
+        }
+
+        /**
+         * @return the memory currently held by the stream
+         */
+        public long getUsed() {
+            lock.lock();
+            try {
+                return accountUsed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the largest amount of memory held by the stream at a time
+         */
+        public long getPeak() {
+            lock.lock();
+            try {
+                return peak;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Gives the reservation and any memory still charged to the account
+         * back to the budget. Closing an account twice has no effect.
+         */
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                committed -= Math.max(reservation, accountUsed);
+                used -= accountUsed;
+                openAccounts--;
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            LOG.debug("Stream {} held at most {} bytes of buffers", name, peak);
+        }
+
+        private void update(long delta) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                long before = Math.max(reservation, accountUsed);
+                long newUsed = Math.max(0, accountUsed + delta);
+                used += newUsed - accountUsed;
+                accountUsed = newUsed;
+                peak = Math.max(peak, accountUsed);
+                long after = Math.max(reservation, accountUsed);
+                committed += after - before;
+                if (after < before) {
+                    released.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
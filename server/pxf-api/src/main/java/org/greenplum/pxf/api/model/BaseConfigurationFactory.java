@@ -1,9 +1,13 @@
 package org.greenplum.pxf.api.model;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.greenplum.pxf.api.utilities.DirectoryWatcher;
+import org.greenplum.pxf.api.utilities.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,20 +17,58 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
+/**
+ * Builds the configuration of a server from the files in its configuration
+ * directory.
+ * <p>
+ * Parsed configurations are cached by configuration directory, server, user
+ * and additional properties. Callers get a copy of the cached configuration,
+ * which they are free to modify, so the cached one never changes. Entries
+ * are dropped when a file in the server directory, or a directory in the
+ * servers directory, is created, modified or deleted, as reported by the
+ * {@link DirectoryWatcher}. Configurations read from directories that cannot
+ * be watched are not cached. The size of the cache is set with the
+ * {@value #PROPERTY_KEY_CACHE_SIZE} system property, 0 disables caching.
+ */
 public class BaseConfigurationFactory implements ConfigurationFactory {
 
+    static final String PROPERTY_KEY_CACHE_SIZE = "pxf.service.configuration.cache.size";
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static final LongAdder CACHE_HITS = Metrics.counter("configuration.cache.hits");
+    private static final LongAdder CACHE_MISSES = Metrics.counter("configuration.cache.misses");
+    private static final LongAdder CACHE_INVALIDATIONS = Metrics.counter("configuration.cache.invalidations");
+
     private static final BaseConfigurationFactory instance = new BaseConfigurationFactory();
     protected final Logger LOG = LoggerFactory.getLogger(this.getClass());
     private final File serversConfigDirectory;
+    private final Cache<ConfigurationKey, CachedConfiguration> configurationCache;
+    private final DirectoryWatcher directoryWatcher;
+    private final Consumer<Path> invalidator = this::invalidate;
+    // incremented on every invalidation, so that a configuration read during a change is not cached
+    private final AtomicLong generation = new AtomicLong();
 
     public BaseConfigurationFactory() {
         this(SERVERS_CONFIG_DIR);
     }
 
     BaseConfigurationFactory(File serversConfigDirectory) {
+        this(serversConfigDirectory, Integer.getInteger(PROPERTY_KEY_CACHE_SIZE, DEFAULT_CACHE_SIZE), DirectoryWatcher.getInstance());
+    }
+
+    BaseConfigurationFactory(File serversConfigDirectory, int cacheSize, DirectoryWatcher directoryWatcher) {
         this.serversConfigDirectory = serversConfigDirectory;
+        this.directoryWatcher = directoryWatcher;
+        this.configurationCache = cacheSize > 0 ?
+                CacheBuilder.newBuilder().maximumSize(cacheSize).<ConfigurationKey, CachedConfiguration>build() : null;
     }
 
     /**
@@ -40,23 +82,62 @@ public class BaseConfigurationFactory implements ConfigurationFactory {
 
     @Override
     public Configuration initConfiguration(String configDirectory, String serverName, String userName, Map<String, String> additionalProperties) {
-        // start with built-in Hadoop configuration that loads core-site.xml
-        LOG.debug("Initializing configuration for server {}", serverName);
-        Configuration configuration = new Configuration();
-        // while implementing multiple kerberized support we noticed that non-kerberized hadoop
-        // access was trying to use SASL-client authentication. Setting the fallback to simple auth
-        // allows us to still access non-kerberized hadoop clusters when there exists at least one
-        // kerberized hadoop cluster. The root cause is that UGI has static fields and many hadoop
-        // libraries depend on the state of the UGI
-        // allow using SIMPLE auth for non-Kerberized HCFS access by SASL-enabled IPC client
-        // that is created due to the fact that it uses UGI.isSecurityEnabled
-        // and will try to use SASL if there is at least one Kerberized Hadoop cluster
-        configuration.set(CommonConfigurationKeys.IPC_CLIENT_FALLBACK_TO_SIMPLE_AUTH_ALLOWED_KEY, "true");
+        if (configurationCache == null) {
+            File serverDirectory = getServerDirectory(configDirectory, serverName);
+            return createConfiguration(serverDirectory, serverName, userName, additionalProperties);
+        }
 
-        // set synthetic property pxf.session.user so that is can be used in config files for interpolation in other properties
-        // for example in JDBC when setting session authorization from a proxy user to the end-user
-        configuration.set(PXF_SESSION_USER_PROPERTY, userName);
+        ConfigurationKey key = new ConfigurationKey(configDirectory, serverName, userName, additionalProperties);
+        CachedConfiguration cached = configurationCache.getIfPresent(key);
+        if (cached != null) {
+            CACHE_HITS.increment();
+            LOG.debug("Using cached configuration for server {}", serverName);
+            return cached.copy();
+        }
+        CACHE_MISSES.increment();
+
+        long currentGeneration = generation.get();
+        File serverDirectory = getServerDirectory(configDirectory, serverName);
+        // watch the directories before reading the files, so that no change is missed
+        boolean watched = Paths.get(configDirectory).isAbsolute() ||
+                directoryWatcher.watch(serversConfigDirectory.toPath(), invalidator);
+        if (serverDirectory != null) {
+            watched &= directoryWatcher.watch(serverDirectory.toPath(), invalidator);
+        }
+
+        cached = new CachedConfiguration(serverDirectory == null ? null : serverDirectory.toPath(),
+                createConfiguration(serverDirectory, serverName, userName, additionalProperties));
+        if (watched) {
+            configurationCache.put(key, cached);
+            // an invalidation that ran before the put may have missed this entry
+            if (generation.get() != currentGeneration) {
+                configurationCache.asMap().remove(key, cached);
+            }
+        }
+        return cached.copy();
+    }
 
+    /*
+     * Drops the cached configurations read from the given directory, or all
+     * of them if a directory was added to or removed from the servers directory
+     */
+    private void invalidate(Path directory) {
+        generation.incrementAndGet();
+        CACHE_INVALIDATIONS.increment();
+        if (directory.equals(serversConfigDirectory.toPath().toAbsolutePath().normalize())) {
+            LOG.debug("Servers directory {} changed, dropping all cached configurations", directory);
+            configurationCache.invalidateAll();
+        } else {
+            LOG.debug("Server directory {} changed, dropping its cached configurations", directory);
+            configurationCache.asMap().values().removeIf(cached -> directory.equals(cached.directory));
+        }
+    }
+
+    /*
+     * Returns the directory holding the configuration files of the server,
+     * or null if there is none
+     */
+    private File getServerDirectory(String configDirectory, String serverName) {
         File[] serverDirectories = null;
         Path p = Paths.get(configDirectory);
 
@@ -76,14 +157,37 @@ public class BaseConfigurationFactory implements ConfigurationFactory {
         if (ArrayUtils.isEmpty(serverDirectories)) {
             LOG.debug("Directory {}{}{} does not exist or cannot be read by PXF, no configuration resources are added for server {}",
                     serversConfigDirectory, File.separator, configDirectory, serverName);
+            return null;
         } else if (serverDirectories.length > 1) {
             throw new IllegalStateException(String.format(
                     "Multiple directories found for server %s. Server directories are expected to be case-insensitive.", serverName
             ));
-        } else {
+        }
+        return serverDirectories[0];
+    }
+
+    private Configuration createConfiguration(File serverDirectory, String serverName, String userName, Map<String, String> additionalProperties) {
+        // start with built-in Hadoop configuration that loads core-site.xml
+        LOG.debug("Initializing configuration for server {}", serverName);
+        Configuration configuration = new Configuration();
+        // while implementing multiple kerberized support we noticed that non-kerberized hadoop
+        // access was trying to use SASL-client authentication. Setting the fallback to simple auth
+        // allows us to still access non-kerberized hadoop clusters when there exists at least one
+        // kerberized hadoop cluster. The root cause is that UGI has static fields and many hadoop
+        // libraries depend on the state of the UGI
+        // allow using SIMPLE auth for non-Kerberized HCFS access by SASL-enabled IPC client
+        // that is created due to the fact that it uses UGI.isSecurityEnabled
+        // and will try to use SASL if there is at least one Kerberized Hadoop cluster
+        configuration.set(CommonConfigurationKeys.IPC_CLIENT_FALLBACK_TO_SIMPLE_AUTH_ALLOWED_KEY, "true");
+
+        // set synthetic property pxf.session.user so that is can be used in config files for interpolation in other properties
+        // for example in JDBC when setting session authorization from a proxy user to the end-user
+        configuration.set(PXF_SESSION_USER_PROPERTY, userName);
+
+        if (serverDirectory != null) {
             // add all site files as URL resources to the configuration, no resources will be added from the classpath
-            LOG.debug("Using directory {} for server {} configuration", serverDirectories[0], serverName);
-            processServerResources(configuration, serverName, serverDirectories[0]);
+            LOG.debug("Using directory {} for server {} configuration", serverDirectory, serverName);
+            processServerResources(configuration, serverName, serverDirectory);
         }
 
         // add additional properties, if provided
@@ -93,8 +197,8 @@ public class BaseConfigurationFactory implements ConfigurationFactory {
         }
 
         // add user configuration
-        if (!ArrayUtils.isEmpty(serverDirectories)) {
-            processUserResource(configuration, serverName, userName, serverDirectories[0]);
+        if (serverDirectory != null) {
+            processUserResource(configuration, serverName, userName, serverDirectory);
         }
 
         try {
@@ -145,4 +249,60 @@ public class BaseConfigurationFactory implements ConfigurationFactory {
                     userName, serverName, directory.getAbsolutePath()), e);
         }
     }
+
+    /**
+     * Key of a cached configuration
+     */
+    private static class ConfigurationKey {
+        private final String configDirectory;
+        private final String serverName;
+        private final String userName;
+        private final Map<String, String> additionalProperties;
+
+        ConfigurationKey(String configDirectory, String serverName, String userName, Map<String, String> additionalProperties) {
+            this.configDirectory = configDirectory;
+            this.serverName = serverName;
+            this.userName = userName;
+            this.additionalProperties = additionalProperties == null ?
+                    Collections.emptyMap() : new HashMap<>(additionalProperties);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ConfigurationKey that = (ConfigurationKey) o;
+            return Objects.equals(configDirectory, that.configDirectory) &&
+                    Objects.equals(serverName, that.serverName) &&
+                    Objects.equals(userName, that.userName) &&
+                    additionalProperties.equals(that.additionalProperties);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(configDirectory, serverName, userName, additionalProperties);
+        }
+    }
+
+    /**
+     * A parsed configuration and the directory it was read from. The
+     * configuration is never handed out, only copies of it.
+     */
+    private static class CachedConfiguration {
+        private final Path directory;
+        private final Configuration configuration;
+
+        CachedConfiguration(Path directory, Configuration configuration) {
+            this.directory = directory == null ? null : directory.toAbsolutePath().normalize();
+            this.configuration = configuration;
+            // parse the resources once, copies share the parsed properties
+            configuration.size();
+        }
+
+        Configuration copy() {
+            // adding a default resource anywhere makes all configurations reload, parse again if needed
+            configuration.size();
+            return new Configuration(configuration);
+        }
+    }
 }
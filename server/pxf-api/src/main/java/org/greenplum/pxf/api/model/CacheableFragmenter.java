@@ -0,0 +1,38 @@
+package org.greenplum.pxf.api.model;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Fragmenter whose fragments can be reused by later queries for as long as the
+ * data source does not change.
+ */
+public interface CacheableFragmenter extends Fragmenter {
+
+    /**
+     * Returns a version of the data source that changes whenever its fragments
+     * would change, e.g. derived from modification times of files and directories.
+     * Computing the version has to be considerably cheaper than computing the
+     * fragments.
+     *
+     * @return the version of the data source, or null if it cannot be determined
+     * @throws Exception if the data source could not be examined
+     */
+    String getSourceVersion() throws Exception;
+}
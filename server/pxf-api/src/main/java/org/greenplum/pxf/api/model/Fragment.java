@@ -19,6 +19,8 @@ package org.greenplum.pxf.api.model;
  * under the License.
  */
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Fragment holds a data fragment' information.
  * {@link Fragmenter#getFragments} returns a list of fragments.
@@ -57,6 +59,12 @@ public class Fragment {
      */
     private String profile;
 
+    /**
+     * Number of bytes of the data source covered by the fragment, 0 if unknown.
+     * Used to balance fragments across segments, not sent to GPDB.
+     */
+    private long length;
+
     /**
      * Constructs a Fragment.
      *
@@ -108,6 +116,17 @@ public class Fragment {
         this.profile = profile;
     }
 
+    /**
+     * Constructs a copy of a Fragment. The arrays are shared with the original.
+     *
+     * @param copy the Fragment to copy
+     */
+    public Fragment(Fragment copy) {
+        this(copy.sourceName, copy.replicas, copy.metadata, copy.userData, copy.profile);
+        this.index = copy.index;
+        this.length = copy.length;
+    }
+
     public String getSourceName() {
         return sourceName;
     }
@@ -151,4 +170,14 @@ public class Fragment {
     public void setProfile(String profile) {
         this.profile = profile;
     }
+
+    @JsonIgnore
+    public long getLength() {
+        return length;
+    }
+
+    @JsonIgnore
+    public void setLength(long length) {
+        this.length = length;
+    }
 }
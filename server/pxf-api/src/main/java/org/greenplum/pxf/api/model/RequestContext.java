@@ -21,6 +21,7 @@ package org.greenplum.pxf.api.model;
 
 
 import org.apache.commons.lang.StringUtils;
+import org.greenplum.pxf.api.io.MemoryBudget;
 import org.greenplum.pxf.api.utilities.ColumnDescriptor;
 import org.greenplum.pxf.api.utilities.EnumAggregationType;
 import org.greenplum.pxf.api.utilities.Utilities;
@@ -120,6 +121,25 @@ public class RequestContext {
     private String remoteSecret;
     private String resolver;
     private int segmentId;
+    /**
+     * When true the fragmenter returns only the fragments that the requesting
+     * segment should process, instead of the fragments for all segments.
+     */
+    private boolean segmentFragmentsOnly;
+    /**
+     * Offset applied to the fragment positions when they are assigned to
+     * segments, so that different queries start on different segments.
+     */
+    private int fragmentShift;
+    /**
+     * The host of each segment, indexed by segment id, when sent by the client.
+     */
+    private String[] segmentHosts;
+    /**
+     * The account charged for the buffers of the request's stream, null
+     * when the request does not stream data.
+     */
+    private MemoryBudget.Account memoryAccount;
     private String transactionId;
     /**
      * The name of the server to access. The name will be used to build
@@ -310,6 +330,62 @@ public class RequestContext {
         this.segmentId = segmentId;
     }
 
+    /**
+     * Returns whether the fragmenter should only return the fragments that
+     * the current segment should process.
+     *
+     * @return true if only the fragments of the current segment are requested
+     */
+    public boolean isSegmentFragmentsOnly() {
+        return segmentFragmentsOnly;
+    }
+
+    public void setSegmentFragmentsOnly(boolean segmentFragmentsOnly) {
+        this.segmentFragmentsOnly = segmentFragmentsOnly;
+    }
+
+    /**
+     * Returns the offset applied to the fragment positions when they are
+     * assigned to segments.
+     *
+     * @return the fragment shift
+     */
+    public int getFragmentShift() {
+        return fragmentShift;
+    }
+
+    public void setFragmentShift(int fragmentShift) {
+        this.fragmentShift = fragmentShift;
+    }
+
+    /**
+     * Returns the host of each segment indexed by segment id, or null if the
+     * client did not send the segment hosts.
+     *
+     * @return the segment hosts
+     */
+    public String[] getSegmentHosts() {
+        return segmentHosts;
+    }
+
+    public void setSegmentHosts(String[] segmentHosts) {
+        this.segmentHosts = segmentHosts;
+    }
+
+    /**
+     * Returns the account charged for the buffers of the request's stream,
+     * or null if buffers are not accounted for.
+     *
+     * @return the memory account
+     */
+    public MemoryBudget.Account getMemoryAccount() {
+        return memoryAccount;
+    }
+
+    public void setMemoryAccount(MemoryBudget.Account memoryAccount) {
+        this.memoryAccount = memoryAccount;
+    }
+
     /**
      * Returns true if there is a filter string to parse.
      *
@@ -4,8 +4,7 @@ import org.apache.commons.lang.StringUtils;
 import org.greenplum.pxf.api.model.Plugin;
 import org.greenplum.pxf.api.model.RequestContext;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.util.function.Supplier;
 
 public abstract class BasePluginFactory<T extends Plugin> implements PluginFactory<T> {
 
@@ -18,36 +17,26 @@ public abstract class BasePluginFactory<T extends Plugin> implements PluginFacto
             throw new RuntimeException("Could not determine plugin class name");
         }
 
-        // load the class by name
-        Class<?> cls;
+        // get the factory of the class, the class is only resolved on first use
+        Supplier<Plugin> factory;
         try {
-            cls = Class.forName(pluginClassName);
+            factory = PluginRegistry.getInstance().getFactory(pluginClassName, Plugin.class);
         } catch (ClassNotFoundException e) {
             throw new RuntimeException(String.format("Class %s is not found", pluginClassName), e);
-        }
-
-        // check if the class is a plugin
-        if (! Plugin.class.isAssignableFrom(cls)) {
+        } catch (ClassCastException e) {
             throw new RuntimeException(String.format("Class %s does not implement Plugin interface", pluginClassName));
-        }
-
-        // get the empty constructor
-        Constructor<?> con;
-        try {
-            con = cls.getConstructor();
         } catch (NoSuchMethodException e) {
             throw new RuntimeException(String.format("Class %s does not have an empty constructor", pluginClassName));
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Class %s could not be instantiated", pluginClassName), e);
         }
 
         // create plugin instance
         Plugin instance;
         try {
-            instance = (Plugin) con.newInstance();
-        } catch (InvocationTargetException e) {
-            throw (e.getCause() != null) ? new RuntimeException(e.getCause()) :
-                                           new RuntimeException(e);
+            instance = factory.get();
         } catch (Exception e) {
-            throw new RuntimeException(String.format("Class %s could not be instantiated", pluginClassName), e);
+            throw new RuntimeException(e);
         }
 
         // initialize the instance
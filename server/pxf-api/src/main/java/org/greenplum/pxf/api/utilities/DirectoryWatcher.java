@@ -0,0 +1,150 @@
+package org.greenplum.pxf.api.utilities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Notifies listeners when files in a directory are created, modified or
+ * deleted. Used by caches of data read from the server configuration
+ * directories, which drop their entries for a directory when it changes.
+ * <p>
+ * A single {@link WatchService} and background thread, started on first
+ * use, serve all directories. Listeners are called on that thread and are
+ * expected to return quickly. Changes are reported asynchronously, shortly
+ * after they happen.
+ */
+public class DirectoryWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    private static final DirectoryWatcher instance = new DirectoryWatcher();
+
+    private final ConcurrentMap<Path, Set<Consumer<Path>>> listeners = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    /**
+     * @return the singleton instance of the watcher
+     */
+    public static DirectoryWatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers a listener that is called with the directory whenever a file
+     * in it changes, or the directory itself is deleted. Registering the same
+     * listener for a directory again has no effect. Callers should register
+     * before reading files from the directory, so that no change is missed.
+     *
+     * @param directory the directory to watch
+     * @param listener  the listener to call
+     * @return true if the directory is watched, false if it cannot be
+     * watched and data read from it must not be cached
+     */
+    public boolean watch(Path directory, Consumer<Path> listener) {
+        Path key = directory.toAbsolutePath().normalize();
+        Set<Consumer<Path>> directoryListeners = listeners.get(key);
+        if (directoryListeners == null) {
+            synchronized (this) {
+                directoryListeners = listeners.get(key);
+                if (directoryListeners == null) {
+                    try {
+                        key.register(getWatchService(), ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    } catch (IOException | RuntimeException e) {
+                        LOG.debug("Unable to watch directory {}: {}", key, e.getMessage());
+                        return false;
+                    }
+                    directoryListeners = new CopyOnWriteArraySet<>();
+                    listeners.put(key, directoryListeners);
+                    LOG.debug("Watching directory {} for changes", key);
+                }
+            }
+        }
+        directoryListeners.add(listener);
+        return true;
+    }
+
+    /*
+     * Returns the watch service, creating it and its thread on first use
+     */
+    private WatchService getWatchService() throws IOException {
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(this::processEvents, "pxf-directory-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return watchService;
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                LOG.warn("Stopped watching directories for changes", e);
+                return;
+            }
+            Path directory = (Path) watchKey.watchable();
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                LOG.debug("Change {} of {} in directory {}", event.kind(),
+                        event.kind() == OVERFLOW ? "unknown files" : event.context(), directory);
+            }
+            Set<Consumer<Path>> directoryListeners = listeners.get(directory);
+            // the key is no longer valid when the directory was deleted, it is watched again on next use
+            if (!watchKey.reset()) {
+                listeners.remove(directory);
+            }
+            if (directoryListeners != null) {
+                notifyListeners(directory, directoryListeners);
+            }
+        }
+    }
+
+    private void notifyListeners(Path directory, Set<Consumer<Path>> directoryListeners) {
+        for (Consumer<Path> listener : directoryListeners) {
+            try {
+                listener.accept(directory);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to notify listener of changes in directory {}", directory, e);
+            }
+        }
+    }
+}
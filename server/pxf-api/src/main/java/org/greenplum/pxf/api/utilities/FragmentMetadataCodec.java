@@ -0,0 +1,262 @@
+package org.greenplum.pxf.api.utilities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of fragment metadata. Fragment metadata is sent to
+ * GPDB base64-encoded in the fragments response and comes back in a header
+ * of every bridge request, so it is kept as small as possible: numbers are
+ * written as zigzag varints and strings and byte arrays are prefixed by
+ * their varint length, without the class descriptors and stream headers of
+ * Java serialization.
+ * <p>
+ * Encoded metadata starts with a magic byte and a format version. Metadata
+ * that does not start with the magic byte is decoded as Java serialization,
+ * which is what older PXF versions produced, so fragments computed before an
+ * upgrade can still be read.
+ */
+public class FragmentMetadataCodec {
+
+    // never the first byte of a Java serialization stream, which starts with 0xACED
+    static final byte MAGIC = (byte) 0xF7;
+    static final byte VERSION = 1;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * Encodes the metadata of a file split.
+     *
+     * @param start  the start of the split
+     * @param length the length of the split
+     * @param hosts  the hosts of the split, may be null
+     * @return the encoded metadata
+     */
+    public static byte[] encodeFileSplit(long start, long length, String[] hosts) {
+        Writer writer = new Writer();
+        writer.writeLong(start);
+        writer.writeLong(length);
+        if (hosts == null) {
+            writer.writeLength(null);
+        } else {
+            writer.writeLength(hosts);
+            for (String host : hosts) {
+                writer.writeBytes(host == null ? null : host.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes the metadata of a file split written by
+     * {@link #encodeFileSplit} or by Java serialization of the start, the
+     * length and the array of hosts.
+     *
+     * @param metadata the encoded metadata
+     * @return the start, length and hosts of the split
+     * @throws IOException if the metadata is malformed
+     */
+    public static FragmentMetadata decodeFileSplit(byte[] metadata) throws IOException {
+        if (!isCompact(metadata)) {
+            try (ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(metadata))) {
+                long start = objectStream.readLong();
+                long end = objectStream.readLong();
+                String[] hosts = (String[]) objectStream.readObject();
+                return new FragmentMetadata(start, end, hosts);
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Malformed fragment metadata", e);
+            }
+        }
+
+        Reader reader = new Reader(metadata);
+        long start = reader.readLong();
+        long length = reader.readLong();
+        String[] hosts = null;
+        int count = reader.readLength();
+        if (count >= 0) {
+            hosts = new String[count];
+            for (int i = 0; i < count; i++) {
+                byte[] host = reader.readBytes();
+                hosts[i] = host == null ? null : new String(host, StandardCharsets.UTF_8);
+            }
+        }
+        reader.finish();
+        return new FragmentMetadata(start, length, hosts);
+    }
+
+    /**
+     * Encodes a key range, e.g. the start and end keys of a table region.
+     *
+     * @param startKey the start key, may be null
+     * @param endKey   the end key, may be null
+     * @return the encoded metadata
+     */
+    public static byte[] encodeKeyRange(byte[] startKey, byte[] endKey) {
+        Writer writer = new Writer();
+        writer.writeBytes(startKey);
+        writer.writeBytes(endKey);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a key range written by {@link #encodeKeyRange} or by Java
+     * serialization of the two keys.
+     *
+     * @param metadata the encoded metadata
+     * @return an array holding the start key and the end key
+     * @throws IOException if the metadata is malformed
+     */
+    public static byte[][] decodeKeyRange(byte[] metadata) throws IOException {
+        if (!isCompact(metadata)) {
+            try (ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(metadata))) {
+                return new byte[][]{(byte[]) objectStream.readObject(), (byte[]) objectStream.readObject()};
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Malformed fragment metadata", e);
+            }
+        }
+
+        Reader reader = new Reader(metadata);
+        byte[][] range = new byte[][]{reader.readBytes(), reader.readBytes()};
+        reader.finish();
+        return range;
+    }
+
+    /**
+     * Returns whether the metadata was written by this codec rather than by
+     * Java serialization.
+     *
+     * @param metadata the encoded metadata
+     * @return true if the metadata uses the compact encoding
+     */
+    public static boolean isCompact(byte[] metadata) {
+        return metadata != null && metadata.length > 0 && metadata[0] == MAGIC;
+    }
+
+    private static class Writer {
+        private byte[] buffer = new byte[32];
+        private int size;
+
+        Writer() {
+            buffer[size++] = MAGIC;
+            buffer[size++] = VERSION;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(10);
+            // zigzag so that small negative values stay short
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[size++] = (byte) v;
+        }
+
+        // lengths are written plus one, so that 0 stands for null
+        void writeLength(Object[] array) {
+            writeLong(array == null ? 0 : array.length + 1L);
+        }
+
+        void writeBytes(byte[] bytes) {
+            if (bytes == null) {
+                writeLong(0);
+                return;
+            }
+            writeLong(bytes.length + 1L);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.length < 2) {
+                throw new IOException("Truncated fragment metadata");
+            }
+            if (buffer[1] != VERSION) {
+                throw new IOException("Unsupported fragment metadata version " + buffer[1]);
+            }
+            position = 2;
+        }
+
+        long readLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position == buffer.length) {
+                    throw new IOException("Truncated fragment metadata");
+                }
+                byte b = buffer[position++];
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IOException("Malformed varint in fragment metadata");
+        }
+
+        int readLength() throws IOException {
+            long length = readLong() - 1;
+            if (length < -1 || length > buffer.length - position) {
+                throw new IOException("Malformed length in fragment metadata");
+            }
+            return (int) length;
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = readLength();
+            if (length < 0) {
+                return null;
+            }
+            if (length == 0) {
+                return EMPTY;
+            }
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        void finish() throws IOException {
+            if (position != buffer.length) {
+                throw new IOException("Unexpected trailing bytes in fragment metadata");
+            }
+        }
+    }
+}
@@ -3,15 +3,32 @@ package org.greenplum.pxf.api.utilities;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import org.apache.commons.lang.StringUtils;
 import org.greenplum.pxf.api.model.Fragment;
+import org.greenplum.pxf.api.model.RequestContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Factory class for creation of {@link com.google.common.cache.Cache} objects.
+ * <p>
+ * Besides the short-lived cache of fragments per transaction, it holds the
+ * source cache, which keeps the fragments of a data source across transactions
+ * together with the version of the source they were computed for (see
+ * {@link org.greenplum.pxf.api.model.CacheableFragmenter}). The source cache is
+ * bounded by the total number of fragments it holds, and is only used when
+ * enabled with the pxf.service.fragmenter.source.cache.enabled property.
  */
 public class FragmenterCacheFactory {
 
@@ -31,6 +48,18 @@ public class FragmenterCacheFactory {
                             notification.getCause().toString()))
             .build();
 
+    public static final String PROPERTY_KEY_SOURCE_CACHE_SIZE = "pxf.service.fragmenter.source.cache.size";
+    private static final int DEFAULT_SOURCE_CACHE_SIZE = 1000000;
+
+    private final Cache<SourceKey, SourceFragments> sourceCache = CacheBuilder.newBuilder()
+            .maximumWeight(Integer.getInteger(PROPERTY_KEY_SOURCE_CACHE_SIZE, DEFAULT_SOURCE_CACHE_SIZE))
+            .weigher((Weigher<SourceKey, SourceFragments>) (key, value) -> value.size() + 1)
+            .removalListener((RemovalListener<SourceKey, SourceFragments>) notification ->
+                    LOG.debug("Removed source cache entry for {} with cause {}",
+                            notification.getKey(),
+                            notification.getCause().toString()))
+            .build();
+
     /**
      * @return a singleton instance of the factory.
      */
@@ -44,4 +73,138 @@ public class FragmenterCacheFactory {
     public Cache<String, List<Fragment>> getCache() {
         return fragmenterCache;
     }
+
+    /**
+     * @return the cache of fragments across transactions
+     */
+    public Cache<SourceKey, SourceFragments> getSourceCache() {
+        return sourceCache;
+    }
+
+    /**
+     * Removes the cached fragments of the given server and data source from the
+     * source cache.
+     *
+     * @param serverName the name of the server, or null for all servers
+     * @param dataSource the data source, or null for all data sources of the server
+     * @return the number of entries removed
+     */
+    public int invalidateSources(String serverName, String dataSource) {
+        int count = 0;
+        Iterator<SourceKey> iterator = sourceCache.asMap().keySet().iterator();
+        while (iterator.hasNext()) {
+            SourceKey key = iterator.next();
+            if ((serverName == null || serverName.equals(key.serverName)) &&
+                    (dataSource == null || dataSource.equals(key.dataSource))) {
+                iterator.remove();
+                count++;
+            }
+        }
+        LOG.info("Invalidated {} source cache entries for server {} and data source {}",
+                count, StringUtils.defaultString(serverName, "*"), StringUtils.defaultString(dataSource, "*"));
+        return count;
+    }
+
+    /**
+     * Key of the source cache, made of everything in a request that determines
+     * the fragments of a data source. The columns are part of it because the
+     * filter refers to them by index, e.g. to prune Hive partitions.
+     */
+    public static class SourceKey {
+        private final String serverName;
+        private final String config;
+        private final String dataSource;
+        private final String filterString;
+        private final String fragmenter;
+        private final String user;
+        private final Map<String, String> options;
+        private final List<String> columns;
+
+        public SourceKey(RequestContext context) {
+            this.serverName = context.getServerName();
+            this.config = context.getConfig();
+            this.dataSource = context.getDataSource();
+            this.filterString = context.getFilterString();
+            this.fragmenter = context.getFragmenter();
+            this.user = context.getUser();
+            this.options = new TreeMap<>(context.getOptions());
+            this.columns = new ArrayList<>(context.getTupleDescription().size());
+            for (ColumnDescriptor column : context.getTupleDescription()) {
+                columns.add(column.columnName() + ":" + column.columnTypeCode() + ":" +
+                        Arrays.toString(column.columnTypeModifiers()));
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SourceKey that = (SourceKey) o;
+            return Objects.equals(serverName, that.serverName) &&
+                    Objects.equals(config, that.config) &&
+                    Objects.equals(dataSource, that.dataSource) &&
+                    Objects.equals(filterString, that.filterString) &&
+                    Objects.equals(fragmenter, that.fragmenter) &&
+                    Objects.equals(user, that.user) &&
+                    options.equals(that.options) &&
+                    columns.equals(that.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverName, config, dataSource, filterString, fragmenter, user, options, columns);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s:%s:%s:%s", serverName, dataSource, filterString, user);
+        }
+    }
+
+    /**
+     * Fragments of a data source and the version of the source they were
+     * computed for. The cached fragments are never handed out, as responses
+     * modify the fragments they contain.
+     */
+    public static class SourceFragments {
+        private final String version;
+        private final List<Fragment> fragments;
+
+        public SourceFragments(String version, List<Fragment> fragments) {
+            this.version = version;
+            this.fragments = Collections.unmodifiableList(copy(fragments));
+        }
+
+        /**
+         * @return the version of the source the fragments were computed for
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the number of fragments
+         */
+        public int size() {
+            return fragments.size();
+        }
+
+        /**
+         * @return a copy of the fragments
+         */
+        public List<Fragment> getFragments() {
+            return copy(fragments);
+        }
+
+        private static List<Fragment> copy(List<Fragment> fragments) {
+            List<Fragment> result = new ArrayList<>(fragments.size());
+            for (Fragment fragment : fragments) {
+                Fragment copy = new Fragment(fragment.getSourceName(), fragment.getReplicas(),
+                        fragment.getMetadata(), fragment.getUserData(), fragment.getProfile());
+                copy.setLength(fragment.getLength());
+                result.add(copy);
+            }
+            return result;
+        }
+    }
 }
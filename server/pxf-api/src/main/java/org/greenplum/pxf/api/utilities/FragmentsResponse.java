@@ -19,14 +19,17 @@ package org.greenplum.pxf.api.utilities;
  * under the License.
  */
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.greenplum.pxf.api.model.Fragment;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
@@ -35,12 +38,19 @@ import java.util.List;
  * Class for serializing fragments metadata in JSON format. The class implements
  * {@link StreamingOutput} so the serialization will be done in a stream and not
  * in one bulk, this in order to avoid running out of memory when processing a
- * lot of fragments.
+ * lot of fragments. Fragments are written one by one with a shared writer to a
+ * generator that encodes directly into its own buffer over the output stream,
+ * no intermediate strings are created.
  */
 public class FragmentsResponse implements StreamingOutput {
 
     private static final Log Log = LogFactory.getLog(FragmentsResponse.class);
 
+    // the generator is flushed once at the end of the response, not after every fragment
+    private static final ObjectWriter FRAGMENT_WRITER = new ObjectMapper()
+            .writerFor(Fragment.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
     private List<Fragment> fragments;
 
     /**
@@ -68,21 +78,19 @@ public class FragmentsResponse implements StreamingOutput {
     @Override
     public void write(OutputStream output) throws IOException,
             WebApplicationException {
-        DataOutputStream dos = new DataOutputStream(output);
-        ObjectMapper mapper = new ObjectMapper();
-
-        dos.write("{\"PXFFragments\":[".getBytes());
+        JsonGenerator generator = FRAGMENT_WRITER.getFactory().createGenerator(output, JsonEncoding.UTF8);
+        // the output stream belongs to the container
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
-        String prefix = "";
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("PXFFragments");
         for (Fragment fragment : fragments) {
-            StringBuilder result = new StringBuilder();
             /* metaData and userData are automatically converted to Base64 */
-            result.append(prefix).append(mapper.writeValueAsString(fragment));
-            prefix = ",";
-            dos.write(result.toString().getBytes());
+            FRAGMENT_WRITER.writeValue(generator, fragment);
         }
-
-        dos.write("]}".getBytes());
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
     }
 
     /**
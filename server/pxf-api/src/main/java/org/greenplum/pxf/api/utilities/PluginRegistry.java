@@ -0,0 +1,179 @@
+package org.greenplum.pxf.api.utilities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Resolves classes of plugins and protocol handlers by name once and keeps a
+ * factory for each of them, so that creating an instance for a request does not
+ * have to load the class and look up its constructor again.
+ * <p>
+ * Factories call the public empty constructor of the class. The class is checked to
+ * be of the requested type before it is initialized or instantiated, since class
+ * names may come from the request. Factories are generated with
+ * {@link LambdaMetafactory} when possible, otherwise the class is instantiated
+ * through a {@link MethodHandle} of the constructor. Exceptions thrown by a
+ * constructor are propagated unchanged.
+ */
+public class PluginRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginRegistry.class);
+    private static final PluginRegistry INSTANCE = new PluginRegistry();
+
+    private final ConcurrentMap<String, Factory> factories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> singletons = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry shared by all requests
+     *
+     * @return the plugin registry
+     */
+    public static PluginRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a factory creating new instances of the class with the given name.
+     *
+     * @param className the name of the class
+     * @param type      the type the class has to extend or implement
+     * @param <T>       the type of the instances
+     * @return a factory for instances of the class
+     * @throws ClassNotFoundException if the class cannot be found
+     * @throws NoSuchMethodException  if the class does not have a public empty constructor
+     * @throws IllegalAccessException if the class is not accessible
+     * @throws ClassCastException     if the class is not a subtype of the given type
+     */
+    public <T> Supplier<T> getFactory(String className, Class<T> type)
+            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException {
+        Factory factory = factories.get(className);
+        if (factory == null) {
+            // load without initializing, nothing of the class runs before its type is checked
+            Class<?> cls = Class.forName(className, false, PluginRegistry.class.getClassLoader());
+            checkType(className, cls, type);
+            factory = createFactory(className, cls);
+            Factory existing = factories.putIfAbsent(className, factory);
+            if (existing != null) {
+                factory = existing;
+            }
+        }
+        checkType(className, factory.cls, type);
+        @SuppressWarnings("unchecked")
+        Supplier<T> supplier = (Supplier<T>) factory.supplier;
+        return supplier;
+    }
+
+    /**
+     * Returns the single shared instance of the class with the given name,
+     * creating it on first use. Only to be used for stateless classes.
+     *
+     * @param className the name of the class
+     * @param type      the type the class has to extend or implement
+     * @param <T>       the type of the instance
+     * @return the shared instance of the class
+     * @throws ClassNotFoundException if the class cannot be found
+     * @throws NoSuchMethodException  if the class does not have a public empty constructor
+     * @throws IllegalAccessException if the class is not accessible
+     * @throws ClassCastException     if the class is not a subtype of the given type
+     */
+    public <T> T getSingleton(String className, Class<T> type)
+            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException {
+        Object instance = singletons.get(className);
+        if (instance == null) {
+            instance = getFactory(className, type).get();
+            Object existing = singletons.putIfAbsent(className, instance);
+            if (existing != null) {
+                instance = existing;
+            }
+        }
+        if (!type.isInstance(instance)) {
+            throw new ClassCastException(String.format("Class %s does not implement %s interface", className, type.getSimpleName()));
+        }
+        return type.cast(instance);
+    }
+
+    private static void checkType(String className, Class<?> cls, Class<?> type) {
+        if (!type.isAssignableFrom(cls)) {
+            throw new ClassCastException(String.format("Class %s does not implement %s interface", className, type.getSimpleName()));
+        }
+    }
+
+    private Factory createFactory(String className, Class<?> cls)
+            throws NoSuchMethodException, IllegalAccessException {
+        Constructor<?> constructor = cls.getConstructor();
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = lookup.unreflectConstructor(constructor);
+        Supplier<?> supplier = null;
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    handle,
+                    MethodType.methodType(cls));
+            supplier = (Supplier<?>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            LOG.debug("Unable to generate factory for class {}, using method handle", className, e);
+        }
+        if (supplier == null) {
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+            supplier = () -> {
+                try {
+                    return generic.invokeExact();
+                } catch (Throwable e) {
+                    throw PluginRegistry.<RuntimeException>propagate(e);
+                }
+            };
+        }
+        LOG.debug("Resolved class {}", className);
+        return new Factory(cls, supplier);
+    }
+
+    /**
+     * Rethrows the given throwable without wrapping it, even if it is a checked
+     * exception, the same way a constructor invoked directly would throw it.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> RuntimeException propagate(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    private static class Factory {
+        private final Class<?> cls;
+        private final Supplier<?> supplier;
+
+        Factory(Class<?> cls, Supplier<?> supplier) {
+            this.cls = cls;
+            this.supplier = supplier;
+        }
+    }
+}
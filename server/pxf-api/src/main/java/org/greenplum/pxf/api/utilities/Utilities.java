@@ -30,11 +30,9 @@ import org.greenplum.pxf.api.model.RequestContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -46,6 +44,7 @@ public class Utilities {
 
     private static final Logger LOG = LoggerFactory.getLogger(Utilities.class);
     private static final String PROPERTY_KEY_FRAGMENTER_CACHE = "pxf.service.fragmenter.cache.enabled";
+    private static final String PROPERTY_KEY_SOURCE_CACHE = "pxf.service.fragmenter.source.cache.enabled";
     private static final char[] PROHIBITED_CHARS = new char[]{'/', '\\', '.', ' ', ',', ';'};
     private static final String[] HOSTS = new String[]{"localhost"};
 
@@ -248,20 +247,17 @@ public class Utilities {
         if (context.getFragmentMetadata() == null) {
             return new FragmentMetadata(0, 0, HOSTS);
         }
-        try (ObjectInputStream objectStream =
-                     new ObjectInputStream(new ByteArrayInputStream(context.getFragmentMetadata()))) {
-            long start = objectStream.readLong();
-            long end = objectStream.readLong();
-            String[] hosts = (String[]) objectStream.readObject();
+        try {
+            FragmentMetadata metadata = FragmentMetadataCodec.decodeFileSplit(context.getFragmentMetadata());
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Parsed split: path={} start={} end={} hosts={}",
                         context.getDataSource(),
-                        start,
-                        end,
-                        ArrayUtils.toString(hosts));
+                        metadata.getStart(),
+                        metadata.getEnd(),
+                        ArrayUtils.toString(metadata.getHosts()));
             }
-            return new FragmentMetadata(start, end, hosts);
-        } catch (IOException | ClassNotFoundException e) {
+            return metadata;
+        } catch (IOException e) {
             throw new RuntimeException("Exception while reading expected fragment metadata", e);
         }
     }
@@ -309,6 +305,16 @@ public class Utilities {
         return !StringUtils.equalsIgnoreCase(System.getProperty(PROPERTY_KEY_FRAGMENTER_CACHE, "true"), "false");
     }
 
+    /**
+     * Returns whether the cache of fragments across queries has been
+     * configured as enabled. Defaults to false.
+     *
+     * @return true if the source cache is enabled, false otherwise
+     */
+    public static boolean isSourceCacheEnabled() {
+        return StringUtils.equalsIgnoreCase(System.getProperty(PROPERTY_KEY_SOURCE_CACHE, "false"), "true");
+    }
+
     /**
      * Data sources are absolute data paths. Method ensures that dataSource
      * begins with '/' unless the path includes the protocol as a prefix
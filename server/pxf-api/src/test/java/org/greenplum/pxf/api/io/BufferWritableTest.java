@@ -21,6 +21,12 @@ package org.greenplum.pxf.api.io;
 
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 
 import org.junit.Test;
 
@@ -39,4 +45,49 @@ public class BufferWritableTest {
 
         assertArrayEquals((data1+data2).getBytes(), bw1.buf);
     }
+
+    @Test
+    public void writePooledSlice() throws Exception {
+        BufferPool pool = new BufferPool(8, 2);
+        byte[] buffer = pool.take();
+        System.arraycopy("abc\n".getBytes(), 0, buffer, 0, 4);
+
+        BufferWritable bw = new BufferWritable(buffer, 4, pool);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bw.write(new DataOutputStream(out));
+
+        assertArrayEquals("abc\n".getBytes(), out.toByteArray());
+        assertArrayEquals("abc\n".getBytes(), bw.getBytes());
+        assertEquals(0, pool.size());
+
+        bw.release();
+        assertEquals(1, pool.size());
+        assertNull(bw.buf);
+        assertSame(buffer, pool.take());
+    }
+
+    @Test
+    public void appendToPooledSlice() throws Exception {
+        BufferPool pool = new BufferPool(8, 2);
+        byte[] buffer = pool.take();
+        System.arraycopy("abc".getBytes(), 0, buffer, 0, 3);
+
+        BufferWritable bw = new BufferWritable(buffer, 3, pool);
+        bw.append("de\n".getBytes());
+
+        assertArrayEquals("abcde\n".getBytes(), bw.buf);
+        assertEquals(6, bw.getLength());
+        // the pooled buffer was copied and given back
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void releaseUnpooledBuffer() throws Exception {
+        byte[] data = "abc".getBytes();
+        BufferWritable bw = new BufferWritable(data);
+        bw.release();
+
+        assertSame(data, bw.buf);
+        assertSame(data, bw.getBytes());
+    }
 }
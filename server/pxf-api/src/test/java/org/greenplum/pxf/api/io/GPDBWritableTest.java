@@ -23,11 +23,17 @@ package org.greenplum.pxf.api.io;
 import org.junit.Test;
 import org.mockito.stubbing.OngoingStubbing;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -154,9 +160,127 @@ public class GPDBWritableTest {
         assertEquals(typeName, DataType.NUMERIC.name());
     }
 
+    @Test
+    public void testWriteAndReadFields() throws Exception {
+        int[] schema = {DataType.BIGINT.getOID(), DataType.BOOLEAN.getOID(), DataType.FLOAT8.getOID(),
+                DataType.INTEGER.getOID(), DataType.REAL.getOID(), DataType.SMALLINT.getOID(),
+                DataType.BYTEA.getOID(), DataType.TEXT.getOID(), DataType.VARCHAR.getOID()};
+        GPDBWritable gpdbWritable = new GPDBWritable(schema);
+        gpdbWritable.setLong(0, 1L);
+        gpdbWritable.setBoolean(1, true);
+        gpdbWritable.setDouble(2, 2.5);
+        gpdbWritable.setInt(3, 3);
+        gpdbWritable.setFloat(4, 4.5f);
+        gpdbWritable.setShort(5, (short) 5);
+        gpdbWritable.setBytes(6, new byte[]{6, 7});
+        gpdbWritable.setString(7, "Qué será");
+        gpdbWritable.setString(8, null);
+
+        GPDBWritable result = new GPDBWritable(serialize(gpdbWritable));
+
+        assertEquals(Long.valueOf(1), result.getLong(0));
+        assertEquals(true, result.getBoolean(1));
+        assertEquals(Double.valueOf(2.5), result.getDouble(2));
+        assertEquals(Integer.valueOf(3), result.getInt(3));
+        assertEquals(Float.valueOf(4.5f), result.getFloat(4));
+        assertEquals(Short.valueOf((short) 5), result.getShort(5));
+        assertArrayEquals(new byte[]{6, 7}, result.getBytes(6));
+        assertEquals("Qué será", result.getString(7));
+        assertNull(result.getString(8));
+    }
+
+    @Test
+    public void testReusedRecordWithPrimitiveSetters() throws Exception {
+        int[] schema = {DataType.BIGINT.getOID(), DataType.BOOLEAN.getOID(), DataType.FLOAT8.getOID(),
+                DataType.INTEGER.getOID(), DataType.REAL.getOID(), DataType.SMALLINT.getOID(),
+                DataType.BYTEA.getOID(), DataType.TEXT.getOID()};
+        GPDBWritable boxed = new GPDBWritable(schema);
+        boxed.setLong(0, Long.valueOf(10));
+        boxed.setBoolean(1, Boolean.FALSE);
+        boxed.setDouble(2, Double.valueOf(-1.25));
+        boxed.setInt(3, Integer.valueOf(-7));
+        boxed.setFloat(4, Float.valueOf(0.5f));
+        boxed.setShort(5, Short.valueOf((short) 12));
+        boxed.setBytes(6, new byte[]{1, 2, 3});
+        boxed.setString(7, "text");
+
+        // fill the record with a longer row first, the buffers must not leak into the next one
+        GPDBWritable reused = new GPDBWritable(schema);
+        reused.setText(7, "a much longer text value".getBytes("UTF-8"), 0, 24);
+        reused.setBytes(6, new byte[]{9, 9, 9, 9, 9}, 0, 5);
+        serialize(reused);
+
+        reused.setLong(0, 10L);
+        reused.setBoolean(1, false);
+        reused.setDouble(2, -1.25);
+        reused.setInt(3, -7);
+        reused.setFloat(4, 0.5f);
+        reused.setShort(5, (short) 12);
+        reused.setBytes(6, new byte[]{0, 1, 2, 3, 4}, 1, 3);
+        byte[] text = "[text]".getBytes("UTF-8");
+        reused.setText(7, text, 1, 4);
+
+        assertArrayEquals(serialize(boxed), serialize(reused));
+    }
+
+    @Test
+    public void testReadFieldsReusedRecord() throws Exception {
+        int[] schema = {DataType.BOOLEAN.getOID(), DataType.TEXT.getOID(),
+                DataType.BIGINT.getOID(), DataType.BYTEA.getOID()};
+        GPDBWritable first = new GPDBWritable(schema);
+        first.setBoolean(0, true);
+        first.setString(1, "a longer first value");
+        first.setLong(2, 5L);
+        first.setBytes(3, new byte[]{1, 2});
+        GPDBWritable second = new GPDBWritable(schema);
+        second.setString(1, "two");
+        second.setBytes(3, new byte[]{3});
+        int[] otherSchema = {DataType.INTEGER.getOID(), DataType.FLOAT8.getOID()};
+        GPDBWritable third = new GPDBWritable(otherSchema);
+        third.setInt(0, 7);
+        third.setDouble(1, 0.5);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        first.write(out);
+        second.write(out);
+        third.write(out);
+        DataInput in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        GPDBWritable record = new GPDBWritable();
+        record.readFields(in);
+        int[] colType = record.getColType();
+        assertEquals(Boolean.TRUE, record.getBoolean(0));
+        assertEquals("a longer first value", record.getString(1));
+        assertEquals(Long.valueOf(5L), record.getLong(2));
+        assertArrayEquals(new byte[]{1, 2}, record.getBytes(3));
+
+        // same schema, the column slots are reused and nulls must not show stale values
+        record.readFields(in);
+        assertTrue(colType == record.getColType());
+        assertNull(record.getBoolean(0));
+        assertEquals("two", record.getString(1));
+        assertNull(record.getLong(2));
+        assertArrayEquals(new byte[]{3}, record.getBytes(3));
+
+        record.readFields(in);
+        assertArrayEquals(otherSchema, record.getColType());
+        assertEquals(Integer.valueOf(7), record.getInt(0));
+        assertEquals(Double.valueOf(0.5), record.getDouble(1));
+
+        record.readFields(in);
+        assertTrue(record.isEmpty());
+    }
+
     /*
      * helpers functions
      */
+    private byte[] serialize(GPDBWritable gpdbWritable) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        gpdbWritable.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
     private GPDBWritable buildGPDBWritable()
             throws Exception {
         return new GPDBWritable();
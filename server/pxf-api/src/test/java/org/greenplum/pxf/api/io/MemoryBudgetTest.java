@@ -0,0 +1,155 @@
+package org.greenplum.pxf.api.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void accountCountsLargerOfReservationAndUsage() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1000, 100, 0);
+        MemoryBudget.Account account = budget.open("a", 100);
+        assertEquals(100, budget.getCommitted());
+
+        account.allocate(60);
+        assertEquals(100, budget.getCommitted());
+        assertEquals(60, budget.getUsed());
+
+        account.allocate(90);
+        assertEquals(150, budget.getCommitted());
+        assertEquals(150, account.getUsed());
+
+        account.free(150);
+        assertEquals(100, budget.getCommitted());
+        assertEquals(0, budget.getUsed());
+        assertEquals(150, account.getPeak());
+
+        account.close();
+        assertEquals(0, budget.getCommitted());
+        assertEquals(0, budget.getOpenAccounts());
+    }
+
+    @Test
+    public void closeForgetsBuffersNotGivenBack() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1000, 100, 0);
+        MemoryBudget.Account account = budget.open("a", 100);
+        account.allocate(500);
+
+        account.close();
+        // closing twice and late frees do not change the budget
+        account.close();
+        account.free(500);
+
+        assertEquals(0, budget.getCommitted());
+        assertEquals(0, budget.getUsed());
+        assertEquals(0, budget.getOpenAccounts());
+    }
+
+    @Test
+    public void streamFailsWhenBudgetIsExhausted() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1000, 100, 10);
+        MemoryBudget.Account first = budget.open("first", 600);
+        try {
+            budget.open("second", 600);
+            fail("second stream should not have been admitted");
+        } catch (IOException e) {
+            assertEquals("Not enough memory for second, 600 of 1000 bytes are used by 1 streams", e.getMessage());
+        }
+        first.close();
+        budget.open("third", 600).close();
+    }
+
+    @Test
+    public void singleStreamIsAlwaysAdmitted() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1000, 100, 0);
+        MemoryBudget.Account account = budget.open("large", 5000);
+        assertEquals(5000, budget.getCommitted());
+        account.close();
+    }
+
+    @Test
+    public void noLimitWhenBudgetIsZero() throws Exception {
+        MemoryBudget budget = new MemoryBudget(0, 100, 0);
+        MemoryBudget.Account first = budget.open("first");
+        MemoryBudget.Account second = budget.open("second", 1L << 40);
+        assertEquals(2, budget.getOpenAccounts());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void streamWaitsUntilMemoryIsFreed() throws Exception {
+        final MemoryBudget budget = new MemoryBudget(1000, 100, 10000);
+        MemoryBudget.Account first = budget.open("first", 100);
+        first.allocate(900);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch started = new CountDownLatch(1);
+            Future<MemoryBudget.Account> second = executor.submit(() -> {
+                started.countDown();
+                return budget.open("second", 200);
+            });
+            started.await();
+            Thread.sleep(100);
+            assertFalse(second.isDone());
+
+            // giving buffers back lets the waiting stream in
+            first.free(600);
+            MemoryBudget.Account account = second.get(5, TimeUnit.SECONDS);
+            assertEquals(500, budget.getCommitted());
+            account.close();
+        } finally {
+            executor.shutdownNow();
+            first.close();
+        }
+    }
+
+    @Test
+    public void poolViewChargesAccount() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1000, 0, 0);
+        MemoryBudget.Account account = budget.open("a", 0);
+        BufferPool pool = new BufferPool(64, 2);
+        BufferPool view = pool.withAccount(account);
+
+        byte[] buffer = view.take();
+        assertEquals(64, account.getUsed());
+        view.release(buffer);
+        assertEquals(0, account.getUsed());
+
+        // the idle buffers are shared with the pool
+        assertSame(buffer, pool.take());
+        assertSame(pool, pool.withAccount(null));
+        account.close();
+    }
+}
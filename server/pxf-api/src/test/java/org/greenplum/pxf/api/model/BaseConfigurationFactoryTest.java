@@ -1,25 +1,33 @@
 package org.greenplum.pxf.api.model;
 
 import org.apache.hadoop.conf.Configuration;
+import org.greenplum.pxf.api.utilities.DirectoryWatcher;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.greenplum.pxf.api.model.ConfigurationFactory.PXF_CONFIG_RESOURCE_PATH_PROPERTY;
 import static org.greenplum.pxf.api.model.ConfigurationFactory.PXF_CONFIG_SERVER_DIRECTORY_PROPERTY;
 import static org.greenplum.pxf.api.model.ConfigurationFactory.PXF_SESSION_USER_PROPERTY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -29,6 +37,9 @@ public class BaseConfigurationFactoryTest {
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private BaseConfigurationFactory factory;
     private Map<String, String> additionalProperties;
     private File mockServersDirectory;
@@ -205,4 +216,107 @@ public class BaseConfigurationFactoryTest {
         assertEquals("dummy", configuration.get(PXF_SESSION_USER_PROPERTY));
     }
 
+    @Test
+    public void testCachedConfigurationIsCopied() {
+        Configuration configuration = factory.initConfiguration("default", "default", "dummy", additionalProperties);
+        configuration.set("test.blue", "changed");
+
+        Configuration cached = factory.initConfiguration("default", "default", "dummy", additionalProperties);
+        assertNotSame(configuration, cached);
+        assertEquals("blue", cached.get("test.blue"));
+        assertEquals("dummy-user", cached.get("test.user.interpolated.key"));
+    }
+
+    @Test
+    public void testCachedConfigurationDroppedWhenServerDirectoryChanges() throws IOException {
+        File serverDirectory = temporaryFolder.newFolder("servers", "changing");
+        File siteFile = new File(serverDirectory, "test-site.xml");
+        writeProperty(siteFile, "test.color", "blue");
+        TestDirectoryWatcher watcher = new TestDirectoryWatcher();
+        factory = new BaseConfigurationFactory(serverDirectory.getParentFile(), 10, watcher);
+
+        assertEquals("blue", factory.initConfiguration("changing", "changing", "dummy", null).get("test.color"));
+        writeProperty(siteFile, "test.color", "red");
+        // not noticed until the watcher reports the change
+        assertEquals("blue", factory.initConfiguration("changing", "changing", "dummy", null).get("test.color"));
+
+        watcher.changed(serverDirectory.toPath());
+        assertEquals("red", factory.initConfiguration("changing", "changing", "dummy", null).get("test.color"));
+    }
+
+    @Test
+    public void testCachedConfigurationDroppedWhenServerIsAdded() throws IOException {
+        File serversDirectory = temporaryFolder.newFolder("servers");
+        TestDirectoryWatcher watcher = new TestDirectoryWatcher();
+        factory = new BaseConfigurationFactory(serversDirectory, 10, watcher);
+
+        assertNull(factory.initConfiguration("added", "added", "dummy", null).get("test.color"));
+        File serverDirectory = new File(serversDirectory, "added");
+        assertTrue(serverDirectory.mkdir());
+        writeProperty(new File(serverDirectory, "test-site.xml"), "test.color", "blue");
+        assertNull(factory.initConfiguration("added", "added", "dummy", null).get("test.color"));
+
+        watcher.changed(serversDirectory.toPath());
+        assertEquals("blue", factory.initConfiguration("added", "added", "dummy", null).get("test.color"));
+    }
+
+    @Test
+    public void testConfigurationNotCachedWhenDirectoryCannotBeWatched() throws IOException {
+        File serverDirectory = temporaryFolder.newFolder("servers", "unwatched");
+        File siteFile = new File(serverDirectory, "test-site.xml");
+        writeProperty(siteFile, "test.color", "blue");
+        factory = new BaseConfigurationFactory(serverDirectory.getParentFile(), 10, new TestDirectoryWatcher() {
+            @Override
+            public boolean watch(Path directory, Consumer<Path> listener) {
+                return false;
+            }
+        });
+
+        assertEquals("blue", factory.initConfiguration("unwatched", "unwatched", "dummy", null).get("test.color"));
+        writeProperty(siteFile, "test.color", "red");
+        assertEquals("red", factory.initConfiguration("unwatched", "unwatched", "dummy", null).get("test.color"));
+    }
+
+    @Test
+    public void testConfigurationNotCachedWhenChangedWhileRead() throws IOException {
+        File serverDirectory = temporaryFolder.newFolder("servers", "busy");
+        File siteFile = new File(serverDirectory, "test-site.xml");
+        writeProperty(siteFile, "test.color", "blue");
+        // every registration reports a change, as if the files were written while being read
+        factory = new BaseConfigurationFactory(serverDirectory.getParentFile(), 10, new TestDirectoryWatcher() {
+            @Override
+            public boolean watch(Path directory, Consumer<Path> listener) {
+                super.watch(directory, listener);
+                changed(directory);
+                return true;
+            }
+        });
+
+        assertEquals("blue", factory.initConfiguration("busy", "busy", "dummy", null).get("test.color"));
+        writeProperty(siteFile, "test.color", "red");
+        assertEquals("red", factory.initConfiguration("busy", "busy", "dummy", null).get("test.color"));
+    }
+
+    private void writeProperty(File file, String name, String value) throws IOException {
+        String xml = "<configuration><property><name>" + name + "</name><value>" + value + "</value></property></configuration>";
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Watcher that reports changes only when told to
+     */
+    private static class TestDirectoryWatcher extends DirectoryWatcher {
+        private final Map<Path, Consumer<Path>> listeners = new HashMap<>();
+
+        @Override
+        public boolean watch(Path directory, Consumer<Path> listener) {
+            listeners.put(directory.toAbsolutePath().normalize(), listener);
+            return true;
+        }
+
+        void changed(Path directory) {
+            Path key = directory.toAbsolutePath().normalize();
+            listeners.get(key).accept(key);
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package org.greenplum.pxf.api.utilities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FragmentMetadataCodecTest {
+
+    @Test
+    public void testFileSplitRoundTrip() throws IOException {
+        String[] hosts = new String[]{"sdw1.example.com", "sdw2.example.com", "sdw3.example.com"};
+        byte[] metadata = FragmentMetadataCodec.encodeFileSplit(128L * 1024 * 1024 * 7, 128L * 1024 * 1024, hosts);
+
+        assertTrue(FragmentMetadataCodec.isCompact(metadata));
+        FragmentMetadata result = FragmentMetadataCodec.decodeFileSplit(metadata);
+        assertEquals(128L * 1024 * 1024 * 7, result.getStart());
+        assertEquals(128L * 1024 * 1024, result.getEnd());
+        assertArrayEquals(hosts, result.getHosts());
+    }
+
+    @Test
+    public void testFileSplitEdgeValues() throws IOException {
+        FragmentMetadata result = FragmentMetadataCodec.decodeFileSplit(
+                FragmentMetadataCodec.encodeFileSplit(Long.MAX_VALUE, -1, null));
+        assertEquals(Long.MAX_VALUE, result.getStart());
+        assertEquals(-1, result.getEnd());
+        assertNull(result.getHosts());
+
+        result = FragmentMetadataCodec.decodeFileSplit(
+                FragmentMetadataCodec.encodeFileSplit(0, 0, new String[]{"été", ""}));
+        assertArrayEquals(new String[]{"été", ""}, result.getHosts());
+    }
+
+    @Test
+    public void testFileSplitIsSmallerThanJavaSerialization() throws IOException {
+        String[] hosts = new String[]{"sdw1", "sdw2", "sdw3"};
+        byte[] legacy = serialize(10L, 100L, hosts);
+        byte[] compact = FragmentMetadataCodec.encodeFileSplit(10, 100, hosts);
+
+        assertEquals(21, compact.length);
+        assertTrue(compact.length * 3 < legacy.length);
+    }
+
+    @Test
+    public void testDecodeJavaSerializedFileSplit() throws IOException {
+        byte[] legacy = serialize(10L, 100L, new String[]{"hostname"});
+
+        assertFalse(FragmentMetadataCodec.isCompact(legacy));
+        FragmentMetadata result = FragmentMetadataCodec.decodeFileSplit(legacy);
+        assertEquals(10, result.getStart());
+        assertEquals(100, result.getEnd());
+        assertArrayEquals(new String[]{"hostname"}, result.getHosts());
+    }
+
+    @Test
+    public void testKeyRangeRoundTrip() throws IOException {
+        byte[][] range = FragmentMetadataCodec.decodeKeyRange(
+                FragmentMetadataCodec.encodeKeyRange(new byte[0], new byte[]{'r', 'o', 'w', 5}));
+        assertArrayEquals(new byte[0], range[0]);
+        assertArrayEquals(new byte[]{'r', 'o', 'w', 5}, range[1]);
+
+        range = FragmentMetadataCodec.decodeKeyRange(FragmentMetadataCodec.encodeKeyRange(null, null));
+        assertNull(range[0]);
+        assertNull(range[1]);
+    }
+
+    @Test
+    public void testDecodeJavaSerializedKeyRange() throws IOException {
+        byte[] legacy = serialize(new byte[]{'a'}, new byte[]{'z', 'z'});
+
+        byte[][] range = FragmentMetadataCodec.decodeKeyRange(legacy);
+        assertArrayEquals(new byte[]{'a'}, range[0]);
+        assertArrayEquals(new byte[]{'z', 'z'}, range[1]);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion() throws IOException {
+        byte[] metadata = FragmentMetadataCodec.encodeFileSplit(1, 2, null);
+        metadata[1] = 99;
+        FragmentMetadataCodec.decodeFileSplit(metadata);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedMetadata() throws IOException {
+        byte[] metadata = FragmentMetadataCodec.encodeFileSplit(1, 2, new String[]{"hostname"});
+        byte[] truncated = new byte[metadata.length - 3];
+        System.arraycopy(metadata, 0, truncated, 0, truncated.length);
+        FragmentMetadataCodec.decodeFileSplit(truncated);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongType() throws IOException {
+        FragmentMetadataCodec.decodeKeyRange(FragmentMetadataCodec.encodeFileSplit(1, 2, new String[]{"hostname"}));
+    }
+
+    private byte[] serialize(Object... values) throws IOException {
+        ByteArrayOutputStream bas = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(bas)) {
+            for (Object value : values) {
+                if (value instanceof Long) {
+                    os.writeLong((Long) value);
+                } else {
+                    os.writeObject(value);
+                }
+            }
+        }
+        return bas.toByteArray();
+    }
+}
@@ -0,0 +1,134 @@
+package org.greenplum.pxf.api.utilities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.greenplum.pxf.api.model.Fragment;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time and the memory allocated to write the response of a
+ * fragmenter call with 100k fragments, for {@link FragmentsResponse} and for
+ * the previous implementation that serialized every fragment into a string.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.greenplum.pxf.api.utilities.FragmentsResponseBenchmark [fragments] [iterations]}
+ */
+public class FragmentsResponseBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<Fragment> fragments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] metadata = new byte[64];
+            metadata[0] = (byte) i;
+            fragments.add(new Fragment("hdfs://namenode:8020/warehouse/table/part-" + i + ".orc",
+                    new String[]{"10.0.0.1", "10.0.0.2", "10.0.0.3"}, metadata, null, "hive:orc"));
+        }
+
+        run("streaming", fragments, iterations, new Writer() {
+            @Override
+            public void write(List<Fragment> fragments, OutputStream output) throws IOException {
+                new FragmentsResponse(fragments).write(output);
+            }
+        });
+        run("string per fragment", fragments, iterations, new Writer() {
+            @Override
+            public void write(List<Fragment> fragments, OutputStream output) throws IOException {
+                writeWithStrings(fragments, output);
+            }
+        });
+    }
+
+    private static void run(String name, List<Fragment> fragments, int iterations, Writer writer) throws IOException {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        CountingOutputStream output = new CountingOutputStream();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            writer.write(fragments, output);
+        }
+
+        output.count = 0;
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            writer.write(fragments, output);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%-20s %d fragments: %8.2f ms, %10d KB allocated, %10d KB written per response%n",
+                name, fragments.size(),
+                elapsed / 1e6 / iterations,
+                allocated / 1024 / iterations,
+                output.count / 1024 / iterations);
+    }
+
+    /**
+     * The implementation of {@link FragmentsResponse#write} before it used a streaming generator.
+     */
+    private static void writeWithStrings(List<Fragment> fragments, OutputStream output) throws IOException {
+        DataOutputStream dos = new DataOutputStream(output);
+        ObjectMapper mapper = new ObjectMapper();
+
+        dos.write("{\"PXFFragments\":[".getBytes());
+
+        String prefix = "";
+        for (Fragment fragment : fragments) {
+            StringBuilder result = new StringBuilder();
+            result.append(prefix).append(mapper.writeValueAsString(fragment));
+            prefix = ",";
+            dos.write(result.toString().getBytes());
+        }
+
+        dos.write("]}".getBytes());
+    }
+
+    private interface Writer {
+        void write(List<Fragment> fragments, OutputStream output) throws IOException;
+    }
+
+    /**
+     * Discards the response, like a fast client would.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
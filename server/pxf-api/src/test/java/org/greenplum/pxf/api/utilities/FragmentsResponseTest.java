@@ -0,0 +1,79 @@
+package org.greenplum.pxf.api.utilities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.model.Fragment;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FragmentsResponseTest {
+
+    @Test
+    public void testWriteEmpty() throws Exception {
+        assertEquals("{\"PXFFragments\":[]}", write(Collections.<Fragment>emptyList()));
+    }
+
+    @Test
+    public void testWriteFragments() throws Exception {
+        Fragment fragment1 = new Fragment("/tmp/a.csv", new String[]{"host1", "host2"}, "abc".getBytes(StandardCharsets.UTF_8));
+        Fragment fragment2 = new Fragment("/tmp/b.csv", new String[]{"host3"}, null, "user".getBytes(StandardCharsets.UTF_8), "profile");
+        fragment2.setIndex(1);
+
+        String json = write(Arrays.asList(fragment1, fragment2));
+
+        assertEquals("{\"PXFFragments\":[" +
+                "{\"sourceName\":\"/tmp/a.csv\",\"index\":0,\"replicas\":[\"host1\",\"host2\"],\"metadata\":\"YWJj\",\"userData\":null,\"profile\":null}," +
+                "{\"sourceName\":\"/tmp/b.csv\",\"index\":1,\"replicas\":[\"host3\"],\"metadata\":null,\"userData\":\"dXNlcg==\",\"profile\":\"profile\"}" +
+                "]}", json);
+    }
+
+    @Test
+    public void testWriteDoesNotCloseOutput() throws Exception {
+        final boolean[] closed = {false};
+        OutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        List<Fragment> fragments = new ArrayList<>();
+        fragments.add(new Fragment("/tmp/a.csv"));
+
+        new FragmentsResponse(fragments).write(output);
+
+        assertFalse(closed[0]);
+    }
+
+    private String write(List<Fragment> fragments) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new FragmentsResponse(fragments).write(output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
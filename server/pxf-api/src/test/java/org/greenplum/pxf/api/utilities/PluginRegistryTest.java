@@ -0,0 +1,154 @@
+package org.greenplum.pxf.api.utilities;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PluginRegistryTest {
+
+    private PluginRegistry registry = new PluginRegistry();
+
+    @Test
+    public void testFactoryCreatesNewInstances() throws Exception {
+        Supplier<Runnable> factory = registry.getFactory(PublicTask.class.getName(), Runnable.class);
+        Runnable first = factory.get();
+        Runnable second = factory.get();
+
+        assertTrue(first instanceof PublicTask);
+        assertTrue(second instanceof PublicTask);
+        assertNotSame(first, second);
+        assertSame(factory, registry.getFactory(PublicTask.class.getName(), Runnable.class));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testNonPublicClassIsRejected() throws Exception {
+        registry.getFactory(HiddenTask.class.getName(), Runnable.class);
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testNonPublicConstructorIsRejected() throws Exception {
+        registry.getFactory(PrivateConstructorTask.class.getName(), Runnable.class);
+    }
+
+    @Test
+    public void testWrongTypeIsNotInitialized() throws Exception {
+        try {
+            registry.getFactory(Unrelated.class.getName() + "$Initialized", Runnable.class);
+            fail("expected ClassCastException");
+        } catch (ClassCastException e) {
+            assertEquals(0, Unrelated.INITIALIZED.get());
+        }
+    }
+
+    @Test
+    public void testSingletonIsShared() throws Exception {
+        Runnable first = registry.getSingleton(PublicTask.class.getName(), Runnable.class);
+        assertNotNull(first);
+        assertSame(first, registry.getSingleton(PublicTask.class.getName(), Runnable.class));
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testUnknownClass() throws Exception {
+        registry.getFactory("org.greenplum.pxf.NoSuchClass", Runnable.class);
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testWrongType() throws Exception {
+        registry.getFactory(PublicTask.class.getName(), Comparable.class);
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testNoEmptyConstructor() throws Exception {
+        registry.getFactory(NamedTask.class.getName(), Runnable.class);
+    }
+
+    @Test
+    public void testConstructorExceptionIsPropagated() throws Exception {
+        Supplier<Runnable> factory = registry.getFactory(FailingTask.class.getName(), Runnable.class);
+        try {
+            factory.get();
+            fail("expected an exception");
+        } catch (Exception e) {
+            assertTrue(e instanceof IOException);
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    public static class PublicTask implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    static class HiddenTask implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    public static class PrivateConstructorTask implements Runnable {
+        private PrivateConstructorTask() {
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    public static class Unrelated {
+        static final AtomicInteger INITIALIZED = new AtomicInteger();
+
+        public static class Initialized {
+            static {
+                INITIALIZED.incrementAndGet();
+            }
+        }
+    }
+
+    public static class NamedTask implements Runnable {
+        public NamedTask(String name) {
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    public static class FailingTask implements Runnable {
+        public FailingTask() throws IOException {
+            throw new IOException("failed");
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+}
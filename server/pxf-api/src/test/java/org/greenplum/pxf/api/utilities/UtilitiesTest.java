@@ -47,6 +47,7 @@ import static org.mockito.Mockito.when;
 public class UtilitiesTest {
 
     private String PROPERTY_KEY_FRAGMENTER_CACHE = "pxf.service.fragmenter.cache.enabled";
+    private String PROPERTY_KEY_SOURCE_CACHE = "pxf.service.fragmenter.source.cache.enabled";
 
     class StatsAccessorImpl implements StatsAccessor {
 
@@ -379,6 +380,26 @@ public class UtilitiesTest {
         assertFalse(Utilities.isFragmenterCacheEnabled());
     }
 
+    @Test
+    public void testSourceCachePropertyAbsent() {
+        System.clearProperty(PROPERTY_KEY_SOURCE_CACHE);
+        assertFalse(Utilities.isSourceCacheEnabled());
+    }
+
+    @Test
+    public void testSourceCachePropertyFoo() {
+        System.setProperty(PROPERTY_KEY_SOURCE_CACHE, "foo");
+        assertFalse(Utilities.isSourceCacheEnabled());
+        System.clearProperty(PROPERTY_KEY_SOURCE_CACHE);
+    }
+
+    @Test
+    public void testSourceCachePropertyTrue() {
+        System.setProperty(PROPERTY_KEY_SOURCE_CACHE, "TRUE");
+        assertTrue(Utilities.isSourceCacheEnabled());
+        System.clearProperty(PROPERTY_KEY_SOURCE_CACHE);
+    }
+
     @Test
     public void testSecurityIsDisabledOnNewConfiguration() {
         Configuration configuration = new Configuration();
@@ -30,6 +30,7 @@ import org.greenplum.pxf.api.filter.TreeVisitor;
 import org.greenplum.pxf.api.model.Accessor;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.model.BasePlugin;
+import org.greenplum.pxf.api.utilities.FragmentMetadataCodec;
 import org.greenplum.pxf.plugins.hbase.utilities.HBaseColumnDescriptor;
 import org.greenplum.pxf.plugins.hbase.utilities.HBaseTupleDescription;
 import org.greenplum.pxf.plugins.hbase.utilities.HBaseUtilities;
@@ -46,9 +47,7 @@ import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.util.Bytes;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.EnumSet;
 
 /**
@@ -223,11 +222,9 @@ public class HBaseAccessor extends BasePlugin implements Accessor {
             throw new IllegalArgumentException("Missing fragment metadata information");
         }
         try {
-            ByteArrayInputStream bytesStream = new ByteArrayInputStream(serializedMetadata);
-            ObjectInputStream objectStream = new ObjectInputStream(bytesStream);
-
-            byte[] startKey = (byte[]) objectStream.readObject();
-            byte[] endKey = (byte[]) objectStream.readObject();
+            byte[][] keyRange = FragmentMetadataCodec.decodeKeyRange(serializedMetadata);
+            byte[] startKey = keyRange[0];
+            byte[] endKey = keyRange[1];
 
             if (withinScanRange(startKey, endKey)) {
                 split = new SplitBoundary(startKey, endKey);
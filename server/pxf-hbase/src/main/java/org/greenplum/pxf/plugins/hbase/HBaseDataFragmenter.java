@@ -35,6 +35,7 @@ import org.greenplum.pxf.api.model.BaseFragmenter;
 import org.greenplum.pxf.api.model.Fragment;
 import org.greenplum.pxf.api.model.FragmentStats;
 import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.FragmentMetadataCodec;
 import org.greenplum.pxf.plugins.hbase.utilities.HBaseLookupTable;
 import org.greenplum.pxf.plugins.hbase.utilities.HBaseUtilities;
 
@@ -130,13 +131,7 @@ public class HBaseDataFragmenter extends BaseFragmenter {
      * @throws IOException when serialization fails
      */
     private byte[] prepareFragmentMetadata(HRegionInfo region) throws IOException {
-
-        ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
-        ObjectOutputStream objectStream = new ObjectOutputStream(byteArrayStream);
-        objectStream.writeObject(region.getStartKey());
-        objectStream.writeObject(region.getEndKey());
-
-        return byteArrayStream.toByteArray();
+        return FragmentMetadataCodec.encodeKeyRange(region.getStartKey(), region.getEndKey());
     }
 
     private void addTableFragments(byte[] userData) throws IOException {
@@ -27,20 +27,29 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.hadoop.io.Writable;
+import org.greenplum.pxf.api.io.BufferPool;
 
 /**
  * A class that provides a line reader from an input stream. Lines are
  * terminated by '\n' (LF) EOF also terminates an otherwise unterminated line.
+ * <p>
+ * When constructed with a {@link BufferPool}, chunks are read from the input
+ * stream straight into a buffer taken from the pool, which is handed over to
+ * the caller inside the {@link ChunkWritable}. The data is then copied only
+ * once, by the input stream itself.
  */
 public class ChunkReader implements Closeable {
     public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
     private int bufferSize = DEFAULT_BUFFER_SIZE;
     private InputStream in;
+    private final BufferPool chunkPool;
     private byte[] buffer;
     // the number of bytes of real data in the buffer
     private int bufferLength = 0;
     // the current position in the buffer
     private int bufferPosn = 0;
+    // true once a read from the input stream returned end of stream
+    private boolean eof = false;
     private static final byte LF = '\n';
 
     /**
@@ -49,10 +58,33 @@ public class ChunkReader implements Closeable {
      * @param in input stream
      */
     public ChunkReader(InputStream in) {
+        this(in, null);
+    }
+
+    /**
+     * Constructs a ChunkReader instance that reads chunks into buffers taken
+     * from the given pool.
+     *
+     * @param in input stream
+     * @param chunkPool pool of chunk buffers, null to allocate every chunk
+     */
+    public ChunkReader(InputStream in, BufferPool chunkPool) {
         this.in = in;
+        this.chunkPool = chunkPool;
         this.buffer = new byte[this.bufferSize];
     }
 
+    /**
+     * Returns whether the end of the input stream has been reached. Works for
+     * any input stream, including decompressed ones, whose length is not known
+     * in advance.
+     *
+     * @return true if a read returned end of stream
+     */
+    public boolean isEof() {
+        return eof;
+    }
+
     /**
      * Closes the underlying stream.
      */
@@ -76,7 +108,10 @@ public class ChunkReader implements Closeable {
 
     /**
      * Reads data in chunks of DEFAULT_CHUNK_SIZE, until we reach
-     * maxBytesToConsume.
+     * maxBytesToConsume. If the reader has a chunk pool with buffers larger
+     * than maxBytesToConsume, at most maxBytesToConsume bytes are read
+     * directly into a pooled buffer, leaving room to terminate the last line
+     * of the file.
      *
      * @param str - output parameter, will contain the read chunk byte array
      * @param maxBytesToConsume - requested chunk size
@@ -88,6 +123,9 @@ public class ChunkReader implements Closeable {
     public int readChunk(Writable str, int maxBytesToConsume) throws IOException
            {
         ChunkWritable cw = (ChunkWritable) str;
+        if (chunkPool != null && maxBytesToConsume < chunkPool.getBufferSize()) {
+            return readPooledChunk(cw, maxBytesToConsume);
+        }
         List<Node> list = new LinkedList<Node>();
 
         long bytesConsumed = 0;
@@ -106,6 +144,7 @@ public class ChunkReader implements Closeable {
                 nd.slice = new byte[buffer.length];
                 nd.len = in.read(nd.slice);
                 if (nd.len <= 0) {
+                    eof = true;
                     break; // EOF
                 }
                 bytesConsumed += nd.len;
@@ -117,18 +156,54 @@ public class ChunkReader implements Closeable {
         } while (bytesConsumed < maxBytesToConsume);
 
         if (list.size() > 0) {
-            cw.box = new byte[(int) bytesConsumed];
+            byte[] box = new byte[(int) bytesConsumed];
             int pos = 0;
             for (int i = 0; i < list.size(); i++) {
                 Node n = list.get(i);
-                System.arraycopy(n.slice, 0, cw.box, pos, n.len);
+                System.arraycopy(n.slice, 0, box, pos, n.len);
                 pos += n.len;
             }
+            cw.set(box);
         }
 
         return (int) bytesConsumed;
     }
 
+    /**
+     * Reads up to maxBytesToConsume bytes into a buffer taken from the chunk
+     * pool, starting with whatever is left in the line buffer. The buffer is
+     * handed to the caller, or returned to the pool if nothing was read.
+     */
+    private int readPooledChunk(ChunkWritable cw, int maxBytesToConsume) throws IOException {
+        byte[] chunk = chunkPool.take();
+        int bytesConsumed = 0;
+
+        if (bufferPosn < bufferLength) {
+            bytesConsumed = Math.min(bufferLength - bufferPosn, maxBytesToConsume);
+            System.arraycopy(buffer, bufferPosn, chunk, 0, bytesConsumed);
+            bufferPosn += bytesConsumed;
+        }
+        if (bufferPosn >= bufferLength) {
+            bufferLength = bufferPosn = 0;
+        }
+
+        while (bytesConsumed < maxBytesToConsume) {
+            int n = in.read(chunk, bytesConsumed, maxBytesToConsume - bytesConsumed);
+            if (n <= 0) {
+                eof = true;
+                break; // EOF
+            }
+            bytesConsumed += n;
+        }
+
+        if (bytesConsumed > 0) {
+            cw.set(chunk, bytesConsumed, chunkPool);
+        } else {
+            chunkPool.release(chunk);
+        }
+        return bytesConsumed;
+    }
+
     /**
      * Reads a line terminated by LF.
      *
@@ -154,6 +229,7 @@ public class ChunkReader implements Closeable {
 
                 bufferLength = in.read(buffer);
                 if (bufferLength <= 0) {
+                    eof = true;
                     break; // EOF
                 }
             }
@@ -181,13 +257,14 @@ public class ChunkReader implements Closeable {
         } while (!newLine && bytesConsumed < maxBytesToConsume);
 
         if (list.size() > 0) {
-            cw.box = new byte[(int) bytesConsumed];
+            byte[] box = new byte[(int) bytesConsumed];
             int pos = 0;
             for (int i = 0; i < list.size(); i++) {
                 Node n = list.get(i);
-                System.arraycopy(n.slice, 0, cw.box, pos, n.len);
+                System.arraycopy(n.slice, 0, box, pos, n.len);
                 pos += n.len;
             }
+            cw.set(box);
         }
 
         return (int) bytesConsumed;
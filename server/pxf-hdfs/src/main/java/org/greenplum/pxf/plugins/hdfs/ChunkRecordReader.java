@@ -34,7 +34,6 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.Seekable;
 import org.apache.hadoop.hdfs.DFSInputStream;
 import org.apache.hadoop.hdfs.DFSInputStream.ReadStatistics;
-import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.compress.CodecPool;
 import org.apache.hadoop.io.compress.CompressionCodec;
@@ -44,6 +43,7 @@ import org.apache.hadoop.io.compress.SplitCompressionInputStream;
 import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.RecordReader;
+import org.greenplum.pxf.api.io.BufferPool;
 
 /**
  * ChunkRecordReader is designed for fast reading of a file split. The idea is
@@ -52,6 +52,23 @@ import org.apache.hadoop.mapred.RecordReader;
  * the chunk is a class hardcoded parameter - CHUNK_SIZE. This behaviour sets
  * this reader apart from the other readers which will fetch one record and stop
  * when reaching a record delimiter.
+ * <p>
+ * The reader works over any {@link FSDataInputStream}, so files on object
+ * stores, in HDFS encryption zones or compressed with any codec are read in
+ * chunks as well. The end of the data is detected on the stream itself rather
+ * than from the length of the file, which is unknown for decompressed data.
+ * <p>
+ * Records are delimited by LF. CR-only line endings are not recognized, so a
+ * file without any LF is read as a single record by the first split.
+ * <p>
+ * Chunks are read into buffers taken from a pool shared by all readers. The
+ * buffer travels inside the {@link ChunkWritable} up to the response stream,
+ * which gives it back to the pool once the chunk has been sent, so a scan does
+ * not allocate a new chunk for every megabyte it reads. The buffers are charged
+ * to the memory account of the request when the reader is given a view of the
+ * pool bound to it. The number of idle
+ * chunk buffers kept by the pool is set with the
+ * {@value #PROPERTY_KEY_POOLED_CHUNKS} system property.
  */
 public class ChunkRecordReader implements
         RecordReader<LongWritable, ChunkWritable> {
@@ -61,14 +78,23 @@ public class ChunkRecordReader implements
     private long start;
     private long pos;
     private long end;
-    private long fileLength;
     private ChunkReader in;
     private FSDataInputStream fileIn;
     private final Seekable filePosition;
     private int maxLineLength;
     private CompressionCodec codec;
     private Decompressor decompressor;
-    private static final int CHUNK_SIZE = 1024 * 1024;
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    static final String PROPERTY_KEY_POOLED_CHUNKS = "pxf.hdfs.chunk.pooled";
+    private static final int DEFAULT_POOLED_CHUNKS = 64;
+
+    /*
+     * One byte larger than a chunk, so that a missing line feed at the end
+     * of the file can be added without copying the chunk.
+     */
+    static final BufferPool CHUNK_POOL = new BufferPool(CHUNK_SIZE + 1,
+            Integer.getInteger(PROPERTY_KEY_POOLED_CHUNKS, DEFAULT_POOLED_CHUNKS));
 
     /**
      * Translates the FSDataInputStream into a DFSInputStream.
@@ -78,7 +104,6 @@ public class ChunkRecordReader implements
         if (inputStream instanceof DFSInputStream) {
             return (DFSInputStream) inputStream;
         } else {
-            IOUtils.closeStream(fileIn);
             throw new IncompatibleInputStreamException(inputStream.getClass());
         }
     }
@@ -86,9 +111,12 @@ public class ChunkRecordReader implements
     /**
      * Returns statistics of the input stream's read operation: total bytes
      * read, bytes read locally, bytes read in short-circuit (directly from file
-     * descriptor).
+     * descriptor). Only available when reading from HDFS outside of an
+     * encryption zone.
      *
      * @return an instance of ReadStatistics class
+     * @throws IncompatibleInputStreamException if the file is not read with a
+     *             DFSInputStream
      */
     public ReadStatistics getReadStatistics() throws IncompatibleInputStreamException {
         return getInputStream().getReadStatistics();
@@ -104,7 +132,27 @@ public class ChunkRecordReader implements
      *             creating input stream to read from it
      */
     public ChunkRecordReader(Configuration job, FileSplit split)
-            throws IOException, IncompatibleInputStreamException {
+            throws IOException {
+        this(job, split, CHUNK_POOL);
+    }
+
+    /**
+     * Constructs a ChunkRecordReader instance that takes the chunk buffers
+     * from the given view of the shared chunk pool.
+     *
+     * @param job the job configuration
+     * @param split contains the file name, begin byte of the split and the
+     *            bytes length
+     * @param chunkPool the shared chunk pool, or a view of it bound to the
+     *            memory account of the request
+     * @throws IOException if an I/O error occurs when accessing the file or
+     *             creating input stream to read from it
+     */
+    public ChunkRecordReader(Configuration job, FileSplit split, BufferPool chunkPool)
+            throws IOException {
+        if (chunkPool.getBufferSize() != CHUNK_POOL.getBufferSize()) {
+            throw new IllegalArgumentException("Chunk buffers must be " + CHUNK_POOL.getBufferSize() + " bytes long");
+        }
         maxLineLength = job.getInt(MAX_LINE_LENGTH, Integer.MAX_VALUE);
         validateLength(maxLineLength);
         start = split.getStart();
@@ -116,25 +164,24 @@ public class ChunkRecordReader implements
         // openForWrite the file and seek to the start of the split
         final FileSystem fs = file.getFileSystem(job);
         fileIn = fs.open(file, ChunkReader.DEFAULT_BUFFER_SIZE);
-        fileLength = getInputStream().getFileLength();
         if (isCompressedInput()) {
             decompressor = CodecPool.getDecompressor(codec);
             if (codec instanceof SplittableCompressionCodec) {
                 final SplitCompressionInputStream cIn = ((SplittableCompressionCodec) codec).createInputStream(
                         fileIn, decompressor, start, end,
                         SplittableCompressionCodec.READ_MODE.BYBLOCK);
-                in = new ChunkReader(cIn);
+                in = new ChunkReader(cIn, chunkPool);
                 start = cIn.getAdjustedStart();
                 end = cIn.getAdjustedEnd();
                 filePosition = cIn; // take pos from compressed stream
             } else {
                 in = new ChunkReader(codec.createInputStream(fileIn,
-                        decompressor));
+                        decompressor), chunkPool);
                 filePosition = fileIn;
             }
         } else {
             fileIn.seek(start);
-            in = new ChunkReader(fileIn);
+            in = new ChunkReader(fileIn, chunkPool);
             filePosition = fileIn;
         }
         /*
@@ -180,7 +227,8 @@ public class ChunkRecordReader implements
      *            the number of the start byte of the chunk
      * @param value - output parameter. When method returns will contain the
      *            value - the chunk, a byte array inside the ChunkWritable
-     *            instance
+     *            instance. If the array is pooled, the caller is responsible
+     *            for returning it to the pool
      * @return false - when end of split was reached
      * @throws IOException if an I/O error occurred while reading the next chunk
      *             or line
@@ -218,16 +266,22 @@ public class ChunkRecordReader implements
 
             pos += newSize;
 
-            if (pos == fileLength) { /*
-                                      * in case text file last character is not
-                                      * a linefeed
-                                      */
-                if (value.box[value.box.length - 1] != '\n') {
-                    int newLen = value.box.length + 1;
-                    byte[] tmp = new byte[newLen];
-                    System.arraycopy(value.box, 0, tmp, 0, newLen - 1);
-                    tmp[newLen - 1] = '\n';
-                    value.box = tmp;
+            if (in.isEof()) { /*
+                               * in case text file last character is not a
+                               * linefeed
+                               */
+                if (value.box[value.length - 1] != '\n') {
+                    if (value.length < value.box.length) {
+                        value.box[value.length++] = '\n';
+                    } else {
+                        byte[] tmp = new byte[value.length + 1];
+                        System.arraycopy(value.box, 0, tmp, 0, value.length);
+                        tmp[value.length] = '\n';
+                        if (value.pool != null) {
+                            value.pool.release(value.box);
+                        }
+                        value.set(tmp);
+                    }
                 }
             }
 
@@ -25,13 +25,46 @@ import java.io.DataInput;
 import java.lang.UnsupportedOperationException;
 
 import org.apache.hadoop.io.Writable;
+import org.greenplum.pxf.api.io.BufferPool;
 
 /**
  * Just an output buffer for the ChunkRecordReader. It must extend Writable
  * otherwise it will not fit into the next() interface method
+ * <p>
+ * Only the first {@link #length} bytes of the box hold data. When the box was
+ * taken from a {@link BufferPool}, {@link #pool} is set and whoever consumes
+ * the chunk is responsible for returning the box to the pool.
  */
 public class ChunkWritable implements Writable {
 	public byte [] box;
+	/* the number of valid bytes in box */
+	public int length;
+	/* the pool box was taken from, null if it is not pooled */
+	public BufferPool pool;
+
+	/**
+	 * Sets the content of this chunk to an unpooled byte array.
+	 *
+	 * @param data the chunk data
+	 */
+	void set(byte[] data) {
+		box = data;
+		length = data.length;
+		pool = null;
+	}
+
+	/**
+	 * Sets the content of this chunk to the first bytes of a pooled buffer.
+	 *
+	 * @param buffer the buffer taken from the pool
+	 * @param length the number of valid bytes in the buffer
+	 * @param pool the pool the buffer was taken from
+	 */
+	void set(byte[] buffer, int length, BufferPool pool) {
+		this.box = buffer;
+		this.length = length;
+		this.pool = pool;
+	}
 
 	/**
      * Serializes the fields of this object to <code>out</code>.
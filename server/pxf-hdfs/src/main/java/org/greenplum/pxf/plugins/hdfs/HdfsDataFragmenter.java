@@ -20,11 +20,15 @@ package org.greenplum.pxf.plugins.hdfs;
  */
 
 
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.greenplum.pxf.api.model.BaseFragmenter;
+import org.greenplum.pxf.api.model.CacheableFragmenter;
 import org.greenplum.pxf.api.model.Fragment;
 import org.greenplum.pxf.api.model.FragmentStats;
 import org.greenplum.pxf.api.model.RequestContext;
@@ -32,6 +36,9 @@ import org.greenplum.pxf.plugins.hdfs.utilities.HdfsUtilities;
 import org.greenplum.pxf.plugins.hdfs.utilities.PxfInputFormat;
 
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,8 +48,13 @@ import java.util.List;
  * Given an HDFS data source (a file, directory, or wild card pattern) divide
  * the data into fragments and return a list of them along with a list of
  * host:port locations for each.
+ * <p>
+ * The version of the data source is derived from the paths, lengths and
+ * modification times of the matching files and of the files in the matching
+ * directories, which takes a listing of each directory instead of a look up of
+ * the block locations of every file.
  */
-public class HdfsDataFragmenter extends BaseFragmenter {
+public class HdfsDataFragmenter extends BaseFragmenter implements CacheableFragmenter {
 
     protected JobConf jobConf;
     protected HcfsType hcfsType;
@@ -78,6 +90,7 @@ public class HdfsDataFragmenter extends BaseFragmenter {
              */
             byte[] fragmentMetadata = HdfsUtilities.prepareFragmentMetadata(fsp);
             Fragment fragment = new Fragment(filepath, hosts, fragmentMetadata);
+            fragment.setLength(fsp.getLength());
             fragments.add(fragment);
         }
 
@@ -100,6 +113,51 @@ public class HdfsDataFragmenter extends BaseFragmenter {
         return new FragmentStats(splits.size(), firstSplit.getLength(), totalSize);
     }
 
+    @Override
+    public String getSourceVersion() throws Exception {
+        // files in nested directories would not be covered by the listing
+        if (jobConf.getBoolean(FileInputFormat.INPUT_DIR_RECURSIVE, false)) {
+            return null;
+        }
+        Path path = new Path(hcfsType.getDataUri(jobConf, context));
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        if (!updateSourceVersion(digest, path)) {
+            return null;
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    /**
+     * Adds the files matching the given path, and the files in the matching
+     * directories, to the version of the data source.
+     *
+     * @param digest the digest accumulating the version
+     * @param path   the path, which may contain wildcards
+     * @return false if nothing matches the path
+     * @throws IOException if the path could not be listed
+     */
+    protected boolean updateSourceVersion(MessageDigest digest, Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(jobConf);
+        FileStatus[] matches = fs.globStatus(path);
+        if (matches == null || matches.length == 0) {
+            return false;
+        }
+        for (FileStatus match : matches) {
+            updateSourceVersion(digest, match);
+            if (match.isDirectory()) {
+                for (FileStatus child : fs.listStatus(match.getPath())) {
+                    updateSourceVersion(digest, child);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void updateSourceVersion(MessageDigest digest, FileStatus status) {
+        String entry = status.getPath() + ":" + status.getLen() + ":" + status.getModificationTime() + "\n";
+        digest.update(entry.getBytes(StandardCharsets.UTF_8));
+    }
+
     protected List<InputSplit> getSplits(Path path) throws IOException {
         PxfInputFormat pxfInputFormat = new PxfInputFormat();
         PxfInputFormat.setInputPaths(jobConf, path);
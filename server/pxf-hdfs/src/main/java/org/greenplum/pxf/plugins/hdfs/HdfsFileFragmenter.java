@@ -30,7 +30,11 @@ public class HdfsFileFragmenter extends HdfsDataFragmenter {
         PxfInputFormat.setInputPaths(jobConf, path);
 
         fragments = Arrays.stream(pxfInputFormat.listStatus(jobConf))
-                .map(fileStatus -> new Fragment(fileStatus.getPath().toUri().toString()))
+                .map(fileStatus -> {
+                    Fragment fragment = new Fragment(fileStatus.getPath().toUri().toString());
+                    fragment.setLength(fileStatus.getLen());
+                    return fragment;
+                })
                 .collect(Collectors.toList());
         LOG.debug("Total number of fragments = {}", fragments.size());
 
@@ -27,9 +27,10 @@ import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
-import org.apache.hadoop.mapred.LineRecordReader;
 import org.apache.hadoop.mapred.TextInputFormat;
 import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.WriteChunkAccessor;
+import org.greenplum.pxf.api.io.BufferPool;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.plugins.hdfs.utilities.HdfsUtilities;
 
@@ -39,8 +40,13 @@ import java.net.URI;
 
 /**
  * A PXF Accessor for reading delimited plain text records.
+ * <p>
+ * Records are read in chunks with {@link ChunkRecordReader} on every file
+ * system. Splits are aligned on LF only: a file whose lines end with CR alone
+ * is read entirely by the split at its start and passed to GPDB unchanged,
+ * where LineRecordReader used to split it on CR for non-HDFS file systems.
  */
-public class LineBreakAccessor extends HdfsSplittableDataAccessor {
+public class LineBreakAccessor extends HdfsSplittableDataAccessor implements WriteChunkAccessor {
     private DataOutputStream dos;
     private FSDataOutputStream fsdos;
     private FileSystem fs;
@@ -65,16 +71,18 @@ public class LineBreakAccessor extends HdfsSplittableDataAccessor {
     protected Object getReader(JobConf jobConf, InputSplit split)
             throws IOException {
 
-        // for HDFS, try to use ChunkRecordReader, if possible (not reading from encrypted zone)
-        if (hcfsType == HcfsType.HDFS) {
-            try {
-                return new ChunkRecordReader(jobConf, (FileSplit) split);
-            } catch (IncompatibleInputStreamException e) {
-                // ignore and fallback to using LineRecordReader
-                LOG.debug("Failed to use ChunkRecordReader, falling back to LineRecordReader : " + e.getMessage());
-            }
-        }
-        return new LineRecordReader(jobConf, (FileSplit) split);
+        // read chunks of lines from any file system, the resolver passes them through unchanged
+        return new ChunkRecordReader(jobConf, (FileSplit) split, getChunkPool());
+    }
+
+    /**
+     * Returns the pool to take chunk buffers from, charging the memory
+     * account of the request if it has one.
+     *
+     * @return the chunk pool
+     */
+    protected BufferPool getChunkPool() {
+        return ChunkRecordReader.CHUNK_POOL.withAccount(context.getMemoryAccount());
     }
 
     /**
@@ -121,6 +129,15 @@ public class LineBreakAccessor extends HdfsSplittableDataAccessor {
         return true;
     }
 
+    /**
+     * Writes a block of lines into stream.
+     */
+    @Override
+    public boolean writeNextChunk(byte[] buffer, int offset, int length) throws IOException {
+        dos.write(buffer, offset, length);
+        return true;
+    }
+
     /**
      * Closes the output stream after done writing.
      */
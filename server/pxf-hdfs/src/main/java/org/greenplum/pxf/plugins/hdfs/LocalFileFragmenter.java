@@ -0,0 +1,103 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.greenplum.pxf.plugins.hdfs.utilities.PxfInputFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fragmenter class for text files on a local or NFS mounted file system.
+ * <p>
+ * Uncompressed files are divided into splits of about the block size of the
+ * file system (or the configured minimum and maximum split sizes), like
+ * {@link HdfsDataFragmenter} does, but each split boundary is moved forward to
+ * the start of the next line. The splits can then be read by
+ * {@link LocalLineBreakAccessor} without reading past their ends. Compressed
+ * files are returned as a single split and data sources on other file systems
+ * are divided like {@link HdfsDataFragmenter} does.
+ */
+public class LocalFileFragmenter extends HdfsDataFragmenter {
+
+    private static final String FILE_SCHEME = "file";
+    private static final double SPLIT_SLOP = 1.1;
+
+    @Override
+    protected List<InputSplit> getSplits(Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(jobConf);
+        if (!FILE_SCHEME.equals(fs.getUri().getScheme())) {
+            return super.getSplits(path);
+        }
+
+        PxfInputFormat.setInputPaths(jobConf, path);
+        FileStatus[] files = new PxfInputFormat().listStatus(jobConf);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(jobConf);
+        long minSize = Math.max(1, jobConf.getLong(FileInputFormat.SPLIT_MINSIZE, 1));
+        long maxSize = jobConf.getLong(FileInputFormat.SPLIT_MAXSIZE, Long.MAX_VALUE);
+
+        List<InputSplit> result = new ArrayList<>();
+        for (FileStatus file : files) {
+            long length = file.getLen();
+            // empty files have nothing to read
+            if (file.isDirectory() || length == 0) {
+                continue;
+            }
+            Path filePath = file.getPath();
+            String[] hosts = getHosts(fs, file);
+            if (codecs.getCodec(filePath) != null) {
+                result.add(new FileSplit(filePath, 0, length, hosts));
+                continue;
+            }
+
+            long splitSize = Math.max(minSize, Math.min(maxSize, file.getBlockSize()));
+            try (FileChannel channel = FileChannel.open(new File(filePath.toUri()).toPath(), StandardOpenOption.READ)) {
+                long start = 0;
+                while (((double) (length - start)) / splitSize > SPLIT_SLOP) {
+                    long end = MappedChunkRecordReader.nextLineStart(channel, start + splitSize, length);
+                    result.add(new FileSplit(filePath, start, end - start, hosts));
+                    start = end;
+                }
+                if (start < length) {
+                    result.add(new FileSplit(filePath, start, length - start, hosts));
+                }
+            }
+        }
+        LOG.debug("Divided {} into {} line aligned splits", path, result.size());
+        return result;
+    }
+
+    private String[] getHosts(FileSystem fs, FileStatus file) throws IOException {
+        BlockLocation[] locations = fs.getFileBlockLocations(file, 0, file.getLen());
+        return (locations != null && locations.length > 0) ? locations[0].getHosts() : new String[0];
+    }
+}
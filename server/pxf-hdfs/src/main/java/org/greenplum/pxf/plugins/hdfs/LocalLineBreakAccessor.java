@@ -0,0 +1,57 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+
+import java.io.IOException;
+
+/**
+ * A PXF Accessor for reading delimited plain text records from files on a
+ * local or NFS mounted file system. Uncompressed files are read with a
+ * {@link MappedChunkRecordReader}, which maps the file into memory and
+ * bypasses the checksum layer of the Hadoop local file system. Compressed
+ * files and files on other file systems are read like {@link LineBreakAccessor}
+ * does. Writing is not affected.
+ * <p>
+ * Should be used with {@link LocalFileFragmenter}, which aligns the splits on
+ * line boundaries.
+ */
+public class LocalLineBreakAccessor extends LineBreakAccessor {
+
+    private static final String FILE_SCHEME = "file";
+
+    @Override
+    protected Object getReader(JobConf jobConf, InputSplit split)
+            throws IOException {
+        FileSplit fileSplit = (FileSplit) split;
+        Path file = fileSplit.getPath();
+        if (FILE_SCHEME.equals(file.toUri().getScheme())
+                && new CompressionCodecFactory(jobConf).getCodec(file) == null) {
+            LOG.debug("Mapping split {}:{}+{}", file, fileSplit.getStart(), fileSplit.getLength());
+            return new MappedChunkRecordReader(fileSplit, getChunkPool());
+        }
+        return super.getReader(jobConf, split);
+    }
+}
@@ -0,0 +1,231 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.RecordReader;
+import org.greenplum.pxf.api.io.BufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedChunkRecordReader reads a split of an uncompressed file on a local or
+ * NFS mounted file system in chunks, like {@link ChunkRecordReader}, but maps
+ * the file into memory with a {@link FileChannel} instead of reading it through
+ * the Hadoop file system and its checksum layer. Each chunk is copied once,
+ * from the page cache into a pooled chunk buffer.
+ * <p>
+ * A line belongs to the split that holds its first byte. Splits computed by
+ * {@link LocalFileFragmenter} start and end on line boundaries, so they are
+ * read exactly; other splits are moved forward to the next line boundary on
+ * both ends, which costs one short scan per boundary.
+ * <p>
+ * If the file cannot be mapped, the reader falls back to positional reads
+ * from the channel.
+ */
+public class MappedChunkRecordReader implements RecordReader<LongWritable, ChunkWritable> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedChunkRecordReader.class);
+
+    private static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final byte LF = '\n';
+
+    private final FileChannel channel;
+    private final BufferPool chunkPool;
+    private final long fileLength;
+    private final long start;
+    private final long end;
+    private long pos;
+    private boolean mapped = true;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Constructs a MappedChunkRecordReader instance.
+     *
+     * @param split the split to read, its path must be on the local file system
+     * @throws IOException if the file cannot be opened or read
+     */
+    public MappedChunkRecordReader(FileSplit split) throws IOException {
+        this(split, ChunkRecordReader.CHUNK_POOL);
+    }
+
+    /**
+     * Constructs a MappedChunkRecordReader instance that takes the chunk
+     * buffers from the given view of the shared chunk pool.
+     *
+     * @param split the split to read, its path must be on the local file system
+     * @param chunkPool the shared chunk pool, or a view of it bound to the
+     *            memory account of the request
+     * @throws IOException if the file cannot be opened or read
+     */
+    public MappedChunkRecordReader(FileSplit split, BufferPool chunkPool) throws IOException {
+        if (chunkPool.getBufferSize() <= ChunkRecordReader.CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk buffers must be longer than " + ChunkRecordReader.CHUNK_SIZE + " bytes");
+        }
+        this.chunkPool = chunkPool;
+        File file = new File(split.getPath().toUri());
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            fileLength = channel.size();
+            long splitStart = Math.min(split.getStart(), fileLength);
+            long splitEnd = Math.min(split.getStart() + split.getLength(), fileLength);
+            start = nextLineStart(channel, splitStart, fileLength);
+            end = Math.max(start, nextLineStart(channel, splitEnd, fileLength));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        pos = start;
+    }
+
+    /**
+     * Returns the position of the first line that starts at or after the
+     * given position, that is the position following the first LF found at
+     * or after {@code position - 1}, or the length of the file if there is no
+     * such line.
+     *
+     * @param channel  the file to scan
+     * @param position the position to start from
+     * @param length   the length of the file
+     * @return the start of the next line
+     * @throws IOException if the file cannot be read
+     */
+    static long nextLineStart(FileChannel channel, long position, long length) throws IOException {
+        if (position <= 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long offset = position - 1;
+        while (offset < length) {
+            buffer.clear();
+            int n = channel.read(buffer, offset);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == LF) {
+                    return offset + i + 1;
+                }
+            }
+            offset += n;
+        }
+        return length;
+    }
+
+    @Override
+    public LongWritable createKey() {
+        return new LongWritable();
+    }
+
+    @Override
+    public ChunkWritable createValue() {
+        return new ChunkWritable();
+    }
+
+    /**
+     * Fetches the next chunk of the split into a pooled buffer. The last
+     * chunk of the file is terminated with a LF if the file does not end
+     * with one.
+     *
+     * @param key   - output parameter, the position of the chunk in the file
+     * @param value - output parameter, the chunk
+     * @return false when the end of the split was reached
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public synchronized boolean next(LongWritable key, ChunkWritable value) throws IOException {
+        if (pos >= end) {
+            return false;
+        }
+        key.set(pos);
+        int length = (int) Math.min(ChunkRecordReader.CHUNK_SIZE, end - pos);
+        byte[] chunk = chunkPool.take();
+        try {
+            read(pos, chunk, length);
+        } catch (IOException | RuntimeException e) {
+            chunkPool.release(chunk);
+            throw e;
+        }
+        pos += length;
+        if (pos == fileLength && chunk[length - 1] != LF) {
+            chunk[length++] = LF;
+        }
+        value.set(chunk, length, chunkPool);
+        return true;
+    }
+
+    /*
+     * Copies length bytes of the file at the given position into the chunk,
+     * from a mapped window of the split if possible.
+     */
+    private void read(long position, byte[] chunk, int length) throws IOException {
+        if (mapped && (window == null || position + length > windowStart + window.limit())) {
+            try {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_SIZE, end - position));
+            } catch (IOException e) {
+                LOG.warn("Unable to map file, reading it instead: {}", e.getMessage());
+                mapped = false;
+                window = null;
+            }
+        }
+        if (mapped) {
+            window.position((int) (position - windowStart));
+            window.get(chunk, 0, length);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    @Override
+    public synchronized long getPos() {
+        return pos;
+    }
+
+    @Override
+    public synchronized float getProgress() {
+        return (start == end) ? 0.0f : Math.min(1.0f, (pos - start) / (float) (end - start));
+    }
+
+    /**
+     * Closes the file. The mapped window is unmapped once it is garbage
+     * collected.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
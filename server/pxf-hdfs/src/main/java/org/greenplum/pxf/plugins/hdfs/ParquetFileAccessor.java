@@ -47,6 +47,7 @@ import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
 import org.apache.parquet.schema.Type;
 import org.greenplum.pxf.api.OneRow;
 import org.greenplum.pxf.api.UnsupportedTypeException;
+import org.greenplum.pxf.api.WriteVectorizedAccessor;
 import org.greenplum.pxf.api.io.DataType;
 import org.greenplum.pxf.api.model.Accessor;
 import org.greenplum.pxf.api.model.BasePlugin;
@@ -66,7 +67,7 @@ import java.util.stream.Collectors;
  * Parquet file accessor.
  * Unit of operation is record.
  */
-public class ParquetFileAccessor extends BasePlugin implements Accessor {
+public class ParquetFileAccessor extends BasePlugin implements Accessor, WriteVectorizedAccessor {
 
     private static final int DEFAULT_PAGE_SIZE = 1024 * 1024;
     private static final int DEFAULT_FILE_SIZE = 128 * 1024 * 1024;
@@ -242,8 +243,29 @@ public class ParquetFileAccessor extends BasePlugin implements Accessor {
      */
     @Override
     public boolean writeNextObject(OneRow onerow) throws IOException {
+        writeGroup((Group) onerow.getData());
+        return true;
+    }
 
-        parquetWriter.write((Group) onerow.getData());
+    /**
+     * Writes a batch of groups produced by {@link ParquetResolver#setFieldsForBatch}.
+     *
+     * @param batch the batch holding the list of groups to be written
+     * @return true if the write succeeded
+     * @throws IOException writing to the resource failed
+     */
+    @Override
+    public boolean writeNextObjectBatch(OneRow batch) throws IOException {
+        @SuppressWarnings("unchecked")
+        List<Group> groups = (List<Group>) batch.getData();
+        for (Group group : groups) {
+            writeGroup(group);
+        }
+        return true;
+    }
+
+    private void writeGroup(Group group) throws IOException {
+        parquetWriter.write(group);
         rowsWritten++;
         // Check for the output file size every 1000 rows
         if (rowsWritten % 1000 == 0 && parquetWriter.getDataSize() > DEFAULT_FILE_SIZE) {
@@ -254,7 +276,6 @@ public class ParquetFileAccessor extends BasePlugin implements Accessor {
             fileIndex++;
             createParquetWriter();
         }
-        return true;
     }
 
     /**
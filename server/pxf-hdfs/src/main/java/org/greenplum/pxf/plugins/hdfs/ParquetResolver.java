@@ -31,23 +31,28 @@ import org.apache.parquet.schema.OriginalType;
 import org.apache.parquet.schema.Type;
 import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.WriteVectorizedResolver;
+import org.greenplum.pxf.api.io.ColumnBatch;
 import org.greenplum.pxf.api.io.DataType;
 import org.greenplum.pxf.api.model.BasePlugin;
 import org.greenplum.pxf.api.model.Resolver;
 import org.greenplum.pxf.api.utilities.ColumnDescriptor;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Pattern;
 
 import static org.apache.parquet.schema.Type.Repetition.REPEATED;
 
-public class ParquetResolver extends BasePlugin implements Resolver {
+public class ParquetResolver extends BasePlugin implements Resolver, WriteVectorizedResolver {
 
     private MessageType schema;
     private SimpleGroupFactory groupFactory;
     private ObjectMapper mapper = new ObjectMapper();
+    private List<Group> groupBatch = new ArrayList<>();
 
     // used to distinguish string pattern between type "timestamp" ("2019-03-14 14:10:28")
     // and type "timestamp with time zone" ("2019-03-14 14:10:28+07:30")
@@ -89,39 +94,106 @@ public class ParquetResolver extends BasePlugin implements Resolver {
         validateSchema();
         Group group = groupFactory.newGroup();
         for (int i = 0; i < record.size(); i++) {
-            fillGroup(i, record.get(i), group, schema.getType(i));
+            fillGroup(i, record.get(i).val, group, schema.getType(i));
         }
         return new OneRow(null, group);
     }
 
-    private void fillGroup(int index, OneField field, Group group, Type type) throws IOException {
-        if (field.val == null)
+    /**
+     * Constructs a {@link OneRow} holding the list of groups for a batch of
+     * records. Numeric and binary values are taken from the batch columns
+     * without boxing. The list is reused by the next call.
+     *
+     * @param batch records of the batch stored by column
+     * @return the constructed {@link OneRow}
+     * @throws IOException if constructing the groups failed
+     */
+    @Override
+    public OneRow setFieldsForBatch(ColumnBatch batch) throws IOException {
+        validateSchema();
+        groupBatch.clear();
+        int size = batch.getSize();
+        for (int row = 0; row < size; row++) {
+            Group group = groupFactory.newGroup();
+            for (int i = 0; i < batch.getNumColumns(); i++) {
+                ColumnBatch.Column column = batch.getColumn(i);
+                if (!column.isNull(row)) {
+                    fillGroup(i, column, row, group, schema.getType(i));
+                }
+            }
+            groupBatch.add(group);
+        }
+        return new OneRow(null, groupBatch);
+    }
+
+    private void fillGroup(int index, ColumnBatch.Column column, int row, Group group, Type type) throws IOException {
+        switch (type.asPrimitiveType().getPrimitiveTypeName()) {
+            case BINARY:
+                checkStorage(ColumnBatch.Storage.BYTES, column, type);
+                group.add(index, Binary.fromReusedByteArray(column.getBytes(row), column.getStart(row), column.getLength(row)));
+                break;
+            case INT32:
+                checkStorage(ColumnBatch.Storage.LONG, column, type);
+                group.add(index, (int) column.getLong(row));
+                break;
+            case INT64:
+                checkStorage(ColumnBatch.Storage.LONG, column, type);
+                group.add(index, column.getLong(row));
+                break;
+            case DOUBLE:
+                checkStorage(ColumnBatch.Storage.DOUBLE, column, type);
+                group.add(index, column.getDouble(row));
+                break;
+            case FLOAT:
+                checkStorage(ColumnBatch.Storage.DOUBLE, column, type);
+                group.add(index, (float) column.getDouble(row));
+                break;
+            case BOOLEAN:
+                checkStorage(ColumnBatch.Storage.LONG, column, type);
+                group.add(index, column.getLong(row) != 0);
+                break;
+            default:
+                // decimals and timestamps are parsed from their text form
+                checkStorage(ColumnBatch.Storage.BYTES, column, type);
+                fillGroup(index, new String(column.getBytes(row), column.getStart(row), column.getLength(row), StandardCharsets.UTF_8), group, type);
+        }
+    }
+
+    private void checkStorage(ColumnBatch.Storage expected, ColumnBatch.Column column, Type type) throws IOException {
+        if (column.getStorage() != expected) {
+            throw new IOException("Cannot write " + column.getType() + " value to "
+                    + type.asPrimitiveType().getPrimitiveTypeName() + " column " + type.getName());
+        }
+    }
+
+    private void fillGroup(int index, Object val, Group group, Type type) throws IOException {
+        if (val == null)
             return;
         switch (type.asPrimitiveType().getPrimitiveTypeName()) {
             case BINARY:
                 if (type.getOriginalType() == OriginalType.UTF8)
-                    group.add(index, (String) field.val);
+                    group.add(index, (String) val);
                 else
-                    group.add(index, Binary.fromReusedByteArray((byte[]) field.val));
+                    group.add(index, Binary.fromReusedByteArray((byte[]) val));
                 break;
             case INT32:
                 if (type.getOriginalType() == OriginalType.INT_16)
-                    group.add(index, (Short) field.val);
+                    group.add(index, (Short) val);
                 else
-                    group.add(index, (Integer) field.val);
+                    group.add(index, (Integer) val);
                 break;
             case INT64:
-                group.add(index, (Long) field.val);
+                group.add(index, (Long) val);
                 break;
             case DOUBLE:
-                group.add(index, (Double) field.val);
+                group.add(index, (Double) val);
                 break;
             case FLOAT:
-                group.add(index, (Float) field.val);
+                group.add(index, (Float) val);
                 break;
             case FIXED_LEN_BYTE_ARRAY:
                 // From org.apache.hadoop.hive.ql.io.parquet.write.DataWritableWriter.DecimalDataWriter#decimalToBinary
-                String value = (String) field.val;
+                String value = (String) val;
                 int precision = Math.min(HiveDecimal.MAX_PRECISION, type.asPrimitiveType().getDecimalMetadata().getPrecision());
                 int scale = Math.min(HiveDecimal.MAX_SCALE, type.asPrimitiveType().getDecimalMetadata().getScale());
                 HiveDecimal hiveDecimal = HiveDecimal.enforcePrecisionScale(
@@ -160,7 +232,7 @@ public class ParquetResolver extends BasePlugin implements Resolver {
                 // end -- org.apache.hadoop.hive.ql.io.parquet.write.DataWritableWriter.DecimalDataWriter#decimalToBinary
                 break;
             case INT96:  // SQL standard timestamp string value with or without time zone literals: https://www.postgresql.org/docs/9.4/datatype-datetime.html
-                String timestamp = (String) field.val;
+                String timestamp = (String) val;
                 if (timestampPattern.matcher(timestamp).find()) {
                     // Note: this conversion convert type "timestamp with time zone" will lose timezone information
                     // while preserving the correct value. (as Parquet doesn't support timestamp with time zone.
@@ -170,7 +242,7 @@ public class ParquetResolver extends BasePlugin implements Resolver {
                 }
                 break;
             case BOOLEAN:
-                group.add(index, (Boolean) field.val);
+                group.add(index, (Boolean) val);
                 break;
             default:
                 throw new IOException("Not supported type " + type.asPrimitiveType().getPrimitiveTypeName());
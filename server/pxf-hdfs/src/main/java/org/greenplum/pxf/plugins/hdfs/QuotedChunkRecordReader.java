@@ -0,0 +1,470 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.RecordReader;
+import org.greenplum.pxf.api.io.BufferPool;
+import org.greenplum.pxf.api.model.GreenplumCSV;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * QuotedChunkRecordReader reads a split of a CSV file whose quoted fields may
+ * contain line feeds, in chunks, like {@link ChunkRecordReader}. A record
+ * belongs to the split that holds its first byte, so the splits of a file can
+ * be read by all segments in parallel.
+ * <p>
+ * Whether a line feed ends a record depends on the number of quotes before
+ * it, which a reader starting in the middle of the file does not know. The
+ * reader speculates instead: it scans the bytes that follow the start of the
+ * split once assuming it is outside of a quoted field and once assuming it is
+ * inside one, and drops an assumption as soon as the data contradicts the CSV
+ * syntax under it, for instance when a quote that would close a field is
+ * followed by a character that is neither a delimiter nor a line feed. This
+ * usually takes a few bytes. If both assumptions survive the first megabyte,
+ * a window that can be changed with the {@value #PROPERTY_KEY_SPECULATION_WINDOW}
+ * system property, the data is taken as unquoted if the window holds no quote
+ * at all. Otherwise, or if both assumptions are dropped, the quotes are
+ * counted from the start of the file.
+ * <p>
+ * The end of a split is found the same way as the start of the next one, so
+ * neighbouring splits always agree on the record that crosses their border.
+ * The speculation is then checked by the reader of the preceding split: it
+ * knows the quoting at the start of its split and follows it up to the end of
+ * the split, which must be the end of a record. Otherwise the file is not
+ * valid CSV, or not quoted the way the request says, and the read fails
+ * rather than returning broken records.
+ * <p>
+ * Compressed files are read as a whole by the reader of the first split.
+ */
+public class QuotedChunkRecordReader implements RecordReader<LongWritable, ChunkWritable> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuotedChunkRecordReader.class);
+
+    static final String PROPERTY_KEY_SPECULATION_WINDOW = "pxf.hdfs.csv.speculation.window";
+    private static final int DEFAULT_SPECULATION_WINDOW = 1024 * 1024;
+    private static final int SPECULATION_WINDOW = Integer.getInteger(
+            PROPERTY_KEY_SPECULATION_WINDOW, DEFAULT_SPECULATION_WINDOW);
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final Path file;
+    private final BufferPool chunkPool;
+    private final FSDataInputStream fileIn;
+    private final InputStream in;
+    private final QuoteState quoting;
+    private final long start;
+    private final boolean lastSplit;
+    private Decompressor decompressor;
+    private long end;
+    private long pos;
+    private byte lastByte = LF;
+
+    /**
+     * Constructs a QuotedChunkRecordReader instance.
+     *
+     * @param job       the job configuration
+     * @param split     contains the file name, begin byte of the split and the
+     *                  bytes length
+     * @param chunkPool the shared chunk pool, or a view of it bound to the
+     *                  memory account of the request
+     * @param csv       the quote, escape and delimiter characters of the file
+     * @throws IOException if an I/O error occurs when accessing the file
+     */
+    public QuotedChunkRecordReader(Configuration job, FileSplit split, BufferPool chunkPool, GreenplumCSV csv)
+            throws IOException {
+        if (chunkPool.getBufferSize() != ChunkRecordReader.CHUNK_POOL.getBufferSize()) {
+            throw new IllegalArgumentException("Chunk buffers must be " + ChunkRecordReader.CHUNK_POOL.getBufferSize() + " bytes long");
+        }
+        this.chunkPool = chunkPool;
+        this.quoting = new QuoteState(csv);
+        file = split.getPath();
+        FileSystem fs = file.getFileSystem(job);
+        CompressionCodec codec = new CompressionCodecFactory(job).getCodec(file);
+
+        fileIn = fs.open(file, ChunkReader.DEFAULT_BUFFER_SIZE);
+        try {
+            if (codec != null) {
+                // compressed data cannot be entered in the middle, the first split reads all of it
+                start = split.getStart();
+                end = (start == 0) ? Long.MAX_VALUE : start;
+                lastSplit = true;
+                if (start == 0) {
+                    decompressor = CodecPool.getDecompressor(codec);
+                    in = codec.createInputStream(fileIn, decompressor);
+                } else {
+                    in = fileIn;
+                }
+            } else {
+                long fileLength = fs.getFileStatus(file).getLen();
+                long splitEnd = split.getStart() + split.getLength();
+                start = recordStart(fileIn, split.getStart(), fileLength, quoting);
+                end = Math.max(start, recordStart(fileIn, splitEnd, fileLength, quoting));
+                lastSplit = (end == fileLength);
+                fileIn.seek(start);
+                in = fileIn;
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        pos = start;
+    }
+
+    /**
+     * Returns the position of the first record that starts at or after the
+     * given position, or the length of the file if there is no such record.
+     *
+     * @param in       the file to scan
+     * @param position the position to start from
+     * @param length   the length of the file
+     * @param quoting  the quoting of the file, its state is not changed
+     * @return the start of the next record
+     * @throws IOException if the file cannot be read
+     */
+    static long recordStart(FSDataInputStream in, long position, long length, QuoteState quoting)
+            throws IOException {
+        if (position <= 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return length;
+        }
+        // speculate on the quoting of the byte before the position, a record starts after a line feed
+        List<QuoteState> candidates = quoting.speculate();
+        long windowEnd = position - 1 + SPECULATION_WINDOW;
+        boolean quoteSeen = false;
+        byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+        long offset = position - 1;
+        while (offset < length) {
+            int n = in.read(offset, buffer, 0, (int) Math.min(buffer.length, length - offset));
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                quoteSeen |= (buffer[i] == quoting.quote);
+                for (int c = candidates.size() - 1; c >= 0; c--) {
+                    QuoteState candidate = candidates.get(c);
+                    candidate.update(buffer[i]);
+                    if (!candidate.consistent) {
+                        candidates.remove(c);
+                    } else if (candidate.atRecordStart && candidate.recordStart < 0) {
+                        candidate.recordStart = offset + i + 1;
+                    }
+                }
+                if (candidates.isEmpty()) {
+                    LOG.debug("No quoting fits the data after offset {} of {}, counting quotes from the start of the file", position, in);
+                    return countedRecordStart(in, position, length, quoting);
+                }
+                if (agree(candidates) && candidates.get(0).recordStart >= 0) {
+                    return candidates.get(0).recordStart;
+                }
+            }
+            offset += n;
+            if (offset >= windowEnd && !agree(candidates)) {
+                if (!quoteSeen) {
+                    // a quoted field would have to be longer than the window, keep the unquoted candidate
+                    candidates.subList(1, candidates.size()).clear();
+                    continue;
+                }
+                LOG.debug("Quoting after offset {} of {} is ambiguous, counting quotes from the start of the file", position, in);
+                return countedRecordStart(in, position, length, quoting);
+            }
+        }
+        // the end of the file was reached, a quoting that found no record start leaves the file quoted
+        if (agree(candidates) || !quoteSeen) {
+            QuoteState candidate = candidates.get(0);
+            return (candidate.recordStart >= 0) ? candidate.recordStart : length;
+        }
+        return countedRecordStart(in, position, length, quoting);
+    }
+
+    /*
+     * Returns the start of the first record at or after the given position,
+     * following the quotes from the start of the file.
+     */
+    private static long countedRecordStart(FSDataInputStream in, long position, long length, QuoteState quoting)
+            throws IOException {
+        QuoteState state = quoting.copy();
+        byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+        long offset = 0;
+        while (offset < length) {
+            int n = in.read(offset, buffer, 0, (int) Math.min(buffer.length, length - offset));
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                state.update(buffer[i]);
+                if (state.atRecordStart && offset + i >= position - 1) {
+                    return offset + i + 1;
+                }
+            }
+            offset += n;
+        }
+        return length;
+    }
+
+    /*
+     * True if the remaining candidates cannot be told apart anymore.
+     */
+    private static boolean agree(List<QuoteState> candidates) {
+        if (candidates.isEmpty()) {
+            return false;
+        }
+        QuoteState first = candidates.get(0);
+        for (QuoteState candidate : candidates) {
+            if (!candidate.sameAs(first)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public LongWritable createKey() {
+        return new LongWritable();
+    }
+
+    @Override
+    public ChunkWritable createValue() {
+        return new ChunkWritable();
+    }
+
+    /**
+     * Fetches the next chunk of the split into a pooled buffer. The chunks of
+     * a split are not aligned on records, but the split as a whole holds
+     * complete records. The last chunk of the file is terminated with a LF if
+     * the file does not end with one.
+     *
+     * @param key   - output parameter, the position of the chunk in the file
+     * @param value - output parameter, the chunk
+     * @return false when the end of the split was reached
+     * @throws IOException if the file cannot be read, or if the end of the
+     *                     split is not the end of a record
+     */
+    @Override
+    public synchronized boolean next(LongWritable key, ChunkWritable value) throws IOException {
+        if (pos >= end) {
+            return false;
+        }
+        key.set(pos);
+        int limit = (int) Math.min(ChunkRecordReader.CHUNK_SIZE, end - pos);
+        byte[] chunk = chunkPool.take();
+        int length = 0;
+        boolean eof = false;
+        try {
+            while (length < limit) {
+                int n = in.read(chunk, length, limit - length);
+                if (n < 0) {
+                    eof = true;
+                    break;
+                }
+                length += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            chunkPool.release(chunk);
+            throw e;
+        }
+        quoting.update(chunk, 0, length);
+        pos += length;
+        if (length > 0) {
+            lastByte = chunk[length - 1];
+        }
+        if (eof) {
+            end = pos;
+        } else if (pos == end && !lastSplit && !quoting.atRecordStart) {
+            chunkPool.release(chunk);
+            throw new IOException(String.format("Offset %d of %s does not start a record under the quoting of " +
+                    "the data before it, the file cannot be read in parallel. Check the QUOTE, ESCAPE and " +
+                    "DELIMITER options or use a text:multi profile", end, file));
+        }
+        if ((eof || (pos == end && lastSplit)) && lastByte != LF) {
+            // in case the last character of the file is not a linefeed
+            chunk[length++] = LF;
+            lastByte = LF;
+        }
+        if (length == 0) {
+            chunkPool.release(chunk);
+            return false;
+        }
+        value.set(chunk, length, chunkPool);
+        return true;
+    }
+
+    @Override
+    public synchronized long getPos() {
+        return pos;
+    }
+
+    @Override
+    public synchronized float getProgress() {
+        return (start == end) ? 0.0f : Math.min(1.0f, (pos - start) / (float) (end - start));
+    }
+
+    /**
+     * Closes the input stream.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (in != null) {
+                in.close();
+            } else {
+                fileIn.close();
+            }
+        } finally {
+            if (decompressor != null) {
+                CodecPool.returnDecompressor(decompressor);
+                decompressor = null;
+            }
+        }
+    }
+
+    /**
+     * Follows the quoting of CSV data byte by byte, the way Greenplum splits
+     * CSV data into records: a quote opens or closes a quoted field, an escape
+     * character inside a quoted field takes the following quote or escape
+     * character literally, and a line feed outside of a quoted field ends a
+     * record. It also checks that quotes only open at the start of a field
+     * and only close at its end.
+     */
+    static final class QuoteState {
+        private final byte quote;
+        private final byte escape;
+        private final byte delimiter;
+
+        private boolean inQuote;
+        /* the previous byte was an escape character inside a quoted field */
+        private boolean escaped;
+        /* the previous byte closed a quoted field */
+        private boolean closed;
+        private byte previous;
+        private boolean previousKnown;
+
+        /* false once a quote is found where the CSV syntax does not allow it */
+        boolean consistent = true;
+        /* the last byte ended a record */
+        boolean atRecordStart;
+        /* the start of the first record found while speculating, -1 if none was found yet */
+        long recordStart = -1;
+
+        QuoteState(GreenplumCSV csv) {
+            this((byte) csv.getQuote(), (byte) csv.getEscape(),
+                    (byte) (csv.getDelimiter() == null ? ',' : csv.getDelimiter()));
+        }
+
+        QuoteState(byte quote, byte escape, byte delimiter) {
+            this.quote = quote;
+            this.escape = escape;
+            this.delimiter = delimiter;
+        }
+
+        /*
+         * Returns a fresh state outside of any quoted field.
+         */
+        QuoteState copy() {
+            return new QuoteState(quote, escape, delimiter);
+        }
+
+        /*
+         * Returns fresh states for every quoting the data may be in.
+         */
+        List<QuoteState> speculate() {
+            List<QuoteState> states = new ArrayList<>(3);
+            states.add(copy());
+            QuoteState quoted = copy();
+            quoted.inQuote = true;
+            states.add(quoted);
+            if (escape != quote) {
+                QuoteState escapedInQuote = copy();
+                escapedInQuote.inQuote = true;
+                escapedInQuote.escaped = true;
+                states.add(escapedInQuote);
+            }
+            return states;
+        }
+
+        boolean sameAs(QuoteState other) {
+            return inQuote == other.inQuote && escaped == other.escaped
+                    && closed == other.closed && recordStart == other.recordStart;
+        }
+
+        void update(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                update(bytes[i]);
+            }
+        }
+
+        void update(byte b) {
+            atRecordStart = false;
+            if (closed) {
+                closed = false;
+                if (b != delimiter && b != LF && b != CR && b != quote) {
+                    consistent = false;
+                }
+            }
+            if (escaped) {
+                escaped = false;
+                if (b == quote || b == escape) {
+                    setPrevious(b);
+                    return;
+                }
+            }
+            if (inQuote) {
+                if (b == quote) {
+                    inQuote = false;
+                    closed = true;
+                } else if (b == escape) {
+                    escaped = true;
+                }
+            } else if (b == quote) {
+                if (previousKnown && previous != delimiter && previous != LF && previous != CR && previous != quote) {
+                    consistent = false;
+                }
+                inQuote = true;
+            } else if (b == LF) {
+                atRecordStart = true;
+            }
+            setPrevious(b);
+        }
+
+        private void setPrevious(byte b) {
+            previous = b;
+            previousKnown = true;
+        }
+    }
+}
@@ -34,6 +34,7 @@ import java.util.Queue;
  * A (atomic) PXF Accessor for reading \n delimited files with quoted
  * field delimiter, line delimiter, and quotes. This accessor supports
  * multi-line records, that are read from a single source (non-parallel).
+ * {@link SplittableQuotedLineBreakAccessor} reads such files in parallel.
  */
 public class QuotedLineBreakAccessor extends HdfsAtomicDataAccessor {
     private boolean fileAsRow;
@@ -0,0 +1,56 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.greenplum.pxf.api.model.RequestContext;
+
+import java.io.IOException;
+
+/**
+ * A PXF Accessor for reading delimited records with quoted field delimiters,
+ * line delimiters and quotes, like {@link QuotedLineBreakAccessor}, but from
+ * all the splits of a file in parallel. Each split is read in chunks by a
+ * {@link QuotedChunkRecordReader}, which finds the records that start in it.
+ * <p>
+ * The QUOTE, ESCAPE and DELIMITER options of the request must match the file.
+ * Reading whole files as a single row (FILE_AS_ROW) is not supported.
+ */
+public class SplittableQuotedLineBreakAccessor extends LineBreakAccessor {
+
+    @Override
+    public void initialize(RequestContext requestContext) {
+        super.initialize(requestContext);
+
+        if (StringUtils.equalsIgnoreCase("true", context.getOption("FILE_AS_ROW"))) {
+            throw new IllegalArgumentException("the FILE_AS_ROW property is not supported " +
+                    "when files are read in parallel, use a text:multi profile instead");
+        }
+    }
+
+    @Override
+    protected Object getReader(JobConf jobConf, InputSplit split)
+            throws IOException {
+        return new QuotedChunkRecordReader(jobConf, (FileSplit) split, getChunkPool(), context.getGreenplumCSV());
+    }
+}
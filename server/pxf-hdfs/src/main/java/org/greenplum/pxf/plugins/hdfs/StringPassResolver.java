@@ -22,6 +22,8 @@ package org.greenplum.pxf.plugins.hdfs;
 
 import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.PassThroughResolver;
+import org.greenplum.pxf.api.io.BufferWritable;
 import org.greenplum.pxf.api.model.BasePlugin;
 import org.greenplum.pxf.api.model.Resolver;
 
@@ -34,9 +36,14 @@ import static org.greenplum.pxf.api.io.DataType.VARCHAR;
 /**
  * StringPassResolver handles "deserialization" and serialization of
  * String records. StringPassResolver implements {@link Resolver}
- * interface. Returns strings as-is.
+ * interface. Returns strings as-is. As records are written unchanged,
+ * TEXT data can bypass it and go to the accessor in blocks.
+ * <p>
+ * Chunks read into pooled buffers are passed on as a {@link BufferWritable}
+ * that wraps the buffer, so that the buffer can be written to the response
+ * as is and returned to its pool afterwards.
  */
-public class StringPassResolver extends BasePlugin implements Resolver {
+public class StringPassResolver extends BasePlugin implements Resolver, PassThroughResolver {
     // for write
     private OneRow oneRow = new OneRow();
 
@@ -58,7 +65,12 @@ public class StringPassResolver extends BasePlugin implements Resolver {
         List<OneField> record = new LinkedList<>();
         Object data = onerow.getData();
         if (data instanceof ChunkWritable) {
-            record.add(new OneField(BYTEA.getOID(), ((ChunkWritable) data).box));
+            ChunkWritable chunk = (ChunkWritable) data;
+            if (chunk.pool != null) {
+                record.add(new OneField(BYTEA.getOID(), new BufferWritable(chunk.box, chunk.length, chunk.pool)));
+            } else {
+                record.add(new OneField(BYTEA.getOID(), chunk.box));
+            }
         } else {
             record.add(new OneField(VARCHAR.getOID(), data.toString()));
         }
@@ -31,14 +31,13 @@ import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.io.DataType;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.utilities.FragmentMetadata;
+import org.greenplum.pxf.api.utilities.FragmentMetadataCodec;
 import org.greenplum.pxf.api.utilities.Utilities;
 import org.greenplum.pxf.plugins.hdfs.CodecFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.List;
 
 /**
@@ -75,7 +74,7 @@ public class HdfsUtilities {
 
     /**
      * Prepares byte serialization of a file split information (start, length,
-     * hosts) using {@link ObjectOutputStream}.
+     * hosts) using {@link FragmentMetadataCodec}.
      *
      * @param fsp file split to be serialized
      * @return byte serialization of fsp
@@ -90,7 +89,7 @@ public class HdfsUtilities {
 
     /**
      * Prepares byte serialization of a file split information (start, length,
-     * hosts) using {@link ObjectOutputStream}.
+     * hosts) using {@link FragmentMetadataCodec}.
      *
      * @param start     the file split start
      * @param length    the file split length
@@ -102,8 +101,7 @@ public class HdfsUtilities {
     public static byte[] prepareFragmentMetadata(long start, long length, String[] locations)
             throws IOException {
 
-        ByteArrayOutputStream byteArrayStream = writeBaseFragmentInfo(start, length, locations);
-        return byteArrayStream.toByteArray();
+        return FragmentMetadataCodec.encodeFileSplit(start, length, locations);
     }
 
     /**
@@ -166,24 +164,4 @@ public class HdfsUtilities {
         }
         return buff.toString();
     }
-
-    /**
-     * Serializes fragment metadata into a ByteArrayOutputStream
-     *
-     * @param start     the fragment metadata start
-     * @param length    the fragment metadata length
-     * @param locations the data node locations for this split
-     * @return byte serialization of the file split
-     * @throws IOException if I/O errors occur while writing to the underlying
-     *                     stream
-     */
-    private static ByteArrayOutputStream writeBaseFragmentInfo(long start, long length, String[] locations)
-            throws IOException {
-        ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
-        ObjectOutputStream objectStream = new ObjectOutputStream(byteArrayStream);
-        objectStream.writeLong(start);
-        objectStream.writeLong(length);
-        objectStream.writeObject(locations);
-        return byteArrayStream;
-    }
 }
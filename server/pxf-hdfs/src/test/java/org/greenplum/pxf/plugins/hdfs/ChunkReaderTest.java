@@ -22,6 +22,9 @@ package org.greenplum.pxf.plugins.hdfs;
 
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.hdfs.DFSInputStream;
+import org.greenplum.pxf.api.io.BufferPool;
+
+import java.io.ByteArrayInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +36,9 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -122,18 +128,33 @@ public class ChunkReaderTest {
 		assertEquals("OneLine\nTwoLine\n", new String(out.box) );
     }
 
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
+	/*
+	 * Read chunks into pooled buffers, after a line was read
+	 */
+    @Test
+    public void readPooledChunk() throws Exception {
+		BufferPool pool = new BufferPool(11, 2);
+		reader = new ChunkReader(new ByteArrayInputStream("OneLine\nTwoLine\nThreeLine\n".getBytes()), pool);
 
+		ChunkWritable out = new ChunkWritable();
+		assertEquals("OneLine\n".length(), reader.readLine(out, 1024));
+		assertNull(out.pool);
+
+		// the rest of the line buffer is used first
+		assertEquals(10, reader.readChunk(out, 10));
+		assertSame(pool, out.pool);
+		assertEquals(11, out.box.length);
+		assertEquals("TwoLine\nTh", new String(out.box, 0, out.length));
+
+		byte[] first = out.box;
+		assertEquals(8, reader.readChunk(out, 10));
+		assertEquals("reeLine\n", new String(out.box, 0, out.length));
+		assertTrue(first != out.box);
+
+		// nothing left, the buffer goes back to the pool
+		pool.release(first);
+		assertEquals(0, reader.readChunk(out, 10));
+		assertTrue(reader.isEof());
+		assertEquals(1, pool.size());
+    }
+}
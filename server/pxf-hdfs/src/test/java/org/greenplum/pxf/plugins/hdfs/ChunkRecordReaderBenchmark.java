@@ -0,0 +1,136 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.LineRecordReader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the lines per second read from a local file, which is not read
+ * with a DFSInputStream, by the two paths of {@link LineBreakAccessor}:
+ * <ul>
+ * <li>line: LineRecordReader, then the line is turned into a String by
+ * StringPassResolver and encoded again into a Text by the output builder,
+ * which is what non-HDFS file systems used before.</li>
+ * <li>chunk: ChunkRecordReader, whose chunks are passed through unchanged.</li>
+ * </ul>
+ * Run with {@code java -cp <test classpath> org.greenplum.pxf.plugins.hdfs.ChunkRecordReaderBenchmark [MB] [iterations]}
+ */
+public class ChunkRecordReaderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File file = File.createTempFile("pxf-chunk-benchmark", ".csv");
+        file.deleteOnExit();
+        long lines = writeFile(file, megabytes * 1024L * 1024);
+        Configuration configuration = new Configuration();
+        FileSplit split = new FileSplit(new Path(file.toURI()), 0, file.length(), (String[]) null);
+
+        run("line", lines, file.length(), iterations, () -> readLines(configuration, split));
+        run("chunk", lines, file.length(), iterations, () -> readChunks(configuration, split));
+    }
+
+    private static void run(String name, long lines, long bytes, int iterations, Reader reader) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            reader.read();
+        }
+
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += reader.read();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / iterations;
+
+        System.out.printf("%-6s %d lines: %12.0f lines/s, %8.1f MB/s (checksum %d)%n",
+                name, lines, lines / seconds, bytes / seconds / 1024 / 1024, checksum);
+    }
+
+    /**
+     * The path of non-HDFS file systems before they used ChunkRecordReader.
+     */
+    private static long readLines(Configuration configuration, FileSplit split) throws IOException {
+        LineRecordReader reader = new LineRecordReader(configuration, split);
+        long total = 0;
+        try {
+            LongWritable key = reader.createKey();
+            Text value = reader.createValue();
+            while (reader.next(key, value)) {
+                // StringPassResolver.getFields and BridgeOutputBuilder.fillText
+                String line = value.toString();
+                Text text = new Text(line + "\n");
+                total += text.getLength();
+            }
+        } finally {
+            reader.close();
+        }
+        return total;
+    }
+
+    private static long readChunks(Configuration configuration, FileSplit split) throws IOException {
+        ChunkRecordReader reader = new ChunkRecordReader(configuration, split);
+        long total = 0;
+        try {
+            LongWritable key = reader.createKey();
+            ChunkWritable value = reader.createValue();
+            while (reader.next(key, value)) {
+                total += value.length;
+            }
+        } finally {
+            reader.close();
+        }
+        return total;
+    }
+
+    private static long writeFile(File file, long size) throws IOException {
+        long lines = 0;
+        long written = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024)) {
+            while (written < size) {
+                byte[] line = (lines + ",customer " + (lines % 9973) + ",2019-06-01 12:00:00,"
+                        + (lines * 31 % 100000) / 100.0 + ",some free text describing the order\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                written += line.length;
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private interface Reader {
+        long read() throws IOException;
+    }
+}
@@ -0,0 +1,142 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reads files from the local file system, which does not use a
+ * DFSInputStream, through ChunkRecordReader.
+ */
+public class ChunkRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration configuration = new Configuration();
+
+    @Test
+    public void readLocalFileAcrossSplits() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() < 5 * 1024 * 1024; i++) {
+            content.append(i).append(",some text for line ").append(i).append('\n');
+        }
+        File file = write("lines.txt", content.toString().getBytes(StandardCharsets.UTF_8));
+
+        // splits are not aligned on lines, every line must be read exactly once
+        long length = file.length();
+        long splitSize = length / 3 + 7;
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (long start = 0; start < length; start += splitSize) {
+            read(new FileSplit(new Path(file.toURI()), start, Math.min(splitSize, length - start), (String[]) null), result);
+        }
+
+        assertEquals(content.toString(), new String(result.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readAddsMissingLinefeedAtEndOfFile() throws IOException {
+        File file = write("nolf.txt", "a,1\nb,2".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        read(new FileSplit(new Path(file.toURI()), 0, file.length(), (String[]) null), result);
+
+        assertEquals("a,1\nb,2\n", new String(result.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readCarriageReturnOnlyFileAsSingleLine() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i).append(",old mac line\r");
+        }
+        File file = write("cr.txt", content.toString().getBytes(StandardCharsets.UTF_8));
+
+        // lines end at LF only: the first split reads the whole file, the others nothing
+        long length = file.length();
+        long splitSize = length / 3 + 7;
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        read(new FileSplit(new Path(file.toURI()), 0, splitSize, (String[]) null), first);
+        ByteArrayOutputStream others = new ByteArrayOutputStream();
+        for (long start = splitSize; start < length; start += splitSize) {
+            read(new FileSplit(new Path(file.toURI()), start, Math.min(splitSize, length - start), (String[]) null), others);
+        }
+
+        assertEquals(content + "\n", new String(first.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(0, others.size());
+    }
+
+    @Test
+    public void readCompressedFile() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            content.append(i).append(",compressed line\n");
+        }
+        content.append("last line without linefeed");
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        File file = write("lines.txt.gz", compressed.toByteArray());
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        read(new FileSplit(new Path(file.toURI()), 0, file.length(), (String[]) null), result);
+
+        assertEquals(content + "\n", new String(result.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private void read(FileSplit split, OutputStream output) throws IOException {
+        ChunkRecordReader reader = new ChunkRecordReader(configuration, split);
+        try {
+            LongWritable key = reader.createKey();
+            ChunkWritable value = reader.createValue();
+            while (reader.next(key, value)) {
+                output.write(value.box, 0, value.length);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+}
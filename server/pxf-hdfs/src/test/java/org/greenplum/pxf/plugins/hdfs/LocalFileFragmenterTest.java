@@ -0,0 +1,126 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.greenplum.pxf.api.model.Fragment;
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.FragmentMetadata;
+import org.greenplum.pxf.api.utilities.Utilities;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LocalFileFragmenterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void splitsAreAlignedOnLines() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i).append(",line of variable length ").append(i * 7).append('\n');
+        }
+        File file = write("lines.csv", content.toString().getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        List<Fragment> fragments = getFragments(file.getPath(), 1000);
+
+        assertTrue(fragments.size() > 10);
+        long expectedStart = 0;
+        for (Fragment fragment : fragments) {
+            FragmentMetadata metadata = parseMetadata(fragment);
+            assertEquals(expectedStart, metadata.getStart());
+            long end = metadata.getStart() + metadata.getEnd();
+            assertEquals('\n', bytes[(int) end - 1]);
+            assertEquals(metadata.getEnd(), fragment.getLength());
+            expectedStart = end;
+        }
+        assertEquals(bytes.length, expectedStart);
+    }
+
+    @Test
+    public void compressedFileIsOneSplit() throws Exception {
+        File file = folder.newFile("lines.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < 1000; i++) {
+                out.write((i + ",compressed line\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        List<Fragment> fragments = getFragments(file.getPath(), 100);
+
+        assertEquals(1, fragments.size());
+        FragmentMetadata metadata = parseMetadata(fragments.get(0));
+        assertEquals(0, metadata.getStart());
+        assertEquals(file.length(), metadata.getEnd());
+    }
+
+    @Test
+    public void emptyFilesAreIgnored() throws Exception {
+        write("empty.csv", new byte[0]);
+        write("one.csv", "a,1\n".getBytes(StandardCharsets.UTF_8));
+
+        List<Fragment> fragments = getFragments(folder.getRoot().getPath(), 1000);
+
+        assertEquals(1, fragments.size());
+        assertTrue(fragments.get(0).getSourceName().endsWith("one.csv"));
+    }
+
+    private List<Fragment> getFragments(String path, long maxSplitSize) throws Exception {
+        RequestContext context = new RequestContext();
+        context.setConfig("default");
+        context.setUser("test-user");
+        context.setProfileScheme("localfile");
+        context.setDataSource(path);
+
+        LocalFileFragmenter fragmenter = new LocalFileFragmenter();
+        fragmenter.initialize(context);
+        fragmenter.jobConf.setLong(FileInputFormat.SPLIT_MAXSIZE, maxSplitSize);
+        return fragmenter.getFragments();
+    }
+
+    private FragmentMetadata parseMetadata(Fragment fragment) {
+        RequestContext context = new RequestContext();
+        context.setFragmentMetadata(fragment.getMetadata());
+        return Utilities.parseFragmentMetadata(context);
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,143 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class MappedChunkRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void nextLineStart() throws IOException {
+        File file = write("lines.txt", "ab\ncd\n\nef".getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertEquals(0, MappedChunkRecordReader.nextLineStart(channel, 0, 9));
+            assertEquals(3, MappedChunkRecordReader.nextLineStart(channel, 1, 9));
+            assertEquals(3, MappedChunkRecordReader.nextLineStart(channel, 3, 9));
+            assertEquals(6, MappedChunkRecordReader.nextLineStart(channel, 4, 9));
+            assertEquals(7, MappedChunkRecordReader.nextLineStart(channel, 7, 9));
+            assertEquals(9, MappedChunkRecordReader.nextLineStart(channel, 8, 9));
+        }
+    }
+
+    @Test
+    public void readAcrossUnalignedSplits() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() < 5 * 1024 * 1024; i++) {
+            content.append(i).append(",some text for line ").append(i).append('\n');
+        }
+        File file = write("lines.txt", content.toString().getBytes(StandardCharsets.UTF_8));
+
+        // every line must be read exactly once, whatever the split boundaries
+        long length = file.length();
+        for (long splitSize : new long[]{length / 3 + 7, 1000, length}) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            for (long start = 0; start < length; start += splitSize) {
+                read(new FileSplit(new Path(file.toURI()), start, Math.min(splitSize, length - start), (String[]) null), result);
+            }
+            assertEquals(content.toString(), new String(result.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void readAddsMissingLinefeedAtEndOfFile() throws IOException {
+        File file = write("nolf.txt", "a,1\nb,2".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        read(new FileSplit(new Path(file.toURI()), 0, 3, (String[]) null), result);
+        read(new FileSplit(new Path(file.toURI()), 3, file.length() - 3, (String[]) null), result);
+
+        assertEquals("a,1\nb,2\n", new String(result.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readSplitInsideLine() throws IOException {
+        File file = write("long.txt", "a very long line\nshort\n".getBytes(StandardCharsets.UTF_8));
+
+        MappedChunkRecordReader reader = new MappedChunkRecordReader(
+                new FileSplit(new Path(file.toURI()), 2, 5, (String[]) null));
+        try {
+            assertFalse(reader.next(reader.createKey(), reader.createValue()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void readIntoPooledChunks() throws IOException {
+        File file = write("lines.txt", "a,1\nb,2\n".getBytes(StandardCharsets.UTF_8));
+
+        MappedChunkRecordReader reader = new MappedChunkRecordReader(
+                new FileSplit(new Path(file.toURI()), 0, file.length(), (String[]) null));
+        try {
+            LongWritable key = reader.createKey();
+            ChunkWritable value = reader.createValue();
+            reader.next(key, value);
+            assertEquals(0, key.get());
+            assertEquals(8, value.length);
+            assertSame(ChunkRecordReader.CHUNK_POOL, value.pool);
+            assertFalse(reader.next(key, value));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void read(FileSplit split, OutputStream output) throws IOException {
+        MappedChunkRecordReader reader = new MappedChunkRecordReader(split);
+        try {
+            LongWritable key = reader.createKey();
+            ChunkWritable value = reader.createValue();
+            while (reader.next(key, value)) {
+                output.write(value.box, 0, value.length);
+                value.pool.release(value.box);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+}
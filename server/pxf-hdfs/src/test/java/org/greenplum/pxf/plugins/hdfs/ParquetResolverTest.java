@@ -21,6 +21,7 @@ import org.apache.parquet.schema.PrimitiveType;
 import org.apache.parquet.schema.Type;
 import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.io.ColumnBatch;
 import org.greenplum.pxf.api.io.DataType;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.utilities.ColumnDescriptor;
@@ -31,6 +32,7 @@ import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
@@ -168,6 +170,87 @@ public class ParquetResolverTest {
         }
     }
 
+    @Test
+    public void testSetFieldsForBatch_Primitive() throws IOException {
+        schema = getParquetSchemaForPrimitiveTypes(Type.Repetition.OPTIONAL, false);
+        // schema has changed, set metadata again
+        context.setMetadata(schema);
+        resolver.initialize(context);
+
+        // numeric and timestamp values are transferred as text
+        DataType[] types = {DataType.TEXT, DataType.TEXT, DataType.INTEGER, DataType.FLOAT8,
+                DataType.TEXT, DataType.TEXT, DataType.REAL, DataType.BIGINT, DataType.BOOLEAN,
+                DataType.SMALLINT, DataType.SMALLINT, DataType.TEXT, DataType.TEXT, DataType.BYTEA,
+                DataType.TEXT, DataType.TEXT};
+        ColumnBatch batch = new ColumnBatch(types.length, 2);
+        for (int i = 0; i < types.length; i++) {
+            batch.getColumn(i).setType(types[i]);
+        }
+        batch.reset(2);
+        setText(batch, 0, "row1");
+        setText(batch, 1, "s_6");
+        batch.getColumn(2).setLong(0, 1);
+        batch.getColumn(3).setDouble(0, 6.0d);
+        setText(batch, 4, "1.234560000000000000");
+        setText(batch, 5, localTimestampString);
+        batch.getColumn(6).setDouble(0, 7.7f);
+        batch.getColumn(7).setLong(0, 23456789L);
+        batch.getColumn(8).setLong(0, 0);
+        batch.getColumn(9).setLong(0, 1);
+        batch.getColumn(10).setLong(0, 10);
+        setText(batch, 11, "abcd");
+        setText(batch, 12, "abc");
+        batch.getColumn(13).copyBytes(0, new byte[]{(byte) 49}, 0, 1);
+        setText(batch, 14, "2013-07-13 21:00:05-07");
+        setText(batch, 15, "2013-07-14 16:45:05+12:45");
+        for (int i = 0; i < types.length; i++) {
+            batch.getColumn(i).setNull(1);
+        }
+
+        OneRow row = resolver.setFieldsForBatch(batch);
+        assertNotNull(row);
+        Object data = row.getData();
+        assertTrue(data instanceof List);
+        @SuppressWarnings("unchecked")
+        List<Group> groups = (List<Group>) data;
+        assertEquals(2, groups.size());
+        Group group = groups.get(0);
+
+        // assert column values
+        assertEquals("row1", group.getString(0, 0));
+        assertEquals("s_6", group.getString(1, 0));
+        assertEquals(1, group.getInteger(2, 0));
+        assertEquals(6.0d, group.getDouble(3, 0), 0d);
+        assertEquals(BigDecimal.valueOf(1234560000000000000L, 18),
+                DecimalUtils.binaryToDecimal(group.getBinary(4, 0), 19, 18));
+
+        NanoTime nanoTime = NanoTime.fromBinary(group.getInt96(5, 0));
+        assertEquals(2456488, nanoTime.getJulianDay()); // 14 Jul 2013 in Julian days
+        assertEquals((4 * 60 * 60 + 5L) * 1000 * 1000 * 1000, nanoTime.getTimeOfDayNanos()); // 04:00:05 time
+        assertEquals(7.7f, group.getFloat(6, 0), 0f);
+        assertEquals(23456789L, group.getLong(7, 0));
+        assertFalse(group.getBoolean(8, 0));
+        assertEquals(1, group.getInteger(9, 0));
+        assertEquals(10, group.getInteger(10, 0));
+        assertEquals("abcd", group.getString(11, 0));
+        assertEquals("abc", group.getString(12, 0));
+        assertArrayEquals(new byte[]{(byte) 49}, group.getBinary(13, 0).getBytes());
+
+        nanoTime = NanoTime.fromBinary(group.getInt96(14, 0));
+        assertEquals(2456488, nanoTime.getJulianDay()); // 14 Jul 2013 in Julian days
+        assertEquals((4 * 60 * 60 + 5L) * 1000 * 1000 * 1000, nanoTime.getTimeOfDayNanos()); // 04:00:05 time
+
+        nanoTime = NanoTime.fromBinary(group.getInt96(15, 0));
+        assertEquals(2456488, nanoTime.getJulianDay()); // 14 Jul 2013 in Julian days
+        assertEquals((4 * 60 * 60 + 5L) * 1000 * 1000 * 1000, nanoTime.getTimeOfDayNanos()); // 04:00:05 time
+
+        // assert value repetition count, the second row is all nulls
+        for (int i = 0; i < 16; i++) {
+            assertEquals(1, group.getFieldRepetitionCount(i));
+            assertEquals(0, groups.get(1).getFieldRepetitionCount(i));
+        }
+    }
+
     @Test
     public void testSetFields_Primitive_Nulls() throws IOException {
         schema = getParquetSchemaForPrimitiveTypes(Type.Repetition.OPTIONAL, false);
@@ -509,6 +592,11 @@ public class ParquetResolverTest {
         }
     }
 
+    private void setText(ColumnBatch batch, int column, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        batch.getColumn(column).copyBytes(0, bytes, 0, bytes.length);
+    }
+
     private MessageType getParquetSchemaForPrimitiveTypes(Type.Repetition repetition, boolean readCase) {
         List<Type> fields = new ArrayList<>();
 
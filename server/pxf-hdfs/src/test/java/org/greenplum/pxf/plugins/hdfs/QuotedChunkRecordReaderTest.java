@@ -0,0 +1,172 @@
+package org.greenplum.pxf.plugins.hdfs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.greenplum.pxf.api.model.GreenplumCSV;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads CSV files with quoted line feeds from the local file system through
+ * QuotedChunkRecordReader, cutting them into splits at arbitrary offsets.
+ */
+public class QuotedChunkRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration configuration = new Configuration();
+
+    @Test
+    public void readQuotedLineFeedsAcrossSplits() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append(i).append(",\"line one\nline \"\"two\"\"\n,three\",")
+                    .append("plain ").append(i).append(",\"\"\n");
+        }
+        File file = write("multi.csv", content.toString());
+
+        for (int splitSize : new int[]{1, 2, 3, 7, 29, 100, 4096}) {
+            assertEquals("split size " + splitSize, content.toString(), readSplits(file, splitSize, new GreenplumCSV()));
+        }
+    }
+
+    @Test
+    public void readWithEscapeCharacter() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append(i).append("|'it\\'s\n| quoted\\\\'|plain\n");
+        }
+        File file = write("escape.csv", content.toString());
+        GreenplumCSV csv = new GreenplumCSV().withQuoteChar('\'').withEscapeChar('\\').withDelimiter('|');
+
+        for (int splitSize : new int[]{1, 5, 17, 250}) {
+            assertEquals("split size " + splitSize, content.toString(), readSplits(file, splitSize, csv));
+        }
+    }
+
+    @Test
+    public void readAmbiguousQuotingCountsFromStartOfFile() throws IOException {
+        // every quote is next to a delimiter or a line feed, the data fits both quotings
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("\"\n\",\"\",\"\"\n");
+        }
+        File file = write("ambiguous.csv", content.toString());
+
+        for (int splitSize : new int[]{1, 4, 11, 64}) {
+            assertEquals("split size " + splitSize, content.toString(), readSplits(file, splitSize, new GreenplumCSV()));
+        }
+    }
+
+    @Test
+    public void readAddsMissingLinefeedAtEndOfFile() throws IOException {
+        File file = write("nolf.csv", "a,\"1\n2\"\nb,\"3\"");
+
+        assertEquals("a,\"1\n2\"\nb,\"3\"\n", readSplits(file, 5, new GreenplumCSV()));
+    }
+
+    @Test
+    public void readCompressedFileInFirstSplit() throws IOException {
+        String content = "a,\"1\n2\"\nb,3\n";
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        File file = folder.newFile("multi.csv.gz");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(compressed.toByteArray());
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        read(new FileSplit(new Path(file.toURI()), 0, 10, (String[]) null), new GreenplumCSV(), result);
+        assertEquals(content, new String(result.toByteArray(), StandardCharsets.UTF_8));
+
+        result.reset();
+        read(new FileSplit(new Path(file.toURI()), 10, file.length() - 10, (String[]) null), new GreenplumCSV(), result);
+        assertEquals(0, result.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void readFailsWhenSpeculationIsWrong() throws IOException {
+        // counted from the start, the whole file is one record, but the second split looks like it starts one
+        File file = write("invalid.csv", "x,\"\n1,\"a\",2\n\"\n");
+
+        readSplits(file, 4, new GreenplumCSV());
+    }
+
+    /*
+     * Reads the file in splits of the given size, checking that every split
+     * holds complete records, and returns the concatenated splits.
+     */
+    private String readSplits(File file, int splitSize, GreenplumCSV csv) throws IOException {
+        long length = file.length();
+        StringBuilder result = new StringBuilder();
+        for (long start = 0; start < length; start += splitSize) {
+            ByteArrayOutputStream split = new ByteArrayOutputStream();
+            read(new FileSplit(new Path(file.toURI()), start, Math.min(splitSize, length - start), (String[]) null), csv, split);
+            QuotedChunkRecordReader.QuoteState quoting = new QuotedChunkRecordReader.QuoteState(csv);
+            quoting.update(split.toByteArray(), 0, split.size());
+            String records = new String(split.toByteArray(), StandardCharsets.UTF_8);
+            assertTrue("split at " + start + " does not end with a record: " + records,
+                    records.isEmpty() || quoting.atRecordStart);
+            result.append(records);
+        }
+        return result.toString();
+    }
+
+    private void read(FileSplit split, GreenplumCSV csv, OutputStream output) throws IOException {
+        QuotedChunkRecordReader reader = new QuotedChunkRecordReader(configuration, split, ChunkRecordReader.CHUNK_POOL, csv);
+        try {
+            LongWritable key = reader.createKey();
+            ChunkWritable value = reader.createValue();
+            while (reader.next(key, value)) {
+                output.write(value.box, 0, value.length);
+                value.pool.release(value.box);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
@@ -21,6 +21,8 @@ package org.greenplum.pxf.plugins.hdfs;
 
 import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.io.BufferPool;
+import org.greenplum.pxf.api.io.BufferWritable;
 import org.greenplum.pxf.api.io.DataType;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.junit.Test;
@@ -32,6 +34,8 @@ import java.util.List;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class StringPassResolverTest {
     RequestContext context;
@@ -84,6 +88,30 @@ public class StringPassResolverTest {
         assertNull(oneRow);
     }
 
+    @Test
+    /*
+     * Test the getFields method: a pooled chunk is passed on without copying
+     */
+    public void testGetFieldsPooledChunk() throws Exception {
+        StringPassResolver resolver = buildResolver();
+        BufferPool pool = new BufferPool(8, 1);
+        byte[] buffer = pool.take();
+        System.arraycopy("ab\ncd\n".getBytes(), 0, buffer, 0, 6);
+
+        ChunkWritable chunk = new ChunkWritable();
+        chunk.set(buffer, 6, pool);
+        List<OneField> fields = resolver.getFields(new OneRow(null, chunk));
+
+        assertEquals(1, fields.size());
+        assertEquals(DataType.BYTEA.getOID(), fields.get(0).type);
+        assertTrue(fields.get(0).val instanceof BufferWritable);
+        BufferWritable writable = (BufferWritable) fields.get(0).val;
+        assertArrayEquals("ab\ncd\n".getBytes(), writable.getBytes());
+
+        writable.release();
+        assertSame(buffer, pool.take());
+    }
+
     /*
      * helpers functions
      */
@@ -111,4 +111,16 @@ public class HdfsUtilitiesTest {
         assertEquals(fileSplit.getLength(), 100);
         assertEquals(fileSplit.getPath().toString(), "/abc/path/to/data/source");
     }
+
+    @Test
+    public void testParseFileSplitFromPreparedMetadata() throws Exception {
+        RequestContext context = new RequestContext();
+        context.setDataSource("/abc/path/to/data/source");
+        context.setFragmentMetadata(HdfsUtilities.prepareFragmentMetadata(10, 100, new String[]{"hostname"}));
+
+        FileSplit fileSplit = HdfsUtilities.parseFileSplit(context);
+        assertEquals(10, fileSplit.getStart());
+        assertEquals(100, fileSplit.getLength());
+        assertEquals("/abc/path/to/data/source", fileSplit.getPath().toString());
+    }
 }
@@ -25,10 +25,12 @@ import org.apache.hadoop.hive.common.JavaUtils;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.IMetaStoreClient;
 import org.apache.hadoop.hive.metastore.MetaStoreUtils;
+import org.apache.hadoop.hive.metastore.TableType;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.Partition;
 import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
 import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
 import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputFormat;
@@ -53,6 +55,10 @@ import org.greenplum.pxf.plugins.hive.utilities.ProfileFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -131,6 +137,41 @@ public class HiveDataFragmenter extends HdfsDataFragmenter {
         return fragments;
     }
 
+    /**
+     * Returns the version of the Hive table, derived from the DDL times of the
+     * table and its partitions. For external tables, whose files may change
+     * without Hive knowing, the listings of the table and partition locations
+     * are included as well.
+     * <p>
+     * The version is taken for every request, including those answered from
+     * the source cache, so the schema of the table is verified here as well.
+     */
+    @Override
+    public String getSourceVersion() throws Exception {
+        Metadata.Item tblDesc = hiveClientWrapper.extractTableFromName(context.getDataSource());
+        Table tbl = hiveClientWrapper.getHiveTable(client, tblDesc);
+        verifySchema(tbl);
+        boolean isExternal = TableType.EXTERNAL_TABLE.name().equals(tbl.getTableType());
+
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        updateSourceVersion(digest, tbl.getParameters(), tbl.getSd(), isExternal);
+        for (Partition partition : client.listPartitions(tblDesc.getPath(), tblDesc.getName(), ALL_PARTS)) {
+            digest.update(String.valueOf(partition.getValues()).getBytes(StandardCharsets.UTF_8));
+            updateSourceVersion(digest, partition.getParameters(), partition.getSd(), isExternal);
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    private void updateSourceVersion(MessageDigest digest, Map<String, String> parameters,
+                                     StorageDescriptor descriptor, boolean listLocation) throws IOException {
+        String ddlTime = parameters != null ? parameters.get(hive_metastoreConstants.DDL_TIME) : null;
+        String location = descriptor != null ? descriptor.getLocation() : null;
+        digest.update((ddlTime + ":" + location + "\n").getBytes(StandardCharsets.UTF_8));
+        if (listLocation && location != null) {
+            updateSourceVersion(digest, new Path(location));
+        }
+    }
+
     /**
      * Creates the partition InputFormat.
      *
@@ -326,6 +367,7 @@ public class HiveDataFragmenter extends HdfsDataFragmenter {
             byte[] locationInfo = HdfsUtilities.prepareFragmentMetadata(fsp);
             Fragment fragment = new Fragment(filepath, hosts, locationInfo,
                     hiveClientWrapper.makeUserData(fragmenterForProfile, tablePartition, filterInFragmenter), profile);
+            fragment.setLength(fsp.getLength());
             fragments.add(fragment);
         }
     }
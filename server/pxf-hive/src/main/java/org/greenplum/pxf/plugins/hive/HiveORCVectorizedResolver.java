@@ -52,21 +52,24 @@ import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.io.Text;
 import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.OneRow;
-import org.greenplum.pxf.api.ReadVectorizedResolver;
+import org.greenplum.pxf.api.ReadColumnarResolver;
 import org.greenplum.pxf.api.UnsupportedTypeException;
+import org.greenplum.pxf.api.io.ColumnBatch;
 import org.greenplum.pxf.api.io.DataType;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
 
 /**
- * Class which implements resolving a batch of records at once
+ * Class which implements resolving a batch of records at once, either into
+ * rows of fields or straight into a {@link ColumnBatch}
  */
-public class HiveORCVectorizedResolver extends HiveResolver implements ReadVectorizedResolver {
+public class HiveORCVectorizedResolver extends HiveResolver implements ReadColumnarResolver {
 
     private static final Log LOG = LogFactory.getLog(HiveORCVectorizedResolver.class);
 
     private List<List<OneField>> resolvedBatch;
+    private ColumnBatch columnBatch;
     private StructObjectInspector soi;
 
     @Override
@@ -117,6 +120,123 @@ public class HiveORCVectorizedResolver extends HiveResolver implements ReadVecto
         return resolvedBatch;
     }
 
+    /**
+     * Resolves the batch into columns. Primitive values are copied into
+     * primitive arrays, strings and binaries are referenced as slices of the
+     * ORC column vectors. The returned batch is reused by the next call.
+     */
+    @Override
+    public ColumnBatch getColumnBatch(OneRow batch) {
+
+        VectorizedRowBatch vectorizedBatch = (VectorizedRowBatch) batch.getData();
+        int columnsNumber = context.getColumns();
+        List<? extends StructField> allStructFieldRefs = soi.getAllStructFieldRefs();
+
+        if (columnBatch == null) {
+            columnBatch = new ColumnBatch(columnsNumber, vectorizedBatch.size);
+            for (int columnIndex = 0; columnIndex < columnsNumber; columnIndex++) {
+                DataType type;
+                if (columnIndex < vectorizedBatch.numCols) {
+                    type = getColumnType(allStructFieldRefs.get(columnIndex).getFieldObjectInspector(), columnIndex);
+                } else {
+                    type = DataType.get(context.getColumn(columnIndex).columnTypeCode());
+                }
+                columnBatch.getColumn(columnIndex).setType(type);
+            }
+        }
+
+        columnBatch.reset(vectorizedBatch.size);
+        for (int columnIndex = 0; columnIndex < columnsNumber; columnIndex++) {
+            ColumnVector columnVector = columnIndex < vectorizedBatch.numCols ? vectorizedBatch.cols[columnIndex] : null;
+            populateColumn(columnBatch.getColumn(columnIndex), columnVector, vectorizedBatch.size);
+        }
+
+        return columnBatch;
+    }
+
+    /**
+     * Returns the Greenplum type a primitive ORC column is resolved to
+     */
+    private DataType getColumnType(ObjectInspector oi, int columnIndex) {
+        if (oi.getCategory() != Category.PRIMITIVE) {
+            throw new UnsupportedTypeException("Unable to resolve column index:" + columnIndex
+                    + ". Only primitive types are supported.");
+        }
+        switch (((PrimitiveObjectInspector) oi).getPrimitiveCategory()) {
+            case BOOLEAN:
+                return BOOLEAN;
+            case BYTE:
+            case SHORT:
+                return SMALLINT;
+            case INT:
+                return INTEGER;
+            case LONG:
+                return BIGINT;
+            case FLOAT:
+                return REAL;
+            case DOUBLE:
+                return FLOAT8;
+            case DECIMAL:
+                return NUMERIC;
+            case VARCHAR:
+                return VARCHAR;
+            case CHAR:
+                return BPCHAR;
+            case STRING:
+                return TEXT;
+            case BINARY:
+                return BYTEA;
+            case DATE:
+                return DATE;
+            default:
+                throw new UnsupportedTypeException(oi.getTypeName()
+                        + " conversion is not supported by "
+                        + getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Copies the values of an ORC column vector into a column of the batch.
+     * A missing vector is resolved to nulls.
+     */
+    private void populateColumn(ColumnBatch.Column column, ColumnVector columnVector, int size) {
+        if (columnVector == null) {
+            column.setRepeating(true);
+            column.setNull(0);
+            return;
+        }
+
+        int rows = columnVector.isRepeating ? Math.min(size, 1) : size;
+        column.setRepeating(columnVector.isRepeating);
+        for (int rowId = 0; rowId < rows; rowId++) {
+            if (!columnVector.noNulls && columnVector.isNull[rowId]) {
+                column.setNull(rowId);
+                continue;
+            }
+            switch (column.getType()) {
+                case DATE:
+                    column.setObject(rowId, new Date(DateWritable.daysToMillis((int) ((LongColumnVector) columnVector).vector[rowId])));
+                    break;
+                case NUMERIC:
+                    column.setObject(rowId, ((DecimalColumnVector) columnVector).vector[rowId]);
+                    break;
+                case REAL:
+                case FLOAT8:
+                    column.setDouble(rowId, ((DoubleColumnVector) columnVector).vector[rowId]);
+                    break;
+                case VARCHAR:
+                case BPCHAR:
+                case TEXT:
+                case BYTEA:
+                    BytesColumnVector bcv = (BytesColumnVector) columnVector;
+                    column.setBytes(rowId, bcv.vector[rowId], bcv.start[rowId], bcv.length[rowId]);
+                    break;
+                default:
+                    column.setLong(rowId, ((LongColumnVector) columnVector).vector[rowId]);
+            }
+        }
+    }
+
     /**
      * Resolves a column of a primitive type out of given batch
      *
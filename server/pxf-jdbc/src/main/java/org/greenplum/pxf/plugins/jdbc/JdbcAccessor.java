@@ -19,11 +19,15 @@ package org.greenplum.pxf.plugins.jdbc;
  * under the License.
  */
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.greenplum.pxf.api.OneRow;
 import org.greenplum.pxf.api.model.Accessor;
 import org.greenplum.pxf.api.model.ConfigurationFactory;
+import org.greenplum.pxf.api.utilities.DirectoryWatcher;
+import org.greenplum.pxf.api.utilities.Metrics;
 import org.greenplum.pxf.plugins.jdbc.utils.ConnectionManager;
 import org.greenplum.pxf.plugins.jdbc.writercallable.WriterCallable;
 import org.greenplum.pxf.plugins.jdbc.writercallable.WriterCallableFactory;
@@ -32,6 +36,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -44,6 +49,9 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * JDBC tables accessor
@@ -57,6 +65,16 @@ public class JdbcAccessor extends JdbcBasePlugin implements Accessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(JdbcAccessor.class);
 
+    // texts of named queries by file, dropped when a file in the directory of the query changes
+    private static final Cache<Path, String> QUERY_TEXT_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+    private static final AtomicLong QUERY_TEXT_GENERATION = new AtomicLong();
+    private static final Consumer<Path> QUERY_TEXT_INVALIDATOR = directory -> {
+        QUERY_TEXT_GENERATION.incrementAndGet();
+        QUERY_TEXT_CACHE.asMap().keySet().removeIf(path -> directory.equals(path.getParent()));
+    };
+    private static final LongAdder QUERY_TEXT_HITS = Metrics.counter("jdbc.query.cache.hits");
+    private static final LongAdder QUERY_TEXT_MISSES = Metrics.counter("jdbc.query.cache.misses");
+
     // Read variables
     private String queryRead = null;
     private Statement statementRead = null;
@@ -318,7 +336,8 @@ public class JdbcAccessor extends JdbcBasePlugin implements Accessor {
 
     /**
      * Gets the text of the query by reading the file from the server configuration directory. The name of the file
-     * is expected to be the same as the name of the query provided by the user and have extension ".sql"
+     * is expected to be the same as the name of the query provided by the user and have extension ".sql".
+     * The text is cached until a file in the directory changes.
      *
      * @return text of the query
      */
@@ -332,9 +351,19 @@ public class JdbcAccessor extends JdbcBasePlugin implements Accessor {
             throw new IllegalStateException("No server configuration directory found for server " + context.getServerName());
         }
 
-        String queryText;
+        File queryFile = new File(serverDirectory, queryName + ".sql");
+        Path queryPath = queryFile.toPath().toAbsolutePath().normalize();
+        String queryText = QUERY_TEXT_CACHE.getIfPresent(queryPath);
+        if (queryText != null) {
+            QUERY_TEXT_HITS.increment();
+            return queryText;
+        }
+        QUERY_TEXT_MISSES.increment();
+
+        long generation = QUERY_TEXT_GENERATION.get();
+        // watch the directory before reading the file, so that no change is missed
+        boolean watched = DirectoryWatcher.getInstance().watch(queryPath.getParent(), QUERY_TEXT_INVALIDATOR);
         try {
-            File queryFile = new File(serverDirectory, queryName + ".sql");
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Reading text of query={} from {}", queryName, queryFile.getCanonicalPath());
             }
@@ -350,6 +379,13 @@ public class JdbcAccessor extends JdbcBasePlugin implements Accessor {
         // happening at the end of the query
         queryText = queryText.replaceFirst("(;+\\s*)+$", "");
 
+        if (watched) {
+            QUERY_TEXT_CACHE.put(queryPath, queryText);
+            // an invalidation that ran before the put may have missed this entry
+            if (QUERY_TEXT_GENERATION.get() != generation) {
+                QUERY_TEXT_CACHE.asMap().remove(queryPath, queryText);
+            }
+        }
         return queryText;
     }
 
@@ -22,22 +22,48 @@ package org.greenplum.pxf.service;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.greenplum.pxf.api.BadRecordException;
 import org.greenplum.pxf.api.GPDBWritableMapper;
 import org.greenplum.pxf.api.OneField;
+import org.greenplum.pxf.api.io.BufferPool;
+import org.greenplum.pxf.api.io.ColumnBatch;
 import org.greenplum.pxf.api.io.DataType;
 import org.greenplum.pxf.api.io.GPDBWritable;
+import org.greenplum.pxf.api.io.MemoryBudget;
 import org.greenplum.pxf.api.io.Text;
 import org.greenplum.pxf.api.model.OutputFormat;
 import org.greenplum.pxf.api.model.RequestContext;
 
 import java.io.DataInput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 public class BridgeInputBuilder {
+    /**
+     * Size of the TEXT blocks whose buffers are pooled, other sizes are
+     * allocated for every request.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    static final String PROPERTY_KEY_POOLED_CHUNKS = "pxf.service.write.chunk.pooled";
+    private static final int DEFAULT_POOLED_CHUNKS = 16;
+    private static final BufferPool CHUNK_POOL = new BufferPool(DEFAULT_CHUNK_SIZE,
+            Integer.getInteger(PROPERTY_KEY_POOLED_CHUNKS, DEFAULT_POOLED_CHUNKS));
+
     private RequestContext protocolData;
     private static final Log LOG = LogFactory.getLog(BridgeInputBuilder.class);
+    /* reused for every record, values are copied out before the next one is read */
+    private GPDBWritable record;
+    private GPDBWritableMapper mapper;
+    /* TEXT data read by makeChunk, bytes after chunkReturned belong to the next chunk */
+    private byte[] chunk;
+    private int chunkLength;
+    private int chunkReturned;
+    /* the view of the pool the chunk was taken from, null if it is not pooled */
+    private BufferPool chunkPool;
 
     public BridgeInputBuilder(RequestContext protocolData) {
         this.protocolData = protocolData;
@@ -50,22 +76,199 @@ public class BridgeInputBuilder {
             return Collections.singletonList(new OneField(DataType.BYTEA.getOID(), txt.getBytes()));
         }
 
-        GPDBWritable gpdbWritable = new GPDBWritable();
-        gpdbWritable.readFields(inputStream);
-
-        if (gpdbWritable.isEmpty()) {
-            LOG.debug("Reached end of stream");
+        GPDBWritable gpdbWritable = readRecord(inputStream);
+        if (gpdbWritable == null) {
             return null;
         }
 
-        GPDBWritableMapper mapper = new GPDBWritableMapper(gpdbWritable);
+        if (mapper == null) {
+            mapper = new GPDBWritableMapper(gpdbWritable);
+        }
         int[] colTypes = gpdbWritable.getColType();
-        List<OneField> record = new LinkedList<>();
+        List<OneField> fields = new ArrayList<>(colTypes.length);
         for (int i = 0; i < colTypes.length; i++) {
             mapper.setDataType(colTypes[i]);
-            record.add(new OneField(colTypes[i], mapper.getData(i)));
+            fields.add(new OneField(colTypes[i], mapper.getData(i)));
+        }
+
+        return fields;
+    }
+
+    /*
+     * Reads the next record into the reused GPDBWritable.
+     * Returns null at the end of the stream.
+     */
+    private GPDBWritable readRecord(DataInput inputStream) throws IOException {
+        if (record == null) {
+            record = new GPDBWritable();
         }
+        record.readFields(inputStream);
 
+        if (record.isEmpty()) {
+            LOG.debug("Reached end of stream");
+            return null;
+        }
         return record;
     }
+
+    /**
+     * Creates a batch for records of the table being written. Columns have
+     * the types the records are transferred with.
+     *
+     * @param capacity number of records the batch can hold
+     * @return an empty batch
+     */
+    public ColumnBatch makeBatch(int capacity) {
+        int numColumns = protocolData.getColumns();
+        ColumnBatch batch = new ColumnBatch(numColumns, capacity);
+        for (int i = 0; i < numColumns; i++) {
+            batch.getColumn(i).setType(GPDBWritable.getWireType(protocolData.getColumn(i).columnTypeCode()));
+        }
+        batch.reset(capacity);
+        return batch;
+    }
+
+    /**
+     * Reads the next GPDBWritable record from the stream into a row of the
+     * batch. Values are copied, no object is created per value.
+     *
+     * @param inputStream stream to read from
+     * @param batch       batch created by {@link #makeBatch(int)}
+     * @param row         index of the row to fill
+     * @return false if the end of the stream was reached
+     * @throws Exception if reading failed or the record does not match the batch
+     */
+    public boolean makeInput(DataInput inputStream, ColumnBatch batch, int row) throws Exception {
+        GPDBWritable batchRecord = readRecord(inputStream);
+        if (batchRecord == null) {
+            return false;
+        }
+
+        int[] colTypes = batchRecord.getColType();
+        if (colTypes.length != batch.getNumColumns()) {
+            throw new BadRecordException("Record has " + colTypes.length
+                    + " fields but the schema size is " + batch.getNumColumns());
+        }
+        for (int i = 0; i < colTypes.length; i++) {
+            ColumnBatch.Column column = batch.getColumn(i);
+            if (column.getType().getOID() != colTypes[i]) {
+                throw new BadRecordException("Field " + i + " has type " + DataType.get(colTypes[i])
+                        + " but the schema requires type " + column.getType());
+            }
+            if (batchRecord.isNull(i)) {
+                column.setNull(row);
+                continue;
+            }
+            switch (column.getStorage()) {
+                case LONG:
+                    column.setLong(row, batchRecord.getLongValue(i));
+                    break;
+                case DOUBLE:
+                    column.setDouble(row, batchRecord.getDoubleValue(i));
+                    break;
+                default:
+                    column.copyBytes(row, batchRecord.getValueBuffer(i),
+                            batchRecord.getValueOffset(i), batchRecord.getValueLength(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next block of TEXT data, ending at a line break, into the
+     * buffer returned by {@link #getChunk()}. The block starts at offset 0.
+     * A line longer than the chunk size grows the buffer. The last block
+     * of the stream may end without a line break. The buffer is charged to
+     * the memory account of the request and must be given back with
+     * {@link #releaseChunk()}.
+     *
+     * @param inputStream stream to read from
+     * @param chunkSize   number of bytes to read at once
+     * @return length of the block, 0 at the end of the stream
+     * @throws IOException if reading failed
+     */
+    public int makeChunk(InputStream inputStream, int chunkSize) throws IOException {
+        if (chunk == null) {
+            allocateChunk(chunkSize);
+        }
+        // keep the partial line left over from the previous block
+        chunkLength -= chunkReturned;
+        System.arraycopy(chunk, chunkReturned, chunk, 0, chunkLength);
+        chunkReturned = 0;
+
+        int searched = 0;
+        while (true) {
+            int read = inputStream.read(chunk, chunkLength, chunk.length - chunkLength);
+            if (read < 0) {
+                chunkReturned = chunkLength;
+                return chunkLength;
+            }
+            chunkLength += read;
+            if (chunkLength < chunk.length) {
+                continue;
+            }
+            for (int i = chunkLength - 1; i >= searched; i--) {
+                if (chunk[i] == '\n') {
+                    chunkReturned = i + 1;
+                    return chunkReturned;
+                }
+            }
+            searched = chunkLength;
+            byte[] grown = Arrays.copyOf(chunk, chunk.length * 2);
+            freeChunk();
+            chunk = grown;
+            MemoryBudget.Account account = protocolData.getMemoryAccount();
+            if (account != null) {
+                account.allocate(grown.length);
+            }
+        }
+    }
+
+    /**
+     * Gives the buffer used by {@link #makeChunk(InputStream, int)} back to
+     * its pool and to the memory account of the request.
+     */
+    public void releaseChunk() {
+        freeChunk();
+        chunk = null;
+        chunkLength = chunkReturned = 0;
+    }
+
+    private void allocateChunk(int chunkSize) {
+        MemoryBudget.Account account = protocolData.getMemoryAccount();
+        if (chunkSize == CHUNK_POOL.getBufferSize()) {
+            chunkPool = CHUNK_POOL.withAccount(account);
+            chunk = chunkPool.take();
+        } else {
+            chunk = new byte[chunkSize];
+            if (account != null) {
+                account.allocate(chunkSize);
+            }
+        }
+    }
+
+    private void freeChunk() {
+        if (chunk == null) {
+            return;
+        }
+        if (chunkPool != null) {
+            chunkPool.release(chunk);
+            chunkPool = null;
+        } else {
+            MemoryBudget.Account account = protocolData.getMemoryAccount();
+            if (account != null) {
+                account.free(chunk.length);
+            }
+        }
+    }
+
+    /**
+     * Returns the buffer holding the block read by the last call to
+     * {@link #makeChunk(InputStream, int)}.
+     *
+     * @return the chunk buffer
+     */
+    public byte[] getChunk() {
+        return chunk;
+    }
 }
@@ -291,7 +291,17 @@ public class BridgeOutputBuilder {
         Object val = field.val;
         DataType dataType = DataType.get(field.type);
 
-        if (recFields.size() == 1 && dataType == DataType.BYTEA) {
+        if (recFields.size() == 1 && dataType == DataType.BYTEA && val instanceof BufferWritable) {
+            // a chunk in a pooled buffer, written as is and released by the caller
+            BufferWritable chunk = (BufferWritable) val;
+            if (samplingEnabled) {
+                byte[] bytes = chunk.getBytes();
+                chunk.release();
+                convertTextDataToLines(bytes);
+                return;
+            }
+            output = chunk;
+        } else if (recFields.size() == 1 && dataType == DataType.BYTEA) {
             if (samplingEnabled) {
                 convertTextDataToLines((byte[]) val);
                 return;
@@ -393,15 +403,17 @@ public class BridgeOutputBuilder {
                     gpdbOutput.setBoolean(colIdx, (Boolean) val);
                     break;
                 case BYTEA:
-                    byte[] bts = null;
-                    if (val != null) {
+                    if (val == null || val instanceof byte[]) {
+                        // the record only references the array until it is written
+                        gpdbOutput.setBytes(colIdx, (byte[]) val);
+                    } else {
                         int length = Array.getLength(val);
-                        bts = new byte[length];
+                        byte[] bts = new byte[length];
                         for (int j = 0; j < length; j++) {
                             bts[j] = Array.getByte(val, j);
                         }
+                        gpdbOutput.setBytes(colIdx, bts);
                     }
-                    gpdbOutput.setBytes(colIdx, bts);
                     break;
                 case VARCHAR:
                 case BPCHAR:
@@ -409,6 +421,7 @@ public class BridgeOutputBuilder {
                 case NUMERIC:
                 case TIMESTAMP:
                 case DATE:
+                    // the text is encoded into the record once, no intermediate copies are made
                     gpdbOutput.setString(colIdx,
                             ObjectUtils.toString(val, null));
                     break;
@@ -0,0 +1,286 @@
+package org.greenplum.pxf.service;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+import org.greenplum.pxf.api.model.Fragment;
+import org.greenplum.pxf.api.utilities.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the computation of fragments between the PXF instances of a
+ * cluster. Every instance of a query lists the same data source, so instead
+ * of each one asking the NameNode or the Metastore, the fragments of a query
+ * are computed by a single owner instance, chosen by hashing the fragmenter
+ * cache key, and the other instances fetch them from the owner over HTTP.
+ * If the owner cannot be reached, fragments are computed locally.
+ * <p>
+ * Peer mode is enabled by listing the host:port of every PXF instance, in
+ * the same order on all hosts, in the pxf.service.fragmenter.peers system
+ * property, and setting pxf.service.fragmenter.peers.self to the entry of
+ * the local instance. Several instances on one machine differ by port.
+ */
+public class FragmentPeers {
+
+    static final String PROPERTY_KEY_PEERS = "pxf.service.fragmenter.peers";
+    static final String PROPERTY_KEY_PEERS_SELF = "pxf.service.fragmenter.peers.self";
+    static final String PROPERTY_KEY_PEERS_TIMEOUT = "pxf.service.fragmenter.peers.timeout";
+    static final int DEFAULT_PEERS_TIMEOUT = 300000;
+    static final int CONNECT_TIMEOUT = 5000;
+
+    private static final String HEADER_PREFIX = "X-GP-";
+    private static final String FRAGMENTS = "fragments";
+
+    private static final Logger LOG = LoggerFactory.getLogger(FragmentPeers.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final LongAdder FETCHES = Metrics.counter("fragmenter.peer.fetches");
+    private static final LongAdder FAILURES = Metrics.counter("fragmenter.peer.failures");
+
+    private static final FragmentPeers instance = new FragmentPeers(
+            System.getProperty(PROPERTY_KEY_PEERS),
+            System.getProperty(PROPERTY_KEY_PEERS_SELF),
+            Integer.getInteger(PROPERTY_KEY_PEERS_TIMEOUT, DEFAULT_PEERS_TIMEOUT));
+
+    private final String[] peers;
+    private final String self;
+    private final int timeout;
+
+    FragmentPeers(String peers, String self, int timeout) {
+        this.peers = StringUtils.isBlank(peers) ? new String[0] : StringUtils.stripAll(peers.split(","));
+        this.self = StringUtils.trimToNull(self);
+        this.timeout = timeout;
+        if (this.peers.length > 0) {
+            LOG.info("Fragmenter peers {} with self {}", StringUtils.join(this.peers, ","), this.self);
+            if (this.self == null || !ArrayUtils.contains(this.peers, this.self)) {
+                LOG.warn("{} is not one of {}, this instance never computes fragments for its peers",
+                        PROPERTY_KEY_PEERS_SELF, PROPERTY_KEY_PEERS);
+            }
+        }
+    }
+
+    /**
+     * Returns a singleton instance configured from the system properties.
+     *
+     * @return a singleton instance of the peers
+     */
+    public static FragmentPeers getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return true if fragments are shared between peers
+     */
+    public boolean isEnabled() {
+        return peers.length > 1;
+    }
+
+    /**
+     * Returns the peer that computes the fragments for the given key, or
+     * null if the fragments should be computed by this instance. The owner
+     * only depends on the key and the list of peers, so all instances agree
+     * on it.
+     *
+     * @param key the fragmenter cache key of the query
+     * @return the host:port of the owner, or null if this instance is the owner
+     */
+    public String getOwner(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String owner = peers[Math.floorMod(key.hashCode(), peers.length)];
+        return owner.equals(self) ? null : owner;
+    }
+
+    /**
+     * Fetches the fragments of a query from its owner. The PXF headers of the
+     * original request are forwarded so that the owner sees the same query.
+     *
+     * @param owner   the host:port of the owner
+     * @param path    the path of the peer fragments resource
+     * @param headers the headers of the original request
+     * @return the fragments computed by the owner
+     * @throws IOException if the owner could not be reached or failed
+     */
+    public List<Fragment> fetchFragments(String owner, String path, Map<String, List<String>> headers)
+            throws IOException {
+        FETCHES.increment();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://" + owner + path).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(timeout);
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (!StringUtils.startsWithIgnoreCase(header.getKey(), HEADER_PREFIX)) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    connection.addRequestProperty(header.getKey(), value);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format("PXF peer %s returned status %d %s",
+                        owner, status, connection.getResponseMessage()));
+            }
+            try (InputStream input = connection.getInputStream()) {
+                List<Fragment> fragments = readFragments(input);
+                LOG.debug("Fetched {} fragments from PXF peer {}", fragments.size(), owner);
+                return fragments;
+            }
+        } catch (IOException e) {
+            FAILURES.increment();
+            throw e;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Writes fragments in the format read by {@link #readFragments}. Unlike
+     * the response sent to GPDB, the fragment lengths are included.
+     *
+     * @param fragments the fragments to write
+     * @param output    the stream to write to, not closed
+     * @throws IOException if writing fails
+     */
+    public static void writeFragments(List<Fragment> fragments, OutputStream output) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart(FRAGMENTS);
+        for (Fragment fragment : fragments) {
+            generator.writeStartObject();
+            generator.writeStringField("sourceName", fragment.getSourceName());
+            if (fragment.getReplicas() != null) {
+                generator.writeArrayFieldStart("replicas");
+                for (String replica : fragment.getReplicas()) {
+                    generator.writeString(replica);
+                }
+                generator.writeEndArray();
+            }
+            if (fragment.getMetadata() != null) {
+                generator.writeBinaryField("metadata", fragment.getMetadata());
+            }
+            if (fragment.getUserData() != null) {
+                generator.writeBinaryField("userData", fragment.getUserData());
+            }
+            if (fragment.getProfile() != null) {
+                generator.writeStringField("profile", fragment.getProfile());
+            }
+            generator.writeNumberField("length", fragment.getLength());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+
+    /**
+     * Reads fragments written by {@link #writeFragments}.
+     *
+     * @param input the stream to read from
+     * @return the fragments
+     * @throws IOException if the input is not a list of fragments
+     */
+    static List<Fragment> readFragments(InputStream input) throws IOException {
+        List<Fragment> fragments = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            expect(parser, JsonToken.START_OBJECT);
+            expect(parser, JsonToken.FIELD_NAME);
+            if (!FRAGMENTS.equals(parser.getCurrentName())) {
+                throw new IOException("Unexpected field " + parser.getCurrentName());
+            }
+            expect(parser, JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                fragments.add(readFragment(parser));
+            }
+        }
+        return fragments;
+    }
+
+    private static Fragment readFragment(JsonParser parser) throws IOException {
+        String sourceName = null;
+        String[] replicas = null;
+        byte[] metadata = null;
+        byte[] userData = null;
+        String profile = null;
+        long length = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "sourceName":
+                    sourceName = parser.getText();
+                    break;
+                case "replicas":
+                    List<String> hosts = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        hosts.add(parser.getText());
+                    }
+                    replicas = hosts.toArray(new String[0]);
+                    break;
+                case "metadata":
+                    metadata = parser.getBinaryValue();
+                    break;
+                case "userData":
+                    userData = parser.getBinaryValue();
+                    break;
+                case "profile":
+                    profile = parser.getText();
+                    break;
+                case "length":
+                    length = parser.getLongValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        Fragment fragment = new Fragment(sourceName, replicas, metadata, userData, profile);
+        fragment.setLength(length);
+        return fragment;
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        if (parser.nextToken() != token) {
+            throw new IOException("Expected " + token + " but got " + parser.getCurrentToken());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.greenplum.pxf.service;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.greenplum.pxf.api.model.Fragment;
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which fragments of a query each segment processes when the
+ * fragmenter returns only the fragments of the requesting segment. The
+ * policy is selected with the FRAGMENT_SCHEDULER option of the table:
+ * <ul>
+ * <li>{@code round-robin} (default): the fragment at position n (starting at
+ * 1) goes to segment (n + shift) % totalSegments, the rule applied by the
+ * client when it receives the full list.</li>
+ * <li>{@code balanced}: fragments are assigned largest first to the segment
+ * with the fewest assigned bytes, so that segments finish at about the same
+ * time even when fragment sizes vary widely. Fragments of unknown length
+ * weigh as much as the average known fragment. When the client sends the
+ * hosts of the segments, a fragment goes to a segment on one of its replicas
+ * unless that segment already has noticeably more data than the least
+ * loaded one.</li>
+ * </ul>
+ * Every segment computes the same assignment from the same fragment list.
+ * Segment hosts and replicas are compared by name, as given by the client and
+ * by the fragmenter, and are never resolved: PXF instances may resolve a name
+ * differently and would then assign fragments differently.
+ * The balanced assignment of a list is computed once per PXF instance and
+ * shared by the requests of the segments, which receive the same cached
+ * list. The imbalance of the last balanced assignment, the largest load
+ * over the average load in thousandths, is reported in {@link Metrics}.
+ */
+public class FragmentScheduler {
+
+    static final String OPTION_FRAGMENT_SCHEDULER = "FRAGMENT_SCHEDULER";
+    static final String ROUND_ROBIN = "round-robin";
+    static final String BALANCED = "balanced";
+
+    // fraction of the average load a local segment may carry above the least loaded segment
+    static final double LOCALITY_SLACK = 0.1;
+
+    private static final Logger LOG = LoggerFactory.getLogger(FragmentScheduler.class);
+
+    private static final FragmentScheduler instance = new FragmentScheduler();
+
+    private static final LongAdder BALANCED_QUERIES = Metrics.counter("fragment.scheduler.balanced");
+    private static final AtomicLong LAST_IMBALANCE = new AtomicLong();
+
+    static {
+        Metrics.gauge("fragment.scheduler.imbalance", LAST_IMBALANCE::get);
+    }
+
+    // weak keys are compared by identity and go away with the cached fragment list
+    private final Cache<List<Fragment>, Assignment> assignments = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * Returns a singleton instance of the scheduler.
+     *
+     * @return a singleton instance of the scheduler
+     */
+    public static FragmentScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the fragments of the full list that the requesting segment
+     * should process, in the order of the full list.
+     *
+     * @param context   the request context
+     * @param fragments the fragments for all segments
+     * @return the fragments for the requesting segment
+     */
+    public List<Fragment> getSegmentFragments(RequestContext context, final List<Fragment> fragments) {
+        return getSegmentFragments(context, fragments, fragments);
+    }
+
+    /**
+     * Returns the fragments that the requesting segment should process, in
+     * the order of the full list, taking them from a list of copies of the
+     * fragments, e.g. with replicas converted to addresses for the response.
+     *
+     * @param context   the request context
+     * @param fragments the fragments for all segments, with the replicas
+     *                  given by the fragmenter
+     * @param output    copies of the fragments, in the same order
+     * @return the fragments of the output list for the requesting segment
+     */
+    public List<Fragment> getSegmentFragments(RequestContext context, final List<Fragment> fragments,
+                                              List<Fragment> output) {
+        final int totalSegments = context.getTotalSegments();
+        if (totalSegments <= 0) {
+            return output;
+        }
+
+        int segmentId = context.getSegmentId();
+        String scheduler = context.getOption(OPTION_FRAGMENT_SCHEDULER, ROUND_ROBIN);
+        List<Fragment> segmentFragments = new ArrayList<>(fragments.size() / totalSegments + 1);
+
+        if (BALANCED.equalsIgnoreCase(scheduler)) {
+            int[] segments = getAssignment(fragments, totalSegments, context.getSegmentHosts());
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i] == segmentId) {
+                    segmentFragments.add(output.get(i));
+                }
+            }
+        } else if (ROUND_ROBIN.equalsIgnoreCase(scheduler)) {
+            int position = Math.floorMod(context.getFragmentShift(), totalSegments);
+            for (Fragment fragment : output) {
+                position = position + 1 == totalSegments ? 0 : position + 1;
+                if (position == segmentId) {
+                    segmentFragments.add(fragment);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException(String.format(
+                    "Illegal value '%s' for option %s. Usage: [%s|%s]",
+                    scheduler, OPTION_FRAGMENT_SCHEDULER, ROUND_ROBIN, BALANCED));
+        }
+
+        LOG.debug("Returning {} of {} fragments to segment {} with {} scheduler",
+                segmentFragments.size(), fragments.size(), segmentId, scheduler);
+        return segmentFragments;
+    }
+
+    private int[] getAssignment(final List<Fragment> fragments, final int totalSegments, final String[] segmentHosts) {
+        Assignment assignment;
+        try {
+            assignment = assignments.get(fragments, () ->
+                    new Assignment(totalSegments, balance(fragments, totalSegments, segmentHosts)));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        if (assignment.totalSegments != totalSegments) {
+            // the same list is not expected to be scheduled for a different number of segments
+            return balance(fragments, totalSegments, segmentHosts);
+        }
+        return assignment.segments;
+    }
+
+    /**
+     * Assigns the fragments to segments so that the number of bytes assigned
+     * to each segment is as even as possible, preferring segments local to
+     * the replicas of a fragment when segment hosts are given.
+     *
+     * @param fragments     the fragments to assign
+     * @param totalSegments the number of segments
+     * @param segmentHosts  the host of each segment, or null if unknown
+     * @return the segment of each fragment, by position in the list
+     */
+    static int[] balance(List<Fragment> fragments, int totalSegments, String[] segmentHosts) {
+        int size = fragments.size();
+        final long[] weights = new long[size];
+        long knownLength = 0;
+        int knownCount = 0;
+        for (int i = 0; i < size; i++) {
+            long length = fragments.get(i).getLength();
+            if (length > 0) {
+                weights[i] = length;
+                knownLength += length;
+                knownCount++;
+            }
+        }
+        long defaultWeight = knownCount == 0 ? 1 : Math.max(1, knownLength / knownCount);
+        long totalWeight = 0;
+        for (int i = 0; i < size; i++) {
+            if (weights[i] == 0) {
+                weights[i] = defaultWeight;
+            }
+            totalWeight += weights[i];
+        }
+
+        // largest first, ties in list order so that every segment computes the same assignment
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int result = Long.compare(weights[b], weights[a]);
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+
+        final long[] loads = new long[totalSegments];
+        TreeSet<Integer> segmentsByLoad = new TreeSet<>((a, b) -> {
+            int result = Long.compare(loads[a], loads[b]);
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+        for (int segment = 0; segment < totalSegments; segment++) {
+            segmentsByLoad.add(segment);
+        }
+
+        Map<String, List<Integer>> segmentsByHost = getSegmentsByHost(segmentHosts, totalSegments);
+        long slack = (long) (totalWeight / totalSegments * LOCALITY_SLACK);
+        int[] segments = new int[size];
+        int localAssignments = 0;
+
+        for (Integer i : order) {
+            int segment = segmentsByLoad.first();
+            int local = getLeastLoadedLocalSegment(fragments.get(i).getReplicas(), segmentsByHost, loads);
+            if (local >= 0 && loads[local] <= loads[segment] + slack) {
+                segment = local;
+                localAssignments++;
+            }
+            segmentsByLoad.remove(segment);
+            loads[segment] += weights[i];
+            segmentsByLoad.add(segment);
+            segments[i] = segment;
+        }
+
+        long imbalance = 1000;
+        if (totalWeight > 0) {
+            long maxLoad = loads[segmentsByLoad.last()];
+            imbalance = maxLoad * 1000 * totalSegments / totalWeight;
+        }
+        LAST_IMBALANCE.set(imbalance);
+        BALANCED_QUERIES.increment();
+        LOG.info("Balanced {} fragment{} of {} bytes over {} segments, {} local, imbalance {}",
+                size, size == 1 ? "" : "s", totalWeight, totalSegments, localAssignments, imbalance / 1000.0);
+        return segments;
+    }
+
+    private static int getLeastLoadedLocalSegment(String[] replicas, Map<String, List<Integer>> segmentsByHost, long[] loads) {
+        int result = -1;
+        if (replicas == null || segmentsByHost.isEmpty()) {
+            return result;
+        }
+        for (String replica : replicas) {
+            List<Integer> hostSegments = segmentsByHost.get(hostKey(replica));
+            if (hostSegments == null) {
+                continue;
+            }
+            for (int segment : hostSegments) {
+                if (result < 0 || loads[segment] < loads[result]
+                        || (loads[segment] == loads[result] && segment < result)) {
+                    result = segment;
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Maps the name of every segment host to the segments on that host.
+     */
+    private static Map<String, List<Integer>> getSegmentsByHost(String[] segmentHosts, int totalSegments) {
+        Map<String, List<Integer>> result = new HashMap<>();
+        if (segmentHosts == null) {
+            return result;
+        }
+        for (int segment = 0; segment < Math.min(segmentHosts.length, totalSegments); segment++) {
+            result.computeIfAbsent(hostKey(segmentHosts[segment]), k -> new ArrayList<>()).add(segment);
+        }
+        return result;
+    }
+
+    /*
+     * Host names are case insensitive.
+     */
+    private static String hostKey(String host) {
+        return host == null ? null : host.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Assignment {
+        private final int totalSegments;
+        private final int[] segments;
+
+        Assignment(int totalSegments, int[] segments) {
+            this.totalSegments = totalSegments;
+            this.segments = segments;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.greenplum.pxf.api.model.ProtocolHandler;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.utilities.ColumnDescriptor;
 import org.greenplum.pxf.api.utilities.EnumAggregationType;
+import org.greenplum.pxf.api.utilities.PluginRegistry;
 import org.greenplum.pxf.api.utilities.Utilities;
 import org.greenplum.pxf.service.profile.ProfilesConf;
 import org.slf4j.Logger;
@@ -131,6 +132,22 @@ public class HttpRequestParser implements RequestParser<HttpHeaders> {
         context.setRemoteSecret(params.removeOptionalProperty("REMOTE-PASS"));
         context.setResolver(params.removeUserProperty("RESOLVER"));
         context.setSegmentId(params.removeIntProperty("SEGMENT-ID"));
+
+        // Optionally the fragmenter returns only the fragments of the requesting segment
+        String segmentFragmentsStr = params.removeOptionalProperty("SEGMENT-FRAGMENTS");
+        if (StringUtils.isNotBlank(segmentFragmentsStr)) {
+            context.setSegmentFragmentsOnly(parseBooleanValue(segmentFragmentsStr));
+        }
+
+        String fragmentShiftStr = params.removeOptionalProperty("FRAGMENT-SHIFT");
+        if (StringUtils.isNotBlank(fragmentShiftStr)) {
+            context.setFragmentShift(Integer.parseInt(fragmentShiftStr));
+        }
+
+        String segmentHostsStr = params.removeOptionalProperty("SEGMENT-HOSTS");
+        if (StringUtils.isNotBlank(segmentHostsStr)) {
+            context.setSegmentHosts(segmentHostsStr.split(","));
+        }
         context.setServerName(params.removeUserProperty("SERVER"));
 
         // An optional CONFIG value specifies the name of the server
@@ -219,14 +236,13 @@ public class HttpRequestParser implements RequestParser<HttpHeaders> {
         if (StringUtils.isNotBlank(profile)) {
             String handlerClassName = pluginConf.getHandler(profile);
             if (StringUtils.isNotBlank(handlerClassName)) {
-                Class clazz;
                 try {
-                    clazz = Class.forName(handlerClassName);
-                    ProtocolHandler handler = (ProtocolHandler) clazz.newInstance();
+                    // handlers are stateless, the same instance serves all requests
+                    ProtocolHandler handler = PluginRegistry.getInstance().getSingleton(handlerClassName, ProtocolHandler.class);
                     context.setFragmenter(handler.getFragmenterClassName(context));
                     context.setAccessor(handler.getAccessorClassName(context));
                     context.setResolver(handler.getResolverClassName(context));
-                } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                } catch (ReflectiveOperationException | ClassCastException e) {
                     throw new RuntimeException(String.format("Error when invoking handlerClass '%s' : %s", handlerClassName, e), e);
                 }
             }
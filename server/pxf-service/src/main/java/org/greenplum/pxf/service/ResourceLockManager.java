@@ -0,0 +1,144 @@
+package org.greenplum.pxf.service;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes access to resources used by plugins that are not thread-safe.
+ * Instead of a single global lock, requests are locked by the resource they
+ * touch (server and data source), so unrelated tables do not wait for each
+ * other. Keys are mapped onto a fixed number of lock stripes; setting the
+ * number of stripes to 1 restores a single global lock.
+ * <p>
+ * The number of stripes is read from the pxf.service.lock.stripes system
+ * property. Acquisitions, contended acquisitions and the time spent waiting
+ * are reported in {@link Metrics} under the name of the manager.
+ */
+public class ResourceLockManager {
+
+    static final String PROPERTY_KEY_LOCK_STRIPES = "pxf.service.lock.stripes";
+    static final int DEFAULT_LOCK_STRIPES = 64;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceLockManager.class);
+
+    private final ReentrantLock[] stripes;
+    private final LongAdder acquisitions;
+    private final LongAdder contended;
+    private final LongAdder waitMicros;
+
+    /**
+     * Creates a lock manager with the number of stripes configured by the
+     * pxf.service.lock.stripes system property.
+     *
+     * @param name name of the manager, used as a prefix for its metrics
+     */
+    public ResourceLockManager(String name) {
+        this(name, Integer.getInteger(PROPERTY_KEY_LOCK_STRIPES, DEFAULT_LOCK_STRIPES));
+    }
+
+    /**
+     * Creates a lock manager with the given number of stripes.
+     *
+     * @param name       name of the manager, used as a prefix for its metrics
+     * @param numStripes number of locks the keys are spread over
+     */
+    ResourceLockManager(String name, int numStripes) {
+        if (numStripes <= 0) {
+            throw new IllegalArgumentException("Number of lock stripes must be positive, got " + numStripes);
+        }
+        stripes = new ReentrantLock[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        acquisitions = Metrics.counter(name + ".lock.acquisitions");
+        contended = Metrics.counter(name + ".lock.contended");
+        waitMicros = Metrics.counter(name + ".lock.wait.micros");
+    }
+
+    /**
+     * Returns the key identifying the resource a request works on.
+     *
+     * @param context request context
+     * @return lock key for the request
+     */
+    public static String getKey(RequestContext context) {
+        return context.getServerName() + ":" + context.getDataSource();
+    }
+
+    /**
+     * Acquires the lock for the given key, waiting if another thread holds
+     * it. The returned lock must be released by the caller.
+     *
+     * @param key resource key
+     * @return the acquired lock
+     */
+    public Lock lock(String key) {
+        ReentrantLock lock = stripes[getStripe(key)];
+        LOG.trace("Locking resource {}", key);
+        if (!lock.tryLock()) {
+            contended.increment();
+            long start = System.nanoTime();
+            lock.lock();
+            long waited = (System.nanoTime() - start) / 1000;
+            waitMicros.add(waited);
+            LOG.debug("Waited {} us for lock on resource {}", waited, key);
+        }
+        acquisitions.increment();
+        LOG.trace("Locked resource {}", key);
+        return lock;
+    }
+
+    /**
+     * Returns the stripe the given key maps to.
+     *
+     * @param key resource key
+     * @return index of the stripe
+     */
+    int getStripe(String key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), stripes.length);
+    }
+
+    /**
+     * Returns the time threads spent waiting for locks, in microseconds.
+     *
+     * @return total wait time in microseconds
+     */
+    long getWaitMicros() {
+        return waitMicros.sum();
+    }
+
+    /**
+     * Returns the number of acquisitions that had to wait for another thread.
+     *
+     * @return number of contended acquisitions
+     */
+    long getContended() {
+        return contended.sum();
+    }
+}
@@ -37,6 +37,9 @@ public class SessionId {
     private final String sessionId;
     private final Configuration configuration;
     private final UserGroupInformation loginUser;
+    private final boolean shared;
+    // the cache entry acquired for this session, released even if it was replaced in the meantime
+    private volatile UGICache.Entry cacheEntry;
 
     /**
      * Create a sessionId
@@ -61,11 +64,34 @@ public class SessionId {
      * @param loginUser     the UGI of the login user (user that runs the service or Kerberos principal)
      */
     public SessionId(Integer segmentId, String transactionId, String gpdbUser, String serverName, Configuration configuration, UserGroupInformation loginUser) {
+        this(segmentId, gpdbUser, gpdbUser + ":" + transactionId + ":" + segmentId + ":" + serverName, configuration, loginUser, false);
+    }
+
+    private SessionId(Integer segmentId, String gpdbUser, String sessionId, Configuration configuration, UserGroupInformation loginUser, boolean shared) {
         this.segmentId = segmentId;
         this.user = gpdbUser;
-        this.sessionId = gpdbUser + ":" + transactionId + ":" + segmentId + ":" + serverName;
+        this.sessionId = sessionId;
         this.configuration = configuration;
         this.loginUser = loginUser;
+        this.shared = shared;
+    }
+
+    /**
+     * Create a sessionId that is shared by all transactions and segments of the
+     * user on the given server, identified by the user, the server and the login
+     * principal. The UGI cache replaces the UGI of a shared session when the login
+     * UGI itself has changed, see {@link UGICache}.
+     *
+     * @param segmentId     the calling segment
+     * @param gpdbUser      the GPDB username
+     * @param serverName    the name of the configuration server
+     * @param configuration the configuration for the request
+     * @param loginUser     the UGI of the login user (user that runs the service or Kerberos principal)
+     * @return the shared sessionId
+     */
+    public static SessionId shared(Integer segmentId, String gpdbUser, String serverName, Configuration configuration, UserGroupInformation loginUser) {
+        String loginName = loginUser != null ? loginUser.getUserName() : "";
+        return new SessionId(segmentId, gpdbUser, gpdbUser + "::" + serverName + ":" + loginName, configuration, loginUser, true);
     }
 
     /**
@@ -96,6 +122,27 @@ public class SessionId {
         return loginUser;
     }
 
+    /**
+     * @return true if the session is shared by all transactions of the user
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * @return the UGI cache entry acquired for this session, or null
+     */
+    UGICache.Entry getCacheEntry() {
+        return cacheEntry;
+    }
+
+    /**
+     * @param cacheEntry the UGI cache entry acquired for this session
+     */
+    void setCacheEntry(UGICache.Entry cacheEntry) {
+        this.cacheEntry = cacheEntry;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -114,7 +161,7 @@ public class SessionId {
         if (obj.getClass() != getClass()) return false;
 
         SessionId that = (SessionId) obj;
-        return this.sessionId.equals(that.sessionId);
+        return this.shared == that.shared && this.sessionId.equals(that.sessionId);
     }
 
     /**
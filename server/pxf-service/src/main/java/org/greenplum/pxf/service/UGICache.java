@@ -21,17 +21,20 @@ package org.greenplum.pxf.service;
 
 import com.google.common.base.Ticker;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.greenplum.pxf.api.utilities.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.UncheckedIOException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Stores UserGroupInformation instances for each active session. The UGIs are cleaned up if they
@@ -39,104 +42,189 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * The motivation for caching is that destroying UGIs is slow. The alternative, creating and
  * destroying a UGI per-request, is wasteful.
+ * <p>
+ * Entries are reference counted and looked up without locking. Expired entries are destroyed by
+ * a single background reaper thread every {@link #REAPER_INTERVAL} milliseconds, and when an
+ * expired entry is looked up again; requests never scan the cache.
+ * <p>
+ * Shared sessions (see {@link SessionId#shared}) keep their UGI, and with it the FileSystem
+ * instances cached by Hadoop for the UGI, across transactions until it expires. At most
+ * {@link #PROPERTY_KEY_SHARED_CACHE_SIZE} shared UGIs are kept, UGIs of shared sessions beyond
+ * that limit are destroyed as soon as they are no longer referenced. A shared UGI is replaced
+ * when the login UGI it was created from has been replaced, e.g. after a Kerberos re-login, and
+ * once it is older than {@link #PROPERTY_KEY_SHARED_MAX_AGE} milliseconds, however often it is
+ * used. A replaced UGI is destroyed when the requests still using it release it.
  */
 public class UGICache {
 
     static final int NANOS_PER_MILLIS = 1000000;
     static final long UGI_CACHE_EXPIRY = 15 * 60 * 1000L; // 15 Minutes
+    static final long REAPER_INTERVAL = 60 * 1000L; // 1 Minute
+    public static final String CONFIG_KEY_SHARED_SESSIONS = "pxf.service.user.cache.shared";
+    public static final String PROPERTY_KEY_SHARED_CACHE_SIZE = "pxf.service.user.cache.shared.size";
+    static final int DEFAULT_SHARED_CACHE_SIZE = 1000;
+    public static final String PROPERTY_KEY_SHARED_MAX_AGE = "pxf.service.user.cache.shared.max.age";
+    static final long DEFAULT_SHARED_MAX_AGE = 60 * 60 * 1000L; // 1 Hour
     private static final Logger LOG = LoggerFactory.getLogger(UGICache.class);
-    private final Map<SessionId, Entry> cache = new ConcurrentHashMap<>();
-    // There is a separate DelayQueue for each segment (also being used for locking)
-    private final Map<Integer, DelayQueue<Entry>> expirationQueueMap = new HashMap<>();
+    private static final LongAdder HITS = Metrics.counter("ugi.cache.hits");
+    private static final LongAdder CREATIONS = Metrics.counter("ugi.cache.creations");
+    private static final LongAdder EVICTIONS = Metrics.counter("ugi.cache.evictions");
+    private final ConcurrentMap<SessionId, Entry> cache = new ConcurrentHashMap<>();
     private final UGIProvider ugiProvider;
     private final Ticker ticker;
+    private final int maxSharedEntries;
+    private final long maxSharedAge;
+    private final AtomicInteger sharedEntries = new AtomicInteger();
+    private ScheduledExecutorService reaper;
 
     /**
      * Create a UGICache with the given {@link Ticker} and {@link UGIProvider}. Intended for use by
-     * tests which need to mock UGI creation/destruction and the current time.
+     * tests which need to mock UGI creation/destruction and the current time. The cache does not
+     * start a reaper thread, tests call {@link #cleanup()} instead.
      */
     UGICache(UGIProvider provider, Ticker ticker) {
+        this(provider, ticker, DEFAULT_SHARED_CACHE_SIZE);
+    }
+
+    /**
+     * Create a UGICache with the given {@link Ticker}, {@link UGIProvider} and maximum number of
+     * UGIs kept for shared sessions.
+     */
+    UGICache(UGIProvider provider, Ticker ticker, int maxSharedEntries) {
+        this(provider, ticker, maxSharedEntries, DEFAULT_SHARED_MAX_AGE);
+    }
+
+    /**
+     * Create a UGICache with the given {@link Ticker}, {@link UGIProvider}, maximum number of
+     * UGIs kept for shared sessions and maximum age of a shared UGI in milliseconds.
+     */
+    UGICache(UGIProvider provider, Ticker ticker, int maxSharedEntries, long maxSharedAge) {
         this.ticker = ticker;
         this.ugiProvider = provider;
+        this.maxSharedEntries = maxSharedEntries;
+        this.maxSharedAge = maxSharedAge;
     }
 
     /**
      * Create a UGICache. Automatically creates a {@link UGIProvider} that this cache will use to
-     * create and destroy UserGroupInformation instances.
+     * create and destroy UserGroupInformation instances, and starts the reaper thread.
      */
     public UGICache() {
-        this(new UGIProvider(), Ticker.systemTicker());
+        this(new UGIProvider(), Ticker.systemTicker(),
+                Integer.getInteger(PROPERTY_KEY_SHARED_CACHE_SIZE, DEFAULT_SHARED_CACHE_SIZE),
+                Long.getLong(PROPERTY_KEY_SHARED_MAX_AGE, DEFAULT_SHARED_MAX_AGE));
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pxf-ugi-cache-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::cleanup, REAPER_INTERVAL, REAPER_INTERVAL, TimeUnit.MILLISECONDS);
+        Metrics.gauge("ugi.cache.size", cache::size);
+        Metrics.gauge("ugi.cache.shared.size", sharedEntries::get);
     }
 
     /**
      * If a UGI for the given session exists in the cache, returns it. Otherwise, creates a new
-     * proxy UGI. In either case this method increments the reference count of the UGI. This method
-     * also destroys expired, unreferenced UGIs for the same segmentId as the given session.
+     * proxy UGI. In either case this method increments the reference count of the UGI. An expired,
+     * unreferenced UGI found for the session is destroyed and replaced by a new one. A shared UGI
+     * created from another login UGI or older than the maximum age is replaced as well.
      *
      * @param session     The user from the session is impersonated by the proxy UGI.
      * @param isProxyUser true if the {@link UserGroupInformation} is a proxy user
      * @return the proxy UGI for the given session.
      * @throws IOException when there is an IO issue
      */
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
     public UserGroupInformation getUserGroupInformation(SessionId session, boolean isProxyUser) throws IOException {
-        Integer segmentId = session.getSegmentId();
-        String user = session.getUser();
-        DelayQueue<Entry> delayQueue = getExpirationQueue(segmentId);
-        synchronized (delayQueue) {
-            // Use the opportunity to cleanup any expired entries
-            cleanup(delayQueue);
+        while (true) {
             Entry entry = cache.get(session);
-            if (entry == null) {
-
-                UserGroupInformation ugi;
-                if (isProxyUser) {
-                    LOG.debug("{} Creating proxy user = {}", session, user);
-                    ugi = ugiProvider.createProxyUGI(user, session.getLoginUser());
-                } else {
-                    LOG.debug("{} Creating remote user = {}", session, user);
-                    ugi = ugiProvider.createRemoteUser(user, session);
+            if (entry != null) {
+                if (entry.isExpired() && closeIfNotInUse(entry)) {
+                    continue;
+                }
+                if (isStale(entry, session)) {
+                    retire(entry);
+                    continue;
+                }
+                if (entry.acquire()) {
+                    if (entry.retired) {
+                        // replaced concurrently, do not hand out the old UGI
+                        release(entry, true);
+                        continue;
+                    }
+                    HITS.increment();
+                    session.setCacheEntry(entry);
+                    return entry.getUGI();
                 }
-                entry = new Entry(ticker, ugi, session);
-                delayQueue.offer(entry);
-                cache.put(session, entry);
+                // the entry was closed concurrently, make room for a new one
+                cache.remove(session, entry);
+                continue;
+            }
+
+            try {
+                entry = cache.computeIfAbsent(session, key -> createEntry(key, isProxyUser));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (entry.acquire()) {
+                session.setCacheEntry(entry);
+                return entry.getUGI();
             }
-            entry.incrementRefCount();
-            return entry.getUGI();
         }
     }
 
     /**
      * Decrement reference count for the given session's UGI. Resets the time at which the UGI will
-     * expire to UGI_CACHE_EXPIRY milliseconds in the future.
+     * expire to UGI_CACHE_EXPIRY milliseconds in the future. The UGI released is the one returned
+     * for the session by {@link #getUserGroupInformation}, even if it has been replaced since.
      *
      * @param session                  the session for which we want to release the UGI.
      * @param cleanImmediatelyIfNoRefs if true, destroys the UGI for the given session (only if it
-     *                                 is now unreferenced).
+     *                                 is now unreferenced). Ignored for shared sessions, whose UGIs
+     *                                 are kept until they expire.
      */
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
     public void release(SessionId session, boolean cleanImmediatelyIfNoRefs) {
 
-        Entry entry = cache.get(session);
+        Entry entry = session.getCacheEntry();
+        if (entry == null) {
+            entry = cache.get(session);
+        }
 
         if (entry == null) {
             throw new IllegalStateException("Cannot release UGI for this session; it is not cached: " + session);
         }
 
-        DelayQueue<Entry> expirationQueue = getExpirationQueue(session.getSegmentId());
+        release(entry, cleanImmediatelyIfNoRefs);
+    }
 
-        synchronized (expirationQueue) {
-            entry.decrementRefCount();
-            expirationQueue.remove(entry);
-            if (cleanImmediatelyIfNoRefs && entry.isNotInUse()) {
-                closeUGI(entry);
-            } else {
-                // Reset expiration time and put it back in the queue
-                // only when we don't close the UGI
-                entry.resetTime();
-                expirationQueue.offer(entry);
+    private void release(Entry entry, boolean cleanImmediatelyIfNoRefs) {
+        entry.resetTime();
+        entry.release();
+        boolean clean = entry.getSession().isShared() ? entry.closeOnRelease : cleanImmediatelyIfNoRefs;
+        if (clean) {
+            closeIfNotInUse(entry);
+        }
+    }
+
+    /**
+     * Destroys all expired UGIs that are not referenced. Called periodically by the reaper thread.
+     */
+    void cleanup() {
+        for (Entry entry : cache.values()) {
+            if ((entry.isExpired() || isTooOld(entry)) && !closeIfNotInUse(entry)) {
+                // The UGI object is still being used by another thread
+                LOG.debug("{} Skipping close of FileSystem for proxy user = {}", entry.getSession(), entry.getSession().getUser());
             }
         }
+        LOG.debug("UGI cache size = {}", cache.size());
+    }
+
+    /**
+     * Stops the reaper thread. Cached UGIs are left to the JVM shutdown.
+     */
+    public void close() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
     }
 
     /**
@@ -147,87 +235,112 @@ public class UGICache {
     }
 
     /**
-     * This method is not thread-safe, and is intended to be called in tests.
+     * This method is O(n) in the number of cache entries and is intended to be called in tests.
      *
-     * @return the sum of the sizes of the internal queues
+     * @return the number of entries that have not been closed
      */
     int allQueuesSize() {
         int count = 0;
-        for (DelayQueue queue : expirationQueueMap.values()) {
-            count += queue.size();
+        for (Entry entry : cache.values()) {
+            if (!entry.isClosed()) {
+                count++;
+            }
         }
         return count;
     }
 
     /**
-     * This method is O(n) in the number of cache entries and should only be called in tests.
-     *
      * @param session
      * @return determine whether the session is in the internal cache
      */
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
     boolean contains(SessionId session) {
-        DelayQueue<Entry> expirationQueue = getExpirationQueue(session.getSegmentId());
-        synchronized (expirationQueue) {
-            Entry entry = cache.get(session);
-            return entry != null && expirationQueue.contains(entry);
+        Entry entry = cache.get(session);
+        return entry != null && !entry.isClosed();
+    }
+
+    private Entry createEntry(SessionId session, boolean isProxyUser) {
+        String user = session.getUser();
+        UserGroupInformation ugi;
+        try {
+            if (isProxyUser) {
+                LOG.debug("{} Creating proxy user = {}", session, user);
+                ugi = ugiProvider.createProxyUGI(user, session.getLoginUser());
+            } else {
+                LOG.debug("{} Creating remote user = {}", session, user);
+                ugi = ugiProvider.createRemoteUser(user, session);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CREATIONS.increment();
+
+        Entry entry = new Entry(ticker, ugi, session);
+        if (session.isShared()) {
+            if (sharedEntries.incrementAndGet() > maxSharedEntries) {
+                // too many shared UGIs, do not keep this one once it is released
+                sharedEntries.decrementAndGet();
+                entry.closeOnRelease = true;
+            } else {
+                entry.counted.set(true);
+            }
         }
+        entry.resetTime();
+        return entry;
     }
 
     /**
-     * Get the queue of cache entries associated with a segment, creating it if it doesn't yet
-     * exist. This lets us lazily populate the expirationQueueMap.
-     *
-     * @param segmentId
-     * @return the {@link DelayQueue} associated to the segment.
+     * @return true if the entry is a shared UGI older than the maximum age
      */
-    private DelayQueue<Entry> getExpirationQueue(Integer segmentId) {
-        DelayQueue<Entry> queue = expirationQueueMap.get(segmentId);
-        if (queue == null) {
-            synchronized (expirationQueueMap) {
-                queue = expirationQueueMap.get(segmentId);
-                if (queue == null) {
-                    queue = new DelayQueue<>();
-                    expirationQueueMap.put(segmentId, queue);
-                }
-            }
-        }
-        return queue;
+    private boolean isTooOld(Entry entry) {
+        return entry.getSession().isShared() && maxSharedAge > 0 && entry.isOlderThan(maxSharedAge);
     }
 
     /**
-     * Iterate through all the entries in the queue and close expired {@link UserGroupInformation},
-     * otherwise it resets the timer for every non-expired entry.
+     * A shared UGI must not be reused once the login UGI it was created from has been replaced,
+     * the proxy UGI and its FileSystem instances keep using the old credentials.
      *
-     * @param expirationQueue
+     * @return true if the entry must be replaced for the given session
      */
-    private void cleanup(DelayQueue<Entry> expirationQueue) {
+    private boolean isStale(Entry entry, SessionId session) {
+        return session.isShared() &&
+                (entry.getSession().getLoginUser() != session.getLoginUser() || isTooOld(entry));
+    }
 
-        Entry expiredUGI;
-        while ((expiredUGI = expirationQueue.poll()) != null) {
-            if (expiredUGI.isNotInUse()) {
-                closeUGI(expiredUGI);
-            } else {
-                // The UGI object is still being used by another thread
-                String fsMsg = "FileSystem for proxy user = " + expiredUGI.getSession().getUser();
-                LOG.debug("{} Skipping close of {}", expiredUGI.getSession().toString(), fsMsg);
-                // Place it back in the queue if still in use and was not closed
-                expiredUGI.resetTime();
-                expirationQueue.offer(expiredUGI);
-            }
-            LOG.debug("Delay Queue Size for segment {} = {}", expiredUGI.getSession().getSegmentId(), expirationQueue.size());
+    /**
+     * Removes the entry from the cache so that the next request creates a new UGI. The entry is
+     * closed now if it is not referenced, otherwise when it is released for the last time.
+     */
+    private void retire(Entry entry) {
+        LOG.debug("{} Replacing UGI created at {}", entry.getSession(), entry.createdTime);
+        entry.retired = true;
+        entry.closeOnRelease = true;
+        if (cache.remove(entry.getSession(), entry)) {
+            uncount(entry);
         }
+        closeIfNotInUse(entry);
     }
 
     /**
-     * This method must be called from a synchronized block for the delayQueue for the given
-     * session.getSegmentId(). Removes the cachedUGI from the internal cache and then passes it to
-     * {@link UGIProvider} to destroy the UGI.
+     * Gives back the place of a shared entry in the cache, once.
+     */
+    private void uncount(Entry entry) {
+        if (entry.counted.compareAndSet(true, false)) {
+            sharedEntries.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes the entry if it is not referenced. Removes it from the internal cache and then passes
+     * its UGI to {@link UGIProvider} to destroy it.
      *
-     * @param expiredUGI
+     * @param entry the entry to close
+     * @return true if the entry was closed by this call
      */
-    private void closeUGI(Entry expiredUGI) {
-        SessionId session = expiredUGI.getSession();
+    private boolean closeIfNotInUse(Entry entry) {
+        if (!entry.close()) {
+            return false;
+        }
+        SessionId session = entry.getSession();
         String fsMsg = "FileSystem for proxy user = " + session.getUser();
 
         LOG.debug("{} Closing {} (Cache Size = {})", session.toString(), fsMsg, cache.size());
@@ -235,24 +348,37 @@ public class UGICache {
         try {
             // Remove it from cache, as cache now has an
             // expired entry which is not in progress
-            cache.remove(session);
-            ugiProvider.destroy(expiredUGI.getUGI());
+            cache.remove(session, entry);
+            EVICTIONS.increment();
+            uncount(entry);
+            ugiProvider.destroy(entry.getUGI());
 
         } catch (Throwable t) {
             LOG.warn(session.toString() + " Error closing " + fsMsg, t);
         }
+        return true;
     }
 
     /**
      * Stores a {@link UserGroupInformation}, and determines when to expire the UGI.
      */
-    private static class Entry implements Delayed {
+    static class Entry {
+
+        // reference count of a closed entry, which can no longer be acquired
+        private static final int CLOSED = -1;
 
         private final SessionId session;
         private final UserGroupInformation proxyUGI;
         private final AtomicInteger referenceCount = new AtomicInteger();
         private final Ticker ticker;
+        private final long createdTime;
         private volatile long startTime;
+        // set for shared sessions that exceed the size limit of the cache, or have been replaced
+        private volatile boolean closeOnRelease;
+        // set for shared sessions that have been replaced by a new entry
+        private volatile boolean retired;
+        // set while the entry counts towards the size limit of shared sessions
+        private final AtomicBoolean counted = new AtomicBoolean();
 
         /**
          * Creates a new UGICache Entry.
@@ -265,6 +391,7 @@ public class UGICache {
             this.ticker = ticker;
             this.proxyUGI = proxyUGI;
             this.session = session;
+            this.createdTime = currentTimeMillis();
         }
 
         /**
@@ -274,7 +401,6 @@ public class UGICache {
             return proxyUGI;
         }
 
-
         /**
          * @return the session associated to the {@link UserGroupInformation}.
          */
@@ -283,63 +409,71 @@ public class UGICache {
         }
 
         /**
-         * @return true if the UGI is being referenced by a session, false otherwise
+         * Increments the number of references accessing the {@link UserGroupInformation}, unless
+         * the entry has been closed.
+         *
+         * @return true if the reference was acquired, false if the entry is closed
          */
-        private boolean isNotInUse() {
-            return referenceCount.get() <= 0;
+        boolean acquire() {
+            int count;
+            do {
+                count = referenceCount.get();
+                if (count == CLOSED) {
+                    return false;
+                }
+            } while (!referenceCount.compareAndSet(count, count + 1));
+            return true;
         }
 
         /**
-         * Increments the number of references accessing the {@link UserGroupInformation}.
+         * Decrements the number of references accessing the {@link UserGroupInformation}.
          */
-        void incrementRefCount() {
-            referenceCount.incrementAndGet();
+        void release() {
+            int count;
+            do {
+                count = referenceCount.get();
+                if (count <= 0) {
+                    throw new IllegalStateException("UGICache.Entry referenceCount may not be decremented past 0.");
+                }
+            } while (!referenceCount.compareAndSet(count, count - 1));
         }
 
         /**
-         * Decrements the number of references accessing the {@link UserGroupInformation}.
+         * Marks the entry as closed if it is not referenced.
+         *
+         * @return true if the entry was closed by this call
          */
-        void decrementRefCount() {
-            int count = referenceCount.decrementAndGet();
-            if (count < 0) {
-                throw new IllegalStateException("UGICache.Entry referenceCount may not be decremented past 0.");
-            }
+        boolean close() {
+            return referenceCount.compareAndSet(0, CLOSED);
         }
 
         /**
-         * Resets the timer for removing this Entry from the cache.
+         * @return true if the entry has been closed
          */
-        void resetTime() {
-            startTime = currentTimeMillis();
+        boolean isClosed() {
+            return referenceCount.get() == CLOSED;
         }
 
         /**
-         * {@inheritDoc}
+         * Resets the timer for removing this Entry from the cache.
          */
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return unit.convert(getDelayMillis(), TimeUnit.MILLISECONDS);
+        void resetTime() {
+            startTime = currentTimeMillis();
         }
 
         /**
-         * Compare the expiry time of this cache entry to another cache entry's expiry time.
-         *
-         * @param other a UGICache.Entry (passing any other kind of Delayed produces an error)
-         * @see java.lang.Comparable<>#compareTo(java.lang.Comparable<>)
+         * @return true if the entry has not been released for UGI_CACHE_EXPIRY milliseconds
          */
-        @Override
-        public int compareTo(Delayed other) {
-            if (!(other instanceof Entry)) return 1;
-
-            Entry that = (Entry) other;
-            return Long.compare(this.getDelayMillis(), that.getDelayMillis());
+        boolean isExpired() {
+            return (startTime + UGI_CACHE_EXPIRY) - currentTimeMillis() <= 0;
         }
 
         /**
-         * @return the number of milliseconds remaining before this cache entry expires.
+         * @param maxAge maximum age in milliseconds
+         * @return true if the entry was created at least maxAge milliseconds ago
          */
-        private long getDelayMillis() {
-            return (startTime + UGI_CACHE_EXPIRY) - currentTimeMillis();
+        boolean isOlderThan(long maxAge) {
+            return (createdTime + maxAge) - currentTimeMillis() <= 0;
         }
 
         /**
@@ -0,0 +1,303 @@
+package org.greenplum.pxf.service.bridge;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.hadoop.security.UserGroupInformation;
+import org.greenplum.pxf.api.BadRecordException;
+import org.greenplum.pxf.api.OneField;
+import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.io.Writable;
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.AccessorFactory;
+import org.greenplum.pxf.api.utilities.Metrics;
+import org.greenplum.pxf.api.utilities.ResolverFactory;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ReadBridge} that overlaps reading from the data source with
+ * serializing and sending records to GPDB. A producer thread drives
+ * {@code accessor.readNextObject()} and {@code resolver.getFields()} and hands
+ * the resolved records to the servlet thread through a bounded queue; the
+ * servlet thread only converts them to the output format and writes them.
+ * When the queue is full the producer blocks, so at most {@code depth}
+ * records are held in memory per fragment.
+ * <p>
+ * Accessors and resolvers used with this bridge must not reuse the objects
+ * they return between calls, since a returned record is consumed only after
+ * the next ones have been read.
+ */
+public class PipelinedReadBridge extends ReadBridge {
+
+    private static final ExecutorService PRODUCERS = Executors.newCachedThreadPool(new ProducerThreadFactory());
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private static final LongAdder PRODUCER_STALLS = Metrics.counter("bridge.readahead.producer.stalls");
+    private static final LongAdder CONSUMER_STALLS = Metrics.counter("bridge.readahead.consumer.stalls");
+
+    /**
+     * Marks the end of the data source, no more items follow it.
+     */
+    private static final Item END = new Item(null, null, null);
+
+    private final BlockingQueue<Item> readAheadQueue;
+    private volatile boolean stopped;
+    private boolean finished;
+    private Item pending;
+    private Future<?> producer;
+
+    /**
+     * C'tor - set the implementation of the bridge.
+     *
+     * @param context input containing accessor and resolver names
+     * @param depth   maximum number of records read ahead of the consumer
+     */
+    public PipelinedReadBridge(RequestContext context, int depth) {
+        this(context, depth, AccessorFactory.getInstance(), ResolverFactory.getInstance());
+    }
+
+    PipelinedReadBridge(RequestContext context, int depth, AccessorFactory accessorFactory, ResolverFactory resolverFactory) {
+        super(context, accessorFactory, resolverFactory);
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Read-ahead depth must be positive, got " + depth);
+        }
+        readAheadQueue = new ArrayBlockingQueue<>(depth);
+    }
+
+    /**
+     * Opens the data source and starts the producer thread. The producer runs
+     * as the same user as the calling thread.
+     */
+    @Override
+    public boolean beginIteration() throws Exception {
+        if (!super.beginIteration()) {
+            return false;
+        }
+        final UserGroupInformation ugi = UserGroupInformation.getCurrentUser();
+        producer = PRODUCERS.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ugi.doAs(new PrivilegedExceptionAction<Void>() {
+                        @Override
+                        public Void run() throws Exception {
+                            produce();
+                            return null;
+                        }
+                    });
+                } catch (Throwable t) {
+                    enqueue(new Item(null, null, t));
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Waits until the next record can be returned by {@link #getNext()}
+     * without waiting for the data source, or until the timeout elapses. Lets
+     * the servlet thread wake up to flush the response while the data source
+     * is slow.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return true if the next call to getNext will not wait for the producer
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitNext(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!outputQueue.isEmpty() || finished || pending != null) {
+            return true;
+        }
+        pending = readAheadQueue.poll(timeout, unit);
+        return pending != null;
+    }
+
+    /**
+     * Takes the next resolved record from the read-ahead queue and turns it
+     * into a record that the GPDB backend can process. Errors raised by the
+     * producer are reported in the same way as {@link ReadBridge} does.
+     */
+    @Override
+    public Writable getNext() throws Exception {
+        if (!outputQueue.isEmpty()) {
+            return outputQueue.pop();
+        }
+        if (finished) {
+            return null;
+        }
+
+        while (true) {
+            Item item = pending != null ? pending : readAheadQueue.poll();
+            pending = null;
+            if (item == null) {
+                CONSUMER_STALLS.increment();
+                item = readAheadQueue.take();
+            }
+
+            if (item == END) {
+                finished = true;
+                Writable output = outputBuilder.getPartialLine();
+                if (output != null) {
+                    LOG.warn("A partial record in the end of the fragment");
+                }
+                return output;
+            }
+
+            if (item.error != null) {
+                return handleError(item);
+            }
+
+            outputQueue = outputBuilder.makeOutput(item.fields);
+            if (!outputQueue.isEmpty()) {
+                return outputQueue.pop();
+            }
+        }
+    }
+
+    /**
+     * Stops the producer thread, waits for it to finish and closes the
+     * underlying resource.
+     */
+    @Override
+    public void endIteration() throws Exception {
+        stopped = true;
+        pending = null;
+        if (producer != null) {
+            readAheadQueue.clear();
+            try {
+                producer.get();
+            } catch (ExecutionException e) {
+                LOG.debug("Read-ahead producer failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            readAheadQueue.clear();
+            producer = null;
+        }
+        super.endIteration();
+    }
+
+    /**
+     * Reads and resolves records until the data source is exhausted, an error
+     * other than a data error occurs, or the bridge is stopped.
+     */
+    private void produce() {
+        while (!stopped) {
+            OneRow onerow = null;
+            try {
+                onerow = accessor.readNextObject();
+                if (onerow == null) {
+                    enqueue(END);
+                    return;
+                }
+                enqueue(new Item(onerow, resolver.getFields(onerow), null));
+            } catch (IOException ex) {
+                enqueue(new Item(onerow, null, ex));
+                if (!isDataException(ex)) {
+                    return;
+                }
+            } catch (BadRecordException ex) {
+                enqueue(new Item(onerow, null, ex));
+            } catch (Throwable t) {
+                enqueue(new Item(onerow, null, t));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Puts an item on the queue, blocking while it is full unless the bridge
+     * is stopped.
+     */
+    private void enqueue(Item item) {
+        try {
+            if (readAheadQueue.offer(item)) {
+                return;
+            }
+            PRODUCER_STALLS.increment();
+            while (!stopped) {
+                if (readAheadQueue.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            stopped = true;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Writable handleError(Item item) throws Exception {
+        Throwable error = item.error;
+        if (error instanceof IOException && isDataException((IOException) error)) {
+            return outputBuilder.getErrorOutput((IOException) error);
+        }
+        if (error instanceof BadRecordException) {
+            String rowInfo = (item.row != null) ? item.row.toString() : "[record was not created]";
+            LOG.debug("BadRecordException {}: {}", (error.getCause() != null) ? error.getCause() : error, rowInfo);
+            return outputBuilder.getErrorOutput((BadRecordException) error);
+        }
+        finished = true;
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error instanceof Exception) {
+            throw (Exception) error;
+        }
+        throw new Exception(error);
+    }
+
+    /**
+     * A record read ahead by the producer, or the error raised while reading it.
+     */
+    private static class Item {
+        final OneRow row;
+        final List<OneField> fields;
+        final Throwable error;
+
+        Item(OneRow row, List<OneField> fields, Throwable error) {
+            this.row = row;
+            this.fields = fields;
+            this.error = error;
+        }
+    }
+
+    private static class ProducerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "pxf-read-ahead-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
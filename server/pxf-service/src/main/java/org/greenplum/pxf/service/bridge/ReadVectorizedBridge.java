@@ -21,28 +21,53 @@ package org.greenplum.pxf.service.bridge;
 
 import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.ReadColumnarResolver;
 import org.greenplum.pxf.api.ReadVectorizedResolver;
+import org.greenplum.pxf.api.io.ColumnBatch;
 import org.greenplum.pxf.api.io.Writable;
+import org.greenplum.pxf.api.model.OutputFormat;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.utilities.AccessorFactory;
 import org.greenplum.pxf.api.utilities.ResolverFactory;
+import org.greenplum.pxf.service.io.ColumnBatchWritable;
 
 import java.util.Deque;
+import java.util.LinkedList;
 import java.util.List;
 
 
+/**
+ * Bridge for resolvers that resolve a batch of records at once. When the
+ * resolver provides columnar batches and the output format is GPDBWritable,
+ * batches are serialized straight from their columns.
+ */
 public class ReadVectorizedBridge extends ReadBridge {
 
+    private final ColumnBatchWritable columnarOutput;
+    private final Deque<Writable> columnarQueue = new LinkedList<>();
+
     public ReadVectorizedBridge(RequestContext context) {
         this(context, AccessorFactory.getInstance(), ResolverFactory.getInstance());
     }
 
     ReadVectorizedBridge(RequestContext context, AccessorFactory accessorFactory, ResolverFactory resolverFactory) {
         super(context, accessorFactory, resolverFactory);
+        columnarOutput = (resolver instanceof ReadColumnarResolver
+                && context.getOutputFormat() == OutputFormat.GPDBWritable) ?
+                new ColumnBatchWritable(context) : null;
     }
 
     @Override
     protected Deque<Writable> makeOutput(OneRow oneRow) throws Exception {
+        if (columnarOutput != null) {
+            ColumnBatch batch = ((ReadColumnarResolver) resolver).getColumnBatch(oneRow);
+            columnarQueue.clear();
+            if (batch != null && batch.getSize() > 0) {
+                columnarOutput.set(batch);
+                columnarQueue.add(columnarOutput);
+            }
+            return columnarQueue;
+        }
         List<List<OneField>> resolvedBatch = ((ReadVectorizedResolver) resolver).
                 getFieldsForBatch(oneRow);
         return outputBuilder.makeVectorizedOutput(resolvedBatch);
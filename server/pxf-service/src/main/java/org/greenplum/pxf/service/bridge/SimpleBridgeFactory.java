@@ -9,6 +9,8 @@ import org.slf4j.LoggerFactory;
 public class SimpleBridgeFactory implements BridgeFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(SimpleBridgeFactory.class);
+    private static final String PROPERTY_KEY_READ_AHEAD_DEPTH = "pxf.service.bridge.readahead.depth";
+    private static final String READ_AHEAD_OPTION = "READ_AHEAD";
     private static final SimpleBridgeFactory instance = new SimpleBridgeFactory();
 
     /**
@@ -31,7 +33,8 @@ public class SimpleBridgeFactory implements BridgeFactory {
         } else if (useVectorization(context)) {
             bridge = new ReadVectorizedBridge(context);
         } else {
-            bridge = new ReadBridge(context);
+            int depth = getReadAheadDepth(context);
+            bridge = depth > 0 ? new PipelinedReadBridge(context, depth) : new ReadBridge(context);
         }
         return bridge;
     }
@@ -51,4 +54,18 @@ public class SimpleBridgeFactory implements BridgeFactory {
         return Utilities.implementsInterface(requestContext.getResolver(), ReadVectorizedResolver.class);
     }
 
+    /**
+     * Returns the number of records to read ahead of the servlet thread. The
+     * READ_AHEAD option of the request overrides the server-wide
+     * pxf.service.bridge.readahead.depth property, 0 disables read-ahead.
+     *
+     * @param requestContext input protocol data
+     * @return read-ahead depth, 0 if read-ahead is disabled
+     */
+    int getReadAheadDepth(RequestContext requestContext) {
+        int depth = requestContext.getOption(READ_AHEAD_OPTION, Integer.getInteger(PROPERTY_KEY_READ_AHEAD_DEPTH, 0), true);
+        LOG.debug("Read-ahead depth is {}", depth);
+        return Math.max(depth, 0);
+    }
+
 }
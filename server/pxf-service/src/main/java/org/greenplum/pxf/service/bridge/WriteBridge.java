@@ -23,7 +23,13 @@ package org.greenplum.pxf.service.bridge;
 import org.greenplum.pxf.api.BadRecordException;
 import org.greenplum.pxf.api.OneField;
 import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.PassThroughResolver;
+import org.greenplum.pxf.api.WriteChunkAccessor;
+import org.greenplum.pxf.api.WriteVectorizedAccessor;
+import org.greenplum.pxf.api.WriteVectorizedResolver;
+import org.greenplum.pxf.api.io.ColumnBatch;
 import org.greenplum.pxf.api.io.Writable;
+import org.greenplum.pxf.api.model.OutputFormat;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.utilities.AccessorFactory;
 import org.greenplum.pxf.api.utilities.ResolverFactory;
@@ -36,22 +42,49 @@ import java.util.List;
  * WriteBridge class creates appropriate accessor and resolver.
  * It reads data from inputStream by the resolver,
  * and writes it to the Hadoop storage with the accessor.
+ *
+ * When both the resolver and the accessor support batches and the data comes
+ * in GPDBWritable format, records are collected into a ColumnBatch and handed
+ * to the plugins a whole batch at a time. The batch size is taken from the
+ * WRITE_BATCH_SIZE option or the pxf.service.write.batch.size property,
+ * 0 disables batching.
+ *
+ * When the data comes in TEXT format, the resolver passes it through
+ * unchanged and the accessor can write blocks of lines, the data is read
+ * in blocks ending at a line break and written without being split into
+ * rows. The block size is taken from the WRITE_CHUNK_SIZE option or the
+ * pxf.service.write.chunk.size property, 0 disables chunked writes.
  */
 public class WriteBridge extends BaseBridge {
 
+    static final String PROPERTY_KEY_WRITE_BATCH_SIZE = "pxf.service.write.batch.size";
+    static final String WRITE_BATCH_SIZE_OPTION = "WRITE_BATCH_SIZE";
+    static final int DEFAULT_WRITE_BATCH_SIZE = 1024;
+    static final String PROPERTY_KEY_WRITE_CHUNK_SIZE = "pxf.service.write.chunk.size";
+    static final String WRITE_CHUNK_SIZE_OPTION = "WRITE_CHUNK_SIZE";
+    static final int DEFAULT_WRITE_CHUNK_SIZE = BridgeInputBuilder.DEFAULT_CHUNK_SIZE;
+
     private final BridgeInputBuilder inputBuilder;
+    private final int batchSize;
+    private final int chunkSize;
+    private ColumnBatch batch;
+    private int batchRows;
 
     /*
      * C'tor - set the implementation of the bridge
      */
     public WriteBridge(RequestContext context) {
-        super(context);
-        inputBuilder = new BridgeInputBuilder(context);
+        this(context, AccessorFactory.getInstance(), ResolverFactory.getInstance());
     }
 
     WriteBridge(RequestContext context, AccessorFactory accessorFactory, ResolverFactory resolverFactory) {
         super(context, accessorFactory, resolverFactory);
         inputBuilder = new BridgeInputBuilder(context);
+        batchSize = useBatches(context) ?
+                context.getOption(WRITE_BATCH_SIZE_OPTION, Integer.getInteger(PROPERTY_KEY_WRITE_BATCH_SIZE, DEFAULT_WRITE_BATCH_SIZE), true) : 0;
+        chunkSize = useChunks(context) ?
+                context.getOption(WRITE_CHUNK_SIZE_OPTION, Integer.getInteger(PROPERTY_KEY_WRITE_CHUNK_SIZE, DEFAULT_WRITE_CHUNK_SIZE), true) : 0;
+        LOG.debug("Write batch size is {}, chunk size is {}", batchSize, chunkSize);
     }
 
     @Override
@@ -65,6 +98,12 @@ public class WriteBridge extends BaseBridge {
      */
     @Override
     public boolean setNext(DataInputStream inputStream) throws Exception {
+        if (batchSize > 0) {
+            return setNextInBatch(inputStream);
+        }
+        if (chunkSize > 0) {
+            return setNextChunk(inputStream);
+        }
 
         List<OneField> record = inputBuilder.makeInput(inputStream);
         if (record == null) {
@@ -82,14 +121,97 @@ public class WriteBridge extends BaseBridge {
     }
 
     /*
-     * Close the underlying resource
+     * Read a record from stream into the current batch, and write the batch
+     * once it is full or the stream has ended.
+     */
+    private boolean setNextInBatch(DataInputStream inputStream) throws Exception {
+        if (batch == null) {
+            batch = inputBuilder.makeBatch(batchSize);
+        }
+        if (!inputBuilder.makeInput(inputStream, batch, batchRows)) {
+            flushBatch();
+            return false;
+        }
+        if (++batchRows == batchSize) {
+            flushBatch();
+        }
+        return true;
+    }
+
+    /*
+     * Read a block of lines from stream and write it as is
+     */
+    private boolean setNextChunk(DataInputStream inputStream) throws Exception {
+        int length = inputBuilder.makeChunk(inputStream, chunkSize);
+        if (length == 0) {
+            return false;
+        }
+        if (!((WriteChunkAccessor) accessor).writeNextChunk(inputBuilder.getChunk(), 0, length)) {
+            throw new BadRecordException();
+        }
+        return true;
+    }
+
+    /*
+     * Resolve and write the records collected in the current batch
+     */
+    private void flushBatch() throws Exception {
+        if (batchRows == 0) {
+            return;
+        }
+        batch.setSize(batchRows);
+        // the batch is cleared first so a failed write is not retried
+        batchRows = 0;
+        try {
+            OneRow onerow = ((WriteVectorizedResolver) resolver).setFieldsForBatch(batch);
+            if (onerow != null && !((WriteVectorizedAccessor) accessor).writeNextObjectBatch(onerow)) {
+                throw new BadRecordException();
+            }
+        } finally {
+            batch.reset(batchSize);
+        }
+    }
+
+    /*
+     * Whether records can be handed to the plugins in batches
+     */
+    private boolean useBatches(RequestContext context) {
+        return context.getOutputFormat() == OutputFormat.GPDBWritable
+                && resolver instanceof WriteVectorizedResolver
+                && accessor instanceof WriteVectorizedAccessor;
+    }
+
+    /*
+     * Whether TEXT data can be written in blocks bypassing the resolver
+     */
+    private boolean useChunks(RequestContext context) {
+        return context.getOutputFormat() == OutputFormat.TEXT
+                && resolver instanceof PassThroughResolver
+                && accessor instanceof WriteChunkAccessor;
+    }
+
+    /*
+     * Close the underlying resource, writing any records left in the batch
      */
     public void endIteration() throws Exception {
+        Exception failure = null;
+        try {
+            flushBatch();
+        } catch (Exception e) {
+            LOG.error("Failed to write the last batch: {}", e.getMessage());
+            failure = e;
+        }
         try {
             accessor.closeForWrite();
         } catch (Exception e) {
             LOG.error("Failed to close bridge resources: {}", e.getMessage());
-            throw e;
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        inputBuilder.releaseChunk();
+        if (failure != null) {
+            throw failure;
         }
     }
 
@@ -0,0 +1,243 @@
+package org.greenplum.pxf.service.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.io.BufferPool;
+import org.greenplum.pxf.api.io.MemoryBudget;
+import org.greenplum.pxf.api.utilities.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Output stream that buffers the data of a response before handing it to the
+ * servlet container, so that records are sent in large chunks rather than
+ * one small write per field. The buffer is taken from a shared pool for the
+ * duration of the request.
+ * <p>
+ * The buffer is flushed when it is full, when the stream is closed, and when
+ * data has been waiting in the buffer for longer than the flush timeout, so
+ * that slow data sources still deliver their first rows promptly. The stream
+ * is used by the request thread only: idle data is flushed by the next write,
+ * or by {@link #flushIfIdle()} when the caller wakes up after
+ * {@link #getIdleFlushDelayNanos()} without anything to write.
+ * <p>
+ * The buffer size, flush timeout and number of pooled buffers are configured
+ * with the {@value #PROPERTY_KEY_BUFFER_SIZE}, {@value #PROPERTY_KEY_FLUSH_TIMEOUT}
+ * and {@value #PROPERTY_KEY_POOLED_BUFFERS} system properties. A flush
+ * timeout of 0 disables flushing of idle buffers.
+ */
+public class BufferedResponseStream extends OutputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BufferedResponseStream.class);
+
+    static final String PROPERTY_KEY_BUFFER_SIZE = "pxf.service.response.buffer.size";
+    static final String PROPERTY_KEY_FLUSH_TIMEOUT = "pxf.service.response.flush.timeout";
+    static final String PROPERTY_KEY_POOLED_BUFFERS = "pxf.service.response.buffer.pooled";
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = 200;
+    private static final int DEFAULT_POOLED_BUFFERS = 64;
+
+    private static final BufferPool DEFAULT_POOL = new BufferPool(
+            Integer.getInteger(PROPERTY_KEY_BUFFER_SIZE, DEFAULT_BUFFER_SIZE),
+            Integer.getInteger(PROPERTY_KEY_POOLED_BUFFERS, DEFAULT_POOLED_BUFFERS));
+    private static final long DEFAULT_FLUSH_TIMEOUT =
+            Long.getLong(PROPERTY_KEY_FLUSH_TIMEOUT, DEFAULT_FLUSH_TIMEOUT_MILLIS);
+
+    private static final LongAdder BYTES = Metrics.counter("bridge.response.bytes");
+    private static final LongAdder FLUSHES = Metrics.counter("bridge.response.flushes");
+    private static final LongAdder IDLE_FLUSHES = Metrics.counter("bridge.response.flushes.idle");
+
+    private final OutputStream out;
+    private final BufferPool pool;
+    private final long flushTimeoutNanos;
+    private byte[] buffer;
+    private int count;
+    private long lastFlushNanos;
+    private long bytesWritten;
+    private long flushes;
+
+    /**
+     * Creates a stream writing to the given container stream, using the
+     * configured buffer pool and flush timeout.
+     *
+     * @param out the stream of the response
+     */
+    public BufferedResponseStream(OutputStream out) {
+        this(out, DEFAULT_POOL, DEFAULT_FLUSH_TIMEOUT);
+    }
+
+    /**
+     * Creates a stream writing to the given container stream, using the
+     * configured buffer pool and flush timeout. The buffer is charged to the
+     * given memory account.
+     *
+     * @param out     the stream of the response
+     * @param account the memory account of the request, null for no accounting
+     */
+    public BufferedResponseStream(OutputStream out, MemoryBudget.Account account) {
+        this(out, DEFAULT_POOL.withAccount(account), DEFAULT_FLUSH_TIMEOUT);
+    }
+
+    /**
+     * Creates a stream writing to the given stream, with a buffer from the
+     * given pool.
+     *
+     * @param out                the stream of the response
+     * @param pool               the pool to take the buffer from
+     * @param flushTimeoutMillis time after which buffered data is flushed, 0 to disable
+     */
+    BufferedResponseStream(OutputStream out, BufferPool pool, long flushTimeoutMillis) {
+        this.out = out;
+        this.pool = pool;
+        this.buffer = pool.take();
+        this.flushTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(flushTimeoutMillis);
+        this.lastFlushNanos = System.nanoTime();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        // single bytes come in bursts from DataOutput, the clock is checked on array writes
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len >= buffer.length) {
+            // no point in copying data that fills the whole buffer anyway
+            flushBuffer();
+            writeOut(b, off, len);
+            return;
+        }
+        if (len > buffer.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+        flushIfIdle();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes the buffered data and returns the buffer to the pool. The
+     * underlying stream is flushed but not closed, it is owned by the
+     * servlet container.
+     *
+     * @throws IOException if the buffered data could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+            LOG.debug("Response stream closed after writing {} bytes in {} flushes", bytesWritten, flushes);
+        }
+    }
+
+    /**
+     * @return the number of bytes handed to the underlying stream so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the number of writes to the underlying stream so far
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Returns how long the buffered data may still wait before it is due to
+     * be flushed. A caller waiting for more data to write should wait no
+     * longer than this and then call {@link #flushIfIdle()}.
+     *
+     * @return the time until the buffer is due, 0 if it is due already, or
+     * {@link Long#MAX_VALUE} if there is nothing to flush
+     */
+    public long getIdleFlushDelayNanos() {
+        if (buffer == null || count == 0 || flushTimeoutNanos == 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, flushTimeoutNanos - (System.nanoTime() - lastFlushNanos));
+    }
+
+    /**
+     * Flushes the buffer if data has been waiting in it for longer than the
+     * flush timeout.
+     *
+     * @return true if the buffer was flushed
+     * @throws IOException if the buffered data could not be written
+     */
+    public boolean flushIfIdle() throws IOException {
+        if (getIdleFlushDelayNanos() > 0) {
+            return false;
+        }
+        flushBuffer();
+        out.flush();
+        IDLE_FLUSHES.increment();
+        return true;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            int length = count;
+            count = 0;
+            writeOut(buffer, 0, length);
+        }
+    }
+
+    private void writeOut(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        lastFlushNanos = System.nanoTime();
+        bytesWritten += len;
+        flushes++;
+        BYTES.add(len);
+        FLUSHES.increment();
+    }
+}
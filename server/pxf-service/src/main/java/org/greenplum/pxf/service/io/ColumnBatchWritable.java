@@ -0,0 +1,213 @@
+package org.greenplum.pxf.service.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.BadRecordException;
+import org.greenplum.pxf.api.io.ColumnBatch;
+import org.greenplum.pxf.api.io.DataType;
+import org.greenplum.pxf.api.io.GPDBWritable;
+import org.greenplum.pxf.api.io.Writable;
+import org.greenplum.pxf.api.model.RequestContext;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Serializes a {@link ColumnBatch} in the GPDBWritable wire format. Each
+ * record of the batch is copied from the column vectors into a single reused
+ * {@link GPDBWritable} through its primitive setters and written out, so no
+ * {@link org.greenplum.pxf.api.OneField} or boxed value is created per cell.
+ * <p>
+ * The column types of a batch are checked against the table schema once, when
+ * the batch is set, with the same rules that
+ * {@link org.greenplum.pxf.service.BridgeOutputBuilder} applies to every record.
+ */
+public class ColumnBatchWritable implements Writable {
+
+    private final GPDBWritable record;
+    private final int[] schema;
+    private final String[] colNames;
+    private ColumnBatch batch;
+
+    /**
+     * Creates a serializer for the table schema of the request.
+     *
+     * @param context request context holding the table schema
+     */
+    public ColumnBatchWritable(RequestContext context) {
+        int numColumns = context.getColumns();
+        schema = new int[numColumns];
+        colNames = new String[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            schema[i] = context.getColumn(i).columnTypeCode();
+            colNames[i] = context.getColumn(i).columnName();
+        }
+        record = new GPDBWritable(schema);
+    }
+
+    /**
+     * Sets the batch to serialize.
+     *
+     * @param batch batch of records
+     * @throws BadRecordException if the columns of the batch do not match the
+     *                            table schema
+     */
+    public void set(ColumnBatch batch) throws BadRecordException {
+        if (batch.getNumColumns() != schema.length) {
+            throw new BadRecordException("Record has " + batch.getNumColumns()
+                    + " fields but the schema size is " + schema.length);
+        }
+        for (int i = 0; i < schema.length; i++) {
+            DataType type = batch.getColumn(i).getType();
+            if (!isTypeInSchema(type, DataType.get(schema[i]))) {
+                throw new BadRecordException("For field " + colNames[i]
+                        + " schema requires type "
+                        + DataType.get(schema[i]).toString()
+                        + " but input record has type "
+                        + type);
+            }
+        }
+        this.batch = batch;
+    }
+
+    /**
+     * Returns the number of records in the current batch.
+     *
+     * @return number of records
+     */
+    public int getSize() {
+        return batch == null ? 0 : batch.getSize();
+    }
+
+    /**
+     * Writes all records of the batch.
+     *
+     * @param out <code>DataOutput</code> to serialize the batch into.
+     * @throws IOException if writing failed
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        if (batch == null) {
+            throw new IOException("ColumnBatchWritable was not set");
+        }
+        int size = batch.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < schema.length; col++) {
+                fillField(batch.getColumn(col), row, col);
+            }
+            record.write(out);
+        }
+    }
+
+    /**
+     * This function is not supported.
+     *
+     * @param in <code>DataInput</code> to deserialize this object from
+     * @throws UnsupportedOperationException this function is not supported
+     */
+    @Override
+    public void readFields(DataInput in) {
+        throw new UnsupportedOperationException(
+                "ColumnBatchWritable.readFields() is not implemented");
+    }
+
+    private void fillField(ColumnBatch.Column column, int row, int colIdx) throws IOException {
+        if (column.isNull(row)) {
+            record.setNull(colIdx);
+            return;
+        }
+        switch (column.getType()) {
+            case INTEGER:
+                record.setInt(colIdx, (int) column.getLong(row));
+                break;
+            case FLOAT8:
+                record.setDouble(colIdx, column.getDouble(row));
+                break;
+            case REAL:
+                record.setFloat(colIdx, (float) column.getDouble(row));
+                break;
+            case BIGINT:
+                record.setLong(colIdx, column.getLong(row));
+                break;
+            case SMALLINT:
+                record.setShort(colIdx, (short) column.getLong(row));
+                break;
+            case BOOLEAN:
+                record.setBoolean(colIdx, column.getLong(row) != 0);
+                break;
+            case BYTEA:
+                record.setBytes(colIdx, column.getBytes(row), column.getStart(row), column.getLength(row));
+                break;
+            case VARCHAR:
+            case BPCHAR:
+            case TEXT:
+                record.setText(colIdx, column.getBytes(row), column.getStart(row), column.getLength(row));
+                break;
+            default:
+                record.setString(colIdx, String.valueOf(column.getObject(row)));
+        }
+    }
+
+    /**
+     * Tests if a column of the given type can be written to a schema column.
+     * Fixed-width and binary types must match exactly, text-like types can be
+     * written to any text-like column.
+     */
+    private static boolean isTypeInSchema(DataType recType, DataType schemaType) {
+        if (recType == null) {
+            return false;
+        }
+        switch (recType) {
+            case INTEGER:
+            case FLOAT8:
+            case REAL:
+            case BIGINT:
+            case SMALLINT:
+            case BOOLEAN:
+            case BYTEA:
+                return recType == schemaType;
+            case VARCHAR:
+            case BPCHAR:
+            case TEXT:
+            case NUMERIC:
+            case TIMESTAMP:
+            case DATE:
+                return schemaType == DataType.UNSUPPORTED_TYPE || isStringType(schemaType);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isStringType(DataType type) {
+        switch (type) {
+            case VARCHAR:
+            case BPCHAR:
+            case TEXT:
+            case NUMERIC:
+            case TIMESTAMP:
+            case TIMESTAMP_WITH_TIME_ZONE:
+            case DATE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
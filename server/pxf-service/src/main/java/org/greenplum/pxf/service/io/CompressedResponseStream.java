@@ -0,0 +1,258 @@
+package org.greenplum.pxf.service.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Output stream that compresses the data of a response with the gzip or
+ * deflate content coding. The coding is negotiated with the Accept-Encoding
+ * header of the request, so clients that do not ask for compression keep
+ * getting the data as is.
+ * <p>
+ * Every flush emits a sync flush block, so data flushed by the
+ * {@link BufferedResponseStream} in front of this stream can be decoded by
+ * the client right away. Closing the stream writes the end of the
+ * compressed data but does not close the underlying stream, which is owned
+ * by the servlet container.
+ * <p>
+ * The compression level is taken from the {@value #COMPRESSION_LEVEL_OPTION}
+ * option of the request or the {@value #PROPERTY_KEY_COMPRESSION_LEVEL}
+ * system property. Level 0 disables compression.
+ */
+public class CompressedResponseStream extends DeflaterOutputStream {
+
+    static final String PROPERTY_KEY_COMPRESSION_LEVEL = "pxf.service.response.compression.level";
+    static final String COMPRESSION_LEVEL_OPTION = "STREAM_COMPRESSION_LEVEL";
+
+    private static final int DEFAULT_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final byte[] GZIP_HEADER = {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final LongAdder BYTES_IN = Metrics.counter("bridge.response.compression.bytes.in");
+    private static final LongAdder BYTES_OUT = Metrics.counter("bridge.response.compression.bytes.out");
+
+    static {
+        // compressed size in percent of the original size, over all responses so far
+        Metrics.gauge("bridge.response.compression.ratio", () -> {
+            long in = BYTES_IN.sum();
+            return in == 0 ? 100 : BYTES_OUT.sum() * 100 / in;
+        });
+    }
+
+    /**
+     * Content codings supported for responses, in order of preference.
+     */
+    public enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String name;
+
+        Encoding(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the name of the coding in HTTP headers
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final Encoding encoding;
+    private final CRC32 crc;
+    private long framingBytes;
+    private long bytesIn;
+    private long bytesOut;
+    private boolean closed;
+
+    /**
+     * Creates a stream compressing data with the given coding and level
+     * before writing it to the given stream.
+     *
+     * @param out      the stream of the response
+     * @param encoding the content coding
+     * @param level    the compression level, 1 to 9
+     * @throws IOException if the gzip header could not be written
+     */
+    public CompressedResponseStream(OutputStream out, Encoding encoding, int level) throws IOException {
+        // gzip wraps raw deflate data, deflate is zlib-wrapped as HTTP requires
+        super(out, new Deflater(level, encoding == Encoding.GZIP), BUFFER_SIZE, true);
+        this.encoding = encoding;
+        if (encoding == Encoding.GZIP) {
+            crc = new CRC32();
+            out.write(GZIP_HEADER);
+            framingBytes = GZIP_HEADER.length;
+        } else {
+            crc = null;
+        }
+    }
+
+    /**
+     * Returns the coding to compress the response with, based on the
+     * Accept-Encoding header of the request.
+     *
+     * @param acceptEncoding values of the Accept-Encoding header, may be null
+     * @return the coding to use, or null to send the response uncompressed
+     */
+    public static Encoding negotiate(List<String> acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        Encoding result = null;
+        for (String header : acceptEncoding) {
+            for (String coding : header.split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim().toLowerCase(Locale.ROOT);
+                if (isRefused(parts)) {
+                    continue;
+                }
+                for (Encoding encoding : Encoding.values()) {
+                    if (encoding.getName().equals(name) && (result == null || encoding.ordinal() < result.ordinal())) {
+                        result = encoding;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the compression level requested for the response.
+     *
+     * @param context the request context
+     * @return the compression level, 0 if the response is not to be compressed
+     */
+    public static int getLevel(RequestContext context) {
+        int level = context.getOption(COMPRESSION_LEVEL_OPTION,
+                Integer.getInteger(PROPERTY_KEY_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL), true);
+        if (level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format(
+                    "Property %s has incorrect value %d : must be between 0 and %d",
+                    COMPRESSION_LEVEL_OPTION, level, Deflater.BEST_COMPRESSION));
+        }
+        return level;
+    }
+
+    /*
+     * Whether a coding of the Accept-Encoding header has a quality value of 0
+     */
+    private static boolean isRefused(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+    }
+
+    /**
+     * @return the coding of this stream
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return the number of bytes compressed so far
+     */
+    public long getBytesIn() {
+        return closed ? bytesIn : def.getBytesRead();
+    }
+
+    /**
+     * @return the number of compressed bytes written so far, including the gzip framing
+     */
+    public long getBytesOut() {
+        return closed ? bytesOut : def.getBytesWritten() + framingBytes;
+    }
+
+    /**
+     * Writes the end of the compressed data and releases the compressor.
+     * The underlying stream is flushed but not closed.
+     *
+     * @throws IOException if the compressed data could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            finish();
+            if (crc != null) {
+                writeTrailer();
+            }
+            out.flush();
+        } finally {
+            bytesIn = def.getBytesRead();
+            bytesOut = def.getBytesWritten() + framingBytes;
+            closed = true;
+            def.end();
+            BYTES_IN.add(bytesIn);
+            BYTES_OUT.add(bytesOut);
+        }
+    }
+
+    /*
+     * Writes the gzip trailer: CRC-32 and size of the uncompressed data, little endian
+     */
+    private void writeTrailer() throws IOException {
+        byte[] trailer = new byte[8];
+        writeInt((int) crc.getValue(), trailer, 0);
+        writeInt((int) def.getBytesRead(), trailer, 4);
+        out.write(trailer);
+        framingBytes += trailer.length;
+    }
+
+    private static void writeInt(int value, byte[] buf, int offset) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >> 8);
+        buf[offset + 2] = (byte) (value >> 16);
+        buf[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -20,7 +20,11 @@ package org.greenplum.pxf.service.profile;
  */
 
 
+import org.apache.commons.lang.StringUtils;
+import org.greenplum.pxf.api.model.Plugin;
 import org.greenplum.pxf.api.model.PluginConf;
+import org.greenplum.pxf.api.model.ProtocolHandler;
+import org.greenplum.pxf.api.utilities.PluginRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +37,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import static org.greenplum.pxf.service.profile.ProfileConfException.MessageFormat.NO_PLUGINS_IN_PROFILE_DEF;
 import static org.greenplum.pxf.service.profile.ProfileConfException.MessageFormat.NO_PROFILE_DEF;
@@ -51,6 +56,9 @@ public class ProfilesConf implements PluginConf {
     private final static ProfilesConf INSTANCE = new ProfilesConf();
     private final String externalProfilesFilename;
 
+    private final static String[] PRELOADED_PLUGINS = {
+            Profile.Plugins.FRAGMENTER, Profile.Plugins.ACCESSOR, Profile.Plugins.RESOLVER};
+
     // maps a profileName --> Profile object
     private Map<String, Profile> profilesMap;
 
@@ -112,6 +120,44 @@ public class ProfilesConf implements PluginConf {
         return getProfile(profileName).getHandler();
     }
 
+    /**
+     * Resolves the fragmenter, accessor, resolver and handler classes of all
+     * profiles in the {@link PluginRegistry}, so that the first requests do not
+     * pay for loading them. Classes that are not available are skipped, they
+     * are reported when a request uses them.
+     *
+     * @return the number of classes resolved
+     */
+    public int preloadPlugins() {
+        PluginRegistry registry = PluginRegistry.getInstance();
+        int count = 0;
+        for (Profile profile : profilesMap.values()) {
+            Map<String, String> plugins = profile.getPluginsMap();
+            for (String key : PRELOADED_PLUGINS) {
+                String className = plugins.get(key);
+                if (StringUtils.isNotBlank(className)) {
+                    count += preload(profile, className, () -> registry.getFactory(className, Plugin.class));
+                }
+            }
+            String handler = profile.getHandler();
+            if (StringUtils.isNotBlank(handler)) {
+                count += preload(profile, handler, () -> registry.getSingleton(handler, ProtocolHandler.class));
+            }
+        }
+        LOG.info("Resolved {} plugin classes of PXF profiles", count);
+        return count;
+    }
+
+    private int preload(Profile profile, String className, Callable<?> resolver) {
+        try {
+            resolver.call();
+            return 1;
+        } catch (Exception e) {
+            LOG.debug("Unable to resolve class {} of profile {}: {}", className, profile.getName(), e.toString());
+            return 0;
+        }
+    }
+
     private Profile getProfile(String profileName) {
         Profile profile = profilesMap.get(profileName);
         if (profile == null) {
@@ -20,13 +20,19 @@ package org.greenplum.pxf.service.rest;
  */
 
 import org.apache.catalina.connector.ClientAbortException;
+import org.greenplum.pxf.api.io.BufferWritable;
+import org.greenplum.pxf.api.io.MemoryBudget;
 import org.greenplum.pxf.api.io.Writable;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.service.HttpRequestParser;
 import org.greenplum.pxf.service.RequestParser;
+import org.greenplum.pxf.service.ResourceLockManager;
 import org.greenplum.pxf.service.bridge.Bridge;
 import org.greenplum.pxf.service.bridge.BridgeFactory;
+import org.greenplum.pxf.service.bridge.PipelinedReadBridge;
 import org.greenplum.pxf.service.bridge.SimpleBridgeFactory;
+import org.greenplum.pxf.service.io.BufferedResponseStream;
+import org.greenplum.pxf.service.io.CompressedResponseStream;
 
 import javax.servlet.ServletContext;
 import javax.ws.rs.GET;
@@ -41,7 +47,8 @@ import javax.ws.rs.core.StreamingOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /*
  * This class handles the subpath /<version>/Bridge/ of this
@@ -58,10 +65,11 @@ public class BridgeResource extends BaseResource {
      * jetty ({@link StreamingOutput}), after we are getting out of this class's
      * context.
      * <p/>
-     * BRIDGE_LOCK is accessed through lock() and unlock() functions, based on
-     * the isThreadSafe parameter that is determined by the bridge.
+     * Locks are taken per resource (server and data source) through lock()
+     * and unlock() functions, based on the isThreadSafe parameter that is
+     * determined by the bridge.
      */
-    private static final ReentrantLock BRIDGE_LOCK = new ReentrantLock();
+    private static final ResourceLockManager BRIDGE_LOCKS = new ResourceLockManager("bridge");
 
     /**
      * Creates an instance of the resource with the default singletons of RequestParser and BridgeFactory.
@@ -102,7 +110,16 @@ public class BridgeResource extends BaseResource {
         boolean isThreadSafe = context.isThreadSafe() && bridge.isThreadSafe();
         LOG.debug("Request for {} will be handled {} synchronization", context.getDataSource(), (isThreadSafe ? "without" : "with"));
 
-        return readResponse(bridge, context, isThreadSafe);
+        // compress the data only if the client asked for it
+        CompressedResponseStream.Encoding encoding = null;
+        int level = CompressedResponseStream.getLevel(context);
+        if (level > 0) {
+            encoding = CompressedResponseStream.negotiate(headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING));
+        }
+        LOG.debug("Response for {} will be sent {}", context.getDataSource(),
+                (encoding == null ? "uncompressed" : "with " + encoding.getName() + " encoding, level " + level));
+
+        return readResponse(bridge, context, isThreadSafe, encoding, level);
     }
 
     /**
@@ -110,11 +127,15 @@ public class BridgeResource extends BaseResource {
      * @param bridge bridge to use to read data
      * @param context request context
      * @param threadSafe whether streaming can proceed in parallel
+     * @param encoding content coding to compress the data with, null to send it uncompressed
+     * @param level compression level
      * @return response object to be used by the container
      */
-    private Response readResponse(final Bridge bridge, RequestContext context, final boolean threadSafe) {
+    private Response readResponse(final Bridge bridge, final RequestContext context, final boolean threadSafe,
+                                  final CompressedResponseStream.Encoding encoding, final int level) {
         final int fragment = context.getDataFragment();
         final String dataDir = context.getDataSource();
+        final String lockKey = ResourceLockManager.getKey(context);
 
         // Creating an internal streaming class which will iterate
         // the records and put them on the output stream
@@ -124,20 +145,45 @@ public class BridgeResource extends BaseResource {
                     WebApplicationException {
                 long recordCount = 0;
 
-                if (!threadSafe) {
-                    lock(dataDir);
-                }
+                // new streams wait while the buffers of the running ones use up the memory budget,
+                // before taking the resource lock so that a waiting stream does not block others
+                MemoryBudget.Account account = MemoryBudget.getInstance().open(dataDir + ":" + fragment);
+                context.setMemoryAccount(account);
+                Lock lock = threadSafe ? null : lock(lockKey);
                 try {
                     if (!bridge.beginIteration()) {
+                        if (encoding != null) {
+                            // the response is declared compressed, send an empty compressed body
+                            new CompressedResponseStream(out, encoding, level).close();
+                        }
                         return;
                     }
                     Writable record;
-                    DataOutputStream dos = new DataOutputStream(out);
-
-                    LOG.debug("Starting streaming fragment {} of resource {}", fragment, dataDir);
-                    while ((record = bridge.getNext()) != null) {
-                        record.write(dos);
-                        ++recordCount;
+                    // records are buffered and handed to the container (or the compressor) in large chunks
+                    try (CompressedResponseStream compressed = (encoding == null) ? null : new CompressedResponseStream(out, encoding, level);
+                         BufferedResponseStream responseStream = new BufferedResponseStream(compressed == null ? out : compressed, account)) {
+                        DataOutputStream dos = new DataOutputStream(responseStream);
+
+                        // with read-ahead, wake up to flush the data of a slow source on this thread
+                        PipelinedReadBridge pipelined = (bridge instanceof PipelinedReadBridge) ? (PipelinedReadBridge) bridge : null;
+
+                        LOG.debug("Starting streaming fragment {} of resource {}", fragment, dataDir);
+                        while (true) {
+                            if (pipelined != null) {
+                                while (!pipelined.awaitNext(responseStream.getIdleFlushDelayNanos(), TimeUnit.NANOSECONDS)) {
+                                    responseStream.flushIfIdle();
+                                }
+                            }
+                            if ((record = bridge.getNext()) == null) {
+                                break;
+                            }
+                            record.write(dos);
+                            if (record instanceof BufferWritable) {
+                                // give pooled read buffers back as soon as they are sent
+                                ((BufferWritable) record).release();
+                            }
+                            ++recordCount;
+                        }
                     }
                     LOG.debug("Finished streaming fragment {} of resource {}, {} records.", fragment, dataDir, recordCount);
                 } catch (ClientAbortException e) {
@@ -157,35 +203,43 @@ public class BridgeResource extends BaseResource {
                     } catch (Exception e) {
                         // ignore ... any significant errors should already have been handled
                     }
-                    if (!threadSafe) {
-                        unlock(dataDir);
+                    if (lock != null) {
+                        unlock(lock, lockKey);
                     }
+                    account.close();
                 }
             }
         };
 
-        return Response.ok(streaming, MediaType.APPLICATION_OCTET_STREAM).build();
+        Response.ResponseBuilder response = Response.ok(streaming, MediaType.APPLICATION_OCTET_STREAM);
+        if (encoding != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, encoding.getName());
+        }
+        return response.build();
     }
 
     /**
-     * Locks BRIDGE_LOCK
+     * Locks the resource of the request
      *
-     * @param path path for the request, used for logging.
+     * @param key lock key of the resource for the request
+     * @return the acquired lock
      */
-    private void lock(String path) {
-        LOG.trace("Locking BridgeResource for {}", path);
-        BRIDGE_LOCK.lock();
-        LOG.trace("Locked BridgeResource for {}", path);
+    private Lock lock(String key) {
+        LOG.trace("Locking BridgeResource for {}", key);
+        Lock lock = BRIDGE_LOCKS.lock(key);
+        LOG.trace("Locked BridgeResource for {}", key);
+        return lock;
     }
 
     /**
-     * Unlocks BRIDGE_LOCK
+     * Unlocks the resource of the request
      *
-     * @param path path for the request, used for logging.
+     * @param lock lock acquired by {@link #lock(String)}
+     * @param key  lock key of the resource for the request, used for logging.
      */
-    private void unlock(String path) {
-        LOG.trace("Unlocking BridgeResource for {}", path);
-        BRIDGE_LOCK.unlock();
-        LOG.trace("Unlocked BridgeResource for {}", path);
+    private void unlock(Lock lock, String key) {
+        LOG.trace("Unlocking BridgeResource for {}", key);
+        lock.unlock();
+        LOG.trace("Unlocked BridgeResource for {}", key);
     }
 }
@@ -0,0 +1,69 @@
+package org.greenplum.pxf.service.rest;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.utilities.FragmenterCacheFactory;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Class allowing to drop fragments kept in the source cache across transactions,
+ * e.g. after data was changed in a way that does not change the version of the
+ * data source.
+ *
+ * The expected format of a path is "
+ * {@code http://<host>:<port>/pxf/FragmenterCache/invalidate?server=<server>&path=<path>}"
+ * where both parameters are optional. The expected response is "
+ * {@code {"invalidated":<number of entries>}}"
+ */
+@Path("/FragmenterCache")
+public class FragmenterCacheResource {
+
+    private final FragmenterCacheFactory fragmenterCacheFactory;
+
+    public FragmenterCacheResource() {
+        this(FragmenterCacheFactory.getInstance());
+    }
+
+    FragmenterCacheResource(FragmenterCacheFactory fragmenterCacheFactory) {
+        this.fragmenterCacheFactory = fragmenterCacheFactory;
+    }
+
+    /**
+     * Removes the cached fragments of the given server and data source.
+     *
+     * @param server the name of the server, all servers if not given
+     * @param path   the data source, all data sources of the server if not given
+     * @return response with the number of entries removed
+     */
+    @POST
+    @Path("invalidate")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response invalidate(@QueryParam("server") final String server,
+                               @QueryParam("path") final String path) {
+        int count = fragmenterCacheFactory.invalidateSources(server, path);
+        return Response.ok("{\"invalidated\":" + count + "}", MediaType.APPLICATION_JSON_TYPE).build();
+    }
+}
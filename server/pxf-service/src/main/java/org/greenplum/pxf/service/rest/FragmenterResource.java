@@ -19,8 +19,10 @@ package org.greenplum.pxf.service.rest;
  * under the License.
  */
 
+import com.google.common.cache.Cache;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.log4j.Level;
+import org.greenplum.pxf.api.model.CacheableFragmenter;
 import org.greenplum.pxf.api.model.Fragment;
 import org.greenplum.pxf.api.model.FragmentStats;
 import org.greenplum.pxf.api.model.Fragmenter;
@@ -29,7 +31,10 @@ import org.greenplum.pxf.api.utilities.FragmenterCacheFactory;
 import org.greenplum.pxf.api.utilities.FragmenterFactory;
 import org.greenplum.pxf.api.utilities.FragmentsResponse;
 import org.greenplum.pxf.api.utilities.FragmentsResponseFormatter;
+import org.greenplum.pxf.api.utilities.Metrics;
 import org.greenplum.pxf.api.utilities.Utilities;
+import org.greenplum.pxf.service.FragmentPeers;
+import org.greenplum.pxf.service.FragmentScheduler;
 import org.greenplum.pxf.service.HttpRequestParser;
 import org.greenplum.pxf.service.RequestParser;
 import org.greenplum.pxf.service.SessionId;
@@ -44,9 +49,14 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.greenplum.pxf.api.model.RequestContext.RequestType;
 
@@ -61,10 +71,20 @@ import static org.greenplum.pxf.api.model.RequestContext.RequestType;
 @Path("/" + Version.PXF_PROTOCOL_VERSION + "/Fragmenter/")
 public class FragmenterResource extends BaseResource {
 
+    private static final LongAdder SOURCE_CACHE_HITS = Metrics.counter("fragmenter.source.cache.hits");
+    private static final LongAdder SOURCE_CACHE_MISSES = Metrics.counter("fragmenter.source.cache.misses");
+    private static final LongAdder SOURCE_CACHE_STALE = Metrics.counter("fragmenter.source.cache.stale");
+    private static final LongAdder PEER_REQUESTS = Metrics.counter("fragmenter.peer.requests");
+
+    private static final String PEER_FRAGMENTS_PATH =
+            "/pxf/" + Version.PXF_PROTOCOL_VERSION + "/Fragmenter/getPeerFragments";
+
     private FragmenterFactory fragmenterFactory;
 
     private FragmenterCacheFactory fragmenterCacheFactory;
 
+    private FragmentPeers fragmentPeers;
+
     // Records the startTime of the fragmenter call
     private long startTime;
 
@@ -78,9 +98,17 @@ public class FragmenterResource extends BaseResource {
     FragmenterResource(RequestParser<HttpHeaders> parser,
                        FragmenterFactory fragmenterFactory,
                        FragmenterCacheFactory fragmenterCacheFactory) {
+        this(parser, fragmenterFactory, fragmenterCacheFactory, FragmentPeers.getInstance());
+    }
+
+    FragmenterResource(RequestParser<HttpHeaders> parser,
+                       FragmenterFactory fragmenterFactory,
+                       FragmenterCacheFactory fragmenterCacheFactory,
+                       FragmentPeers fragmentPeers) {
         super(RequestType.FRAGMENTER, parser);
         this.fragmenterFactory = fragmenterFactory;
         this.fragmenterCacheFactory = fragmenterCacheFactory;
+        this.fragmentPeers = fragmentPeers;
         if (LOG.isDebugEnabled() && Utilities.isFragmenterCacheEnabled()) {
             LOG.debug("fragmentCache size={}, stats={}",
                     fragmenterCacheFactory.getCache().size(),
@@ -109,44 +137,67 @@ public class FragmenterResource extends BaseResource {
         startTime = System.currentTimeMillis();
         final RequestContext context = parseRequest(headers);
         final String path = context.getDataSource();
-        final String fragmenterCacheKey = getFragmenterCacheKey(context);
 
         LOG.debug("FRAGMENTER started for path \"{}\"", path);
 
-        List<Fragment> fragments;
-
-        if (Utilities.isFragmenterCacheEnabled()) {
-            try {
-                // We can't support lambdas here because asm version doesn't support it
-                fragments = fragmenterCacheFactory.getCache()
-                        .get(fragmenterCacheKey, new Callable<List<Fragment>>() {
-                            @Override
-                            public List<Fragment> call() throws Exception {
-                                didThreadProcessFragmentCall = true;
-                                LOG.debug("Caching fragments for transactionId={} from segmentId={} with key={}",
-                                        context.getTransactionId(), context.getSegmentId(), fragmenterCacheKey);
-                                return getFragments(context);
-                            }
-                        });
-            } catch (UncheckedExecutionException | ExecutionException e) {
-                // Unwrap the error
-                if (e.getCause() != null)
-                    throw e.getCause();
-                throw e;
-            }
+        List<Fragment> fragments = getCachedFragments(context, headers);
 
-            if (!didThreadProcessFragmentCall) {
-                logFragmentStatistics(Level.DEBUG, context, fragments);
+        FragmentsResponse fragmentsResponse;
+        if (context.isSegmentFragmentsOnly()) {
+            /*
+             * Every PXF instance schedules the segments on the host names given by the
+             * fragmenter, so the cached fragments keep them and the response gets copies
+             * with addresses. Indexes are assigned over the full list before it is filtered.
+             */
+            List<Fragment> responseFragments = new ArrayList<>(fragments.size());
+            for (Fragment fragment : fragments) {
+                responseFragments.add(new Fragment(fragment));
             }
+            FragmentsResponseFormatter.formatResponse(responseFragments, path);
+            fragmentsResponse = new FragmentsResponse(
+                    FragmentScheduler.getInstance().getSegmentFragments(context, fragments, responseFragments));
         } else {
-            LOG.debug("Fragmenter cache is disabled");
-            fragments = getFragments(context);
+            fragmentsResponse = FragmentsResponseFormatter.formatResponse(fragments, path);
         }
-
-        FragmentsResponse fragmentsResponse = FragmentsResponseFormatter.formatResponse(fragments, path);
         return Response.ok(fragmentsResponse, MediaType.APPLICATION_JSON_TYPE).build();
     }
 
+    /**
+     * The function is called when
+     * {@code http://host:port/pxf/{version}/Fragmenter/getPeerFragments} is
+     * used by another PXF instance that fetches the fragments of a query
+     * from this instance instead of computing them itself.
+     *
+     * @param servletContext Servlet context contains attributes required by
+     *                       SecuredHDFS
+     * @param headers        Holds HTTP headers forwarded from the original request
+     * @return response object with the fragments in the peer format
+     * @throws Exception if getting fragments info failed
+     */
+    @GET
+    @Path("getPeerFragments")
+    @Produces("application/json")
+    public Response getPeerFragments(@Context final ServletContext servletContext,
+                                     @Context final HttpHeaders headers)
+            throws Throwable {
+
+        LOG.debug("Received FRAGMENTER call from PXF peer");
+        startTime = System.currentTimeMillis();
+        RequestContext context = parseRequest(headers);
+        PEER_REQUESTS.increment();
+
+        // fragments requested by a peer are never fetched from another peer
+        final List<Fragment> fragments = getCachedFragments(context, null);
+
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                FragmentPeers.writeFragments(fragments, out);
+            }
+        };
+        return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
     /**
      * The function is called when
      * {@code http://nn:port/pxf/{version}/Fragmenter/getFragmentsStats?path=...} is
@@ -181,14 +232,125 @@ public class FragmenterResource extends BaseResource {
         return Response.ok(response, MediaType.APPLICATION_JSON_TYPE).build();
     }
 
+    /**
+     * Returns the fragments for the query from the fragmenter cache, computing
+     * them or fetching them from the owning PXF peer on a cache miss.
+     *
+     * @param context the request context
+     * @param headers the headers of the request, forwarded to the owning
+     *                peer, or null if the fragments must be computed locally
+     * @return the fragments for the query
+     * @throws Throwable if getting the fragments failed
+     */
+    private List<Fragment> getCachedFragments(final RequestContext context, final HttpHeaders headers)
+            throws Throwable {
+        final String fragmenterCacheKey = getFragmenterCacheKey(context);
+        List<Fragment> fragments;
+
+        if (Utilities.isFragmenterCacheEnabled()) {
+            try {
+                // We can't support lambdas here because asm version doesn't support it
+                fragments = fragmenterCacheFactory.getCache()
+                        .get(fragmenterCacheKey, new Callable<List<Fragment>>() {
+                            @Override
+                            public List<Fragment> call() throws Exception {
+                                didThreadProcessFragmentCall = true;
+                                LOG.debug("Caching fragments for transactionId={} from segmentId={} with key={}",
+                                        context.getTransactionId(), context.getSegmentId(), fragmenterCacheKey);
+                                return getFragments(context, headers, fragmenterCacheKey);
+                            }
+                        });
+            } catch (UncheckedExecutionException | ExecutionException e) {
+                // Unwrap the error
+                if (e.getCause() != null)
+                    throw e.getCause();
+                throw e;
+            }
+
+            if (!didThreadProcessFragmentCall) {
+                logFragmentStatistics(Level.DEBUG, context, fragments);
+            }
+        } else {
+            LOG.debug("Fragmenter cache is disabled");
+            fragments = getFragments(context, headers, fragmenterCacheKey);
+        }
+        return fragments;
+    }
+
+    /**
+     * Fetches the fragments from the PXF peer that owns the query when peers
+     * are configured, computing them locally if this instance is the owner
+     * or the owner fails.
+     */
+    private List<Fragment> getFragments(RequestContext context, HttpHeaders headers, String fragmenterCacheKey)
+            throws Exception {
+        String owner = headers == null ? null : fragmentPeers.getOwner(fragmenterCacheKey);
+        if (owner != null) {
+            try {
+                List<Fragment> fragments = fragmentPeers.fetchFragments(owner, PEER_FRAGMENTS_PATH,
+                        headers.getRequestHeaders());
+                logFragmentStatistics(Level.INFO, context, fragments);
+                return fragments;
+            } catch (IOException e) {
+                LOG.warn("Unable to fetch fragments from PXF peer {}, computing them locally: {}",
+                        owner, e.getMessage());
+            }
+        }
+        return getFragments(context);
+    }
+
     private List<Fragment> getFragments(RequestContext context) throws Exception {
         /* Create a fragmenter instance with API level parameters */
-        List<Fragment> fragments = AnalyzeUtils.getSampleFragments(fragmenterFactory.getPlugin(context).getFragments(), context);
+        Fragmenter fragmenter = fragmenterFactory.getPlugin(context);
+        List<Fragment> fragments;
+        if (fragmenter instanceof CacheableFragmenter && Utilities.isSourceCacheEnabled()) {
+            fragments = getSourceFragments(context, (CacheableFragmenter) fragmenter);
+        } else {
+            fragments = fragmenter.getFragments();
+        }
+        fragments = AnalyzeUtils.getSampleFragments(fragments, context);
 
         logFragmentStatistics(Level.INFO, context, fragments);
         return fragments;
     }
 
+    /**
+     * Returns the fragments of the data source from the source cache if the
+     * source has not changed since they were computed, otherwise computes them
+     * and caches them for the current version of the source. The version is
+     * taken before the fragments are computed, so a change made in between
+     * causes the fragments to be computed again by the next query.
+     *
+     * @param context    the request context
+     * @param fragmenter the fragmenter for the data source
+     * @return the fragments of the data source
+     * @throws Exception if the fragments could not be computed
+     */
+    private List<Fragment> getSourceFragments(RequestContext context, CacheableFragmenter fragmenter) throws Exception {
+        String version = fragmenter.getSourceVersion();
+        if (version == null) {
+            return fragmenter.getFragments();
+        }
+
+        Cache<FragmenterCacheFactory.SourceKey, FragmenterCacheFactory.SourceFragments> sourceCache =
+                fragmenterCacheFactory.getSourceCache();
+        FragmenterCacheFactory.SourceKey key = new FragmenterCacheFactory.SourceKey(context);
+        FragmenterCacheFactory.SourceFragments cached = sourceCache.getIfPresent(key);
+        if (cached != null && version.equals(cached.getVersion())) {
+            SOURCE_CACHE_HITS.increment();
+            LOG.debug("Using cached fragments for {} at version {}", key, version);
+            return cached.getFragments();
+        }
+        if (cached != null) {
+            SOURCE_CACHE_STALE.increment();
+        }
+        SOURCE_CACHE_MISSES.increment();
+
+        List<Fragment> fragments = fragmenter.getFragments();
+        sourceCache.put(key, new FragmenterCacheFactory.SourceFragments(version, fragments));
+        return fragments;
+    }
+
     /**
      * Returns a key for the fragmenter cache. TransactionID is not sufficient to key
      * the cache. For the case where we have multiple slices (i.e select a, b from c
@@ -0,0 +1,59 @@
+package org.greenplum.pxf.service.rest;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.greenplum.pxf.api.utilities.Metrics;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+
+/**
+ * Class returning the current values of the PXF service metrics.
+ *
+ * The expected format of a path is "
+ * {@code http://<host>:<port>/pxf/Metrics}" The expected response is a JSON
+ * object mapping metric names to their values, e.g. "
+ * {@code {"bridge.response.bytes":1024,"bridge.response.flushes":1}}"
+ */
+@Path("/Metrics")
+public class MetricsResource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public MetricsResource() {
+    }
+
+    /**
+     * Returns a snapshot of all metrics.
+     *
+     * @return response with the metrics in JSON format
+     * @throws IOException if the metrics could not be serialized
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMetrics() throws IOException {
+        return Response.ok(MAPPER.writeValueAsString(Metrics.snapshot()), MediaType.APPLICATION_JSON_TYPE).build();
+    }
+}
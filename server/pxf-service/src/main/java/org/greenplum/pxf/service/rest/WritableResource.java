@@ -20,10 +20,12 @@ package org.greenplum.pxf.service.rest;
  */
 
 import org.apache.catalina.connector.ClientAbortException;
+import org.greenplum.pxf.api.io.MemoryBudget;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.utilities.Utilities;
 import org.greenplum.pxf.service.HttpRequestParser;
 import org.greenplum.pxf.service.RequestParser;
+import org.greenplum.pxf.service.ResourceLockManager;
 import org.greenplum.pxf.service.bridge.Bridge;
 import org.greenplum.pxf.service.bridge.BridgeFactory;
 import org.greenplum.pxf.service.bridge.SimpleBridgeFactory;
@@ -37,8 +39,10 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.InputStream;
+import java.util.concurrent.locks.Lock;
 
 import static org.greenplum.pxf.api.model.RequestContext.RequestType;
 
@@ -85,6 +89,22 @@ import static org.greenplum.pxf.api.model.RequestContext.RequestType;
 @Path("/" + Version.PXF_PROTOCOL_VERSION + "/Writable/")
 public class WritableResource extends BaseResource {
 
+    /**
+     * Locks for writes done by non-thread-safe plugins, see
+     * {@link ResourceLockManager}.
+     */
+    private static final ResourceLockManager WRITE_LOCKS = new ResourceLockManager("write");
+
+    /**
+     * Size of the buffer incoming data is read through. Records are decoded
+     * a few bytes at a time, so reading them straight from the request
+     * stream would cost a call into the container for every field.
+     */
+    static final String PROPERTY_KEY_INPUT_BUFFER_SIZE = "pxf.service.write.input.buffer.size";
+    private static final int DEFAULT_INPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int INPUT_BUFFER_SIZE =
+            Integer.getInteger(PROPERTY_KEY_INPUT_BUFFER_SIZE, DEFAULT_INPUT_BUFFER_SIZE);
+
     private BridgeFactory bridgeFactory;
 
     /**
@@ -132,20 +152,29 @@ public class WritableResource extends BaseResource {
         boolean isThreadSafe = context.isThreadSafe() && bridge.isThreadSafe();
         LOG.debug("Request for {} will be handled {} synchronization", context.getDataSource(), (isThreadSafe ? "without" : "with"));
 
-        return isThreadSafe ?
-                writeResponse(bridge, path, inputStream) :
-                synchronizedWriteResponse(bridge, path, inputStream);
+        // new streams wait while the buffers of the running ones use up the memory budget
+        try (MemoryBudget.Account account = MemoryBudget.getInstance().open(context.getDataSource() + ":" + context.getSegmentId())) {
+            context.setMemoryAccount(account);
+            return isThreadSafe ?
+                    writeResponse(bridge, path, inputStream) :
+                    synchronizedWriteResponse(bridge, context, path, inputStream);
+        }
     }
 
-    private Response synchronizedWriteResponse(Bridge bridge, String path, InputStream inputStream)
+    private Response synchronizedWriteResponse(Bridge bridge, RequestContext context, String path, InputStream inputStream)
             throws Exception {
 
-        // non tread-safe access will be synchronized on the class level
-        Response result;
-        synchronized (WritableResource.class) {
-            result = writeResponse(bridge, path, inputStream);
+        // non thread-safe access is serialized per output resource, every
+        // segment writes its own file so segments do not wait for each other
+        String key = ResourceLockManager.getKey(context) + ":" + context.getSegmentId();
+        LOG.trace("Locking WritableResource for {}", key);
+        Lock lock = WRITE_LOCKS.lock(key);
+        try {
+            return writeResponse(bridge, path, inputStream);
+        } finally {
+            lock.unlock();
+            LOG.trace("Unlocked WritableResource for {}", key);
         }
-        return result;
     }
 
     private Response writeResponse(Bridge bridge, String path, InputStream inputStream)
@@ -157,7 +186,7 @@ public class WritableResource extends BaseResource {
 
         // dataStream will close automatically in the end of the try.
         // inputStream is closed by dataStream.close().
-        try (DataInputStream dataStream = new DataInputStream(inputStream)) {
+        try (DataInputStream dataStream = new DataInputStream(new BufferedInputStream(inputStream, INPUT_BUFFER_SIZE))) {
             while (bridge.setNext(dataStream)) {
                 ++totalWritten;
             }
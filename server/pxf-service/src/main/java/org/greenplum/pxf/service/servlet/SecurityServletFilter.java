@@ -129,13 +129,24 @@ public class SecurityServletFilter implements Filter {
 
         String remoteUser = (isUserImpersonation ? gpdbUser : serviceUser);
 
-        SessionId session = new SessionId(
-                segmentId,
-                transactionId,
-                remoteUser,
-                serverName,
-                configuration,
-                loginUser);
+        // Shared sessions keep the UGI of the user across transactions, can be enabled per server
+        boolean isSharedSession = configuration.getBoolean(UGICache.CONFIG_KEY_SHARED_SESSIONS,
+                Boolean.getBoolean(UGICache.CONFIG_KEY_SHARED_SESSIONS));
+
+        SessionId session = isSharedSession ?
+                SessionId.shared(
+                        segmentId,
+                        remoteUser,
+                        serverName,
+                        configuration,
+                        loginUser) :
+                new SessionId(
+                        segmentId,
+                        transactionId,
+                        remoteUser,
+                        serverName,
+                        configuration,
+                        loginUser);
 
         final String serviceUserName = serviceUser;
 
@@ -181,6 +192,9 @@ public class SecurityServletFilter implements Filter {
      */
     @Override
     public void destroy() {
+        if (ugiCache != null) {
+            ugiCache.close();
+        }
     }
 
     private Integer getHeaderValueInt(ServletRequest request, String headerKey, boolean required)
@@ -20,6 +20,7 @@ package org.greenplum.pxf.service.servlet;
  */
 
 
+import org.greenplum.pxf.service.profile.ProfilesConf;
 import org.greenplum.pxf.service.utilities.Log4jConfigure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,12 +39,21 @@ public class ServletLifecycleListener implements ServletContextListener {
 	 * Called after the webapp has been initialized.
 	 *
 	 * 1. Initializes log4j.
+	 * 2. Resolves the plugin classes of all profiles.
 	 */
 	@Override
 	public void contextInitialized(ServletContextEvent event) {
 		// 1. Initialize log4j:
 		Log4jConfigure.configure(event);
 
+		// 2. Resolve plugin classes before the first request needs them:
+		try {
+			ProfilesConf.getInstance().preloadPlugins();
+		} catch (ExceptionInInitializerError e) {
+			// profile errors are reported to the requests using them
+			LOG.warn("Unable to load PXF profiles", e.getCause());
+		}
+
 		LOG.info("PXF server webapp initialized");
 	}
 
@@ -21,20 +21,30 @@ package org.greenplum.pxf.service;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.greenplum.pxf.api.BadRecordException;
 import org.greenplum.pxf.api.OneField;
+import org.greenplum.pxf.api.io.ColumnBatch;
+import org.greenplum.pxf.api.io.GPDBWritable;
+import org.greenplum.pxf.api.io.MemoryBudget;
 import org.greenplum.pxf.api.model.OutputFormat;
 import org.greenplum.pxf.api.io.DataType;
 
 import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.ColumnDescriptor;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -125,6 +135,120 @@ public class BridgeInputBuilderTest {
         verifyRecord(record, empty);
     }
 
+    @Test
+    /*
+     * Test the batch makeInput method: GPDBWritable records into a column batch
+     */
+    public void makeInputBatch() throws Exception {
+        RequestContext context = prepareBatchContext();
+        int[] types = {DataType.BIGINT.getOID(), DataType.FLOAT8.getOID(),
+                DataType.TEXT.getOID(), DataType.BOOLEAN.getOID()};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        GPDBWritable record = new GPDBWritable(types);
+        record.setLong(0, 42L);
+        record.setDouble(1, 1.5d);
+        record.setString(2, "first");
+        record.setBoolean(3, true);
+        record.write(out);
+        record = new GPDBWritable(types);
+        record.setNull(0);
+        record.setDouble(1, -2.25d);
+        record.setString(2, "");
+        record.setNull(3);
+        record.write(out);
+
+        inputBuilder = new BridgeInputBuilder(context);
+        inputStream = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ColumnBatch batch = inputBuilder.makeBatch(4);
+
+        assertTrue(inputBuilder.makeInput(inputStream, batch, 0));
+        assertTrue(inputBuilder.makeInput(inputStream, batch, 1));
+        assertFalse(inputBuilder.makeInput(inputStream, batch, 2));
+
+        assertEquals(42L, batch.getColumn(0).getLong(0));
+        assertTrue(batch.getColumn(0).isNull(1));
+        assertEquals(1.5d, batch.getColumn(1).getDouble(0), 0d);
+        assertEquals(-2.25d, batch.getColumn(1).getDouble(1), 0d);
+        assertEquals("first", text(batch.getColumn(2), 0));
+        assertEquals("", text(batch.getColumn(2), 1));
+        assertEquals(1L, batch.getColumn(3).getLong(0));
+        assertTrue(batch.getColumn(3).isNull(1));
+    }
+
+    @Test(expected = BadRecordException.class)
+    /*
+     * Test the batch makeInput method: record types do not match the schema
+     */
+    public void makeInputBatchTypeMismatch() throws Exception {
+        RequestContext context = prepareBatchContext();
+        int[] types = {DataType.TEXT.getOID(), DataType.FLOAT8.getOID(),
+                DataType.TEXT.getOID(), DataType.BOOLEAN.getOID()};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GPDBWritable record = new GPDBWritable(types);
+        record.setString(0, "42");
+        record.setDouble(1, 1.5d);
+        record.setString(2, "first");
+        record.setBoolean(3, true);
+        record.write(new DataOutputStream(bytes));
+
+        inputBuilder = new BridgeInputBuilder(context);
+        inputStream = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        inputBuilder.makeInput(inputStream, inputBuilder.makeBatch(4), 0);
+    }
+
+    @Test
+    /*
+     * Test the makeChunk method: blocks end at line breaks, a long line grows the buffer
+     */
+    public void makeChunk() throws Exception {
+        String data = "ab\ncd\nefghijklmn\nop\nq";
+        prepareInput(data.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("ab\ncd\n", readChunk(8));
+        // the buffer grew to 16 bytes, the rest of the stream fits in it
+        assertEquals("efghijklmn\nop\nq", readChunk(8));
+        assertEquals(0, inputBuilder.makeChunk(inputStream, 8));
+    }
+
+    @Test
+    /*
+     * Test the makeChunk method: empty stream
+     */
+    public void makeChunkEmptyStream() throws Exception {
+        prepareInput(new byte[0]);
+
+        assertEquals(0, inputBuilder.makeChunk(inputStream, 8));
+    }
+
+    @Test
+    /*
+     * Test the makeChunk method: the buffer is charged to the memory account
+     * of the request until it is released
+     */
+    public void makeChunkChargesMemoryAccount() throws Exception {
+        try (MemoryBudget.Account account = MemoryBudget.getInstance().open("test", 0)) {
+            RequestContext context = new RequestContext();
+            context.setOutputFormat(OutputFormat.TEXT);
+            context.setMemoryAccount(account);
+            inputBuilder = new BridgeInputBuilder(context);
+            inputStream = new DataInputStream(new ByteArrayInputStream(
+                    "ab\ncdefghij\n".getBytes(StandardCharsets.UTF_8)));
+
+            assertEquals("ab\n", readChunk(4));
+            assertEquals(4, account.getUsed());
+            // the long line grows the buffer twice, only the last one is charged
+            assertEquals("cdefghij\n", readChunk(4));
+            assertEquals(16, account.getUsed());
+
+            inputBuilder.releaseChunk();
+            assertEquals(0, account.getUsed());
+            assertEquals(16, account.getPeak());
+        }
+    }
+
     /*
      * helpers functions
      */
@@ -146,6 +270,28 @@ public class BridgeInputBuilderTest {
                 new ByteArrayInputStream(data));
     }
 
+    private RequestContext prepareBatchContext() {
+        RequestContext context = new RequestContext();
+        context.setOutputFormat(OutputFormat.GPDBWritable);
+        List<ColumnDescriptor> columns = new ArrayList<>();
+        columns.add(new ColumnDescriptor("id", DataType.BIGINT.getOID(), 0, "int8", null));
+        columns.add(new ColumnDescriptor("amount", DataType.FLOAT8.getOID(), 1, "float8", null));
+        columns.add(new ColumnDescriptor("name", DataType.TEXT.getOID(), 2, "text", null));
+        columns.add(new ColumnDescriptor("flag", DataType.BOOLEAN.getOID(), 3, "bool", null));
+        context.setTupleDescription(columns);
+        return context;
+    }
+
+    private String readChunk(int chunkSize) throws IOException {
+        int length = inputBuilder.makeChunk(inputStream, chunkSize);
+        return new String(inputBuilder.getChunk(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private String text(ColumnBatch.Column column, int row) {
+        return new String(column.getBytes(row), column.getStart(row),
+                column.getLength(row), StandardCharsets.UTF_8);
+    }
+
     private void verifyRecord(List<OneField> record, byte[] expected) {
         assertEquals(record.size(), 1);
 
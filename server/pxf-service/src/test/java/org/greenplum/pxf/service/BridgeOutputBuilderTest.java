@@ -28,6 +28,7 @@ import org.greenplum.pxf.api.model.OutputFormat;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.utilities.ColumnDescriptor;
 import org.greenplum.pxf.api.utilities.Utilities;
+import org.greenplum.pxf.api.io.BufferPool;
 import org.greenplum.pxf.api.io.BufferWritable;
 import org.greenplum.pxf.api.io.GPDBWritable;
 import org.greenplum.pxf.api.io.Writable;
@@ -46,6 +47,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -269,6 +271,49 @@ public class BridgeOutputBuilderTest {
         }
     }
 
+    @Test
+    public void pooledChunkIsPassedThrough() throws Exception {
+        BufferPool pool = new BufferPool(32, 1);
+        byte[] buffer = pool.take();
+        byte[] data = "first line\nsecond line\n".getBytes();
+        System.arraycopy(data, 0, buffer, 0, data.length);
+        BufferWritable chunk = new BufferWritable(buffer, data.length, pool);
+
+        RequestContext context = new RequestContext();
+        addColumn(context, 0, DataType.TEXT, "col0");
+        BridgeOutputBuilder builder = makeBuilder(context);
+        LinkedList<Writable> outputQueue = builder.makeOutput(
+                Arrays.asList(new OneField(DataType.BYTEA.getOID(), chunk)));
+
+        assertEquals(1, outputQueue.size());
+        assertSame(chunk, outputQueue.get(0));
+        compareBufferWritable(outputQueue.get(0), "first line\nsecond line\n");
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void convertPooledChunkToLines() throws Exception {
+        BufferPool pool = new BufferPool(32, 1);
+        byte[] buffer = pool.take();
+        byte[] data = "first line\nsecond".getBytes();
+        System.arraycopy(data, 0, buffer, 0, data.length);
+
+        RequestContext context = new RequestContext();
+        addColumn(context, 0, DataType.TEXT, "col0");
+        // activate sampling code
+        context.setStatsMaxFragments(100);
+        context.setStatsSampleRatio(1f);
+        BridgeOutputBuilder builder = makeBuilder(context);
+        LinkedList<Writable> outputQueue = builder.makeOutput(Arrays.asList(
+                new OneField(DataType.BYTEA.getOID(), new BufferWritable(buffer, data.length, pool))));
+
+        assertEquals(1, outputQueue.size());
+        compareBufferWritable(outputQueue.get(0), "first line\n");
+        compareBufferWritable(builder.getPartialLine(), "second");
+        // the lines were copied out of the chunk, which went back to the pool
+        assertEquals(1, pool.size());
+    }
+
     @Test
     public void convertTextDataToLines() throws Exception {
 
@@ -0,0 +1,169 @@
+package org.greenplum.pxf.service;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.net.httpserver.HttpServer;
+import org.greenplum.pxf.api.model.Fragment;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FragmentPeersTest {
+
+    private HttpServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDisabledWithoutPeers() {
+        FragmentPeers peers = new FragmentPeers(null, null, 1000);
+        assertFalse(peers.isEnabled());
+        assertNull(peers.getOwner("default:XID-1:/foo:null"));
+
+        peers = new FragmentPeers("host1:5888", "host1:5888", 1000);
+        assertFalse(peers.isEnabled());
+    }
+
+    @Test
+    public void testAllPeersAgreeOnOwner() {
+        String list = "host1:5888, host2:5888,host3:5888";
+        FragmentPeers peers1 = new FragmentPeers(list, "host1:5888", 1000);
+        FragmentPeers peers2 = new FragmentPeers(list, "host2:5888", 1000);
+        FragmentPeers peers3 = new FragmentPeers(list, "host3:5888", 1000);
+
+        for (int i = 0; i < 100; i++) {
+            String key = "default:XID-" + i + ":/foo:null";
+            int owners = 0;
+            for (FragmentPeers peers : new FragmentPeers[]{peers1, peers2, peers3}) {
+                if (peers.getOwner(key) == null) {
+                    owners++;
+                }
+            }
+            // exactly one instance computes the fragments, the others agree on it
+            assertEquals(1, owners);
+            String owner = peers1.getOwner(key) != null ? peers1.getOwner(key) : "host1:5888";
+            assertTrue(peers2.getOwner(key) == null || peers2.getOwner(key).equals(owner));
+            assertTrue(peers3.getOwner(key) == null || peers3.getOwner(key).equals(owner));
+        }
+    }
+
+    @Test
+    public void testWriteAndReadFragments() throws IOException {
+        List<Fragment> fragments = makeFragments();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FragmentPeers.writeFragments(fragments, output);
+        List<Fragment> result = FragmentPeers.readFragments(new ByteArrayInputStream(output.toByteArray()));
+
+        assertFragments(fragments, result);
+    }
+
+    @Test
+    public void testFetchFragmentsForwardsPxfHeaders() throws IOException {
+        final byte[] body = encode(makeFragments());
+        final AtomicReference<String> xid = new AtomicReference<>();
+        final AtomicReference<String> other = new AtomicReference<>();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/pxf/v15/Fragmenter/getPeerFragments", exchange -> {
+            xid.set(exchange.getRequestHeaders().getFirst("X-GP-XID"));
+            other.set(exchange.getRequestHeaders().getFirst("Accept-Language"));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String owner = "localhost:" + server.getAddress().getPort();
+
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("X-GP-XID", Collections.singletonList("XID-1"));
+        headers.put("Accept-Language", Collections.singletonList("en"));
+        List<Fragment> result = new FragmentPeers(owner + ",localhost:1", "localhost:1", 5000)
+                .fetchFragments(owner, "/pxf/v15/Fragmenter/getPeerFragments", headers);
+
+        assertFragments(makeFragments(), result);
+        assertEquals("XID-1", xid.get());
+        assertNull(other.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testFetchFragmentsFailsOnError() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        String owner = "localhost:" + server.getAddress().getPort();
+
+        new FragmentPeers(owner + ",localhost:1", "localhost:1", 5000)
+                .fetchFragments(owner, "/pxf/v15/Fragmenter/getPeerFragments", new HashMap<>());
+    }
+
+    private byte[] encode(List<Fragment> fragments) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FragmentPeers.writeFragments(fragments, output);
+        return output.toByteArray();
+    }
+
+    private List<Fragment> makeFragments() {
+        List<Fragment> fragments = new ArrayList<>();
+        Fragment fragment = new Fragment("/foo/bar/file1", new String[]{"host1", "host2"},
+                new byte[]{0, 1, 2}, new byte[]{3, 4}, "hdfs:text");
+        fragment.setLength(1024L * 1024 * 1024);
+        fragments.add(fragment);
+        fragments.add(new Fragment("/foo/bar/file2", null, null));
+        return fragments;
+    }
+
+    private void assertFragments(List<Fragment> expected, List<Fragment> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getSourceName(), actual.get(i).getSourceName());
+            assertArrayEquals(expected.get(i).getReplicas(), actual.get(i).getReplicas());
+            assertArrayEquals(expected.get(i).getMetadata(), actual.get(i).getMetadata());
+            assertArrayEquals(expected.get(i).getUserData(), actual.get(i).getUserData());
+            assertEquals(expected.get(i).getProfile(), actual.get(i).getProfile());
+            assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+        }
+    }
+}
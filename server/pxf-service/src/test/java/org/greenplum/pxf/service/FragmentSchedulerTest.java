@@ -0,0 +1,229 @@
+package org.greenplum.pxf.service;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.model.Fragment;
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.Metrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FragmentSchedulerTest {
+
+    private FragmentScheduler scheduler = FragmentScheduler.getInstance();
+
+    @Test
+    public void testRoundRobinIsDefault() {
+        List<Fragment> fragments = makeFragments(1, 1, 1, 1, 1, 1, 1);
+        RequestContext context = makeContext(1, 3);
+        context.setFragmentShift(4);
+
+        List<Fragment> result = scheduler.getSegmentFragments(context, fragments);
+
+        // positions 3 and 6 are assigned to segment (n + 4) % 3 == 1
+        assertEquals(2, result.size());
+        assertSame(fragments.get(2), result.get(0));
+        assertSame(fragments.get(5), result.get(1));
+    }
+
+    @Test
+    public void testNoSegmentCountReturnsAllFragments() {
+        List<Fragment> fragments = makeFragments(1, 1);
+        RequestContext context = makeContext(0, 0);
+
+        assertSame(fragments, scheduler.getSegmentFragments(context, fragments));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownScheduler() {
+        RequestContext context = makeContext(0, 2);
+        context.addOption(FragmentScheduler.OPTION_FRAGMENT_SCHEDULER, "random");
+
+        scheduler.getSegmentFragments(context, makeFragments(1, 1));
+    }
+
+    @Test
+    public void testBalancedSpreadsLargeFragments() {
+        // round-robin would give all three large fragments to segment 0
+        int[] segments = FragmentScheduler.balance(
+                makeFragments(1000, 1, 1, 1000, 1, 1, 1000, 1, 1), 3, null);
+
+        long[] loads = new long[3];
+        long[] lengths = {1000, 1, 1, 1000, 1, 1, 1000, 1, 1};
+        for (int i = 0; i < segments.length; i++) {
+            loads[segments[i]] += lengths[i];
+        }
+        assertEquals(1002, loads[0]);
+        assertEquals(1002, loads[1]);
+        assertEquals(1002, loads[2]);
+    }
+
+    @Test
+    public void testBalancedUnknownLengthsAreSpreadEvenly() {
+        int[] segments = FragmentScheduler.balance(makeFragments(0, 0, 0, 0, 0, 0), 3, null);
+
+        int[] counts = new int[3];
+        for (int segment : segments) {
+            counts[segment]++;
+        }
+        assertEquals(2, counts[0]);
+        assertEquals(2, counts[1]);
+        assertEquals(2, counts[2]);
+    }
+
+    @Test
+    public void testBalancedPrefersLocalSegments() {
+        List<Fragment> fragments = makeFragments(10, 10, 10, 10);
+        fragments.get(0).setReplicas(new String[]{"127.0.0.2"});
+        fragments.get(1).setReplicas(new String[]{"127.0.0.2"});
+        fragments.get(2).setReplicas(new String[]{"127.0.0.1"});
+        fragments.get(3).setReplicas(new String[]{"127.0.0.1"});
+
+        int[] segments = FragmentScheduler.balance(fragments, 4,
+                new String[]{"127.0.0.1", "127.0.0.1", "127.0.0.2", "127.0.0.2"});
+
+        assertEquals(2, segments[0]);
+        assertEquals(3, segments[1]);
+        assertEquals(0, segments[2]);
+        assertEquals(1, segments[3]);
+    }
+
+    @Test
+    public void testBalancedLocalityDoesNotOverloadSegments() {
+        List<Fragment> fragments = makeFragments(10, 10, 10, 10);
+        for (Fragment fragment : fragments) {
+            fragment.setReplicas(new String[]{"127.0.0.1"});
+        }
+
+        int[] segments = FragmentScheduler.balance(fragments, 2,
+                new String[]{"127.0.0.1", "127.0.0.2"});
+
+        int[] counts = new int[2];
+        for (int segment : segments) {
+            counts[segment]++;
+        }
+        assertEquals(2, counts[0]);
+        assertEquals(2, counts[1]);
+    }
+
+    @Test
+    public void testBalancedMatchesHostNamesWithoutResolving() {
+        List<Fragment> fragments = makeFragments(10, 10);
+        for (Fragment fragment : fragments) {
+            fragment.setReplicas(new String[]{"localhost"});
+        }
+
+        // "localhost" resolves to 127.0.0.1, but only the name is compared
+        int[] segments = FragmentScheduler.balance(fragments, 4,
+                new String[]{"127.0.0.1", "127.0.0.1", "LOCALHOST", "LOCALHOST"});
+
+        assertEquals(2, segments[0]);
+        assertEquals(3, segments[1]);
+    }
+
+    @Test
+    public void testBalancedAssignmentDoesNotDependOnNameResolution() {
+        List<Fragment> fragments = makeFragments(10, 10, 10, 10);
+        fragments.get(0).setReplicas(new String[]{"host2"});
+        fragments.get(1).setReplicas(new String[]{"host2"});
+        fragments.get(2).setReplicas(new String[]{"host1"});
+        fragments.get(3).setReplicas(new String[]{"host1"});
+        String[] segmentHosts = new String[]{"host1", "host1", "host2", "host2"};
+
+        // two PXF instances resolving the host names to different addresses
+        FragmentScheduler scheduler1 = new FragmentScheduler();
+        FragmentScheduler scheduler2 = new FragmentScheduler();
+        List<Fragment> formatted1 = copyWithReplica(fragments, "10.0.0.");
+        List<Fragment> formatted2 = copyWithReplica(fragments, "192.168.0.");
+
+        for (int segment = 0; segment < 4; segment++) {
+            RequestContext context = makeContext(segment, 4);
+            context.setSegmentHosts(segmentHosts);
+            context.addOption(FragmentScheduler.OPTION_FRAGMENT_SCHEDULER, FragmentScheduler.BALANCED);
+
+            List<Fragment> result1 = scheduler1.getSegmentFragments(context, fragments, formatted1);
+            List<Fragment> result2 = scheduler2.getSegmentFragments(context, fragments, formatted2);
+
+            assertEquals(1, result1.size());
+            assertEquals(1, result2.size());
+            assertEquals(result1.get(0).getSourceName(), result2.get(0).getSourceName());
+            assertSame(formatted1.get(segment < 2 ? segment + 2 : segment - 2), result1.get(0));
+            assertSame(formatted2.get(segment < 2 ? segment + 2 : segment - 2), result2.get(0));
+        }
+    }
+
+    @Test
+    public void testBalancedSegmentsReceiveEveryFragmentOnce() {
+        List<Fragment> fragments = makeFragments(5, 300, 0, 42, 42, 7, 1000, 0, 1, 99, 3);
+        long before = Metrics.counter("fragment.scheduler.balanced").sum();
+
+        Set<Fragment> seen = new HashSet<>();
+        int total = 0;
+        for (int segment = 0; segment < 4; segment++) {
+            RequestContext context = makeContext(segment, 4);
+            context.addOption(FragmentScheduler.OPTION_FRAGMENT_SCHEDULER, FragmentScheduler.BALANCED);
+            List<Fragment> result = scheduler.getSegmentFragments(context, fragments);
+            seen.addAll(result);
+            total += result.size();
+        }
+
+        assertEquals(fragments.size(), total);
+        assertEquals(fragments.size(), seen.size());
+        // the assignment is computed once for all segments
+        assertEquals(before + 1, Metrics.counter("fragment.scheduler.balanced").sum());
+        assertTrue(Metrics.snapshot().get("fragment.scheduler.imbalance") >= 1000);
+    }
+
+    private RequestContext makeContext(int segmentId, int totalSegments) {
+        RequestContext context = new RequestContext();
+        context.setSegmentId(segmentId);
+        context.setTotalSegments(totalSegments);
+        return context;
+    }
+
+    private List<Fragment> copyWithReplica(List<Fragment> fragments, String addressPrefix) {
+        List<Fragment> result = new ArrayList<>();
+        for (Fragment fragment : fragments) {
+            Fragment copy = new Fragment(fragment);
+            String host = fragment.getReplicas()[0];
+            copy.setReplicas(new String[]{addressPrefix + host.substring(host.length() - 1)});
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private List<Fragment> makeFragments(long... lengths) {
+        List<Fragment> fragments = new ArrayList<>();
+        for (int i = 0; i < lengths.length; i++) {
+            Fragment fragment = new Fragment("/foo/bar/file" + i);
+            fragment.setLength(lengths[i]);
+            fragments.add(fragment);
+        }
+        return fragments;
+    }
+}
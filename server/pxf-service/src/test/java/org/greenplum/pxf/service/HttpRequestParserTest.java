@@ -276,6 +276,24 @@ public class HttpRequestParserTest {
         assertTrue(context.isThreadSafe());
     }
 
+    @Test
+    public void segmentFragmentsDefault() {
+        RequestContext context = parser.parseRequest(mockRequestHeaders, RequestType.FRAGMENTER);
+        assertFalse(context.isSegmentFragmentsOnly());
+        assertEquals(0, context.getFragmentShift());
+    }
+
+    @Test
+    public void segmentFragments() {
+        parameters.putSingle("X-GP-SEGMENT-FRAGMENTS", "true");
+        parameters.putSingle("X-GP-FRAGMENT-SHIFT", "7");
+        parameters.putSingle("X-GP-SEGMENT-HOSTS", "sdw1,sdw1,sdw2");
+        RequestContext context = parser.parseRequest(mockRequestHeaders, RequestType.FRAGMENTER);
+        assertTrue(context.isSegmentFragmentsOnly());
+        assertEquals(7, context.getFragmentShift());
+        assertArrayEquals(new String[]{"sdw1", "sdw1", "sdw2"}, context.getSegmentHosts());
+    }
+
     @Test
     public void getFragmentMetadata() {
         RequestContext context = parser.parseRequest(mockRequestHeaders, RequestType.FRAGMENTER);
@@ -564,7 +582,7 @@ public class HttpRequestParserTest {
         assertEquals(RequestType.READ_BRIDGE, context.getRequestType());
     }
 
-    static class TestHandler implements ProtocolHandler {
+    public static class TestHandler implements ProtocolHandler {
 
         @Override
         public String getFragmenterClassName(RequestContext context) {
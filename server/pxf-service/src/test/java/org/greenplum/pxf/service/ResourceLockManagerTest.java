@@ -0,0 +1,118 @@
+package org.greenplum.pxf.service;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.model.RequestContext;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceLockManagerTest {
+
+    @Test
+    public void testKeyIncludesServerAndDataSource() {
+        RequestContext context = new RequestContext();
+        context.setServerName("s3");
+        context.setDataSource("/bucket/table");
+
+        assertEquals("s3:/bucket/table", ResourceLockManager.getKey(context));
+    }
+
+    @Test
+    public void testSameKeySameLock() {
+        ResourceLockManager manager = new ResourceLockManager("test.same", 16);
+
+        Lock first = manager.lock("default:/a");
+        first.unlock();
+        Lock second = manager.lock("default:/a");
+        second.unlock();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testDifferentStripesDoNotBlock() throws Exception {
+        ResourceLockManager manager = new ResourceLockManager("test.stripes", 16);
+        String keyA = "default:/a";
+        String keyB = findKeyOnOtherStripe(manager, keyA);
+
+        Lock lockA = manager.lock(keyA);
+        try {
+            AtomicBoolean locked = new AtomicBoolean();
+            Thread other = new Thread(() -> {
+                Lock lockB = manager.lock(keyB);
+                locked.set(true);
+                lockB.unlock();
+            });
+            other.start();
+            other.join(5000);
+            assertTrue(locked.get());
+        } finally {
+            lockA.unlock();
+        }
+        assertEquals(0, manager.getContended());
+    }
+
+    @Test
+    public void testSameStripeWaitsAndIsCounted() throws Exception {
+        ResourceLockManager manager = new ResourceLockManager("test.contended", 1);
+
+        Lock lock = manager.lock("default:/a");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            started.countDown();
+            manager.lock("default:/b").unlock();
+            acquired.countDown();
+        });
+        other.start();
+        started.await();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        lock.unlock();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        other.join();
+
+        assertEquals(1, manager.getContended());
+        assertTrue(manager.getWaitMicros() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStripes() {
+        new ResourceLockManager("test.invalid", 0);
+    }
+
+    private String findKeyOnOtherStripe(ResourceLockManager manager, String key) {
+        for (int i = 0; ; i++) {
+            String candidate = "default:/b" + i;
+            if (manager.getStripe(candidate) != manager.getStripe(key)) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -177,7 +177,8 @@ public class UGICacheTest {
         fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY + 1000);
 
         SessionId session2 = new SessionId(0, "txn-id", "the-user-2", "default");
-        cache.getUserGroupInformation(session2, true); // this triggers cleanup of ugi1
+        cache.getUserGroupInformation(session2, true);
+        cache.cleanup(); // the reaper cleans up ugi1
         assertNoLongerInCache(session, ugi1);
         cache.release(session2, true);
         assertCacheSize(0);
@@ -190,12 +191,13 @@ public class UGICacheTest {
         fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY + 1000);
 
         // at this point, stillInUse is expired but still in use
-        cache.getUserGroupInformation(session2, false); // trigger cleanup
+        cache.getUserGroupInformation(session2, false);
+        cache.cleanup();
         assertStillInCache(session, stillInUse);
         cache.release(session, false);
         fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY + 1000);
 
-        cache.getUserGroupInformation(session2, false);
+        cache.cleanup();
 
         verify(provider, times(1)).destroy(stillInUse);
     }
@@ -207,12 +209,13 @@ public class UGICacheTest {
         fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY + 1000);
 
         // at this point, stillInUse is expired but still in use
-        cache.getUserGroupInformation(session2, true); // trigger cleanup
+        cache.getUserGroupInformation(session2, true);
+        cache.cleanup();
         assertStillInCache(session, stillInUse);
         cache.release(session, false);
         fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY + 1000);
 
-        cache.getUserGroupInformation(session2, true);
+        cache.cleanup();
 
         verify(provider, times(1)).destroy(stillInUse);
     }
@@ -230,6 +233,7 @@ public class UGICacheTest {
         cache.release(session, false);
         fakeTicker.advanceTime(2 * MINUTES);
         cache.getUserGroupInformation(session3, true);
+        cache.cleanup();
 
         assertStillInCache(session, ugi1);
         assertNoLongerInCache(session2, ugi2);
@@ -288,7 +292,8 @@ public class UGICacheTest {
 
         fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY - 1000);
         SessionId session2 = new SessionId(0, "txn-id", "the-user-2", "default");
-        cache.getUserGroupInformation(session2, false); // triggers cleanup
+        cache.getUserGroupInformation(session2, false);
+        cache.cleanup();
         assertStillInCache(session, ugi1);
     }
 
@@ -302,7 +307,8 @@ public class UGICacheTest {
 
         fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY - 1000);
         SessionId session2 = new SessionId(0, "txn-id", "the-user-2", "default");
-        cache.getUserGroupInformation(session2, true); // triggers cleanup
+        cache.getUserGroupInformation(session2, true);
+        cache.cleanup();
         assertStillInCache(session, ugi1);
     }
 
@@ -377,6 +383,132 @@ public class UGICacheTest {
         cache.release(session, false);
     }
 
+    @Test
+    public void sharedSessionReusesUGIAcrossTransactionsAndSegments() throws Exception {
+        SessionId shared1 = SessionId.shared(0, "the-user", "default", new Configuration(), UserGroupInformation.getLoginUser());
+        SessionId shared2 = SessionId.shared(1, "the-user", "default", new Configuration(), UserGroupInformation.getLoginUser());
+
+        UserGroupInformation ugi1 = cache.getUserGroupInformation(shared1, true);
+        cache.release(shared1, true);
+        UserGroupInformation ugi2 = cache.getUserGroupInformation(shared2, true);
+        cache.release(shared2, true);
+
+        assertEquals(ugi1, ugi2);
+        verify(provider, times(1)).createProxyUGI(eq("the-user"), any(UserGroupInformation.class));
+        verify(provider, never()).destroy(any(UserGroupInformation.class));
+        assertStillInCache(shared1, ugi1);
+    }
+
+    @Test
+    public void sharedSessionIsNotSameAsTransactionSession() throws Exception {
+        SessionId shared = SessionId.shared(0, "the-user", "default", new Configuration(), UserGroupInformation.getLoginUser());
+
+        UserGroupInformation ugi1 = cache.getUserGroupInformation(session, true);
+        UserGroupInformation ugi2 = cache.getUserGroupInformation(shared, true);
+
+        assertNotEquals(ugi1, ugi2);
+        assertCacheSize(2);
+    }
+
+    @Test
+    public void sharedSessionExpires() throws Exception {
+        SessionId shared = SessionId.shared(0, "the-user", "default", new Configuration(), UserGroupInformation.getLoginUser());
+        UserGroupInformation ugi = cache.getUserGroupInformation(shared, true);
+        cache.release(shared, false);
+        fakeTicker.advanceTime(UGICache.UGI_CACHE_EXPIRY + 1000);
+
+        cache.getUserGroupInformation(shared, true); // this triggers cleanup of ugi
+
+        verify(provider, times(1)).destroy(ugi);
+    }
+
+    @Test
+    public void sharedSessionsBeyondLimitAreNotKept() throws Exception {
+        cache = new UGICache(provider, fakeTicker, 1);
+        SessionId shared1 = SessionId.shared(0, "the-user", "default", new Configuration(), UserGroupInformation.getLoginUser());
+        SessionId shared2 = SessionId.shared(0, "the-user-2", "default", new Configuration(), UserGroupInformation.getLoginUser());
+
+        UserGroupInformation ugi1 = cache.getUserGroupInformation(shared1, true);
+        UserGroupInformation ugi2 = cache.getUserGroupInformation(shared2, true);
+        cache.release(shared1, false);
+        cache.release(shared2, false);
+
+        assertStillInCache(shared1, ugi1);
+        assertNoLongerInCache(shared2, ugi2);
+    }
+
+    @Test
+    public void sharedSessionIsReplacedWhenLoginUserChanges() throws Exception {
+        UserGroupInformation login1 = mock(UserGroupInformation.class);
+        UserGroupInformation login2 = mock(UserGroupInformation.class);
+        SessionId shared1 = SessionId.shared(0, "the-user", "default", new Configuration(), login1);
+        SessionId shared2 = SessionId.shared(0, "the-user", "default", new Configuration(), login2);
+
+        UserGroupInformation ugi1 = cache.getUserGroupInformation(shared1, true);
+        cache.release(shared1, false);
+        UserGroupInformation ugi2 = cache.getUserGroupInformation(shared2, true);
+        cache.release(shared2, false);
+
+        assertNotEquals(ugi1, ugi2);
+        verify(provider).createProxyUGI("the-user", login1);
+        verify(provider).createProxyUGI("the-user", login2);
+        verify(provider, times(1)).destroy(ugi1);
+        assertStillInCache(shared2, ugi2);
+        assertCacheSize(1);
+    }
+
+    @Test
+    public void replacedSharedSessionIsDestroyedWhenReleased() throws Exception {
+        UserGroupInformation login1 = mock(UserGroupInformation.class);
+        UserGroupInformation login2 = mock(UserGroupInformation.class);
+        SessionId shared1 = SessionId.shared(0, "the-user", "default", new Configuration(), login1);
+        SessionId shared2 = SessionId.shared(1, "the-user", "default", new Configuration(), login2);
+
+        UserGroupInformation ugi1 = cache.getUserGroupInformation(shared1, true);
+        UserGroupInformation ugi2 = cache.getUserGroupInformation(shared2, true);
+        verify(provider, never()).destroy(ugi1);
+
+        // the request that still uses the old UGI releases it, not the new one
+        cache.release(shared1, false);
+        verify(provider, times(1)).destroy(ugi1);
+        cache.release(shared2, false);
+        assertStillInCache(shared2, ugi2);
+    }
+
+    @Test
+    public void sharedSessionIsReplacedAfterMaximumAge() throws Exception {
+        SessionId shared = SessionId.shared(0, "the-user", "default", new Configuration(), UserGroupInformation.getLoginUser());
+        UserGroupInformation ugi1 = cache.getUserGroupInformation(shared, true);
+        cache.release(shared, false);
+
+        // steady use keeps the UGI from expiring, but not beyond the maximum age
+        for (long age = 0; age < UGICache.DEFAULT_SHARED_MAX_AGE; age += 10 * MINUTES) {
+            fakeTicker.advanceTime(10 * MINUTES);
+            UserGroupInformation ugi = cache.getUserGroupInformation(shared, true);
+            cache.release(shared, false);
+            if (age + 10 * MINUTES < UGICache.DEFAULT_SHARED_MAX_AGE) {
+                assertEquals(ugi1, ugi);
+            } else {
+                assertNotEquals(ugi1, ugi);
+            }
+        }
+        verify(provider, times(2)).createProxyUGI(eq("the-user"), any(UserGroupInformation.class));
+        verify(provider, times(1)).destroy(ugi1);
+    }
+
+    @Test
+    public void sharedSessionOlderThanMaximumAgeIsCleanedUp() throws Exception {
+        cache = new UGICache(provider, fakeTicker, UGICache.DEFAULT_SHARED_CACHE_SIZE, 5 * MINUTES);
+        SessionId shared = SessionId.shared(0, "the-user", "default", new Configuration(), UserGroupInformation.getLoginUser());
+        UserGroupInformation ugi = cache.getUserGroupInformation(shared, true);
+        cache.release(shared, false);
+
+        fakeTicker.advanceTime(5 * MINUTES);
+        cache.cleanup();
+
+        assertNoLongerInCache(shared, ugi);
+    }
+
     private void assertStillInCache(SessionId session, UserGroupInformation ugi) throws Exception {
         assertTrue(cache.contains(session));
         verify(provider, never()).destroy(ugi);
@@ -0,0 +1,256 @@
+package org.greenplum.pxf.service.bridge;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.OneField;
+import org.greenplum.pxf.api.OneRow;
+import org.greenplum.pxf.api.io.DataType;
+import org.greenplum.pxf.api.io.Writable;
+import org.greenplum.pxf.api.model.Accessor;
+import org.greenplum.pxf.api.model.OutputFormat;
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.model.Resolver;
+import org.greenplum.pxf.api.utilities.AccessorFactory;
+import org.greenplum.pxf.api.utilities.ResolverFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PipelinedReadBridgeTest {
+
+    private RequestContext context;
+    private CountingAccessor accessor;
+    private AccessorFactory mockAccessorFactory;
+    private ResolverFactory mockResolverFactory;
+
+    @Before
+    public void setup() {
+        context = new RequestContext();
+        context.setOutputFormat(OutputFormat.TEXT);
+
+        accessor = new CountingAccessor();
+        mockAccessorFactory = mock(AccessorFactory.class);
+        mockResolverFactory = mock(ResolverFactory.class);
+        when(mockAccessorFactory.getPlugin(context)).thenReturn(accessor);
+        when(mockResolverFactory.getPlugin(context)).thenReturn(new StringResolver());
+    }
+
+    @Test
+    public void testReadsAllRecordsInOrder() throws Exception {
+        accessor.rows = 1000;
+        PipelinedReadBridge bridge = new PipelinedReadBridge(context, 4, mockAccessorFactory, mockResolverFactory);
+
+        assertTrue(bridge.beginIteration());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("row" + i + "\n", bridge.getNext().toString());
+        }
+        assertNull(bridge.getNext());
+        assertNull(bridge.getNext());
+        bridge.endIteration();
+
+        assertTrue(accessor.closed.get());
+        assertEquals(1001, accessor.reads.get());
+    }
+
+    @Test
+    public void testDataExceptionBecomesErrorRecord() throws Exception {
+        accessor.rows = 3;
+        accessor.failAt = 1;
+        accessor.failure = new EOFException("broken record");
+        PipelinedReadBridge bridge = new PipelinedReadBridge(context, 2, mockAccessorFactory, mockResolverFactory);
+
+        assertTrue(bridge.beginIteration());
+        assertEquals("row0\n", bridge.getNext().toString());
+        assertTrue(bridge.getNext().toString().contains("broken record"));
+        assertEquals("row2\n", bridge.getNext().toString());
+        assertNull(bridge.getNext());
+        bridge.endIteration();
+    }
+
+    @Test
+    public void testIOExceptionIsRethrown() throws Exception {
+        accessor.rows = 3;
+        accessor.failAt = 1;
+        accessor.failure = new IOException("connection reset");
+        PipelinedReadBridge bridge = new PipelinedReadBridge(context, 2, mockAccessorFactory, mockResolverFactory);
+
+        assertTrue(bridge.beginIteration());
+        assertEquals("row0\n", bridge.getNext().toString());
+        try {
+            bridge.getNext();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertSame(accessor.failure, e);
+        }
+        bridge.endIteration();
+        assertEquals(2, accessor.reads.get());
+    }
+
+    @Test
+    public void testEndIterationStopsProducerBeforeClosing() throws Exception {
+        accessor.rows = Integer.MAX_VALUE;
+        PipelinedReadBridge bridge = new PipelinedReadBridge(context, 8, mockAccessorFactory, mockResolverFactory);
+
+        assertTrue(bridge.beginIteration());
+        assertEquals("row0\n", bridge.getNext().toString());
+        bridge.endIteration();
+
+        assertTrue(accessor.closed.get());
+        assertFalse(accessor.readAfterClose.get());
+        int reads = accessor.reads.get();
+        Thread.sleep(50);
+        assertEquals(reads, accessor.reads.get());
+    }
+
+    @Test
+    public void testAwaitNextTimesOutWhileSourceIsSlow() throws Exception {
+        accessor.rows = 1;
+        accessor.gate = new CountDownLatch(1);
+        PipelinedReadBridge bridge = new PipelinedReadBridge(context, 2, mockAccessorFactory, mockResolverFactory);
+
+        assertTrue(bridge.beginIteration());
+        assertFalse(bridge.awaitNext(20, TimeUnit.MILLISECONDS));
+
+        accessor.gate.countDown();
+        assertTrue(bridge.awaitNext(5, TimeUnit.SECONDS));
+        assertEquals("row0\n", bridge.getNext().toString());
+        assertNull(bridge.getNext());
+        assertTrue(bridge.awaitNext(0, TimeUnit.MILLISECONDS));
+        bridge.endIteration();
+    }
+
+    @Test
+    public void testNoProducerWhenOpenFails() throws Exception {
+        accessor.openResult = false;
+        PipelinedReadBridge bridge = new PipelinedReadBridge(context, 2, mockAccessorFactory, mockResolverFactory);
+
+        assertFalse(bridge.beginIteration());
+        bridge.endIteration();
+        assertEquals(0, accessor.reads.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDepth() {
+        new PipelinedReadBridge(context, 0, mockAccessorFactory, mockResolverFactory);
+    }
+
+    /**
+     * Accessor returning "row0", "row1", ... and optionally failing once.
+     */
+    private static class CountingAccessor implements Accessor {
+        volatile int rows;
+        volatile int failAt = -1;
+        volatile Exception failure;
+        volatile boolean openResult = true;
+        volatile CountDownLatch gate;
+        final AtomicInteger reads = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicBoolean readAfterClose = new AtomicBoolean();
+
+        @Override
+        public boolean openForRead() {
+            return openResult;
+        }
+
+        @Override
+        public OneRow readNextObject() throws Exception {
+            if (gate != null) {
+                gate.await();
+            }
+            if (closed.get()) {
+                readAfterClose.set(true);
+            }
+            int i = reads.getAndIncrement();
+            if (i == failAt) {
+                throw failure;
+            }
+            return i < rows ? new OneRow(null, "row" + i) : null;
+        }
+
+        @Override
+        public void closeForRead() {
+            closed.set(true);
+        }
+
+        @Override
+        public boolean openForWrite() {
+            return false;
+        }
+
+        @Override
+        public boolean writeNextObject(OneRow onerow) {
+            return false;
+        }
+
+        @Override
+        public void closeForWrite() {
+        }
+
+        @Override
+        public void initialize(RequestContext requestContext) {
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return false;
+        }
+    }
+
+    /**
+     * Resolver returning the row data as a single text field.
+     */
+    private static class StringResolver implements Resolver {
+        @Override
+        public List<OneField> getFields(OneRow row) {
+            return Collections.singletonList(new OneField(DataType.TEXT.getOID(), row.getData()));
+        }
+
+        @Override
+        public OneRow setFields(List<OneField> record) {
+            return null;
+        }
+
+        @Override
+        public void initialize(RequestContext requestContext) {
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return false;
+        }
+    }
+}
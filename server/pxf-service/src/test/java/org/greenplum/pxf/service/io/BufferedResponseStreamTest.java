@@ -0,0 +1,158 @@
+package org.greenplum.pxf.service.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.io.BufferPool;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BufferedResponseStreamTest {
+
+    private ByteArrayOutputStream target = new ByteArrayOutputStream();
+    private BufferPool pool = new BufferPool(8, 2);
+
+    @Test
+    public void testSmallWritesAreBuffered() throws Exception {
+        BufferedResponseStream stream = new BufferedResponseStream(target, pool, 0);
+        stream.write(1);
+        stream.write(new byte[]{2, 3, 4}, 0, 3);
+        assertEquals(0, target.size());
+
+        stream.write(new byte[]{5, 6, 7, 8, 9}, 0, 5);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, target.toByteArray());
+        assertEquals(1, stream.getFlushes());
+
+        stream.close();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, target.toByteArray());
+        assertEquals(9, stream.getBytesWritten());
+        assertEquals(2, stream.getFlushes());
+    }
+
+    @Test
+    public void testLargeWriteBypassesBuffer() throws Exception {
+        BufferedResponseStream stream = new BufferedResponseStream(target, pool, 0);
+        stream.write(1);
+        stream.write(new byte[]{2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, 0, 10);
+        assertEquals(11, target.size());
+        assertEquals(2, stream.getFlushes());
+        stream.close();
+        assertEquals(2, stream.getFlushes());
+    }
+
+    @Test
+    public void testBufferIsReturnedToPool() throws Exception {
+        BufferedResponseStream stream = new BufferedResponseStream(target, pool, 0);
+        assertEquals(0, pool.size());
+        stream.close();
+        assertEquals(1, pool.size());
+
+        // closing twice does not return the buffer twice
+        stream.close();
+        assertEquals(1, pool.size());
+
+        try {
+            stream.write(1);
+            fail("writing to a closed stream should fail");
+        } catch (IOException e) {
+            assertEquals("Stream closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testIdleBufferIsFlushedByNextWrite() throws Exception {
+        BufferedResponseStream stream = new BufferedResponseStream(target, pool, 20);
+        stream.write(new byte[]{1}, 0, 1);
+        assertEquals(0, target.size());
+
+        Thread.sleep(50);
+        stream.write(new byte[]{2}, 0, 1);
+        assertArrayEquals(new byte[]{1, 2}, target.toByteArray());
+        stream.close();
+    }
+
+    @Test
+    public void testIdleBufferIsFlushedByCaller() throws Exception {
+        BufferedResponseStream stream = new BufferedResponseStream(target, pool, 20);
+        assertEquals(Long.MAX_VALUE, stream.getIdleFlushDelayNanos());
+        assertFalse(stream.flushIfIdle());
+
+        stream.write(1);
+        long delay = stream.getIdleFlushDelayNanos();
+        assertTrue(delay > 0 && delay <= TimeUnit.MILLISECONDS.toNanos(20));
+        assertFalse(stream.flushIfIdle());
+        assertEquals(0, target.size());
+
+        Thread.sleep(50);
+        assertEquals(0, stream.getIdleFlushDelayNanos());
+        assertTrue(stream.flushIfIdle());
+        assertArrayEquals(new byte[]{1}, target.toByteArray());
+        assertEquals(Long.MAX_VALUE, stream.getIdleFlushDelayNanos());
+        stream.close();
+    }
+
+    @Test
+    public void testNoIdleFlushWhenDisabled() throws Exception {
+        BufferedResponseStream stream = new BufferedResponseStream(target, pool, 0);
+        stream.write(1);
+        Thread.sleep(10);
+        assertEquals(Long.MAX_VALUE, stream.getIdleFlushDelayNanos());
+        assertFalse(stream.flushIfIdle());
+        assertEquals(0, target.size());
+        stream.close();
+    }
+
+    @Test
+    public void testIdleFlushErrorIsThrown() throws Exception {
+        final IOException error = new IOException("connection reset");
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw error;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw error;
+            }
+        };
+        BufferedResponseStream stream = new BufferedResponseStream(failing, pool, 1);
+        stream.write(1);
+        Thread.sleep(50);
+
+        try {
+            stream.flushIfIdle();
+            fail("error of the idle flush should be thrown");
+        } catch (IOException e) {
+            assertTrue(e == error);
+        }
+        stream.close();
+        assertEquals(1, pool.size());
+    }
+}
@@ -0,0 +1,165 @@
+package org.greenplum.pxf.service.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.BadRecordException;
+import org.greenplum.pxf.api.OneField;
+import org.greenplum.pxf.api.io.ColumnBatch;
+import org.greenplum.pxf.api.io.DataType;
+import org.greenplum.pxf.api.io.Writable;
+import org.greenplum.pxf.api.model.OutputFormat;
+import org.greenplum.pxf.api.model.RequestContext;
+import org.greenplum.pxf.api.utilities.ColumnDescriptor;
+import org.greenplum.pxf.service.BridgeOutputBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ColumnBatchWritableTest {
+
+    private static final DataType[] TYPES = {DataType.INTEGER, DataType.FLOAT8, DataType.REAL,
+            DataType.BIGINT, DataType.SMALLINT, DataType.BOOLEAN, DataType.BYTEA, DataType.TEXT,
+            DataType.VARCHAR, DataType.NUMERIC, DataType.DATE};
+
+    private RequestContext context;
+
+    @Before
+    public void setup() {
+        System.setProperty("greenplum.alignment", "8");
+        context = new RequestContext();
+        context.setOutputFormat(OutputFormat.GPDBWritable);
+        for (int i = 0; i < TYPES.length; i++) {
+            context.getTupleDescription().add(new ColumnDescriptor("col" + i, TYPES[i].getOID(), i, TYPES[i].toString(), null));
+        }
+    }
+
+    @Test
+    public void testSameBytesAsRowOutput() throws Exception {
+        byte[] shared = "xxhello worldyy".getBytes(StandardCharsets.UTF_8);
+        ColumnBatch batch = new ColumnBatch(TYPES.length, 2);
+        for (int i = 0; i < TYPES.length; i++) {
+            batch.getColumn(i).setType(TYPES[i]);
+        }
+        batch.reset(3);
+        List<List<OneField>> rows = new ArrayList<>();
+        for (int row = 0; row < 3; row++) {
+            batch.getColumn(0).setLong(row, row * 1000);
+            batch.getColumn(1).setDouble(row, row + 0.5);
+            batch.getColumn(2).setDouble(row, (float) (row + 0.25));
+            batch.getColumn(3).setLong(row, Long.MAX_VALUE - row);
+            batch.getColumn(4).setLong(row, (short) -row);
+            batch.getColumn(5).setLong(row, row % 2);
+            batch.getColumn(6).setBytes(row, shared, row, 4);
+            batch.getColumn(7).setBytes(row, shared, 2, 5 + row);
+            batch.getColumn(9).setObject(row, new BigDecimal("12.3" + row));
+            batch.getColumn(10).setObject(row, Date.valueOf("2019-0" + (row + 1) + "-15"));
+            rows.add(new ArrayList<>(Arrays.asList(
+                    new OneField(DataType.INTEGER.getOID(), row * 1000),
+                    new OneField(DataType.FLOAT8.getOID(), row + 0.5),
+                    new OneField(DataType.REAL.getOID(), (float) (row + 0.25)),
+                    new OneField(DataType.BIGINT.getOID(), Long.MAX_VALUE - row),
+                    new OneField(DataType.SMALLINT.getOID(), (short) -row),
+                    new OneField(DataType.BOOLEAN.getOID(), row % 2 == 1),
+                    new OneField(DataType.BYTEA.getOID(), Arrays.copyOfRange(shared, row, row + 4)),
+                    new OneField(DataType.TEXT.getOID(), new String(shared, 2, 5 + row, StandardCharsets.UTF_8)),
+                    new OneField(DataType.VARCHAR.getOID(), null),
+                    new OneField(DataType.NUMERIC.getOID(), new BigDecimal("12.3" + row)),
+                    new OneField(DataType.DATE.getOID(), Date.valueOf("2019-0" + (row + 1) + "-15")))));
+        }
+        // varchar column is null in every row
+        batch.getColumn(8).setRepeating(true);
+        batch.getColumn(8).setNull(0);
+
+        ColumnBatchWritable writable = new ColumnBatchWritable(context);
+        writable.set(batch);
+        assertEquals(3, writable.getSize());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DataOutputStream expectedOut = new DataOutputStream(expected);
+        for (Writable record : new BridgeOutputBuilder(context).makeVectorizedOutput(rows)) {
+            record.write(expectedOut);
+        }
+        assertArrayEquals(expected.toByteArray(), serialize(writable));
+    }
+
+    @Test
+    public void testRepeatingColumn() throws Exception {
+        context.getTupleDescription().clear();
+        context.getTupleDescription().add(new ColumnDescriptor("id", DataType.BIGINT.getOID(), 0, "int8", null));
+        ColumnBatch batch = new ColumnBatch(1, 4);
+        batch.getColumn(0).setType(DataType.BIGINT);
+        batch.reset(4);
+        batch.getColumn(0).setRepeating(true);
+        batch.getColumn(0).setLong(0, 42);
+
+        ColumnBatchWritable writable = new ColumnBatchWritable(context);
+        writable.set(batch);
+
+        List<List<OneField>> rows = new ArrayList<>();
+        for (int row = 0; row < 4; row++) {
+            rows.add(new ArrayList<>(Arrays.asList(new OneField(DataType.BIGINT.getOID(), 42L))));
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DataOutputStream expectedOut = new DataOutputStream(expected);
+        for (Writable record : new BridgeOutputBuilder(context).makeVectorizedOutput(rows)) {
+            record.write(expectedOut);
+        }
+        assertArrayEquals(expected.toByteArray(), serialize(writable));
+    }
+
+    @Test(expected = BadRecordException.class)
+    public void testTypeMismatch() throws Exception {
+        ColumnBatch batch = new ColumnBatch(TYPES.length, 1);
+        for (int i = 0; i < TYPES.length; i++) {
+            batch.getColumn(i).setType(TYPES[i]);
+        }
+        batch.getColumn(0).setType(DataType.BIGINT);
+        batch.reset(1);
+
+        new ColumnBatchWritable(context).set(batch);
+    }
+
+    @Test(expected = BadRecordException.class)
+    public void testColumnCountMismatch() throws Exception {
+        ColumnBatch batch = new ColumnBatch(1, 1);
+        batch.getColumn(0).setType(DataType.INTEGER);
+        batch.reset(1);
+
+        new ColumnBatchWritable(context).set(batch);
+    }
+
+    private byte[] serialize(Writable writable) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writable.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
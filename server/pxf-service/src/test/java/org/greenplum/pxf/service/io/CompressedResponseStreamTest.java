@@ -0,0 +1,152 @@
+package org.greenplum.pxf.service.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.greenplum.pxf.api.model.RequestContext;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedResponseStreamTest {
+
+    private ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+    @Test
+    public void testGzipRoundTrip() throws Exception {
+        byte[] data = repeat("gzip encoded row\n", 1000);
+        CompressedResponseStream stream = new CompressedResponseStream(target, CompressedResponseStream.Encoding.GZIP, 1);
+        stream.write(data, 0, 100);
+        stream.write(data[100]);
+        stream.write(data, 101, data.length - 101);
+        stream.close();
+
+        assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(target.toByteArray()))));
+        assertEquals(data.length, stream.getBytesIn());
+        assertEquals(target.size(), stream.getBytesOut());
+        assertTrue(stream.getBytesOut() < data.length / 10);
+    }
+
+    @Test
+    public void testDeflateRoundTrip() throws Exception {
+        byte[] data = repeat("deflate encoded row\n", 1000);
+        CompressedResponseStream stream = new CompressedResponseStream(target, CompressedResponseStream.Encoding.DEFLATE, 9);
+        stream.write(data, 0, data.length);
+        stream.close();
+
+        assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(target.toByteArray()))));
+        assertEquals(target.size(), stream.getBytesOut());
+    }
+
+    @Test
+    public void testFlushedDataCanBeDecoded() throws Exception {
+        byte[] data = "first rows\n".getBytes(StandardCharsets.UTF_8);
+        CompressedResponseStream stream = new CompressedResponseStream(target, CompressedResponseStream.Encoding.DEFLATE, 1);
+        stream.write(data, 0, data.length);
+        stream.flush();
+
+        InputStream in = new InflaterInputStream(new ByteArrayInputStream(target.toByteArray()));
+        byte[] decoded = new byte[data.length];
+        int read = 0;
+        while (read < data.length) {
+            read += in.read(decoded, read, data.length - read);
+        }
+        assertArrayEquals(data, decoded);
+        stream.close();
+    }
+
+    @Test
+    public void testCloseDoesNotCloseUnderlyingStream() throws Exception {
+        final boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        CompressedResponseStream stream = new CompressedResponseStream(out, CompressedResponseStream.Encoding.GZIP, 1);
+        stream.close();
+        stream.close();
+
+        assertEquals(false, closed[0]);
+        // an empty response is still a valid gzip stream
+        assertEquals(0, readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))).length);
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertNull(CompressedResponseStream.negotiate(null));
+        assertNull(CompressedResponseStream.negotiate(Collections.singletonList("identity")));
+        assertEquals(CompressedResponseStream.Encoding.DEFLATE,
+                CompressedResponseStream.negotiate(Collections.singletonList("deflate")));
+        assertEquals(CompressedResponseStream.Encoding.GZIP,
+                CompressedResponseStream.negotiate(Collections.singletonList("deflate, GZIP")));
+        assertEquals(CompressedResponseStream.Encoding.GZIP,
+                CompressedResponseStream.negotiate(Arrays.asList("deflate", "gzip;q=0.5")));
+        assertEquals(CompressedResponseStream.Encoding.DEFLATE,
+                CompressedResponseStream.negotiate(Collections.singletonList("gzip;q=0, deflate")));
+    }
+
+    @Test
+    public void testGetLevel() {
+        RequestContext context = new RequestContext();
+        assertEquals(1, CompressedResponseStream.getLevel(context));
+
+        context.addOption(CompressedResponseStream.COMPRESSION_LEVEL_OPTION, "0");
+        assertEquals(0, CompressedResponseStream.getLevel(context));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLevelOutOfRange() {
+        RequestContext context = new RequestContext();
+        context.addOption(CompressedResponseStream.COMPRESSION_LEVEL_OPTION, "10");
+        CompressedResponseStream.getLevel(context);
+    }
+
+    private byte[] repeat(String line, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i % 10).append(line);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            result.write(buf, 0, n);
+        }
+        return result.toByteArray();
+    }
+}
@@ -2,10 +2,13 @@ package org.greenplum.pxf.service.rest;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import org.greenplum.pxf.api.io.DataType;
+import org.greenplum.pxf.api.model.CacheableFragmenter;
 import org.greenplum.pxf.api.model.Fragment;
 import org.greenplum.pxf.api.model.Fragmenter;
 import org.greenplum.pxf.api.model.RequestContext;
 import org.greenplum.pxf.api.model.RequestContext.RequestType;
+import org.greenplum.pxf.api.utilities.ColumnDescriptor;
 import org.greenplum.pxf.api.utilities.FragmenterCacheFactory;
 import org.greenplum.pxf.api.utilities.FragmenterFactory;
 import org.greenplum.pxf.api.utilities.FragmentsResponse;
@@ -26,8 +29,10 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -51,6 +56,7 @@ public class FragmenterResourceTest {
     private FakeTicker fakeTicker;
 
     private String PROPERTY_KEY_FRAGMENTER_CACHE = "pxf.service.fragmenter.cache.enabled";
+    private String PROPERTY_KEY_SOURCE_CACHE = "pxf.service.fragmenter.source.cache.enabled";
 
     @Before
     public void setup() {
@@ -62,6 +68,7 @@ public class FragmenterResourceTest {
 
         when(fragmenterCacheFactory.getCache()).thenReturn(fragmentCache);
         System.clearProperty(PROPERTY_KEY_FRAGMENTER_CACHE);
+        System.clearProperty(PROPERTY_KEY_SOURCE_CACHE);
     }
 
     @SuppressWarnings("unchecked")
@@ -279,6 +286,175 @@ public class FragmenterResourceTest {
     }
 
     @SuppressWarnings("unchecked")
+    @Test
+    public void sourceFragmentsAreReusedAcrossTransactions() throws Throwable {
+        RequestContext context1 = new RequestContext();
+        context1.setTransactionId("XID-XYZ-123456");
+        context1.setDataSource("/foo/bar");
+
+        RequestContext context2 = new RequestContext();
+        context2.setTransactionId("XID-XYZ-654321");
+        context2.setDataSource("/foo/bar");
+
+        CacheableFragmenter fragmenter = mock(CacheableFragmenter.class);
+        List<Fragment> fragmentList = new ArrayList<>();
+        fragmentList.add(new Fragment("/foo/bar/file", new String[]{"localhost"}, new byte[]{1}));
+        when(fragmenter.getSourceVersion()).thenReturn("v1");
+        when(fragmenter.getFragments()).thenReturn(fragmentList);
+
+        List<Fragment> fragments2 = getSourceFragments(context1, context2, fragmenter, true);
+
+        verify(fragmenter, times(1)).getFragments();
+        assertEquals(1, fragments2.size());
+        assertEquals("/foo/bar/file", fragments2.get(0).getSourceName());
+        assertNotSame(fragmentList.get(0), fragments2.get(0));
+    }
+
+    @Test
+    public void sourceFragmentsAreRecomputedWhenSourceChanges() throws Throwable {
+        RequestContext context1 = new RequestContext();
+        context1.setTransactionId("XID-XYZ-123456");
+        context1.setDataSource("/foo/bar");
+
+        RequestContext context2 = new RequestContext();
+        context2.setTransactionId("XID-XYZ-654321");
+        context2.setDataSource("/foo/bar");
+
+        CacheableFragmenter fragmenter = mock(CacheableFragmenter.class);
+        when(fragmenter.getSourceVersion()).thenReturn("v1", "v2");
+        when(fragmenter.getFragments()).thenReturn(new ArrayList<Fragment>());
+
+        getSourceFragments(context1, context2, fragmenter, true);
+
+        verify(fragmenter, times(2)).getFragments();
+    }
+
+    @Test
+    public void sourceFragmentsAreNotCachedWithoutVersion() throws Throwable {
+        RequestContext context1 = new RequestContext();
+        context1.setTransactionId("XID-XYZ-123456");
+        context1.setDataSource("/foo/bar");
+
+        RequestContext context2 = new RequestContext();
+        context2.setTransactionId("XID-XYZ-654321");
+        context2.setDataSource("/foo/bar");
+
+        CacheableFragmenter fragmenter = mock(CacheableFragmenter.class);
+        when(fragmenter.getSourceVersion()).thenReturn(null);
+        when(fragmenter.getFragments()).thenReturn(new ArrayList<Fragment>());
+
+        getSourceFragments(context1, context2, fragmenter, true);
+
+        verify(fragmenter, times(2)).getFragments();
+    }
+
+    @Test
+    public void sourceFragmentsAreNotCachedByDefault() throws Throwable {
+        RequestContext context1 = new RequestContext();
+        context1.setTransactionId("XID-XYZ-123456");
+        context1.setDataSource("/foo/bar");
+
+        RequestContext context2 = new RequestContext();
+        context2.setTransactionId("XID-XYZ-654321");
+        context2.setDataSource("/foo/bar");
+
+        CacheableFragmenter fragmenter = mock(CacheableFragmenter.class);
+        when(fragmenter.getFragments()).thenReturn(new ArrayList<Fragment>());
+
+        getSourceFragments(context1, context2, fragmenter, false);
+
+        verify(fragmenter, never()).getSourceVersion();
+        verify(fragmenter, times(2)).getFragments();
+    }
+
+    @Test
+    public void sourceFragmentsAreNotSharedBetweenColumnLayouts() throws Throwable {
+        // the filter refers to columns by index, a1 is a different column in each table
+        RequestContext context1 = new RequestContext();
+        context1.setTransactionId("XID-XYZ-123456");
+        context1.setDataSource("default.foo");
+        context1.setFilterString("a1c25s3dbazo5");
+        context1.setTupleDescription(columns("id", "part"));
+
+        RequestContext context2 = new RequestContext();
+        context2.setTransactionId("XID-XYZ-654321");
+        context2.setDataSource("default.foo");
+        context2.setFilterString("a1c25s3dbazo5");
+        context2.setTupleDescription(columns("part", "id"));
+
+        CacheableFragmenter fragmenter = mock(CacheableFragmenter.class);
+        when(fragmenter.getSourceVersion()).thenReturn("v1");
+        when(fragmenter.getFragments()).thenReturn(new ArrayList<Fragment>());
+
+        getSourceFragments(context1, context2, fragmenter, true);
+
+        verify(fragmenter, times(2)).getFragments();
+    }
+
+    @Test
+    public void segmentFragmentsAreFilteredForRequestingSegment() throws Throwable {
+        RequestContext context = new RequestContext();
+        context.setTransactionId("XID-XYZ-123456");
+        context.setDataSource("/foo/bar");
+        context.setSegmentId(1);
+        context.setTotalSegments(3);
+        context.setFragmentShift(4);
+        context.setSegmentFragmentsOnly(true);
+
+        List<Fragment> fragmentList = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            fragmentList.add(new Fragment("/foo/bar/file", new String[]{"localhost"}, new byte[]{(byte) i}));
+        }
+
+        when(parser.parseRequest(headersFromRequest1, RequestType.FRAGMENTER)).thenReturn(context);
+        when(fragmenterFactory.getPlugin(context)).thenReturn(fragmenter1);
+        when(fragmenter1.getFragments()).thenReturn(fragmentList);
+
+        Response response = new FragmenterResource(parser, fragmenterFactory, fragmenterCacheFactory)
+                .getFragments(servletContext, headersFromRequest1);
+        List<Fragment> fragments = ((FragmentsResponse) response.getEntity()).getFragments();
+
+        // positions 3 and 6 are assigned to segment (n + 4) % 3 == 1
+        assertEquals(2, fragments.size());
+        assertArrayEquals(fragmentList.get(2).getMetadata(), fragments.get(0).getMetadata());
+        assertArrayEquals(fragmentList.get(5).getMetadata(), fragments.get(1).getMetadata());
+        // indexes are those of the full list
+        assertEquals(2, fragments.get(0).getIndex());
+        assertEquals(5, fragments.get(1).getIndex());
+        // the response has copies, the fragmenter's host names are kept for scheduling
+        assertNotSame(fragmentList.get(2), fragments.get(0));
+        assertEquals("localhost", fragmentList.get(2).getReplicas()[0]);
+    }
+
+    private List<Fragment> getSourceFragments(RequestContext context1, RequestContext context2,
+                                              CacheableFragmenter fragmenter, boolean sourceCacheEnabled)
+            throws Throwable {
+        if (sourceCacheEnabled) {
+            System.setProperty(PROPERTY_KEY_SOURCE_CACHE, "true");
+        }
+        Cache<FragmenterCacheFactory.SourceKey, FragmenterCacheFactory.SourceFragments> sourceCache =
+                CacheBuilder.newBuilder().build();
+        when(fragmenterCacheFactory.getSourceCache()).thenReturn(sourceCache);
+        when(parser.parseRequest(headersFromRequest1, RequestType.FRAGMENTER)).thenReturn(context1);
+        when(parser.parseRequest(headersFromRequest2, RequestType.FRAGMENTER)).thenReturn(context2);
+        when(fragmenterFactory.getPlugin(context1)).thenReturn(fragmenter);
+        when(fragmenterFactory.getPlugin(context2)).thenReturn(fragmenter);
+
+        new FragmenterResource(parser, fragmenterFactory, fragmenterCacheFactory)
+                .getFragments(servletContext, headersFromRequest1);
+        Response response = new FragmenterResource(parser, fragmenterFactory, fragmenterCacheFactory)
+                .getFragments(servletContext, headersFromRequest2);
+        return ((FragmentsResponse) response.getEntity()).getFragments();
+    }
+
+    private List<ColumnDescriptor> columns(String... names) {
+        List<ColumnDescriptor> columns = new ArrayList<>();
+        for (String name : names) {
+            columns.add(new ColumnDescriptor(name, DataType.TEXT.getOID(), columns.size(), "text", null));
+        }
+        return columns;
+    }
+
     private void testContextsAreNotCached(RequestContext context1, RequestContext context2)
             throws Throwable {
 
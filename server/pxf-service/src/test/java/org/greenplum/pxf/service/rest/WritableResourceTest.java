@@ -27,14 +27,26 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import javax.servlet.ServletContext;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -84,4 +96,110 @@ public class WritableResourceTest {
         assertEquals(Response.Status.OK, Response.Status.fromStatusCode(result.getStatus()));
         assertEquals("wrote 0 bulks to " + path, result.getEntity().toString());
     }
+
+    @Test
+    public void streamNonThreadSafe() throws Exception {
+        when(mockBridge.isThreadSafe()).thenReturn(false);
+        when(mockContext.getServerName()).thenReturn("default");
+        when(mockContext.getDataSource()).thenReturn("/data/bzip2");
+        String path = "whatCAN1tellYOU";
+
+        // the lock is released after each request, so a second one from the same segment proceeds
+        for (int i = 0; i < 2; i++) {
+            Response result = writableResource.stream(mockServletContext, mockHeaders, path, mockInputStream);
+            assertEquals(Response.Status.OK, Response.Status.fromStatusCode(result.getStatus()));
+            assertEquals("wrote 0 bulks to " + path, result.getEntity().toString());
+        }
+    }
+
+    @Test
+    public void streamNonThreadSafeSegmentsWriteInParallel() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpHeaders firstHeaders = mockNonThreadSafeWriter(0, firstStarted, release);
+        HttpHeaders secondHeaders = mockNonThreadSafeWriter(1, secondStarted, release);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> first = executor.submit(stream(firstHeaders));
+            assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+
+            // the first segment still holds its lock, the second one writes its own file
+            Future<Response> second = executor.submit(stream(secondHeaders));
+            assertTrue(secondStarted.await(10, TimeUnit.SECONDS));
+
+            release.countDown();
+            assertEquals(Response.Status.OK.getStatusCode(), first.get(10, TimeUnit.SECONDS).getStatus());
+            assertEquals(Response.Status.OK.getStatusCode(), second.get(10, TimeUnit.SECONDS).getStatus());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void streamNonThreadSafeSameSegmentIsSerialized() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch firstRelease = new CountDownLatch(1);
+        CountDownLatch secondRelease = new CountDownLatch(0);
+        HttpHeaders firstHeaders = mockNonThreadSafeWriter(0, firstStarted, firstRelease);
+        HttpHeaders secondHeaders = mockNonThreadSafeWriter(0, secondStarted, secondRelease);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> first = executor.submit(stream(firstHeaders));
+            assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+
+            // the second writer of the same file waits for the first one to finish
+            Future<Response> second = executor.submit(stream(secondHeaders));
+            assertFalse(secondStarted.await(500, TimeUnit.MILLISECONDS));
+
+            firstRelease.countDown();
+            assertEquals(Response.Status.OK.getStatusCode(), first.get(10, TimeUnit.SECONDS).getStatus());
+            assertTrue(secondStarted.await(10, TimeUnit.SECONDS));
+            assertEquals(Response.Status.OK.getStatusCode(), second.get(10, TimeUnit.SECONDS).getStatus());
+        } finally {
+            firstRelease.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Sets up a request of a non thread-safe plugin for the given segment,
+     * whose bridge signals when it starts writing and then waits for release.
+     */
+    private HttpHeaders mockNonThreadSafeWriter(int segmentId, final CountDownLatch started,
+                                                final CountDownLatch release) throws Exception {
+        HttpHeaders headers = mock(HttpHeaders.class);
+        RequestContext context = mock(RequestContext.class);
+        WriteBridge bridge = mock(WriteBridge.class);
+
+        when(mockParser.parseRequest(headers, RequestType.WRITE_BRIDGE)).thenReturn(context);
+        when(mockFactory.getWriteBridge(context)).thenReturn(bridge);
+        when(context.isThreadSafe()).thenReturn(true);
+        when(context.getServerName()).thenReturn("default");
+        when(context.getDataSource()).thenReturn("/data/concurrent");
+        when(context.getSegmentId()).thenReturn(segmentId);
+        when(bridge.isThreadSafe()).thenReturn(false);
+        doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+                return true;
+            }
+        }).when(bridge).beginIteration();
+        return headers;
+    }
+
+    private Callable<Response> stream(final HttpHeaders headers) {
+        return new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                return writableResource.stream(mockServletContext, headers, "path", mockInputStream);
+            }
+        };
+    }
 }